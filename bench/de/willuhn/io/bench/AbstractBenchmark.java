@@ -0,0 +1,86 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.willuhn.io.fs.FileSystem;
+import de.willuhn.io.fs.FileSystemFactory;
+
+/**
+ * Basis-Klasse der Benchmarks.
+ * Oeffnet pro Durchlauf eine Verbindung zum jeweiligen Backend.
+ * Da die File-Systeme nicht thread-safe sind, erhaelt jeder Benchmark-Thread
+ * eine eigene Verbindung.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class AbstractBenchmark
+{
+  /**
+   * Das zu messende Backend.
+   */
+  @Param({"mem","file","ftp","sftp"})
+  public String backend;
+
+  /**
+   * Die emulierte Netzwerk-Verbindung zum Server.
+   * Per Default direkt ueber Loopback. Kann per "-p network=wan" oder mit einer
+   * Beschreibung wie "-p network='delay=50;bandwidth=1000000'" geaendert werden.
+   * @see NetworkProfile#forName(String)
+   */
+  @Param({"none"})
+  public String network;
+
+  /**
+   * Die Verbindung zum Backend.
+   */
+  protected FileSystem fs = null;
+
+  /**
+   * Oeffnet die Verbindung.
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void connect() throws Exception
+  {
+    this.fs = FileSystemFactory.createFileSystem(Servers.getUri(this.backend,this.network));
+  }
+
+  /**
+   * Schliesst die Verbindung.
+   * @throws Exception
+   */
+  @TearDown(Level.Trial)
+  public void close() throws Exception
+  {
+    if (this.fs != null)
+      this.fs.close();
+  }
+}
@@ -0,0 +1,50 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+import de.willuhn.io.fs.FileSystem;
+import de.willuhn.io.fs.FileSystemFactory;
+
+/**
+ * Misst den Verbindungsaufbau inclusive Login und Abbau der Verbindung.
+ */
+public class ConnectBenchmark extends AbstractBenchmark
+{
+  private String uri = null;
+
+  /**
+   * Ermittelt die URI.
+   * Die Verbindung der Basis-Klasse wird hier nicht benoetigt.
+   * @throws Exception
+   */
+  @Setup
+  public void init() throws Exception
+  {
+    this.uri = Servers.getUri(this.backend,this.network);
+  }
+
+  /**
+   * Oeffnet und schliesst eine Verbindung.
+   * @return das File-System.
+   * @throws Exception
+   */
+  @Benchmark
+  public FileSystem connectAndClose() throws Exception
+  {
+    FileSystem f = FileSystemFactory.createFileSystem(this.uri);
+    f.close();
+    return f;
+  }
+}
@@ -0,0 +1,64 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import de.willuhn.io.fs.FileInfo;
+
+/**
+ * Misst das Auflisten von Verzeichnissen unterschiedlicher Groesse.
+ */
+public class ListBenchmark extends AbstractBenchmark
+{
+  /**
+   * Anzahl der Dateien im Verzeichnis.
+   */
+  @Param({"10","10000","100000"})
+  public int entries;
+
+  private String dir = null;
+
+  /**
+   * Erzeugt das Verzeichnis.
+   * @throws Exception
+   */
+  @Setup
+  public void init() throws Exception
+  {
+    this.dir = Servers.createDir("list-" + this.entries,this.entries);
+  }
+
+  /**
+   * Listet die Dateinamen.
+   * @return die Dateinamen.
+   * @throws Exception
+   */
+  @Benchmark
+  public String[] list() throws Exception
+  {
+    return this.fs.list(this.dir,null);
+  }
+
+  /**
+   * Listet die Dateien inclusive Meta-Daten.
+   * @return die Meta-Daten.
+   * @throws Exception
+   */
+  @Benchmark
+  public FileInfo[] listInfo() throws Exception
+  {
+    return this.fs.listInfo(this.dir,null);
+  }
+}
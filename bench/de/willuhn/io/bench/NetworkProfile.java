@@ -0,0 +1,181 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Beschreibt die Eigenschaften einer emulierten Netzwerk-Verbindung.
+ * Alle Werte gelten pro Richtung. Die Round-Trip-Time entspricht also
+ * der doppelten Verzoegerung.
+ * @see NetworkEmulator
+ */
+public class NetworkProfile
+{
+  private final static Map<String,NetworkProfile> PRESETS = new HashMap<String,NetworkProfile>();
+
+  static
+  {
+    PRESETS.put("lan",  new NetworkProfile(1,0,125000000L));
+    PRESETS.put("dsl",  new NetworkProfile(15,3,6250000L));
+    PRESETS.put("wan",  new NetworkProfile(80,10,1250000L));
+    PRESETS.put("sat",  new NetworkProfile(300,30,500000L));
+
+    NetworkProfile lossy = new NetworkProfile(80,10,1250000L);
+    lossy.setStall(0.01d,400);
+    PRESETS.put("lossy",lossy);
+  }
+
+  private long delay           = 0L;
+  private long jitter          = 0L;
+  private long bandwidth       = 0L;
+  private double stallRate     = 0d;
+  private long stallTime       = 0L;
+  private long seed            = 4711L;
+
+  /**
+   * ct.
+   * @param delay Verzoegerung in Millisekunden.
+   * @param jitter maximale zufaellige Abweichung der Verzoegerung in Millisekunden.
+   * @param bandwidth Bandbreite in Bytes pro Sekunde. 0 fuer unbegrenzt.
+   */
+  public NetworkProfile(long delay, long jitter, long bandwidth)
+  {
+    this.delay     = delay;
+    this.jitter    = jitter;
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * Liefert ein Profil anhand seines Namens oder einer Beschreibung.
+   * Moegliche Namen sind "lan", "dsl", "wan", "sat" und "lossy". Alternativ kann
+   * eine Beschreibung der Form "delay=80;jitter=10;bandwidth=1250000;stall=0.01;stalltime=400"
+   * angegeben werden. Nicht angegebene Werte sind 0. Als Trennzeichen ist auch "," moeglich,
+   * JMH zerlegt Parameter jedoch an Kommas.
+   * @param s Name oder Beschreibung.
+   * @return das Profil oder NULL, wenn s NULL, leer oder "none" ist.
+   */
+  public static NetworkProfile forName(String s)
+  {
+    if (s == null || s.length() == 0 || "none".equals(s))
+      return null;
+
+    NetworkProfile p = PRESETS.get(s);
+    if (p != null)
+      return p;
+
+    p = new NetworkProfile(0,0,0);
+    for (String part:s.split("[;,]"))
+    {
+      int i = part.indexOf('=');
+      if (i == -1)
+        throw new IllegalArgumentException("invalid network profile: " + s);
+      String key   = part.substring(0,i).trim().toLowerCase();
+      String value = part.substring(i+1).trim();
+      if ("delay".equals(key))          p.delay     = Long.parseLong(value);
+      else if ("jitter".equals(key))    p.jitter    = Long.parseLong(value);
+      else if ("bandwidth".equals(key)) p.bandwidth = Long.parseLong(value);
+      else if ("stall".equals(key))     p.stallRate = Double.parseDouble(value);
+      else if ("stalltime".equals(key)) p.stallTime = Long.parseLong(value);
+      else if ("seed".equals(key))      p.seed      = Long.parseLong(value);
+      else
+        throw new IllegalArgumentException("invalid network profile: " + s);
+    }
+    return p;
+  }
+
+  /**
+   * Legt fest, wie oft und wie lange die Verbindung haengt.
+   * Emuliert Paketverluste: Bis das verlorene Paket erneut uebertragen wurde,
+   * kommen auch die nachfolgenden Daten nicht beim Empfaenger an.
+   * @param rate Wahrscheinlichkeit pro uebertragenem Block (0 bis 1).
+   * @param time Dauer in Millisekunden.
+   */
+  public void setStall(double rate, long time)
+  {
+    this.stallRate = rate;
+    this.stallTime = time;
+  }
+
+  /**
+   * Legt den Startwert des Zufallsgenerators fest.
+   * Bei gleichem Startwert verhalten sich die Verbindungen reproduzierbar.
+   * @param seed der Startwert.
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+  }
+
+  /**
+   * Liefert die Verzoegerung.
+   * @return Verzoegerung in Millisekunden.
+   */
+  public long getDelay()
+  {
+    return this.delay;
+  }
+
+  /**
+   * Liefert die maximale zufaellige Abweichung der Verzoegerung.
+   * @return Jitter in Millisekunden.
+   */
+  public long getJitter()
+  {
+    return this.jitter;
+  }
+
+  /**
+   * Liefert die Bandbreite.
+   * @return Bandbreite in Bytes pro Sekunde. 0 fuer unbegrenzt.
+   */
+  public long getBandwidth()
+  {
+    return this.bandwidth;
+  }
+
+  /**
+   * Liefert die Wahrscheinlichkeit, mit der die Verbindung haengt.
+   * @return Wahrscheinlichkeit pro uebertragenem Block.
+   */
+  public double getStallRate()
+  {
+    return this.stallRate;
+  }
+
+  /**
+   * Liefert die Dauer, die die Verbindung haengt.
+   * @return Dauer in Millisekunden.
+   */
+  public long getStallTime()
+  {
+    return this.stallTime;
+  }
+
+  /**
+   * Liefert den Startwert des Zufallsgenerators.
+   * @return der Startwert.
+   */
+  public long getSeed()
+  {
+    return this.seed;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    return "delay=" + this.delay + ";jitter=" + this.jitter + ";bandwidth=" + this.bandwidth + ";stall=" + this.stallRate + ";stalltime=" + this.stallTime;
+  }
+}
@@ -0,0 +1,403 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import de.willuhn.io.fs.FileSystem;
+import de.willuhn.io.fs.FileSystemFactory;
+
+/**
+ * Startet die fuer die Benchmarks benoetigten Server im selben Prozess und
+ * erzeugt die Testdaten.
+ * Alle Server arbeiten auf dem selben lokalen Verzeichnis. Es kann per
+ * System-Property "filesystems.bench.dir" festgelegt werden. Per Default
+ * wird "filesystems-bench" im Temp-Verzeichnis verwendet. Da das Erzeugen
+ * grosser Verzeichnisse dauert, bleiben die Testdaten zwischen den Laeufen erhalten.
+ * Fuer das Backend "mem" werden die Testdaten in den Speicher "mem://bench" kopiert.
+ */
+public class Servers
+{
+  /**
+   * Benutzername und Passwort fuer FTP und SFTP.
+   */
+  public final static String USER = "bench";
+
+  private static java.io.File root = null;
+  private static FtpServer ftp     = null;
+  private static int ftpPort       = 0;
+  private static SshServer sftp    = null;
+  private static Map<String,NetworkEmulator> proxies = new HashMap<String,NetworkEmulator>();
+  private static List<String[]> fixtures = new ArrayList<String[]>();
+  private static FileSystem mem    = null;
+
+  /**
+   * Liefert das Verzeichnis, auf dem die Server arbeiten.
+   * @return das Verzeichnis.
+   */
+  public static synchronized java.io.File getRoot()
+  {
+    if (root == null)
+    {
+      root = new java.io.File(System.getProperty("filesystems.bench.dir",System.getProperty("java.io.tmpdir") + "/filesystems-bench"));
+      root.mkdirs();
+      Runtime.getRuntime().addShutdownHook(new Thread("filesystems-bench-shutdown")
+      {
+        public void run()
+        {
+          shutdown();
+        }
+      });
+    }
+    return root;
+  }
+
+  /**
+   * Liefert die URI fuer das Backend und startet bei Bedarf den zugehoerigen Server.
+   * @param backend Name des Backends. Moeglich sind "mem", "file", "ftp" und "sftp".
+   * @return die URI.
+   * @throws Exception
+   */
+  public static synchronized String getUri(String backend) throws Exception
+  {
+    return getUri(backend,null);
+  }
+
+  /**
+   * Liefert die URI fuer das Backend, wobei die Verbindung ueber einen
+   * {@link NetworkEmulator} mit dem angegebenen Profil laeuft.
+   * Fuer das lokale File-System und den Arbeitsspeicher wird das Profil ignoriert.
+   * @param backend Name des Backends. Moeglich sind "mem", "file", "ftp" und "sftp".
+   * @param network Name oder Beschreibung des Profils. Siehe {@link NetworkProfile#forName(String)}.
+   * NULL oder "none" fuer eine direkte Verbindung.
+   * @return die URI.
+   * @throws Exception
+   */
+  public static synchronized String getUri(String backend, String network) throws Exception
+  {
+    java.io.File dir = getRoot();
+    if ("mem".equals(backend))
+    {
+      if (mem == null)
+      {
+        mem = FileSystemFactory.createFileSystem("mem://bench/");
+        for (String[] f:fixtures)
+          mirror(f[0],f[1]);
+      }
+      return "mem://bench/";
+    }
+
+    if ("file".equals(backend))
+      return "file://" + dir.getAbsolutePath();
+
+    if ("ftp".equals(backend))
+    {
+      startFtp();
+      return "ftp://" + USER + ":" + USER + "@127.0.0.1:" + getPort(backend,ftpPort,network) + "/";
+    }
+
+    if ("sftp".equals(backend))
+    {
+      startSftp();
+      // Die Anmeldung erfolgt per Passwort, nicht per Schluessel des Benutzers
+      System.setProperty("filesystems.sftp.password",USER);
+      System.setProperty("filesystems.sftp.private_key",new java.io.File(dir,"no-such-key").getAbsolutePath());
+      return "sftp://" + USER + "@127.0.0.1:" + getPort(backend,sftp.getPort(),network) + "/";
+    }
+
+    throw new IllegalArgumentException("unknown backend: " + backend);
+  }
+
+  /**
+   * Liefert den Port, ueber den der Server erreichbar ist.
+   * Startet bei Bedarf den Proxy mit dem angegebenen Profil.
+   * @param backend Name des Backends.
+   * @param port Port des Servers.
+   * @param network Name oder Beschreibung des Profils.
+   * @return der Port des Servers oder des Proxy.
+   * @throws IOException
+   */
+  private static int getPort(String backend, int port, String network) throws IOException
+  {
+    NetworkProfile profile = NetworkProfile.forName(network);
+    if (profile == null)
+      return port;
+
+    String key = backend + "|" + network;
+    NetworkEmulator proxy = proxies.get(key);
+    if (proxy == null)
+    {
+      proxy = new NetworkEmulator("127.0.0.1",port,profile);
+      proxy.setFtp("ftp".equals(backend));
+      proxy.start();
+      proxies.put(key,proxy);
+    }
+    return proxy.getPort();
+  }
+
+  /**
+   * Erzeugt ein Verzeichnis mit der angegebenen Anzahl leerer Dateien.
+   * Existiert es bereits mit passender Anzahl, wird es unveraendert verwendet.
+   * @param name Name des Verzeichnisses.
+   * @param count Anzahl der Dateien.
+   * @return Name des Verzeichnisses.
+   * @throws Exception
+   */
+  public static synchronized String createDir(String name, int count) throws Exception
+  {
+    java.io.File dir = new java.io.File(getRoot(),name);
+    String[] existing = dir.list();
+    if (existing == null || existing.length != count)
+    {
+      dir.mkdirs();
+      for (int i=0;i<count;++i)
+      {
+        java.io.File f = new java.io.File(dir,"file-" + i + ".dat");
+        if (!f.exists())
+          new FileOutputStream(f).close();
+      }
+    }
+    fixture(name,null);
+    return name;
+  }
+
+  /**
+   * Erzeugt eine Datei mit Zufallsdaten.
+   * Existiert sie bereits mit passender Groesse, wird sie unveraendert verwendet.
+   * @param dir Name des Verzeichnisses.
+   * @param name Name der Datei.
+   * @param size Groesse in Bytes.
+   * @return Name der Datei.
+   * @throws Exception
+   */
+  public static synchronized String createFile(String dir, String name, long size) throws Exception
+  {
+    java.io.File d = new java.io.File(getRoot(),dir);
+    d.mkdirs();
+    java.io.File f = new java.io.File(d,name);
+    if (!f.isFile() || f.length() != size)
+      write(f,size);
+    fixture(dir,name);
+    return name;
+  }
+
+  /**
+   * Merkt sich die Testdaten und kopiert sie bei Bedarf in den Arbeitsspeicher.
+   * @param dir Name des Verzeichnisses.
+   * @param name Name der Datei oder NULL fuer alle Dateien im Verzeichnis.
+   * @throws Exception
+   */
+  private static void fixture(String dir, String name) throws Exception
+  {
+    fixtures.add(new String[]{dir,name});
+    if (mem != null)
+      mirror(dir,name);
+  }
+
+  /**
+   * Kopiert Testdaten in den Arbeitsspeicher.
+   * @param dir Name des Verzeichnisses.
+   * @param name Name der Datei oder NULL fuer alle Dateien im Verzeichnis.
+   * @throws Exception
+   */
+  private static void mirror(String dir, String name) throws Exception
+  {
+    java.io.File d = new java.io.File(getRoot(),dir);
+    String[] names = name != null ? new String[]{name} : d.list();
+    byte[] buf = new byte[64 * 1024];
+    for (String n:names)
+    {
+      de.willuhn.io.fs.File target = mem.create(dir,n);
+      java.io.File source = new java.io.File(d,n);
+      if (target.exists() && target.length() == source.length())
+        continue;
+
+      InputStream is = new FileInputStream(source);
+      OutputStream os = target.getOutputStream();
+      try
+      {
+        int read = 0;
+        while ((read = is.read(buf)) != -1)
+          os.write(buf,0,read);
+      }
+      finally
+      {
+        is.close();
+        os.close();
+      }
+    }
+  }
+
+  /**
+   * Schreibt Zufallsdaten in die Datei.
+   * @param f die Datei.
+   * @param size Groesse in Bytes.
+   * @throws IOException
+   */
+  private static void write(java.io.File f, long size) throws IOException
+  {
+    byte[] buf = new byte[64 * 1024];
+    new Random(size).nextBytes(buf);
+    FileOutputStream os = new FileOutputStream(f);
+    try
+    {
+      long left = size;
+      while (left > 0)
+      {
+        int n = (int) Math.min(left,buf.length);
+        os.write(buf,0,n);
+        left -= n;
+      }
+    }
+    finally
+    {
+      os.close();
+    }
+  }
+
+  /**
+   * Startet den FTP-Server.
+   * @throws Exception
+   */
+  private static void startFtp() throws Exception
+  {
+    if (ftp != null)
+      return;
+
+    ftpPort = getFreePort();
+
+    FtpServerFactory factory = new FtpServerFactory();
+
+    ListenerFactory listener = new ListenerFactory();
+    listener.setServerAddress("127.0.0.1");
+    listener.setPort(ftpPort);
+    factory.addListener("default",listener.createListener());
+
+    ConnectionConfigFactory config = new ConnectionConfigFactory();
+    config.setMaxLogins(100);
+    config.setMaxThreads(100);
+    factory.setConnectionConfig(config.createConnectionConfig());
+
+    UserManager users = new PropertiesUserManagerFactory().createUserManager();
+    BaseUser user = new BaseUser();
+    user.setName(USER);
+    user.setPassword(USER);
+    user.setHomeDirectory(getRoot().getAbsolutePath());
+    List<Authority> auth = new ArrayList<Authority>();
+    auth.add(new WritePermission());
+    user.setAuthorities(auth);
+    users.save(user);
+    factory.setUserManager(users);
+
+    ftp = factory.createServer();
+    ftp.start();
+  }
+
+  /**
+   * Startet den SFTP-Server.
+   * @throws Exception
+   */
+  private static void startSftp() throws Exception
+  {
+    if (sftp != null)
+      return;
+
+    SshServer server = SshServer.setUpDefaultServer();
+    server.setHost("127.0.0.1");
+    server.setPort(0);
+    server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(new java.io.File(getRoot(),"hostkey.ser").toPath()));
+    server.setPasswordAuthenticator(new PasswordAuthenticator()
+    {
+      public boolean authenticate(String username, String password, ServerSession session)
+      {
+        return USER.equals(username) && USER.equals(password);
+      }
+    });
+    server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+    server.setFileSystemFactory(new VirtualFileSystemFactory(getRoot().toPath()));
+    server.start();
+    sftp = server;
+  }
+
+  /**
+   * Stoppt die Server.
+   */
+  private static synchronized void shutdown()
+  {
+    for (NetworkEmulator proxy:proxies.values())
+      proxy.close();
+    proxies.clear();
+
+    if (ftp != null)
+    {
+      ftp.stop();
+      ftp = null;
+    }
+    if (sftp != null)
+    {
+      try
+      {
+        sftp.stop(true);
+      }
+      catch (IOException e)
+      {
+        // ignore
+      }
+      sftp = null;
+    }
+  }
+
+  /**
+   * Ermittelt einen freien TCP-Port.
+   * @return der Port.
+   * @throws IOException
+   */
+  private static int getFreePort() throws IOException
+  {
+    ServerSocket s = new ServerSocket(0);
+    try
+    {
+      return s.getLocalPort();
+    }
+    finally
+    {
+      s.close();
+    }
+  }
+}
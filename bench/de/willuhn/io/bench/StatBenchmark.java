@@ -0,0 +1,62 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.willuhn.io.fs.File;
+
+/**
+ * Misst das Abfragen der Meta-Daten einer Datei.
+ */
+public class StatBenchmark extends AbstractBenchmark
+{
+  private String dir  = "stat";
+  private String name = null;
+
+  /**
+   * Erzeugt die Datei.
+   * @throws Exception
+   */
+  @Setup
+  public void init() throws Exception
+  {
+    this.name = Servers.createFile(this.dir,"stat.dat",1024L);
+  }
+
+  /**
+   * Prueft die Existenz und ermittelt Groesse und Aenderungsdatum.
+   * @param bh Blackhole.
+   * @throws Exception
+   */
+  @Benchmark
+  public void stat(Blackhole bh) throws Exception
+  {
+    File f = this.fs.create(this.dir,this.name);
+    bh.consume(f.exists());
+    bh.consume(f.length());
+    bh.consume(f.lastModified());
+  }
+
+  /**
+   * Prueft die Existenz einer nicht vorhandenen Datei.
+   * @return false.
+   * @throws Exception
+   */
+  @Benchmark
+  public boolean missing() throws Exception
+  {
+    return this.fs.create(this.dir,"missing.dat").exists();
+  }
+}
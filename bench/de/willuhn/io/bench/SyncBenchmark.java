@@ -0,0 +1,125 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.willuhn.io.fs.FileSystem;
+import de.willuhn.io.fs.FileSystemFactory;
+import de.willuhn.io.fs.FileSystemPool;
+import de.willuhn.io.fs.MemFileSystem;
+import de.willuhn.io.fs.SyncAction;
+import de.willuhn.io.fs.Synchronizer;
+
+/**
+ * Misst das Synchronisieren eines Verzeichnisbaumes in den Arbeitsspeicher.
+ * Der Baum enthaelt Dateien im Start-Verzeichnis und in Unterverzeichnissen,
+ * so dass die Verbindungen aus dem Pool zwischen den Verzeichnissen wechseln.
+ * Nach jedem Durchlauf wird geprueft, ob alle Dateien vollstaendig im Ziel angekommen sind.
+ */
+public class SyncBenchmark extends AbstractBenchmark
+{
+  private final static String DIR    = "sync";
+  private final static String TARGET = "bench-sync";
+
+  // Verzeichnis, Name und Groesse der Dateien
+  private final static Object[][] FILES = new Object[][]
+  {
+    {null,"root.dat",1000L},
+    {"sub","a.dat",2000L},
+    {"sub/deeper","b.dat",3000L},
+  };
+
+  private FileSystemPool source = null;
+
+  /**
+   * Erzeugt den Verzeichnisbaum und den Pool fuer die Quelle.
+   * @throws Exception
+   */
+  @Setup
+  public void init() throws Exception
+  {
+    for (Object[] f:FILES)
+    {
+      String dir = (String) f[0];
+      Servers.createFile(dir == null ? DIR : (DIR + "/" + dir),(String) f[1],((Long) f[2]).longValue());
+    }
+    String uri = Servers.getUri(this.backend,this.network);
+    this.source = new FileSystemPool(uri + (uri.endsWith("/") ? "" : "/") + DIR);
+  }
+
+  /**
+   * Schliesst den Pool der Quelle.
+   * @throws Exception
+   */
+  @TearDown(Level.Trial)
+  public void close() throws Exception
+  {
+    if (this.source != null)
+      this.source.close();
+    super.close();
+  }
+
+  /**
+   * Synchronisiert den Baum in einen leeren Speicher.
+   * @return die ausgefuehrten Aktionen.
+   * @throws Exception
+   */
+  @Benchmark
+  public List<SyncAction> sync() throws Exception
+  {
+    MemFileSystem.drop(TARGET);
+    FileSystemPool target = new FileSystemPool("mem://" + TARGET + "/");
+    try
+    {
+      List<SyncAction> actions = new Synchronizer(this.source,target).sync(null,null);
+      check(actions);
+      return actions;
+    }
+    finally
+    {
+      target.close();
+    }
+  }
+
+  /**
+   * Prueft, ob alle Dateien im Ziel angekommen sind.
+   * @param actions die ausgefuehrten Aktionen.
+   * @throws Exception
+   */
+  private void check(List<SyncAction> actions) throws Exception
+  {
+    if (actions.size() != FILES.length)
+      throw new IllegalStateException("expected " + FILES.length + " actions, got " + actions);
+
+    FileSystem t = FileSystemFactory.createFileSystem("mem://" + TARGET + "/");
+    try
+    {
+      for (Object[] f:FILES)
+      {
+        de.willuhn.io.fs.File file = t.create((String) f[0],(String) f[1]);
+        long size = ((Long) f[2]).longValue();
+        if (!file.exists() || file.length() != size)
+          throw new IllegalStateException(file + " not synchronized, expected " + size + " bytes, got " + file.length());
+      }
+    }
+    finally
+    {
+      t.close();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst das Lesen und Schreiben von Dateien unterschiedlicher Groesse.
+ * Der Durchsatz in MB/s ergibt sich aus Groesse / Zeit pro Operation.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TransferBenchmark extends AbstractBenchmark
+{
+  /**
+   * Groesse der Datei in Bytes (1 KB und 100 MB).
+   */
+  @Param({"1024","104857600"})
+  public long size;
+
+  private String dir    = "transfer";
+  private String name   = null;
+  private byte[] buffer = new byte[64 * 1024];
+
+  /**
+   * Erzeugt die zu lesende Datei.
+   * @throws Exception
+   */
+  @Setup
+  public void init() throws Exception
+  {
+    this.name = Servers.createFile(this.dir,"data-" + this.size + ".dat",this.size);
+  }
+
+  /**
+   * Liest die Datei komplett.
+   * @return Anzahl der gelesenen Bytes.
+   * @throws Exception
+   */
+  @Benchmark
+  public long download() throws Exception
+  {
+    InputStream is = this.fs.create(this.dir,this.name).getInputStream();
+    try
+    {
+      long count = 0L;
+      int read = 0;
+      while ((read = is.read(this.buffer)) != -1)
+        count += read;
+      return count;
+    }
+    finally
+    {
+      is.close();
+    }
+  }
+
+  /**
+   * Schreibt eine Datei der angegebenen Groesse.
+   * @return Anzahl der geschriebenen Bytes.
+   * @throws Exception
+   */
+  @Benchmark
+  public long upload() throws Exception
+  {
+    OutputStream os = this.fs.create(this.dir,"upload-" + this.backend + "-" + this.size + ".dat").getOutputStream();
+    try
+    {
+      long left = this.size;
+      while (left > 0)
+      {
+        int n = (int) Math.min(left,this.buffer.length);
+        os.write(this.buffer,0,n);
+        left -= n;
+      }
+      return this.size;
+    }
+    finally
+    {
+      os.close();
+    }
+  }
+}
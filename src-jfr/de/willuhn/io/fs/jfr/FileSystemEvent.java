@@ -0,0 +1,50 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java-Flight-Recorder-Event fuer eine File-System-Operation.
+ */
+@Name("de.willuhn.io.fs.Operation")
+@Label("File System Operation")
+@Description("Operation on a remote or local file system")
+@Category({"Filesystems"})
+@StackTrace(false)
+class FileSystemEvent extends Event
+{
+  @Label("Backend")
+  String backend;
+
+  @Label("Host")
+  String host;
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Path")
+  String path;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Success")
+  boolean success;
+}
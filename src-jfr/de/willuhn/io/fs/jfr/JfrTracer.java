@@ -0,0 +1,59 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs.jfr;
+
+import de.willuhn.io.fs.Tracer;
+
+/**
+ * Tracer, der die Operationen als Java-Flight-Recorder-Events meldet.
+ * Wird von {@link de.willuhn.io.fs.Tracing} installiert, wenn das System-Property
+ * "filesystems.jfr=true" gesetzt ist (erfordert Java 11). Alternativ kann er per
+ * {@link de.willuhn.io.fs.Tracing#setTracer(Tracer)} gesetzt werden. Ist keine
+ * Aufzeichnung aktiv, wird kein Event erzeugt.
+ */
+public class JfrTracer implements Tracer
+{
+  /**
+   * @see de.willuhn.io.fs.Tracer#begin(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+   */
+  public Object begin(String backend, String host, String operation, String path)
+  {
+    FileSystemEvent e = new FileSystemEvent();
+    if (!e.isEnabled())
+      return null;
+
+    e.backend   = backend;
+    e.host      = host;
+    e.operation = operation;
+    e.path      = path;
+    e.begin();
+    return e;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.Tracer#end(java.lang.Object, long, boolean)
+   */
+  public void end(Object span, long bytes, boolean success)
+  {
+    if (!(span instanceof FileSystemEvent))
+      return;
+
+    FileSystemEvent e = (FileSystemEvent) span;
+    e.end();
+    if (!e.shouldCommit())
+      return;
+
+    e.bytes   = bytes;
+    e.success = success;
+    e.commit();
+  }
+}
@@ -18,16 +18,36 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
+import de.willuhn.io.fs.BufferPool;
 import de.willuhn.io.fs.FSException;
 import de.willuhn.io.fs.File;
 import de.willuhn.io.fs.FileSystem;
 import de.willuhn.io.fs.FileSystemFactory;
+import de.willuhn.io.fs.FileSystemPool;
+import de.willuhn.io.fs.GlobFilter;
+import de.willuhn.io.fs.Transfer;
 
 /**
  * Ein Kommandozeilen-Client fuer die FS-API, welcher eine FTP-aehnliche
  * Syntax verwendet.
+ * Werden nach der URL weitere Parameter angegeben, laeuft der Client nicht
+ * interaktiv, sondern fuehrt sie der Reihe nach als Kommandos aus und beendet
+ * sich anschliessend. Beispiel:
+ * <pre>
+ *   java de.willuhn.io.Client sftp://user@host/dir "bench size=1k,10m count=10"
+ * </pre>
  * @author willuhn
  */
 public class Client
@@ -38,7 +58,9 @@ public class Client
     private FileSystem fs           = null;
     private BufferedReader keyboard = null;
     private boolean quit            = false;
+    private boolean batch           = false;
     private String dir              = null;
+    private String url              = null;
 
 
   
@@ -51,7 +73,10 @@ public class Client
   {
     try
     {
-      client = new Client((args == null || args.length == 0) ? null : args[0]);
+      if (args != null && args.length > 1)
+        client = new Client(args[0],Arrays.copyOfRange(args,1,args.length));
+      else
+        client = new Client((args == null || args.length == 0) ? null : args[0]);
     }
     finally
     {
@@ -87,6 +112,33 @@ public class Client
     }
   }
 
+  /**
+   * ct.
+   * Fuehrt die Kommandos nicht-interaktiv aus. Bei einem Fehler wird abgebrochen.
+   * @param url URL.
+   * @param commands die auszufuehrenden Kommandos.
+   * @throws Exception
+   */
+  private Client(String url, String[] commands) throws Exception
+  {
+    this.batch = true;
+    try
+    {
+      connect(url);
+      for (int i=0;i<commands.length && !quit;++i)
+      {
+        println("> " + commands[i]);
+        handleCommand(commands[i]);
+      }
+    }
+    catch (Exception e)
+    {
+      // Der Konstruktor kehrt nicht zurueck, daher hier schliessen
+      close();
+      throw e;
+    }
+  }
+
   /**
    * Behandelt das eingegebene Kommando.
    * @param cmd
@@ -128,6 +180,18 @@ public class Client
       return;
     }
 
+    if ("mput".equals(cmd))
+    {
+      mput(params);
+      return;
+    }
+
+    if ("mget".equals(cmd))
+    {
+      mget(params);
+      return;
+    }
+
     if ("cd".equals(cmd))
     {
       cd(params);
@@ -152,6 +216,14 @@ public class Client
       return;
     }
 
+    if ("bench".equals(cmd))
+    {
+      bench(params);
+      return;
+    }
+
+    if (batch)
+      throw new Exception("invalid command: " + cmd);
     println("invalid command: " + cmd);
     
     
@@ -167,7 +239,16 @@ public class Client
     println("cd <dir>       change into server directory <dir>");
     println("put <file>     upload <file> to server");
     println("get <file>     download <file> from server");
+    println("mput <pattern> [threads=<n>]");
+    println("               upload all local files matching <pattern> (e.g. /data/*.csv) in parallel");
+    println("mget <pattern> [threads=<n>]");
+    println("               download all files in server directory matching <pattern> (e.g. *.{csv,txt})");
+    println("               in parallel");
     println("dir            list server directory");
+    println("bench [size=<sizes>] [count=<n>] [list=<n>]");
+    println("               measure connect, list, stat, upload, download and delete in server");
+    println("               directory, sizes like 1k,1m,100m (default: 1k,1m,10m), count per size");
+    println("               (default: 5), number of directory listings (default: 10)");
     println("quit           close connection and quit client");
     println("help/h         print this help text");
   }
@@ -219,8 +300,11 @@ public class Client
 
     // ggf. die vorherige Connection schliessen.
     close();
+    long start = System.nanoTime();
     this.fs = FileSystemFactory.createFileSystem(url);
-    println("ok");
+    this.url = url;
+    this.dir = null;
+    println("ok (" + ((System.nanoTime() - start) / 1000000L) + " ms)");
   }
 
   /**
@@ -364,7 +448,7 @@ public class Client
       
       print("uploading file " + f.getName() + " ...");
       
-      byte[] buf = new byte[4096];
+      byte[] buf = new byte[64 * 1024];
       int read;
       do
       {
@@ -442,7 +526,7 @@ public class Client
       
       print("downloading file " + file + " ...");
       
-      byte[] buf = new byte[4096];
+      byte[] buf = new byte[64 * 1024];
       int read;
       do
       {
@@ -483,6 +567,398 @@ public class Client
 
   }
   
+  /**
+   * Kopiert die auf das Muster passenden lokalen Dateien parallel auf den Server.
+   * @param params Muster und optional "threads=n".
+   * @throws Exception
+   */
+  private void mput(String params) throws Exception
+  {
+    if (fs == null)
+    {
+      println("not connected");
+      return;
+    }
+
+    String[] p = parseMulti(params);
+    if (p == null)
+      return;
+
+    java.io.File pattern = new java.io.File(p[0]);
+    java.io.File localDir = pattern.getAbsoluteFile().getParentFile();
+    java.io.File[] files = localDir.listFiles(new GlobFilter(pattern.getName()));
+    List<String> names = new ArrayList<String>();
+    if (files != null)
+    {
+      for (java.io.File f:files)
+      {
+        if (f.isFile())
+          names.add(f.getName());
+      }
+    }
+
+    FileSystem local = FileSystemFactory.createFileSystem("file://" + localDir.getAbsolutePath());
+    try
+    {
+      transfer(names,local,null,true,Integer.parseInt(p[1]));
+    }
+    finally
+    {
+      local.close();
+    }
+  }
+
+  /**
+   * Kopiert die auf das Muster passenden Dateien parallel vom Server.
+   * @param params Muster und optional "threads=n".
+   * @throws Exception
+   */
+  private void mget(String params) throws Exception
+  {
+    if (fs == null)
+    {
+      println("not connected");
+      return;
+    }
+
+    String[] p = parseMulti(params);
+    if (p == null)
+      return;
+
+    String[] files = fs.list(dir,new GlobFilter(p[0]));
+    if (files == null)
+    {
+      println("directory " + (dir == null ? "/" : dir) + " does not exist");
+      return;
+    }
+
+    java.io.File localDir = new java.io.File(".").getAbsoluteFile();
+    FileSystem local = FileSystemFactory.createFileSystem("file://" + localDir.getAbsolutePath());
+    try
+    {
+      transfer(Arrays.asList(files),local,null,false,Integer.parseInt(p[1]));
+    }
+    finally
+    {
+      local.close();
+    }
+  }
+
+  /**
+   * Parst die Parameter von mput und mget.
+   * @param params die Parameter.
+   * @return Muster und Anzahl der Threads (0 fuer Default) oder NULL, wenn kein Muster angegeben ist.
+   */
+  private String[] parseMulti(String params)
+  {
+    if (params == null || params.trim().length() == 0)
+    {
+      println("no pattern given");
+      return null;
+    }
+
+    String pattern = params.trim();
+    String threads = "0";
+    int i = pattern.lastIndexOf(" threads=");
+    if (i != -1)
+    {
+      threads = pattern.substring(i + 9).trim();
+      pattern = pattern.substring(0,i).trim();
+    }
+    return new String[]{pattern,threads};
+  }
+
+  /**
+   * Uebertraegt die Dateien parallel ueber mehrere Verbindungen zum Server.
+   * @param names Namen der Dateien.
+   * @param local lokales File-System.
+   * @param localDir Verzeichnis im lokalen File-System.
+   * @param upload true fuer Upload, false fuer Download.
+   * @param threads Anzahl paralleler Uebertragungen. 0 fuer das Verbindungs-Limit des Hosts.
+   * @throws Exception
+   */
+  private void transfer(List<String> names, final FileSystem local, final String localDir, final boolean upload, int threads) throws Exception
+  {
+    if (names.size() == 0)
+    {
+      println("no matching files");
+      return;
+    }
+
+    final FileSystemPool pool = new FileSystemPool(this.url);
+    if (threads <= 0)
+      threads = pool.getMaxConnections();
+    threads = Math.min(threads,names.size());
+
+    // Pro Thread ein Ring aus 4 Puffern a 1 MB
+    final BufferPool buffers = new BufferPool(Transfer.DEFAULT_BUFFER_SIZE,threads * (Transfer.DEFAULT_RING_SIZE + 2),false);
+    final AtomicLong bytes = new AtomicLong();
+    final String remoteDir = this.dir;
+
+    println((upload ? "uploading " : "downloading ") + names.size() + " file(s) using " + threads + " connection(s)");
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try
+    {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (final String name:names)
+      {
+        results.add(executor.submit(new Callable<Boolean>()
+        {
+          public Boolean call() throws Exception
+          {
+            FileSystem remote = null;
+            try
+            {
+              remote = pool.acquire();
+              File source = upload ? local.create(localDir,name) : remote.create(remoteDir,name);
+              File target = upload ? remote.create(remoteDir,name) : local.create(localDir,name);
+              long n = new Transfer(buffers,Transfer.DEFAULT_RING_SIZE).copy(source,target);
+              bytes.addAndGet(n);
+              pool.release(remote);
+              synchronized (Client.this)
+              {
+                println("  " + name + " ok (" + n + " bytes)");
+              }
+              return Boolean.TRUE;
+            }
+            catch (Exception e)
+            {
+              pool.invalidate(remote);
+              synchronized (Client.this)
+              {
+                println("  " + name + " failed: " + e.getMessage());
+              }
+              return Boolean.FALSE;
+            }
+          }
+        }));
+      }
+
+      int failed = 0;
+      for (Future<Boolean> f:results)
+      {
+        if (!f.get().booleanValue())
+          failed++;
+      }
+
+      double seconds = (System.nanoTime() - start) / 1000000000d;
+      double mb = bytes.get() / 1048576d;
+      println(String.format("%d file(s), %.2f MB in %.2f s, %.2f MB/s%s",names.size() - failed,mb,seconds,seconds > 0 ? mb / seconds : 0d,failed > 0 ? (", " + failed + " failed") : ""));
+      if (failed > 0 && batch)
+        throw new Exception(failed + " transfer(s) failed");
+    }
+    finally
+    {
+      executor.shutdown();
+      pool.close();
+    }
+  }
+
+  /**
+   * Misst Latenz und Durchsatz der Verbindung.
+   * Die Testdateien werden im aktuellen Verzeichnis auf dem Server erzeugt
+   * und anschliessend wieder geloescht.
+   * @param params optionale Parameter "size=1k,1m", "count=5" und "list=10".
+   * @throws Exception
+   */
+  private void bench(String params) throws Exception
+  {
+    if (fs == null)
+    {
+      println("not connected");
+      return;
+    }
+
+    long[] sizes = new long[]{1024L,1024L * 1024L,10 * 1024L * 1024L};
+    int count    = 5;
+    int lists    = 10;
+
+    if (params != null)
+    {
+      for (String p:params.trim().split("\\s+"))
+      {
+        int i = p.indexOf('=');
+        String key   = i == -1 ? p : p.substring(0,i);
+        String value = i == -1 ? "" : p.substring(i+1);
+        if ("size".equals(key))
+        {
+          String[] values = value.split(",");
+          sizes = new long[values.length];
+          for (int k=0;k<values.length;++k)
+            sizes[k] = parseSize(values[k]);
+        }
+        else if ("count".equals(key))
+          count = Integer.parseInt(value);
+        else if ("list".equals(key))
+          lists = Integer.parseInt(value);
+        else
+          throw new Exception("invalid parameter: " + p);
+      }
+    }
+
+    Map<String,Stats> stats = new LinkedHashMap<String,Stats>();
+
+    // Verbindungsaufbau. Die bestehende Verbindung bleibt dabei offen.
+    print("connect ...");
+    for (int i=0;i<count;++i)
+    {
+      long start = System.nanoTime();
+      FileSystem test = FileSystemFactory.createFileSystem(this.url);
+      test.close();
+      stats(stats,"connect").record(start,0L);
+    }
+    println("ok");
+
+    print("list ...");
+    for (int i=0;i<lists;++i)
+    {
+      long start = System.nanoTime();
+      fs.list(dir,null);
+      stats(stats,"list").record(start,0L);
+    }
+    println("ok");
+
+    byte[] buf = new byte[64 * 1024];
+    new Random().nextBytes(buf);
+
+    for (long size:sizes)
+    {
+      String label = formatSize(size);
+      print("transfer " + label + " ...");
+      for (int i=0;i<count;++i)
+      {
+        File f = fs.create(dir,".bench-" + i + "-" + size + ".dat");
+        try
+        {
+          // Upload
+          long start = System.nanoTime();
+          OutputStream os = f.getOutputStream();
+          try
+          {
+            long left = size;
+            while (left > 0)
+            {
+              int n = (int) Math.min(left,buf.length);
+              os.write(buf,0,n);
+              left -= n;
+            }
+          }
+          finally
+          {
+            os.close();
+          }
+          stats(stats,"upload " + label).record(start,size);
+
+          // Meta-Daten
+          start = System.nanoTime();
+          if (f.stat() == null)
+            throw new FSException("file " + f + " not found after upload");
+          stats(stats,"stat").record(start,0L);
+
+          // Download
+          start = System.nanoTime();
+          InputStream is = f.getInputStream();
+          long read = 0L;
+          try
+          {
+            int n = 0;
+            while ((n = is.read(buf)) != -1)
+              read += n;
+          }
+          finally
+          {
+            is.close();
+          }
+          stats(stats,"download " + label).record(start,read);
+        }
+        finally
+        {
+          long start = System.nanoTime();
+          f.delete();
+          stats(stats,"delete").record(start,0L);
+        }
+      }
+      println("ok");
+    }
+
+    println("");
+    println(String.format("%-18s %6s %10s %10s %10s %10s","operation","count","p50 ms","p99 ms","max ms","MB/s"));
+    for (Map.Entry<String,Stats> e:stats.entrySet())
+    {
+      Stats s = e.getValue();
+      long[] times = s.sorted();
+      long sum = 0L;
+      for (long t:times)
+        sum += t;
+      String mbs = s.bytes > 0 && sum > 0 ? String.format("%10.2f",(s.bytes / 1048576d) / (sum / 1000000000d)) : String.format("%10s","-");
+      println(String.format("%-18s %6d %10.2f %10.2f %10.2f %s",e.getKey(),times.length,percentile(times,50) / 1000000d,percentile(times,99) / 1000000d,times[times.length - 1] / 1000000d,mbs));
+    }
+    println("");
+  }
+
+  /**
+   * Liefert das Perzentil der sortierten Messwerte (Nearest-Rank).
+   * @param sorted die sortierten Messwerte.
+   * @param p das Perzentil, z.Bsp. 99.
+   * @return der Messwert.
+   */
+  private static long percentile(long[] sorted, double p)
+  {
+    int rank = (int) Math.ceil(p / 100d * sorted.length);
+    return sorted[Math.max(0,Math.min(sorted.length,rank) - 1)];
+  }
+
+  /**
+   * Liefert die Statistik zur Operation und legt sie bei Bedarf an.
+   * @param stats die Statistiken.
+   * @param operation Name der Operation.
+   * @return die Statistik.
+   */
+  private Stats stats(Map<String,Stats> stats, String operation)
+  {
+    Stats s = stats.get(operation);
+    if (s == null)
+    {
+      s = new Stats();
+      stats.put(operation,s);
+    }
+    return s;
+  }
+
+  /**
+   * Parst eine Groessenangabe wie "1k", "10m" oder "1g".
+   * @param s die Groessenangabe.
+   * @return Groesse in Bytes.
+   */
+  private long parseSize(String s)
+  {
+    s = s.trim().toLowerCase();
+    long factor = 1L;
+    if (s.endsWith("k"))      factor = 1024L;
+    else if (s.endsWith("m")) factor = 1024L * 1024L;
+    else if (s.endsWith("g")) factor = 1024L * 1024L * 1024L;
+    if (factor > 1L)
+      s = s.substring(0,s.length()-1);
+    return Long.parseLong(s) * factor;
+  }
+
+  /**
+   * Formatiert eine Groessenangabe.
+   * @param size Groesse in Bytes.
+   * @return die formatierte Groesse, z.Bsp. "10m".
+   */
+  private String formatSize(long size)
+  {
+    if (size >= 1024L * 1024L * 1024L && size % (1024L * 1024L * 1024L) == 0)
+      return (size / (1024L * 1024L * 1024L)) + "g";
+    if (size >= 1024L * 1024L && size % (1024L * 1024L) == 0)
+      return (size / (1024L * 1024L)) + "m";
+    if (size >= 1024L && size % 1024L == 0)
+      return (size / 1024L) + "k";
+    return Long.toString(size);
+  }
+
   /**
    * Schliesst den Client.
    * @throws FSException
@@ -503,4 +979,39 @@ public class Client
       fs = null;
     }
   }
+
+  /**
+   * Messwerte einer Operation.
+   * Es werden die einzelnen Zeiten gespeichert, da pro Operation nur wenige
+   * Messungen anfallen und die Perzentile exakt ermittelt werden sollen.
+   */
+  private static class Stats
+  {
+    private List<Long> times = new ArrayList<Long>();
+    private long bytes       = 0L;
+
+    /**
+     * Erfasst eine Ausfuehrung.
+     * @param start Startzeit per System.nanoTime().
+     * @param bytes Anzahl der uebertragenen Bytes.
+     */
+    private void record(long start, long bytes)
+    {
+      this.times.add(System.nanoTime() - start);
+      this.bytes += bytes;
+    }
+
+    /**
+     * Liefert die gemessenen Zeiten aufsteigend sortiert.
+     * @return die Zeiten in Nanosekunden.
+     */
+    private long[] sorted()
+    {
+      long[] result = new long[this.times.size()];
+      for (int i=0;i<result.length;++i)
+        result[i] = this.times.get(i);
+      Arrays.sort(result);
+      return result;
+    }
+  }
 }
@@ -27,6 +27,27 @@ public abstract class AbstractFileSystem implements FileSystem
     super();
   }
 
+  /**
+   * Filtert die Verzeichnisliste per {@link GlobFilter}.
+   * Implementierungen, deren Protokoll Muster unterstuetzt, ueberschreiben die Funktion.
+   * @see de.willuhn.io.fs.FileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    return list(dir,new GlobFilter(pattern));
+  }
+
+  /**
+   * Liefert einen temporaeren Namen im selben Verzeichnis, unter dem eine
+   * existierende Ziel-Datei beim Verschieben voruebergehend gesichert wird.
+   * @param path Pfad oder Name der Datei.
+   * @return der temporaere Pfad bzw. Name.
+   */
+  static String tempName(String path)
+  {
+    return path + "." + Long.toHexString(System.nanoTime()) + ".tmp";
+  }
+
   /**
    * Bereinigt ein Verzeichnis.
    * Dabei werden Backslashes gegen Slashes ersetzt, alle doppelten
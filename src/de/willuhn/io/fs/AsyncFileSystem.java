@@ -0,0 +1,414 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Asynchrone Fassade fuer den Zugriff auf ein File-System.
+ * Die Operationen werden im Hintergrund ausgefuehrt und liefern sofort ein
+ * {@link Future} zurueck. Optional kann ein {@link Callback} uebergeben werden,
+ * der nach Abschluss der Operation aufgerufen wird.
+ * Die Verbindungen werden aus einem {@link FileSystemPool} bezogen, sodass
+ * die Anzahl gleichzeitiger Verbindungen pro Host begrenzt bleibt. Es koennen
+ * also beliebig viele Operationen gestartet werden - sie werden der Reihe nach
+ * abgearbeitet, sobald eine Verbindung frei wird.
+ */
+public class AsyncFileSystem
+{
+  private FileSystemPool pool       = null;
+  private ExecutorService executor  = null;
+  private boolean ownExecutor       = false;
+
+  /**
+   * ct.
+   * Verwendet einen eigenen Thread-Pool, dessen Groesse dem Verbindungs-Limit
+   * des File-System-Pools entspricht.
+   * @param pool der Pool, aus dem die Verbindungen bezogen werden.
+   */
+  public AsyncFileSystem(FileSystemPool pool)
+  {
+    this(pool,Executors.newFixedThreadPool(pool.getMaxConnections(),new DaemonThreadFactory("filesystems-async")));
+    this.ownExecutor = true;
+  }
+
+  /**
+   * ct.
+   * @param pool der Pool, aus dem die Verbindungen bezogen werden.
+   * @param executor der Executor, in dem die Operationen ausgefuehrt werden.
+   */
+  public AsyncFileSystem(FileSystemPool pool, ExecutorService executor)
+  {
+    this.pool     = pool;
+    this.executor = executor;
+  }
+
+  /**
+   * Liefert asynchron eine Liste von Dateien in dem Verzeichnis.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @param callback optionaler Callback.
+   * @return Future mit der Liste der Dateien.
+   * @see FileSystem#list(String, FilenameFilter)
+   */
+  public Future<String[]> list(final String dir, final FilenameFilter filter, Callback<String[]> callback)
+  {
+    return submit(new Operation<String[]>()
+    {
+      public String[] execute(FileSystem fs) throws FSException
+      {
+        return fs.list(dir,filter);
+      }
+    },callback);
+  }
+
+  /**
+   * Liefert asynchron eine Liste von Verzeichnissen in dem Verzeichnis.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @param callback optionaler Callback.
+   * @return Future mit der Liste der Verzeichnisse.
+   * @see FileSystem#listDirs(String, FilenameFilter)
+   */
+  public Future<String[]> listDirs(final String dir, final FilenameFilter filter, Callback<String[]> callback)
+  {
+    return submit(new Operation<String[]>()
+    {
+      public String[] execute(FileSystem fs) throws FSException
+      {
+        return fs.listDirs(dir,filter);
+      }
+    },callback);
+  }
+
+  /**
+   * Liefert asynchron die Meta-Daten der Datei.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param callback optionaler Callback.
+   * @return Future mit den Meta-Daten der Datei oder NULL, wenn sie nicht existiert.
+   */
+  public Future<FileInfo> stat(final String dir, final String name, Callback<FileInfo> callback)
+  {
+    return submit(new Operation<FileInfo>()
+    {
+      public FileInfo execute(FileSystem fs) throws FSException
+      {
+        return fs.create(dir,name).stat();
+      }
+    },callback);
+  }
+
+  /**
+   * Liest asynchron den Inhalt der Datei.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param callback optionaler Callback.
+   * @return Future mit dem Inhalt der Datei.
+   */
+  public Future<byte[]> read(final String dir, final String name, Callback<byte[]> callback)
+  {
+    return submit(new Operation<byte[]>()
+    {
+      public byte[] execute(FileSystem fs) throws FSException
+      {
+        InputStream is = null;
+        try
+        {
+          is = fs.create(dir,name).getInputStream();
+          ByteArrayOutputStream bos = new ByteArrayOutputStream();
+          byte[] buf = new byte[8192];
+          int read;
+          while ((read = is.read(buf)) != -1)
+            bos.write(buf,0,read);
+          return bos.toByteArray();
+        }
+        catch (IOException e)
+        {
+          throw new FSException(e);
+        }
+        finally
+        {
+          close(is);
+        }
+      }
+    },callback);
+  }
+
+  /**
+   * Schreibt asynchron die Daten in die Datei.
+   * Existiert die Datei bereits, wird sie ueberschrieben.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param data die zu schreibenden Daten.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Schreiben NULL liefert.
+   */
+  public Future<Void> write(final String dir, final String name, final byte[] data, Callback<Void> callback)
+  {
+    return write(dir,name,data,false,callback);
+  }
+
+  /**
+   * Haengt die Daten asynchron an die Datei an.
+   * Existiert die Datei noch nicht, wird sie angelegt.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param data die anzuhaengenden Daten.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Schreiben NULL liefert.
+   * @see File#getOutputStream(boolean)
+   */
+  public Future<Void> append(final String dir, final String name, final byte[] data, Callback<Void> callback)
+  {
+    return write(dir,name,data,true,callback);
+  }
+
+  /**
+   * Schreibt asynchron die Daten in die Datei.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param data die zu schreibenden Daten.
+   * @param append true, wenn die Daten angehaengt werden sollen.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Schreiben NULL liefert.
+   */
+  private Future<Void> write(final String dir, final String name, final byte[] data, final boolean append, Callback<Void> callback)
+  {
+    return submit(new Operation<Void>()
+    {
+      public Void execute(FileSystem fs) throws FSException
+      {
+        OutputStream os = null;
+        try
+        {
+          os = fs.create(dir,name).getOutputStream(append);
+          os.write(data);
+          os.close();
+          os = null;
+          return null;
+        }
+        catch (IOException e)
+        {
+          throw new FSException(e);
+        }
+        finally
+        {
+          close(os);
+        }
+      }
+    },callback);
+  }
+
+  /**
+   * Loescht asynchron die Datei.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Loeschen NULL liefert.
+   * @see File#delete()
+   */
+  public Future<Void> delete(final String dir, final String name, Callback<Void> callback)
+  {
+    return submit(new Operation<Void>()
+    {
+      public Void execute(FileSystem fs) throws FSException
+      {
+        fs.create(dir,name).delete();
+        return null;
+      }
+    },callback);
+  }
+
+  /**
+   * Benennt die Datei asynchron um.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param newName der neue Dateiname (ohne Pfadangabe).
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Umbenennen NULL liefert.
+   * @see File#rename(String)
+   */
+  public Future<Void> rename(final String dir, final String name, final String newName, Callback<Void> callback)
+  {
+    return submit(new Operation<Void>()
+    {
+      public Void execute(FileSystem fs) throws FSException
+      {
+        fs.create(dir,name).rename(newName);
+        return null;
+      }
+    },callback);
+  }
+
+  /**
+   * Verschiebt die Datei asynchron.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param newDir Ziel-Verzeichnis.
+   * @param newName Ziel-Dateiname.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Verschieben NULL liefert.
+   * @see File#move(File)
+   */
+  public Future<Void> move(final String dir, final String name, final String newDir, final String newName, Callback<Void> callback)
+  {
+    return submit(new Operation<Void>()
+    {
+      public Void execute(FileSystem fs) throws FSException
+      {
+        fs.create(dir,name).move(fs.create(newDir,newName));
+        return null;
+      }
+    },callback);
+  }
+
+  /**
+   * Kopiert die Datei asynchron.
+   * @param dir Verzeichnis.
+   * @param name Dateiname.
+   * @param newDir Ziel-Verzeichnis.
+   * @param newName Ziel-Dateiname.
+   * @param callback optionaler Callback.
+   * @return Future, welches nach dem Kopieren NULL liefert.
+   * @see File#copy(File)
+   */
+  public Future<Void> copy(final String dir, final String name, final String newDir, final String newName, Callback<Void> callback)
+  {
+    return submit(new Operation<Void>()
+    {
+      public Void execute(FileSystem fs) throws FSException
+      {
+        fs.create(dir,name).copy(fs.create(newDir,newName));
+        return null;
+      }
+    },callback);
+  }
+
+  /**
+   * Beendet die Fassade.
+   * Bereits gestartete Operationen werden noch abgearbeitet. Ein extern
+   * uebergebener Executor sowie der Pool werden nicht geschlossen.
+   */
+  public void close()
+  {
+    if (this.ownExecutor)
+      this.executor.shutdown();
+  }
+
+  /**
+   * Fuehrt die Operation im Executor aus.
+   * @param op die Operation.
+   * @param callback optionaler Callback.
+   * @return das Future.
+   */
+  private <T> Future<T> submit(final Operation<T> op, final Callback<T> callback)
+  {
+    return this.executor.submit(new Callable<T>()
+    {
+      public T call() throws Exception
+      {
+        T result = null;
+        FileSystem fs = null;
+        try
+        {
+          fs = pool.acquire();
+          result = op.execute(fs);
+          pool.release(fs);
+        }
+        catch (FSException e)
+        {
+          if (fs != null)
+            pool.invalidate(fs);
+          if (callback != null)
+            callback.failed(e);
+          throw e;
+        }
+        catch (RuntimeException e)
+        {
+          if (fs != null)
+            pool.invalidate(fs);
+          if (callback != null)
+            callback.failed(new FSException(e));
+          throw e;
+        }
+
+        if (callback != null)
+          callback.done(result);
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Schliesst den Stream ohne Fehler zu werfen.
+   * @param c der Stream.
+   */
+  private static void close(java.io.Closeable c)
+  {
+    if (c == null)
+      return;
+    try
+    {
+      c.close();
+    }
+    catch (Exception e)
+    {
+      Logger.error("error while closing stream",e);
+    }
+  }
+
+  /**
+   * Callback, der nach Abschluss einer asynchronen Operation aufgerufen wird.
+   * Der Aufruf erfolgt im Thread, in dem die Operation ausgefuehrt wurde.
+   * @param <T> der Typ des Ergebnisses.
+   */
+  public interface Callback<T>
+  {
+    /**
+     * Wird aufgerufen, wenn die Operation erfolgreich war.
+     * @param result das Ergebnis der Operation.
+     */
+    public void done(T result);
+
+    /**
+     * Wird aufgerufen, wenn die Operation fehlschlug.
+     * @param e der aufgetretene Fehler.
+     */
+    public void failed(FSException e);
+  }
+
+  /**
+   * Interface fuer eine auszufuehrende Operation.
+   * @param <T> der Typ des Ergebnisses.
+   */
+  private interface Operation<T>
+  {
+    /**
+     * Fuehrt die Operation auf dem File-System aus.
+     * @param fs das File-System.
+     * @return das Ergebnis.
+     * @throws FSException
+     */
+    public T execute(FileSystem fs) throws FSException;
+  }
+}
@@ -0,0 +1,106 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool wiederverwendbarer Puffer fuer Datentransfers.
+ * Vermeidet, dass fuer jeden Chunk ein neuer Puffer allokiert werden muss.
+ * Ist der Pool leer, wird ein neuer Puffer erzeugt. Zurueckgegebene Puffer
+ * werden nur bis zur angegebenen Maximal-Anzahl aufbewahrt.
+ */
+public class BufferPool
+{
+  /**
+   * Default-Groesse der Puffer in Bytes.
+   */
+  public final static int DEFAULT_SIZE = 64 * 1024;
+
+  // Ein gemeinsamer Default-Pool.
+  private final static BufferPool DEFAULT = new BufferPool(DEFAULT_SIZE,64,false);
+
+  private ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+  private AtomicInteger count                       = new AtomicInteger();
+  private int size                                  = DEFAULT_SIZE;
+  private int max                                   = 0;
+  private boolean direct                            = false;
+
+  /**
+   * ct.
+   * @param size Groesse der Puffer in Bytes.
+   * @param max maximale Anzahl der vorgehaltenen Puffer.
+   * @param direct true, wenn Direct-Buffer (ausserhalb des Heap) verwendet werden sollen.
+   */
+  public BufferPool(int size, int max, boolean direct)
+  {
+    if (size < 1)
+      throw new IllegalArgumentException("buffer size must be at least 1");
+    this.size   = size;
+    this.max    = max;
+    this.direct = direct;
+  }
+
+  /**
+   * Liefert den gemeinsamen Default-Pool mit Puffern zu je 64 KB.
+   * @return der Default-Pool.
+   */
+  public static BufferPool getDefault()
+  {
+    return DEFAULT;
+  }
+
+  /**
+   * Liefert die Groesse der Puffer in Bytes.
+   * @return Groesse der Puffer.
+   */
+  public int getBufferSize()
+  {
+    return this.size;
+  }
+
+  /**
+   * Liefert einen leeren Puffer aus dem Pool.
+   * @return ein Puffer, bereit zum Beschreiben.
+   */
+  public ByteBuffer acquire()
+  {
+    ByteBuffer b = this.buffers.poll();
+    if (b == null)
+      return this.direct ? ByteBuffer.allocateDirect(this.size) : ByteBuffer.allocate(this.size);
+
+    this.count.decrementAndGet();
+    b.clear();
+    return b;
+  }
+
+  /**
+   * Gibt den Puffer an den Pool zurueck.
+   * Der Puffer darf anschliessend nicht mehr verwendet werden.
+   * @param b der Puffer.
+   */
+  public void release(ByteBuffer b)
+  {
+    if (b == null || b.capacity() != this.size || b.isDirect() != this.direct)
+      return;
+
+    if (this.count.incrementAndGet() > this.max)
+    {
+      // Pool ist voll, Puffer verwerfen
+      this.count.decrementAndGet();
+      return;
+    }
+    this.buffers.offer(b);
+  }
+}
@@ -0,0 +1,51 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Empfaenger von Datei-Inhalten, die in Chunks geliefert werden.
+ * Die Methoden werden nacheinander (nie parallel) aufgerufen.
+ * Die Reihenfolge ist: <code>onSubscribe</code>, beliebig viele <code>onNext</code>
+ * und schliesslich entweder <code>onComplete</code> oder <code>onError</code>.
+ */
+public interface ByteSubscriber
+{
+  /**
+   * Wird zu Beginn aufgerufen.
+   * Der Subscriber muss ueber {@link ByteSubscription#request(long)} Daten anfordern,
+   * bevor er welche erhaelt.
+   * @param subscription die Subscription.
+   */
+  public void onSubscribe(ByteSubscription subscription);
+
+  /**
+   * Liefert den naechsten Chunk.
+   * Der Puffer ist nur waehrend des Aufrufs gueltig. Er wird danach an den Pool
+   * zurueckgegeben und wiederverwendet. Wer die Daten laenger benoetigt, muss
+   * sie kopieren.
+   * @param buffer der Puffer, bereit zum Lesen.
+   */
+  public void onNext(ByteBuffer buffer);
+
+  /**
+   * Wird aufgerufen, wenn die Uebertragung fehlschlug.
+   * @param e der aufgetretene Fehler.
+   */
+  public void onError(FSException e);
+
+  /**
+   * Wird aufgerufen, wenn alle Daten geliefert wurden.
+   */
+  public void onComplete();
+}
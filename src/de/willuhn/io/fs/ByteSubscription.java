@@ -0,0 +1,32 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Verbindung zwischen einem Daten-Lieferanten und einem {@link ByteSubscriber}.
+ * Ueber die Subscription fordert der Subscriber weitere Daten an, sobald er
+ * sie verarbeiten kann. Ohne Anforderung liefert der Lieferant keine Daten.
+ */
+public interface ByteSubscription
+{
+  /**
+   * Fordert bis zu n weitere Chunks an.
+   * @param n Anzahl der Chunks. Muss groesser 0 sein.
+   */
+  public void request(long n);
+
+  /**
+   * Bricht die Uebertragung ab.
+   * Danach werden keine weiteren Chunks mehr geliefert.
+   */
+  public void cancel();
+}
@@ -0,0 +1,384 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementierung des File-Interface fuer Dateien im {@link CoalescingFileSystem}.
+ * Jede Operation wird auf einer Verbindung aus dem Pool ausgefuehrt. Bei den
+ * Streams bleibt die Verbindung bis zum Schliessen des Streams belegt.
+ * Gleichzeitige Abfragen der Meta-Daten werden zusammengefasst.
+ */
+public class CoalescingFile implements File
+{
+  private CoalescingFileSystem fs = null;
+  private String dir              = null;
+  private String name             = null;
+
+  /**
+   * ct.
+   * @param fs das File-System.
+   * @param dir das Verzeichnis. Kann NULL sein.
+   * @param name der Dateiname.
+   */
+  CoalescingFile(CoalescingFileSystem fs, String dir, String name)
+  {
+    this.fs   = fs;
+    this.dir  = dir;
+    this.name = name;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    return stat() != null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    try
+    {
+      this.fs.execute(new CoalescingFileSystem.Operation<Void>()
+      {
+        public Void execute(FileSystem fs) throws FSException
+        {
+          create(fs).delete();
+          return null;
+        }
+      });
+    }
+    finally
+    {
+      this.fs.invalidate(this.dir,this.name);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    FileInfo info = stat();
+    return info != null ? info.getLength() : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    FileInfo info = stat();
+    return info != null ? info.getLastModified() : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    return this.fs.coalesce("stat",getPath(),new CoalescingFileSystem.Operation<FileInfo>()
+    {
+      public FileInfo execute(FileSystem fs) throws FSException
+      {
+        return create(fs).stat();
+      }
+    });
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    return getOutputStream(false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    FileSystemPool pool = this.fs.getPool();
+    FileSystem fs = pool.acquire();
+    try
+    {
+      return new PooledOutputStream(create(fs).getOutputStream(append),fs);
+    }
+    catch (FSException e)
+    {
+      pool.invalidate(fs);
+      throw e;
+    }
+    catch (RuntimeException e)
+    {
+      pool.invalidate(fs);
+      throw e;
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    FileSystemPool pool = this.fs.getPool();
+    FileSystem fs = pool.acquire();
+    try
+    {
+      return new PooledInputStream(create(fs).getInputStream(offset),fs);
+    }
+    catch (FSException e)
+    {
+      pool.invalidate(fs);
+      throw e;
+    }
+    catch (RuntimeException e)
+    {
+      pool.invalidate(fs);
+      throw e;
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(final String name) throws FSException
+  {
+    try
+    {
+      this.fs.execute(new CoalescingFileSystem.Operation<Void>()
+      {
+        public Void execute(FileSystem fs) throws FSException
+        {
+          create(fs).rename(name);
+          return null;
+        }
+      });
+    }
+    finally
+    {
+      this.fs.invalidate(this.dir,this.name);
+      this.fs.invalidate(this.dir,name);
+    }
+    this.name = name;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    final CoalescingFile t = getTarget(target);
+    try
+    {
+      this.fs.execute(new CoalescingFileSystem.Operation<Void>()
+      {
+        public Void execute(FileSystem fs) throws FSException
+        {
+          create(fs).move(t.create(fs));
+          return null;
+        }
+      });
+    }
+    finally
+    {
+      this.fs.invalidate(this.dir,this.name);
+      this.fs.invalidate(t.dir,t.name);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    final CoalescingFile t = getTarget(target);
+    try
+    {
+      this.fs.execute(new CoalescingFileSystem.Operation<Void>()
+      {
+        public Void execute(FileSystem fs) throws FSException
+        {
+          create(fs).copy(t.create(fs));
+          return null;
+        }
+      });
+    }
+    finally
+    {
+      this.fs.invalidate(t.dir,t.name);
+    }
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    return getPath();
+  }
+
+  /**
+   * Erzeugt die Datei auf der Verbindung.
+   * @param fs die Verbindung.
+   * @return die Datei.
+   * @throws FSException
+   */
+  private File create(FileSystem fs) throws FSException
+  {
+    return fs.create(this.dir,this.name);
+  }
+
+  /**
+   * Liefert den Pfad der Datei.
+   * @return der Pfad.
+   */
+  private String getPath()
+  {
+    return this.dir == null || this.dir.length() == 0 ? this.name : this.dir + "/" + this.name;
+  }
+
+  /**
+   * Prueft, ob die Ziel-Datei zum selben File-System gehoert.
+   * @param target die Ziel-Datei.
+   * @return die Ziel-Datei.
+   * @throws FSException wenn sie zu einem anderen File-System gehoert.
+   */
+  private CoalescingFile getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof CoalescingFile) || ((CoalescingFile) t).fs != this.fs)
+      throw new FSException("target is not in the same filesystem");
+    return (CoalescingFile) t;
+  }
+
+  /**
+   * Gibt die Verbindung beim Schliessen des Streams an den Pool zurueck.
+   */
+  private class PooledInputStream extends FilterInputStream
+  {
+    private FileSystem conn = null;
+
+    /**
+     * ct.
+     * @param is der Stream.
+     * @param conn die belegte Verbindung.
+     */
+    private PooledInputStream(InputStream is, FileSystem conn)
+    {
+      super(is);
+      this.conn = conn;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.conn == null)
+        return;
+      FileSystem c = this.conn;
+      this.conn = null;
+      try
+      {
+        super.close();
+        fs.getPool().release(c);
+      }
+      catch (IOException e)
+      {
+        fs.getPool().invalidate(c);
+        throw e;
+      }
+      catch (RuntimeException e)
+      {
+        fs.getPool().invalidate(c);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Gibt die Verbindung beim Schliessen des Streams an den Pool zurueck und
+   * verwirft die laufenden Abfragen zu der geschriebenen Datei.
+   */
+  private class PooledOutputStream extends FilterOutputStream
+  {
+    private FileSystem conn = null;
+
+    /**
+     * ct.
+     * @param os der Stream.
+     * @param conn die belegte Verbindung.
+     */
+    private PooledOutputStream(OutputStream os, FileSystem conn)
+    {
+      super(os);
+      this.conn = conn;
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      this.out.write(b,off,len);
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.conn == null)
+        return;
+      FileSystem c = this.conn;
+      this.conn = null;
+      try
+      {
+        super.close();
+        fs.getPool().release(c);
+      }
+      catch (IOException e)
+      {
+        fs.getPool().invalidate(c);
+        throw e;
+      }
+      catch (RuntimeException e)
+      {
+        fs.getPool().invalidate(c);
+        throw e;
+      }
+      finally
+      {
+        fs.invalidate(dir,name);
+      }
+    }
+  }
+}
@@ -0,0 +1,349 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Thread-safe File-System, welches die Operationen ueber die Verbindungen
+ * eines {@link FileSystemPool} ausfuehrt.
+ * Fragen mehrere Threads gleichzeitig die selbe Verzeichnisliste oder die
+ * Meta-Daten der selben Datei ab (z.Bsp. beim Start vieler Worker), wird nur
+ * eine Abfrage an den Server gesendet. Alle wartenden Threads erhalten deren
+ * Ergebnis bzw. deren Fehler. Ergebnisse werden nicht zwischengespeichert -
+ * ein Aufruf nach Abschluss der laufenden Abfrage fuehrt zu einer neuen Abfrage.
+ * Nach einer Aenderung ueber dieses File-System (Loeschen, Umbenennen, Verschieben,
+ * Kopieren, Schreiben) schliessen sich spaetere Aufrufe keiner Abfrage mehr an,
+ * die die betroffene Datei oder ihr Verzeichnis betrifft und vor der Aenderung
+ * gestartet wurde.
+ * Die Verzeichnislisten werden dafuer ohne Filter abgefragt, der Filter des
+ * jeweiligen Aufrufers wird anschliessend lokal angewendet.
+ */
+public class CoalescingFileSystem implements FileSystem
+{
+  private FileSystemPool pool     = null;
+  private boolean ownPool         = false;
+  private ConcurrentMap<String,FutureTask<Object>> running = new ConcurrentHashMap<String,FutureTask<Object>>();
+
+  /**
+   * ct.
+   * Der Pool wird per {@link #init(URI)} erzeugt.
+   */
+  public CoalescingFileSystem()
+  {
+  }
+
+  /**
+   * ct.
+   * @param pool der Pool, aus dem die Verbindungen bezogen werden.
+   * Er wird beim Schliessen nicht geschlossen.
+   */
+  public CoalescingFileSystem(FileSystemPool pool)
+  {
+    this.pool = pool;
+  }
+
+  /**
+   * Erzeugt einen eigenen Pool zu der URI.
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    if (this.pool != null)
+      throw new FSException("filesystem already initialized");
+    this.pool    = new FileSystemPool(uri.toString());
+    this.ownPool = true;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * Die Datei wird erst bei der ersten Operation auf einer Verbindung aus dem Pool angelegt.
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    return new CoalescingFile(this,dir,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(final String dir, FilenameFilter filter) throws FSException
+  {
+    String[] names = coalesce("list",dir,new Operation<String[]>()
+    {
+      public String[] execute(FileSystem fs) throws FSException
+      {
+        return fs.list(dir,null);
+      }
+    });
+    return filter(dir,names,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(final String dir, final String pattern) throws FSException
+  {
+    String[] names = coalesce("glob",dir == null ? pattern : dir + "/" + pattern,new Operation<String[]>()
+    {
+      public String[] execute(FileSystem fs) throws FSException
+      {
+        return fs.glob(dir,pattern);
+      }
+    });
+    return names == null ? null : names.clone();
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(final String dir, FilenameFilter filter) throws FSException
+  {
+    String[] names = coalesce("listDirs",dir,new Operation<String[]>()
+    {
+      public String[] execute(FileSystem fs) throws FSException
+      {
+        return fs.listDirs(dir,null);
+      }
+    });
+    return filter(dir,names,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(final String dir, FilenameFilter filter) throws FSException
+  {
+    FileInfo[] infos = coalesce("listInfo",dir,new Operation<FileInfo[]>()
+    {
+      public FileInfo[] execute(FileSystem fs) throws FSException
+      {
+        return fs.listInfo(dir,null);
+      }
+    });
+    if (infos == null)
+      return null;
+
+    java.io.File fd = new java.io.File(dir == null ? "." : dir);
+    List<FileInfo> list = new ArrayList<FileInfo>();
+    for (FileInfo i:infos)
+    {
+      if (filter == null || filter.accept(fd,i.getName()))
+        list.add(i);
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * Schliesst den Pool, sofern er per {@link #init(URI)} erzeugt wurde.
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public void close() throws FSException
+  {
+    if (this.ownPool && this.pool != null)
+      this.pool.close();
+  }
+
+  /**
+   * Liefert den Pool.
+   * @return der Pool.
+   */
+  FileSystemPool getPool()
+  {
+    return this.pool;
+  }
+
+  /**
+   * Fuehrt die Operation auf einer Verbindung aus dem Pool aus.
+   * @param op die Operation.
+   * @return das Ergebnis.
+   * @throws FSException
+   */
+  <T> T execute(Operation<T> op) throws FSException
+  {
+    FileSystem fs = this.pool.acquire();
+    try
+    {
+      T result = op.execute(fs);
+      this.pool.release(fs);
+      return result;
+    }
+    catch (FSException e)
+    {
+      this.pool.invalidate(fs);
+      throw e;
+    }
+    catch (RuntimeException e)
+    {
+      this.pool.invalidate(fs);
+      throw e;
+    }
+  }
+
+  /**
+   * Fuehrt die Operation aus - oder wartet auf das Ergebnis, wenn bereits ein
+   * anderer Thread die selbe Operation ausfuehrt.
+   * @param type Art der Operation.
+   * @param path Pfad, auf den sich die Operation bezieht.
+   * @param op die Operation.
+   * @return das Ergebnis.
+   * @throws FSException
+   */
+  <T> T coalesce(String type, String path, final Operation<T> op) throws FSException
+  {
+    String key = type + ":" + (path == null ? "" : path);
+    FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>()
+    {
+      public Object call() throws Exception
+      {
+        return execute(op);
+      }
+    });
+
+    FutureTask<Object> f = this.running.putIfAbsent(key,task);
+    if (f == null)
+    {
+      try
+      {
+        task.run();
+      }
+      finally
+      {
+        this.running.remove(key,task);
+      }
+      f = task;
+    }
+    else
+    {
+      Logger.debug("waiting for running " + key);
+    }
+
+    try
+    {
+      // Unter dem Schluessel laeuft immer eine Operation mit dem selben Ergebnis-Typ
+      @SuppressWarnings("unchecked")
+      T result = (T) f.get();
+      return result;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new FSException("interrupted while waiting for " + key,e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable t = e.getCause();
+      if (t instanceof FSException)
+        throw (FSException) t;
+      if (t instanceof RuntimeException)
+        throw (RuntimeException) t;
+      throw new FSException(t);
+    }
+  }
+
+  /**
+   * Entfernt die laufenden Abfragen zu einer geaenderten Datei, damit sich
+   * spaetere Aufrufe nicht einer vor der Aenderung gestarteten Abfrage anschliessen.
+   * Betroffen sind die Meta-Daten der Datei, die Listen ihres Verzeichnisses
+   * und alle Muster-Abfragen, da diese sich auf Unterverzeichnisse erstrecken koennen.
+   * Die Abfragen selbst laufen weiter, ihre bisherigen Teilnehmer erhalten das Ergebnis.
+   * @param dir das Verzeichnis der Datei. Kann NULL sein.
+   * @param name der Dateiname.
+   */
+  void invalidate(String dir, String name)
+  {
+    String d = dir == null ? "" : dir;
+    String path = d.length() == 0 ? name : d + "/" + name;
+    for (String key:this.running.keySet())
+    {
+      int pos = key.indexOf(':');
+      String type = key.substring(0,pos);
+      String p = key.substring(pos + 1);
+      if (type.equals("glob") || (type.equals("stat") && p.equals(path)) || (!type.equals("stat") && p.equals(d)))
+        this.running.remove(key);
+    }
+  }
+
+  /**
+   * Wendet den Filter auf die Namen an.
+   * Das Ergebnis ist in jedem Fall eine Kopie, da die Namen von mehreren Threads geteilt werden.
+   * @param dir das Verzeichnis.
+   * @param names die Namen.
+   * @param filter optionaler Filter.
+   * @return die gefilterten Namen.
+   */
+  private static String[] filter(String dir, String[] names, FilenameFilter filter)
+  {
+    if (names == null)
+      return null;
+    if (filter == null)
+      return names.clone();
+
+    java.io.File fd = new java.io.File(dir == null ? "." : dir);
+    List<String> list = new ArrayList<String>();
+    for (String n:names)
+    {
+      if (filter.accept(fd,n))
+        list.add(n);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Interface fuer eine auszufuehrende Operation.
+   * @param <T> der Typ des Ergebnisses.
+   */
+  interface Operation<T>
+  {
+    /**
+     * Fuehrt die Operation auf dem File-System aus.
+     * @param fs das File-System.
+     * @return das Ergebnis.
+     * @throws FSException
+     */
+    public T execute(FileSystem fs) throws FSException;
+  }
+}
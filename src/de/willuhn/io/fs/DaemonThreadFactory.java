@@ -0,0 +1,43 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Erzeugt Daemon-Threads, damit die JVM nicht am Beenden gehindert wird.
+ */
+class DaemonThreadFactory implements ThreadFactory
+{
+  private AtomicInteger count = new AtomicInteger();
+  private String prefix       = null;
+
+  /**
+   * ct.
+   * @param prefix Praefix fuer die Thread-Namen.
+   */
+  DaemonThreadFactory(String prefix)
+  {
+    this.prefix = prefix;
+  }
+
+  /**
+   * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+   */
+  public Thread newThread(Runnable r)
+  {
+    Thread t = new Thread(r,this.prefix + "-" + this.count.incrementAndGet());
+    t.setDaemon(true);
+    return t;
+  }
+}
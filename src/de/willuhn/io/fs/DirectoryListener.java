@@ -0,0 +1,40 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Listener, der von einem {@link DirectoryPoller} ueber Aenderungen im
+ * Verzeichnis informiert wird.
+ */
+public interface DirectoryListener
+{
+  /**
+   * Wird aufgerufen, wenn eine neue Datei gefunden wurde.
+   * @param dir das Verzeichnis.
+   * @param file die Datei.
+   */
+  public void created(String dir, FileInfo file);
+
+  /**
+   * Wird aufgerufen, wenn sich Groesse oder Datum einer bereits gemeldeten Datei geaendert haben.
+   * @param dir das Verzeichnis.
+   * @param file die Datei.
+   */
+  public void modified(String dir, FileInfo file);
+
+  /**
+   * Wird aufgerufen, wenn eine bereits gemeldete Datei nicht mehr existiert.
+   * @param dir das Verzeichnis.
+   * @param file die zuletzt bekannten Meta-Daten der Datei.
+   */
+  public void deleted(String dir, FileInfo file);
+}
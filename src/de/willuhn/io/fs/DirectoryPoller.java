@@ -0,0 +1,324 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Ueberwacht ein Verzeichnis (z.Bsp. einen Posteingang) und meldet neue,
+ * geaenderte und geloeschte Dateien an einen {@link DirectoryListener}.
+ * Bei jedem Aufruf von {@link #poll()} wird das Verzeichnis per
+ * {@link FileSystem#listInfo(String, FilenameFilter)} gelesen und mit dem
+ * vorherigen Stand verglichen. Der Stand wird kompakt als {@link Listing}
+ * vorgehalten, der Vergleich erfolgt per Merge ueber die sortierten Namen ohne
+ * zusaetzliche Objekte je Datei.
+ * Per {@link #setStable(long)} kann festgelegt werden, dass neue und geaenderte
+ * Dateien erst gemeldet werden, wenn sich Groesse und Datum fuer die angegebene
+ * Zeit nicht mehr geaendert haben - z.Bsp. weil sie noch hochgeladen werden.
+ * Beim ersten Aufruf werden alle vorhandenen Dateien als neu gemeldet.
+ * Fuer das {@link LocalFileSystem} wird der WatchService des Betriebssystems
+ * verwendet. Das Verzeichnis wird dann nur noch gelesen, wenn dieser eine
+ * Aenderung meldet. Das kann per System-Property "filesystems.poller.watch=false"
+ * deaktiviert werden.
+ * Da die Klasse Runnable implementiert, kann sie direkt per
+ * {@link java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay(Runnable, long, long, java.util.concurrent.TimeUnit)}
+ * regelmaessig ausgefuehrt werden.
+ */
+public class DirectoryPoller implements Runnable
+{
+  private final static boolean WATCH = !"false".equalsIgnoreCase(System.getProperty("filesystems.poller.watch"));
+
+  private final static byte REPORTED = 0;
+  private final static byte CREATED  = 1;
+  private final static byte MODIFIED = 2;
+  private final static byte DELETED  = 3;
+
+  private FileSystem fs              = null;
+  private String dir                 = null;
+  private DirectoryListener listener = null;
+  private FilenameFilter filter      = null;
+  private long stable                = 0L;
+
+  private Snapshot snapshot          = null;
+  private WatchService watcher       = null;
+
+  /**
+   * ct.
+   * @param fs das File-System.
+   * @param dir das Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param listener der Listener.
+   */
+  public DirectoryPoller(FileSystem fs, String dir, DirectoryListener listener)
+  {
+    this.fs       = fs;
+    this.dir      = dir;
+    this.listener = listener;
+  }
+
+  /**
+   * Legt einen optionalen Filter fuer die Dateinamen fest.
+   * @param filter der Filter.
+   */
+  public synchronized void setFilter(FilenameFilter filter)
+  {
+    this.filter = filter;
+  }
+
+  /**
+   * Legt fest, wie lange sich neue oder geaenderte Dateien nicht mehr geaendert
+   * haben muessen, bevor sie gemeldet werden.
+   * Da Groesse und Datum nur beim Pollen geprueft werden, sollte das Intervall
+   * deutlich kleiner als diese Zeit sein.
+   * @param millis Zeit in Millisekunden. 0 (Default) meldet Dateien sofort.
+   */
+  public synchronized void setStable(long millis)
+  {
+    this.stable = Math.max(0L,millis);
+  }
+
+  /**
+   * Prueft das Verzeichnis und meldet die Aenderungen seit dem letzten Aufruf.
+   * @return Anzahl der gemeldeten Aenderungen.
+   * @throws FSException
+   */
+  public synchronized int poll() throws FSException
+  {
+    long now = System.currentTimeMillis();
+    int count = 0;
+
+    Snapshot next = this.snapshot;
+    if (next == null)
+    {
+      watch();
+      next = scan(now);
+    }
+    else if (this.watcher == null || changed())
+    {
+      Snapshot prev = this.snapshot;
+      next = scan(now);
+
+      // Geloeschte Dateien ermitteln und Status der bekannten uebernehmen
+      int i = 0;
+      int j = 0;
+      while (i < prev.size() || j < next.size())
+      {
+        int c = i == prev.size() ? 1 : (j == next.size() ? -1 : prev.files.compare(i,next.files,j));
+        if (c < 0)
+        {
+          // Noch nicht gemeldete Dateien verschwinden stillschweigend
+          if (prev.state[i] != CREATED)
+          {
+            fire(DELETED,prev.files.get(i));
+            count++;
+          }
+          i++;
+        }
+        else if (c > 0)
+        {
+          j++;
+        }
+        else
+        {
+          if (prev.files.getLength(i) == next.files.getLength(j) && prev.files.getLastModified(i) == next.files.getLastModified(j))
+          {
+            next.state[j] = prev.state[i];
+            next.since[j] = prev.since[i];
+          }
+          else if (prev.state[i] != CREATED)
+          {
+            next.state[j] = MODIFIED;
+          }
+          i++;
+          j++;
+        }
+      }
+    }
+    this.snapshot = next;
+
+    // Stabile Dateien melden
+    for (int j=0;j<next.size();++j)
+    {
+      if (next.state[j] == REPORTED || now - next.since[j] < this.stable)
+        continue;
+      fire(next.state[j],next.files.get(j));
+      next.state[j] = REPORTED;
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @see java.lang.Runnable#run()
+   */
+  public void run()
+  {
+    try
+    {
+      poll();
+    }
+    catch (Exception e)
+    {
+      Logger.error("unable to poll directory " + this.dir,e);
+    }
+  }
+
+  /**
+   * Beendet die Ueberwachung und verwirft den bisherigen Stand.
+   * Beim naechsten Aufruf von {@link #poll()} werden alle Dateien erneut als neu gemeldet.
+   */
+  public synchronized void close()
+  {
+    this.snapshot = null;
+    if (this.watcher == null)
+      return;
+    try
+    {
+      this.watcher.close();
+    }
+    catch (IOException e) {/*ignore */}
+    this.watcher = null;
+  }
+
+  /**
+   * Liest das Verzeichnis.
+   * @param now aktueller Zeitpunkt.
+   * @return der neue Stand. Alle Dateien sind als neu markiert.
+   * @throws FSException
+   */
+  private Snapshot scan(long now) throws FSException
+  {
+    FileInfo[] infos = this.fs.listInfo(this.dir,this.filter);
+    if (infos == null)
+      throw new FSException("directory not found: " + this.dir);
+    return new Snapshot(infos,now);
+  }
+
+  /**
+   * Registriert das Verzeichnis beim WatchService, sofern es sich um ein lokales Verzeichnis handelt.
+   * Das geschieht vor dem ersten Lesen, damit keine Aenderung verloren geht.
+   */
+  private void watch()
+  {
+    FileSystem f = InstrumentedFileSystem.unwrap(this.fs);
+    if (!WATCH || !(f instanceof LocalFileSystem))
+      return;
+
+    java.nio.file.Path path = ((LocalFileSystem) f).getDir(this.dir).toPath();
+    try
+    {
+      this.watcher = path.getFileSystem().newWatchService();
+      path.register(this.watcher,StandardWatchEventKinds.ENTRY_CREATE,StandardWatchEventKinds.ENTRY_DELETE,StandardWatchEventKinds.ENTRY_MODIFY);
+      Logger.debug("watching " + path + " for changes");
+    }
+    catch (Exception e)
+    {
+      Logger.warn("unable to watch " + path + ", falling back to polling: " + e.getMessage());
+      close();
+    }
+  }
+
+  /**
+   * Prueft, ob der WatchService seit dem letzten Aufruf Aenderungen gemeldet hat.
+   * @return true, wenn das Verzeichnis neu gelesen werden muss.
+   */
+  private boolean changed()
+  {
+    boolean changed = false;
+    WatchKey key = null;
+    while ((key = this.watcher.poll()) != null)
+    {
+      changed |= key.pollEvents().size() > 0;
+      if (!key.reset())
+      {
+        Logger.warn("watch key for " + this.dir + " no longer valid, falling back to polling");
+        Snapshot s = this.snapshot;
+        close();
+        this.snapshot = s;
+        return true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Meldet eine Aenderung an den Listener.
+   * Fehler des Listeners werden protokolliert, damit die uebrigen Aenderungen trotzdem gemeldet werden.
+   * @param type Art der Aenderung.
+   * @param info die Datei.
+   */
+  private void fire(int type, FileInfo info)
+  {
+    try
+    {
+      switch (type)
+      {
+        case CREATED:
+          this.listener.created(this.dir,info);
+          break;
+        case MODIFIED:
+          this.listener.modified(this.dir,info);
+          break;
+        default:
+          this.listener.deleted(this.dir,info);
+      }
+    }
+    catch (RuntimeException e)
+    {
+      Logger.error("error while processing change of " + info.getName(),e);
+    }
+  }
+
+  /**
+   * Kompakter Stand des Verzeichnisses.
+   * Enthaelt neben den Dateien je Datei den Status der Meldung.
+   */
+  private static class Snapshot
+  {
+    private Listing files  = new Listing();
+    private long[] since   = null;
+    private byte[] state   = null;
+
+    /**
+     * ct.
+     * @param infos die Dateien und Verzeichnisse. Verzeichnisse werden ignoriert.
+     * @param now Zeitpunkt, ab dem die Dateien als unveraendert gelten.
+     */
+    private Snapshot(FileInfo[] infos, long now)
+    {
+      for (FileInfo i:infos)
+      {
+        if (!i.isDirectory())
+          this.files.add(i.getName(),false,i.getLength(),i.getLastModified());
+      }
+      this.since = new long[this.files.size()];
+      this.state = new byte[this.files.size()];
+      Arrays.fill(this.since,now);
+      Arrays.fill(this.state,CREATED);
+    }
+
+    /**
+     * Liefert die Anzahl der Dateien.
+     * @return Anzahl der Dateien.
+     */
+    private int size()
+    {
+      return this.state.length;
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Beantwortet Existenz-Pruefungen fuer viele Dateien eines Verzeichnisses lokal.
+ * Auf FTP und SFTP erfordert {@link File#exists()} fuer jede Datei eine Abfrage
+ * beim Server. Hier wird das Verzeichnis stattdessen einmalig per
+ * {@link FileSystem#listInfo(String, java.io.FilenameFilter)} gelesen und in
+ * einem Bloom-Filter sowie einem {@link Listing} abgelegt. Die meisten Namen,
+ * die nicht existieren, werden bereits vom Bloom-Filter abgewiesen, die
+ * uebrigen werden per binaerer Suche exakt geprueft. Es gibt also weder
+ * falsch-positive noch falsch-negative Antworten gegenueber dem Stand der Liste.
+ * Nach Ablauf der TTL wird das Verzeichnis beim naechsten Zugriff neu gelesen.
+ * Eigene Aenderungen koennen per {@link #added(String, String)} und
+ * {@link #deleted(String, String)} nachgetragen werden, Aenderungen durch
+ * Dritte werden erst nach Ablauf der TTL oder per {@link #invalidate(String)} sichtbar.
+ * Die Klasse ist thread-safe.
+ */
+public class ExistenceIndex
+{
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  // Anteil falsch-positiver Treffer des Bloom-Filters
+  private final static double FPP = 0.01d;
+
+  private FileSystem fs                    = null;
+  private long ttl                         = 0L;
+  private ConcurrentMap<String,Dir> dirs   = new ConcurrentHashMap<String,Dir>();
+
+  /**
+   * ct.
+   * @param fs das File-System.
+   * @param ttl Zeit in Millisekunden, nach der ein Verzeichnis neu gelesen wird.
+   */
+  public ExistenceIndex(FileSystem fs, long ttl)
+  {
+    this.fs  = fs;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Prueft, ob die Datei existiert.
+   * Nur beim ersten Zugriff auf das Verzeichnis oder nach Ablauf der TTL
+   * wird der Server abgefragt.
+   * @param dir das Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param name der Dateiname.
+   * @return true, wenn die Datei existiert.
+   * @throws FSException wenn das Verzeichnis nicht gelesen werden konnte.
+   */
+  public boolean exists(String dir, String name) throws FSException
+  {
+    return get(dir).contains(name);
+  }
+
+  /**
+   * Traegt eine selbst angelegte Datei nach, ohne das Verzeichnis neu zu lesen.
+   * @param dir das Verzeichnis.
+   * @param name der Dateiname.
+   */
+  public void added(String dir, String name)
+  {
+    Dir d = this.dirs.get(key(dir));
+    if (d != null)
+      d.add(name);
+  }
+
+  /**
+   * Traegt eine selbst geloeschte Datei nach, ohne das Verzeichnis neu zu lesen.
+   * @param dir das Verzeichnis.
+   * @param name der Dateiname.
+   */
+  public void deleted(String dir, String name)
+  {
+    Dir d = this.dirs.get(key(dir));
+    if (d != null)
+      d.remove(name);
+  }
+
+  /**
+   * Verwirft den Stand des Verzeichnisses. Es wird beim naechsten Zugriff neu gelesen.
+   * @param dir das Verzeichnis.
+   */
+  public void invalidate(String dir)
+  {
+    this.dirs.remove(key(dir));
+  }
+
+  /**
+   * Verwirft den Stand aller Verzeichnisse.
+   */
+  public void invalidateAll()
+  {
+    this.dirs.clear();
+  }
+
+  /**
+   * Liefert den Stand des Verzeichnisses und liest es bei Bedarf neu.
+   * Greifen mehrere Threads gleichzeitig auf ein noch nicht gelesenes
+   * Verzeichnis zu, wird es nur einmal gelesen.
+   * @param dir das Verzeichnis.
+   * @return der Stand.
+   * @throws FSException
+   */
+  private Dir get(String dir) throws FSException
+  {
+    String key = key(dir);
+    Dir d = this.dirs.get(key);
+    if (d == null || d.expired(this.ttl))
+    {
+      Dir n = new Dir();
+      if (d == null ? this.dirs.putIfAbsent(key,n) == null : this.dirs.replace(key,d,n))
+        d = n;
+      else
+        d = this.dirs.get(key);
+      if (d == null)
+        return get(dir); // zwischenzeitlich invalidiert
+    }
+    d.load(this.fs,dir);
+    return d;
+  }
+
+  /**
+   * Liefert den Schluessel des Verzeichnisses.
+   * @param dir das Verzeichnis.
+   * @return der Schluessel.
+   */
+  private static String key(String dir)
+  {
+    return dir == null ? "" : dir;
+  }
+
+  /**
+   * Berechnet einen 64-Bit-Hash (FNV-1a mit abschliessender Durchmischung) der UTF-8-Bytes des Namens.
+   * @param name der Name.
+   * @return der Hash.
+   */
+  private static long hash(String name)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (byte b:name.getBytes(UTF8))
+    {
+      h ^= (b & 0xff);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Stand eines einzelnen Verzeichnisses.
+   */
+  private static class Dir
+  {
+    private long loaded         = 0L;
+    private Listing files       = null;
+    private long[] bits         = null;
+    private int hashes          = 0;
+    private Set<String> added   = new HashSet<String>();
+    private Set<String> removed = new HashSet<String>();
+
+    /**
+     * Liest das Verzeichnis, sofern das noch nicht geschehen ist.
+     * @param fs das File-System.
+     * @param dir das Verzeichnis.
+     * @throws FSException
+     */
+    private synchronized void load(FileSystem fs, String dir) throws FSException
+    {
+      if (this.files != null)
+        return;
+
+      Listing l = new Listing();
+      FileInfo[] infos = fs.listInfo(dir,null);
+      if (infos != null)
+      {
+        for (FileInfo i:infos)
+        {
+          if (!i.isDirectory())
+            l.add(i.getName(),false,i.getLength(),i.getLastModified());
+        }
+      }
+
+      // Optimale Groesse: m = -n * ln(p) / ln(2)^2 Bits, k = m / n * ln(2) Hash-Funktionen
+      int n = Math.max(l.size(),1);
+      long m = Math.max(64L,(long) Math.ceil(-n * Math.log(FPP) / (Math.log(2) * Math.log(2))));
+      this.bits   = new long[(int) Math.min((m + 63) / 64,Integer.MAX_VALUE - 8)];
+      this.hashes = Math.max(1,(int) Math.round((double) m / n * Math.log(2)));
+      for (int i=0;i<l.size();++i)
+        set(hash(l.getName(i)));
+
+      this.files  = l;
+      this.loaded = System.currentTimeMillis();
+      Logger.debug("indexed " + l.size() + " files in " + dir + " (" + (this.bits.length * 8L) + " bytes bloom filter)");
+    }
+
+    /**
+     * Prueft, ob der Stand abgelaufen ist.
+     * @param ttl die TTL.
+     * @return true, wenn er abgelaufen ist.
+     */
+    private synchronized boolean expired(long ttl)
+    {
+      return this.files != null && System.currentTimeMillis() - this.loaded > ttl;
+    }
+
+    /**
+     * Prueft, ob die Datei existiert.
+     * @param name der Name.
+     * @return true, wenn sie existiert.
+     */
+    private synchronized boolean contains(String name)
+    {
+      if (this.removed.contains(name))
+        return false;
+      if (this.added.contains(name))
+        return true;
+      return get(hash(name)) && this.files.contains(name);
+    }
+
+    /**
+     * Traegt eine Datei nach.
+     * @param name der Name.
+     */
+    private synchronized void add(String name)
+    {
+      this.removed.remove(name);
+      this.added.add(name);
+    }
+
+    /**
+     * Entfernt eine Datei.
+     * @param name der Name.
+     */
+    private synchronized void remove(String name)
+    {
+      this.added.remove(name);
+      this.removed.add(name);
+    }
+
+    /**
+     * Setzt die Bits des Hashes im Bloom-Filter.
+     * @param h der Hash.
+     */
+    private void set(long h)
+    {
+      long m = this.bits.length * 64L;
+      int h1 = (int) h;
+      int h2 = (int) (h >>> 32);
+      for (int i=0;i<this.hashes;++i)
+      {
+        long b = ((h1 + (long) i * h2) & Long.MAX_VALUE) % m;
+        this.bits[(int) (b >>> 6)] |= 1L << b;
+      }
+    }
+
+    /**
+     * Prueft, ob alle Bits des Hashes im Bloom-Filter gesetzt sind.
+     * @param h der Hash.
+     * @return false, wenn die Datei sicher nicht in der Liste enthalten ist.
+     */
+    private boolean get(long h)
+    {
+      long m = this.bits.length * 64L;
+      int h1 = (int) h;
+      int h2 = (int) (h >>> 32);
+      for (int i=0;i<this.hashes;++i)
+      {
+        long b = ((h1 + (long) i * h2) & Long.MAX_VALUE) % m;
+        if ((this.bits[(int) (b >>> 6)] & (1L << b)) == 0)
+          return false;
+      }
+      return true;
+    }
+  }
+}
@@ -49,12 +49,36 @@ public class FTPFile implements File
     return this.filename;
   }
 
+  FTPFileSystem getFileSystem()
+  {
+    return this.fs;
+  }
+
+  /**
+   * Kopiert die Datei per FXP direkt auf den Server der Ziel-Datei.
+   * @param target die Ziel-Datei.
+   * @return Anzahl der kopierten Bytes oder -1, wenn FXP nicht moeglich war.
+   * @throws FSException
+   */
+  long fxp(FTPFile target) throws FSException
+  {
+    return this.fs.fxp(this,target);
+  }
+
   /**
    * @see de.willuhn.io.fs.File#getOutputStream()
    */
   public OutputStream getOutputStream() throws FSException
   {
-    return this.fs.getOutputStream(this);
+    return this.fs.getOutputStream(this,false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    return this.fs.getOutputStream(this,append);
   }
 
   /**
@@ -94,12 +118,28 @@ public class FTPFile implements File
     return timestamp == null ? 0 : timestamp.getTimeInMillis();
   }
 
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    return this.fs.stat(this);
+  }
+
   /**
    * @see de.willuhn.io.fs.File#getInputStream()
    */
   public InputStream getInputStream() throws FSException
   {
-    return this.fs.getInputStream(this);
+    return this.fs.getInputStream(this,0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    return this.fs.getInputStream(this,offset);
   }
 
   /**
@@ -109,6 +149,36 @@ public class FTPFile implements File
   {
     this.fs.rename(this,name);
   }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    this.fs.move(this,getTarget(target));
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    this.fs.copy(this,getTarget(target));
+  }
+
+  /**
+   * Prueft, ob die Ziel-Datei zum selben File-System gehoert.
+   * @param target die Ziel-Datei.
+   * @return die Ziel-Datei.
+   * @throws FSException wenn sie zu einem anderen File-System gehoert.
+   */
+  private FTPFile getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof FTPFile) || ((FTPFile) t).fs != this.fs)
+      throw new FSException("target is not in the same ftp filesystem");
+    return (FTPFile) t;
+  }
   
   
 }
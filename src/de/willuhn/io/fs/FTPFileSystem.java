@@ -13,12 +13,20 @@ package de.willuhn.io.fs;
 
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
@@ -34,10 +42,33 @@ public class FTPFileSystem extends AbstractFileSystem
 
   // Legt fest, ob passives FTP verwendet werden soll.
   private final static boolean USE_PASSIVE_MODE = Boolean.getBoolean("filesystems.ftp.usepassive");
+
+  // Legt fest, ob Dateien zwischen zwei Servern per FXP kopiert werden sollen.
+  private final static boolean USE_FXP = !"false".equalsIgnoreCase(System.getProperty("filesystems.ftp.fxp"));
+
+  // Host und Port in der Antwort auf PASV.
+  private final static Pattern PASV_REPLY = Pattern.compile("(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3})");
+
+  // Zaehlt die gesendeten Kommandos fuer die Roundtrip-Statistik.
+  private final static ProtocolCommandListener ROUNDTRIPS = new ProtocolCommandListener()
+  {
+    public void protocolCommandSent(ProtocolCommandEvent event)
+    {
+      Roundtrips.count("ftp",event.getCommand());
+    }
+
+    public void protocolReplyReceived(ProtocolCommandEvent event)
+    {
+    }
+  };
   
   private FTPClient client = null;
   private String basedir   = null;
   private URI uri          = null;
+  private String home      = null;
+  private boolean siteCopy = true;
+  private boolean mlst     = true;
+  private boolean listGlob = true;
   
   /**
    * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
@@ -58,11 +89,15 @@ public class FTPFileSystem extends AbstractFileSystem
     {
       // "isConnected()" liefert auch dann true, wenn die Connection
       // vom Server aufgrund eines Timeouts getrennt wurde. Also
-      // machen wir einfach einen Test
+      // machen wir einfach einen Test. Der Wechsel ins Basis-Verzeichnis
+      // sorgt gleichzeitig dafuer, dass relative Kommandos nicht in dem
+      // Verzeichnis einer vorherigen Operation landen.
       
       try
       {
-        this.client.changeWorkingDirectory(this.basedir);
+        String base = getBase();
+        if (base != null && !this.client.changeWorkingDirectory(base))
+          throw new FSException("error while switching into base dir " + base);
         return;
       }
       catch (FTPConnectionClosedException e)
@@ -80,6 +115,7 @@ public class FTPFileSystem extends AbstractFileSystem
       Logger.debug("open ftp connection to " + uri.toString());
 
       this.client = new FTPClient();
+      this.client.addProtocolCommandListener(ROUNDTRIPS);
 
       // TCP-Port ermitteln
       int port = uri.getPort();
@@ -108,7 +144,17 @@ public class FTPFileSystem extends AbstractFileSystem
 
       // Login
       int dp = userInfo.indexOf(':');
-      if (!this.client.login(userInfo.substring(0,dp),userInfo.substring(dp+1)))
+      Probe probe = Probe.start("FTPFileSystem",host,"login",null);
+      boolean ok = false;
+      try
+      {
+        ok = this.client.login(userInfo.substring(0,dp),userInfo.substring(dp+1));
+      }
+      finally
+      {
+        Probe.end(probe,0L,ok);
+      }
+      if (!ok)
         throw new FSException("login failed");
       Logger.debug("logged in");
 
@@ -120,6 +166,12 @@ public class FTPFileSystem extends AbstractFileSystem
           throw new FSException("error while switching into base dir " + this.basedir);
       }
 
+      // Absoluter Pfad des Basis-Verzeichnisses fuer Operationen ueber Verzeichnisse hinweg
+      if (this.basedir != null && this.basedir.startsWith("/"))
+        this.home = this.basedir;
+      else
+        this.home = clean(this.client.printWorkingDirectory());
+
       if (USE_PASSIVE_MODE)
       {
         Logger.debug("using passive mode");
@@ -202,7 +254,7 @@ public class FTPFileSystem extends AbstractFileSystem
    */
   public String[] list(String dir, final FilenameFilter filter) throws FSException
   {
-    return _list(dir,new Filter()
+    return _list(dir,null,new Filter()
     {
       public boolean accept(java.io.File dir, org.apache.commons.net.ftp.FTPFile file)
       {
@@ -212,21 +264,50 @@ public class FTPFileSystem extends AbstractFileSystem
   }
   
   /**
-   * Wechselt in das angegebene Verzeichnis.
-   * @param dir das Verzeichnis.
+   * Das vereinfachte Muster (siehe {@link GlobFilter#getWildcard()}) wird per
+   * LIST an den Server uebergeben, so dass nur passende Eintraege uebertragen
+   * werden. Lehnt der Server das ab, wird wieder das ganze Verzeichnis gelistet.
+   * Ein Muster ohne Platzhalter wird nicht uebergeben, da der Server es als Pfad
+   * interpretieren und bei einem Unterverzeichnis dessen Inhalt liefern wuerde.
+   * @see de.willuhn.io.fs.AbstractFileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    final GlobFilter glob = new GlobFilter(pattern);
+    String wildcard = glob.getWildcard();
+    if (!this.listGlob || !GlobFilter.isGlob(pattern) || "*".equals(wildcard) || wildcard.startsWith("-"))
+      wildcard = null; // "-" wuerde als Option interpretiert
+
+    return _list(dir,wildcard,new Filter()
+    {
+      public boolean accept(java.io.File dir, org.apache.commons.net.ftp.FTPFile file)
+      {
+        return file.isFile() && glob.matches(file.getName());
+      }
+    });
+  }
+
+  /**
+   * Wechselt in das angegebene Verzeichnis bzw. in das Basis-Verzeichnis,
+   * wenn keines angegeben ist.
+   * Der Pfad wird immer absolut zum Basis-Verzeichnis gebildet, da die
+   * Verbindung noch im Verzeichnis einer vorherigen Operation stehen kann.
+   * @param dir das Verzeichnis. Kann NULL sein.
    * @throws FSException
    */
   private void cd(String dir) throws FSException
   {
-    if (dir == null)
-      return;
-
+    // Wechselt bereits ins Basis-Verzeichnis
     connect();
+
+    if (dir == null || dir.length() == 0)
+      return;
     
     try
     {
-      if (this.basedir != null)
-        dir = clean(this.basedir + (dir.startsWith("/") ? "" : "/") + dir);
+      String base = getBase();
+      if (base != null)
+        dir = clean((base + "/" + dir).replaceAll("/{2,}","/"));
 
       if (!this.client.changeWorkingDirectory(dir))
         throw new FSException("error while switching into dir " + dir);
@@ -236,20 +317,81 @@ public class FTPFileSystem extends AbstractFileSystem
       throw new FSException(e);
     }
   }
+
+  /**
+   * Liefert den absoluten Pfad des Basis-Verzeichnisses.
+   * Ein leeres Basis-Verzeichnis (Root) wird von "CWD" nicht als "/" interpretiert.
+   * @return der Pfad oder NULL, wenn er nicht ermittelt werden konnte.
+   */
+  private String getBase()
+  {
+    if (this.home != null)
+      return this.home.length() == 0 ? "/" : this.home;
+    return this.basedir;
+  }
   
+  /**
+   * Legt das angegebene Verzeichnis samt aller Eltern-Verzeichnisse an
+   * und wechselt hinein.
+   * @param dir das Verzeichnis relativ zum Basis-Verzeichnis.
+   * @throws FSException
+   */
+  private void mkdirs(String dir) throws FSException
+  {
+    if (dir == null)
+      return;
+
+    // Wechselt ins Basis-Verzeichnis
+    connect();
+
+    try
+    {
+      String[] parts = clean(dir).split("/");
+      for (int i=0;i<parts.length;++i)
+      {
+        String part = parts[i];
+        if (part.length() == 0)
+          continue;
+
+        if (this.client.changeWorkingDirectory(part))
+          continue;
+
+        Logger.debug("creating dir " + part);
+        if (!this.client.makeDirectory(part) || !this.client.changeWorkingDirectory(part))
+          throw new FSException("error while creating dir " + dir + ": " + this.client.getReplyString());
+      }
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert einen OutputStream fuer die Datei.
    * @param file die Datei.
+   * @param append true, wenn die Daten per APPE an die Datei angehaengt werden sollen.
    * @return der OutputStream.
    * @throws FSException
    */
-  OutputStream getOutputStream(final FTPFile file) throws FSException
+  OutputStream getOutputStream(final FTPFile file, boolean append) throws FSException
   {
-    cd(file.getDir());
+    try
+    {
+      cd(file.getDir());
+    }
+    catch (FSException e)
+    {
+      // Verzeichnis existiert offensichtlich noch nicht
+      mkdirs(file.getDir());
+    }
     Logger.debug("creating output stream for file " + file.getName());
     try
     {
-      return this.client.storeFileStream(file.getName());
+      OutputStream os = append ? this.client.appendFileStream(file.getName()) : this.client.storeFileStream(file.getName());
+      if (os == null)
+        throw new FSException("unable to store file " + file.getName() + ": " + this.client.getReplyString());
+      return new TransferOutputStream(os);
     }
     catch (IOException e)
     {
@@ -260,20 +402,24 @@ public class FTPFileSystem extends AbstractFileSystem
   /**
    * Liefert einen InputStream fuer die Datei.
    * @param file die Datei.
+   * @param offset Position, ab der gelesen werden soll. Wird per REST an den Server uebergeben.
    * @return der InputStream.
    * @throws FSException
    */
-  InputStream getInputStream(final FTPFile file) throws FSException
+  InputStream getInputStream(final FTPFile file, long offset) throws FSException
   {
     cd(file.getDir());
-    Logger.debug("creating input stream for file " + file.getName());
+    Logger.debug("creating input stream for file " + file.getName() + (offset > 0L ? (" at offset " + offset) : ""));
     
     try
     {
+      // Der Offset gilt nur fuer das naechste Transfer-Kommando und wird von
+      // commons-net danach automatisch zurueckgesetzt
+      this.client.setRestartOffset(offset);
       final InputStream is = this.client.retrieveFileStream(file.getName());
       if (is == null)
         throw new FileNotFoundException("Datei " + file.getName() + " wurde nicht gefunden");
-      return is;
+      return new TransferInputStream(is);
     }
     catch (IOException e)
     {
@@ -333,17 +479,350 @@ public class FTPFileSystem extends AbstractFileSystem
     }
   }
 
+  /**
+   * Verschiebt die Datei per RNFR/RNTO mit absoluten Pfaden.
+   * Schlaegt das fehl, weil das Ziel-Verzeichnis fehlt, wird es angelegt und
+   * erneut umbenannt. Ersetzt der Server existierende Dateien nicht, wird die
+   * Ziel-Datei zuerst unter einem temporaeren Namen gesichert und erst nach
+   * erfolgreichem Umbenennen geloescht. Schlaegt es dennoch fehl, wird sie
+   * wiederhergestellt.
+   * @param file die zu verschiebende Datei.
+   * @param target die Ziel-Datei.
+   * @throws FSException
+   */
+  void move(FTPFile file, FTPFile target) throws FSException
+  {
+    connect();
+
+    String from = getPath(file);
+    String to   = getPath(target);
+    if (from.equals(to))
+      return;
+
+    Logger.debug("moving " + from + " to " + to);
+    try
+    {
+      if (this.client.rename(from,to))
+        return;
+
+      Logger.debug("unable to move " + from + " to " + to + ": " + this.client.getReplyString().trim() + ", retrying");
+      mkdirs(target.getDir());
+      if (this.client.rename(from,to))
+        return;
+
+      // Existierende Ziel-Datei beiseite schieben
+      String reply = this.client.getReplyString();
+      String tmp = tempName(to);
+      if (!this.client.rename(to,tmp))
+        throw new FSException("unable to move " + from + " to " + to + ": " + reply);
+
+      if (this.client.rename(from,to))
+      {
+        if (!this.client.deleteFile(tmp))
+          Logger.warn("unable to delete " + tmp + ": " + this.client.getReplyString().trim());
+        return;
+      }
+
+      reply = this.client.getReplyString();
+      if (!this.client.rename(tmp,to))
+        Logger.error("unable to restore " + to + " from " + tmp + ": " + this.client.getReplyString().trim());
+      throw new FSException("unable to move " + from + " to " + to + ": " + reply);
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Kopiert die Datei.
+   * FTP selbst kennt kein Kopieren. Es wird daher zuerst "SITE CPFR/CPTO"
+   * versucht, welches z.Bsp. von ProFTPD (mod_copy) unterstuetzt wird.
+   * Kennt der Server das Kommando nicht, wird die Datei ueber eine zweite
+   * Verbindung zum selben Server kopiert (per FXP, falls der Server das
+   * erlaubt, sonst ueber diesen Rechner).
+   * @param file die zu kopierende Datei.
+   * @param target die Ziel-Datei.
+   * @throws FSException
+   */
+  void copy(FTPFile file, FTPFile target) throws FSException
+  {
+    connect();
+
+    String from = getPath(file);
+    String to   = getPath(target);
+    if (from.equals(to))
+      return;
+
+    try
+    {
+      if (this.siteCopy)
+      {
+        int reply = this.client.sendCommand("SITE","CPFR " + from);
+        if (FTPReply.isPositiveIntermediate(reply))
+        {
+          if (FTPReply.isPositiveCompletion(this.client.sendCommand("SITE","CPTO " + to)))
+            return;
+          Logger.debug("unable to copy " + from + " to " + to + ": " + this.client.getReplyString().trim());
+        }
+        else if (reply == FTPReply.UNRECOGNIZED_COMMAND || reply == FTPReply.COMMAND_NOT_IMPLEMENTED || reply == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER)
+        {
+          Logger.info("server does not support SITE CPFR/CPTO, falling back to streamed copy");
+          this.siteCopy = false;
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+
+    FTPFileSystem other = new FTPFileSystem();
+    other.init(this.uri);
+    try
+    {
+      new Transfer().copy(other.create(file.getDir(),file.getName()),target);
+    }
+    finally
+    {
+      other.close();
+    }
+  }
+
+  /**
+   * Liefert den absoluten Pfad der Datei.
+   * @param file die Datei.
+   * @return absoluter Pfad.
+   * @throws FSException wenn das Basis-Verzeichnis nicht ermittelt werden konnte.
+   */
+  private String getPath(FTPFile file) throws FSException
+  {
+    if (this.home == null)
+      throw new FSException("unable to determine working directory");
+    String dir = file.getDir();
+    String path = this.home + "/" + (dir == null || dir.length() == 0 ? "" : dir + "/") + file.getName();
+    return clean(path.replaceAll("/{2,}","/"));
+  }
+
+  /**
+   * Kopiert die Datei per FXP direkt von diesem Server zum Server der Ziel-Datei,
+   * ohne dass die Daten ueber diesen Rechner laufen.
+   * Der Ziel-Server oeffnet per PASV einen Port, zu dem sich der Quell-Server
+   * nach PORT selbst verbindet. RETR wird vor STOR gesendet, da manche Server
+   * die Antwort auf STOR erst senden, wenn die Daten-Verbindung besteht.
+   * Viele Server lehnen PORT auf fremde Adressen aus Sicherheitsgruenden ab.
+   * In dem Fall wird -1 geliefert und der Aufrufer muss die Datei selbst
+   * kopieren. Schlaegt die Uebertragung nach dem Start fehl, werden beide
+   * Verbindungen getrennt und beim naechsten Zugriff neu aufgebaut.
+   * FXP kann per "filesystems.ftp.fxp=false" deaktiviert werden.
+   * @param source die Quell-Datei auf diesem Server.
+   * @param target die Ziel-Datei.
+   * @return Anzahl der kopierten Bytes oder -1, wenn FXP nicht moeglich war.
+   * @throws FSException
+   */
+  long fxp(FTPFile source, FTPFile target) throws FSException
+  {
+    FTPFileSystem tfs = target.getFileSystem();
+    
+    // Ueber die selbe Verbindung geht es nicht
+    if (!USE_FXP || tfs == this)
+      return -1L;
+
+    cd(source.getDir());
+    try
+    {
+      tfs.cd(target.getDir());
+    }
+    catch (FSException e)
+    {
+      // Verzeichnis existiert offensichtlich noch nicht
+      tfs.mkdirs(target.getDir());
+    }
+
+    FTPClient from = this.client;
+    FTPClient to   = tfs.client;
+    boolean started = false;
+    try
+    {
+      long size = -1L;
+      String s = from.getSize(source.getName());
+      if (s != null)
+      {
+        try
+        {
+          size = Long.parseLong(s.trim());
+        }
+        catch (NumberFormatException e)
+        {
+          Logger.debug("invalid reply on SIZE: " + s);
+        }
+      }
+
+      if (!FTPReply.isPositiveCompletion(to.pasv()))
+      {
+        Logger.info("fxp: PASV rejected by target: " + to.getReplyString().trim());
+        return -1L;
+      }
+      String hostPort = getHostPort(to);
+      if (hostPort == null)
+      {
+        Logger.info("fxp: invalid reply on PASV: " + to.getReplyString().trim());
+        return -1L;
+      }
+      if (!FTPReply.isPositiveCompletion(from.sendCommand("PORT",hostPort)))
+      {
+        Logger.info("fxp: PORT rejected by source: " + from.getReplyString().trim());
+        return -1L;
+      }
+
+      Logger.debug("fxp: copying " + source.getName() + " to " + target.getName() + " via " + hostPort);
+      if (!FTPReply.isPositivePreliminary(from.retr(source.getName())))
+      {
+        Logger.info("fxp: RETR rejected by source: " + from.getReplyString().trim());
+        return -1L;
+      }
+      started = true;
+      if (!FTPReply.isPositivePreliminary(to.stor(target.getName())))
+      {
+        Logger.info("fxp: STOR rejected by target: " + to.getReplyString().trim());
+        return -1L;
+      }
+
+      // Es muessen beide Antworten gelesen werden, auch wenn die erste fehlschlug
+      boolean ok = from.completePendingCommand();
+      ok &= to.completePendingCommand();
+      started = false;
+      if (!ok)
+      {
+        Logger.warn("fxp transfer failed: " + from.getReplyString().trim() + ", " + to.getReplyString().trim());
+        return -1L;
+      }
+      return size >= 0 ? size : source.length();
+    }
+    catch (IOException e)
+    {
+      Logger.warn("fxp transfer failed: " + e.getMessage());
+      started = true;
+      return -1L;
+    }
+    finally
+    {
+      if (started)
+      {
+        // Die Verbindungen befinden sich in einem undefinierten Zustand
+        disconnect();
+        tfs.disconnect();
+      }
+    }
+  }
+
+  /**
+   * Liefert Host und Port aus der Antwort auf PASV im Format fuer PORT.
+   * Meldet der Server eine private Adresse, obwohl er selbst unter einer
+   * oeffentlichen erreichbar ist (NAT), wird stattdessen diese verwendet.
+   * @param client der Client, an den PASV gesendet wurde.
+   * @return Host und Port oder NULL, wenn die Antwort nicht gelesen werden konnte.
+   */
+  private static String getHostPort(FTPClient client)
+  {
+    Matcher m = PASV_REPLY.matcher(client.getReplyString());
+    if (!m.find())
+      return null;
+
+    String ports = m.group(5) + "," + m.group(6);
+    try
+    {
+      InetAddress remote = client.getRemoteAddress();
+      InetAddress host   = InetAddress.getByName(m.group(1) + "." + m.group(2) + "." + m.group(3) + "." + m.group(4));
+      if ((host.isSiteLocalAddress() || host.isLoopbackAddress() || host.isAnyLocalAddress()) && !remote.isSiteLocalAddress() && !remote.isLoopbackAddress())
+      {
+        byte[] b = remote.getAddress();
+        if (b.length == 4)
+          return (b[0] & 0xff) + "," + (b[1] & 0xff) + "," + (b[2] & 0xff) + "," + (b[3] & 0xff) + "," + ports;
+      }
+    }
+    catch (IOException e)
+    {
+      Logger.debug("unable to resolve pasv address: " + e.getMessage());
+    }
+    return m.group(1) + "," + m.group(2) + "," + m.group(3) + "," + m.group(4) + "," + ports;
+  }
+
+  /**
+   * Trennt die Verbindung ohne Logout. Sie wird beim naechsten Zugriff neu aufgebaut.
+   */
+  private void disconnect()
+  {
+    if (this.client == null)
+      return;
+    try
+    {
+      this.client.disconnect();
+    }
+    catch (IOException e)
+    {
+      Logger.debug("error while disconnecting: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Liefert die Meta-Daten der Datei ohne Daten-Verbindung.
+   * Unterstuetzt der Server MLST, genuegt ein Kommando, sonst werden
+   * SIZE und MDTM verwendet.
+   * @param file die Datei.
+   * @return die Meta-Daten oder NULL, wenn die Datei nicht existiert.
+   * @throws FSException
+   */
+  FileInfo stat(FTPFile file) throws FSException
+  {
+    connect();
+    String path = getPath(file);
+    try
+    {
+      if (this.mlst)
+      {
+        org.apache.commons.net.ftp.FTPFile f = this.client.mlistFile(path);
+        if (f != null)
+        {
+          Calendar c = f.getTimestamp();
+          return new FileInfo(file.getName(),f.isDirectory(),f.getSize(),c == null ? 0L : c.getTimeInMillis());
+        }
+        int reply = this.client.getReplyCode();
+        if (reply != FTPReply.UNRECOGNIZED_COMMAND && reply != FTPReply.COMMAND_NOT_IMPLEMENTED)
+          return null;
+
+        Logger.info("server does not support MLST, falling back to SIZE/MDTM");
+        this.mlst = false;
+      }
+
+      String size = this.client.getSize(path);
+      if (size == null)
+        return null;
+      org.apache.commons.net.ftp.FTPFile f = this.client.mdtmFile(path);
+      Calendar c = f != null ? f.getTimestamp() : null;
+      return new FileInfo(file.getName(),false,Long.parseLong(size.trim()),c == null ? 0L : c.getTimeInMillis());
+    }
+    catch (NumberFormatException e)
+    {
+      throw new FSException("invalid reply on SIZE: " + this.client.getReplyString());
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert das FTP-Handle zu der Datei.
    * @param file Datei.
-   * @return FTP-Handle.
+   * @return FTP-Handle oder NULL, wenn die Datei nicht existiert.
    * @throws FSException
    */
   org.apache.commons.net.ftp.FTPFile getFile(FTPFile file) throws FSException
   {
     String[] names = list(file.getDir(),null);
     if (names == null || names.length == 0)
-      throw new FSException("file does not exist: " + file.getName());
+      return null;
 
     try
     {
@@ -357,7 +836,7 @@ public class FTPFileSystem extends AbstractFileSystem
             return files[i];
         }
       }
-      throw new FSException("file does not exist: " + file.getName());
+      return null;
     }
     catch (IOException e)
     {
@@ -378,7 +857,7 @@ public class FTPFileSystem extends AbstractFileSystem
    */
   public String[] listDirs(String dir, final FilenameFilter filter) throws FSException
   {
-    return _list(dir,new Filter()
+    return _list(dir,null,new Filter()
     {
       public boolean accept(java.io.File dir, org.apache.commons.net.ftp.FTPFile file)
       {
@@ -387,20 +866,71 @@ public class FTPFileSystem extends AbstractFileSystem
     });
   }
 
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    cd(dir);
+    try
+    {
+      ArrayList<FileInfo> matches = new ArrayList<FileInfo>();
+      org.apache.commons.net.ftp.FTPFile[] files = client.listFiles();
+      java.io.File fd = new java.io.File(dir == null ? "." : dir);
+
+      if (files != null)
+      {
+        for (int i=0;i<files.length;++i)
+        {
+          org.apache.commons.net.ftp.FTPFile f = files[i];
+          if (f == null || !(f.isFile() || f.isDirectory()))
+            continue;
+          String name = f.getName();
+          if (".".equals(name) || "..".equals(name))
+            continue;
+          if (filter != null && !filter.accept(fd,name))
+            continue;
+          Calendar timestamp = f.getTimestamp();
+          matches.add(new FileInfo(name,f.isDirectory(),f.getSize(),timestamp == null ? 0L : timestamp.getTimeInMillis()));
+        }
+      }
+      return matches.toArray(new FileInfo[matches.size()]);
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert eine Liste von Dateien oder Verzeichnissen.
    * @param dir Pfad.
+   * @param pattern optionales Muster, das an LIST uebergeben wird.
    * @param filter Filter.
    * @return Liste von Dateien oder Verzeichnissen.
    * @throws FSException
    */
-  private String[] _list(String dir, Filter filter) throws FSException
+  private String[] _list(String dir, String pattern, Filter filter) throws FSException
   {
     cd(dir);
     try
     {
       ArrayList matches = new ArrayList();
-      org.apache.commons.net.ftp.FTPFile[] files = client.listFiles();
+      org.apache.commons.net.ftp.FTPFile[] files = null;
+      if (pattern != null)
+      {
+        files = client.listFiles(pattern);
+        int reply = client.getReplyCode();
+        if (reply == FTPReply.UNRECOGNIZED_COMMAND || reply == FTPReply.SYNTAX_ERROR_IN_ARGUMENTS ||
+            reply == FTPReply.COMMAND_NOT_IMPLEMENTED || reply == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER)
+        {
+          Logger.info("server does not support patterns in LIST, listing whole directory");
+          this.listGlob = false;
+          files = null;
+        }
+      }
+      if (files == null)
+        files = client.listFiles();
       java.io.File fd = new java.io.File(dir == null ? "." : dir);
 
       if (files != null)
@@ -433,4 +963,76 @@ public class FTPFileSystem extends AbstractFileSystem
     public boolean accept(java.io.File dir, org.apache.commons.net.ftp.FTPFile file);
   }
 
+  /**
+   * Schliesst die Uebertragung beim Schliessen des Streams ab.
+   * Nach "storeFileStream" und "retrieveFileStream" muss "completePendingCommand"
+   * aufgerufen werden, bevor ueber die Verbindung weitere Kommandos gesendet werden koennen.
+   */
+  private class TransferInputStream extends FilterInputStream
+  {
+    private boolean closed = false;
+
+    /**
+     * ct.
+     * @param is
+     */
+    private TransferInputStream(InputStream is)
+    {
+      super(is);
+    }
+
+    /**
+     * @see java.io.FilterInputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+      super.close();
+      if (!client.completePendingCommand())
+        Logger.warn("ftp transfer not completed: " + client.getReplyString());
+    }
+  }
+
+  /**
+   * Schliesst die Uebertragung beim Schliessen des Streams ab.
+   * @see TransferInputStream
+   */
+  private class TransferOutputStream extends FilterOutputStream
+  {
+    private boolean closed = false;
+
+    /**
+     * ct.
+     * @param os
+     */
+    private TransferOutputStream(OutputStream os)
+    {
+      super(os);
+    }
+
+    /**
+     * FilterOutputStream wuerde hier byteweise schreiben.
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      this.out.write(b,off,len);
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+      super.close();
+      if (!client.completePendingCommand())
+        throw new IOException("ftp transfer failed: " + client.getReplyString());
+    }
+  }
+
 }
@@ -49,6 +49,15 @@ public interface File
    * @throws FSException Wenn das Ermitteln des Aenderungsdatum fehlschlug.
    */
   public long lastModified() throws FSException;
+
+  /**
+   * Liefert Groesse und Datum der letzten Aenderung der Datei.
+   * Im Gegensatz zu {@link #length()} und {@link #lastModified()} genuegt dafuer
+   * eine einzelne Anfrage an den Server, sofern das Protokoll dies unterstuetzt.
+   * @return die Meta-Daten oder NULL, wenn die Datei nicht existiert.
+   * @throws FSException Wenn das Ermitteln der Meta-Daten fehlschlug.
+   */
+  public FileInfo stat() throws FSException;
   
   /**
    * Liefert einen Outputstream, welcher zum Schreiben in die Datei
@@ -59,12 +68,36 @@ public interface File
    */
   public OutputStream getOutputStream() throws FSException;
 
+  /**
+   * Liefert einen Outputstream, welcher zum Schreiben in die Datei
+   * verwendet werden kann.
+   * Im Modus "append" werden die Daten an das Ende der Datei angehaengt,
+   * ohne den bisherigen Inhalt erneut zu uebertragen, sofern das Protokoll
+   * dies unterstuetzt (z.Bsp. per APPE bei FTP). Existiert die Datei noch
+   * nicht, wird sie angelegt.
+   * @param append true, wenn die Daten angehaengt werden sollen. Bei false
+   * wird die Datei wie bei {@link #getOutputStream()} ueberschrieben.
+   * @return ein Outputstream, dessen Ziel in die Datei muendet.
+   * @throws FSException Wenn das Erzeugen des Streams fehlschlug.
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException;
+
   /**
    * Liefert einen InputStream zum Lesen aus der Datei.
    * @return InpuStream, mit dem aus der Datei gelesen werden kann.
    * @throws FSException Wenn das Erzeugen des Streams fehlschlug.
    */
   public InputStream getInputStream() throws FSException;
+
+  /**
+   * Liefert einen InputStream zum Lesen aus der Datei ab der angegebenen Position.
+   * Die Implementierungen springen direkt an die Position, ohne die Daten davor
+   * zu uebertragen, sofern das Protokoll dies unterstuetzt (z.Bsp. per REST bei FTP).
+   * @param offset Position in Bytes, ab der gelesen werden soll.
+   * @return InputStream, mit dem ab der Position aus der Datei gelesen werden kann.
+   * @throws FSException Wenn das Erzeugen des Streams fehlschlug.
+   */
+  public InputStream getInputStream(long offset) throws FSException;
   
   /**
    * Benennt die Datei um.
@@ -72,4 +105,29 @@ public interface File
    * @throws FSException Wenn das Umbenennen fehlschlug.
    */
   public void rename(String name) throws FSException;
+
+  /**
+   * Verschiebt die Datei an die Position der Ziel-Datei.
+   * Im Gegensatz zu {@link #rename(String)} kann die Datei dabei auch in ein
+   * anderes Verzeichnis verschoben werden. Der Inhalt wird nicht uebertragen,
+   * sondern direkt auf dem Server verschoben. Fehlende Verzeichnisse werden
+   * angelegt, eine bereits existierende Ziel-Datei wird ersetzt.
+   * @param target die Ziel-Datei. Sie muss aus dem selben File-System stammen
+   * (z.Bsp. per {@link FileSystem#create(String, String)}).
+   * @throws FSException Wenn das Verschieben fehlschlug oder die Ziel-Datei
+   * zu einem anderen File-System gehoert.
+   */
+  public void move(File target) throws FSException;
+
+  /**
+   * Kopiert die Datei an die Position der Ziel-Datei.
+   * Sofern das Protokoll es unterstuetzt, wird die Datei direkt auf dem Server
+   * kopiert, ohne den Inhalt zu uebertragen. Fehlende Verzeichnisse werden
+   * angelegt, eine bereits existierende Ziel-Datei wird ersetzt.
+   * @param target die Ziel-Datei. Sie muss aus dem selben File-System stammen
+   * (z.Bsp. per {@link FileSystem#create(String, String)}).
+   * @throws FSException Wenn das Kopieren fehlschlug oder die Ziel-Datei
+   * zu einem anderen File-System gehoert.
+   */
+  public void copy(File target) throws FSException;
 }
@@ -0,0 +1,82 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Kapselt die Meta-Daten einer Datei oder eines Verzeichnisses.
+ */
+public class FileInfo
+{
+  private String name       = null;
+  private boolean directory = false;
+  private long length       = 0L;
+  private long lastModified = 0L;
+
+  /**
+   * ct.
+   * @param name der Name der Datei oder des Verzeichnisses (ohne Pfadangabe).
+   * @param directory true, wenn es sich um ein Verzeichnis handelt.
+   * @param length Groesse in Bytes.
+   * @param lastModified Datum der letzten Aenderung in Millisekunden seit 1.1.1970.
+   */
+  public FileInfo(String name, boolean directory, long length, long lastModified)
+  {
+    this.name         = name;
+    this.directory    = directory;
+    this.length       = length;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Liefert den Namen der Datei oder des Verzeichnisses.
+   * @return Name ohne Pfadangabe.
+   */
+  public String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Prueft, ob es sich um ein Verzeichnis handelt.
+   * @return true, wenn es ein Verzeichnis ist.
+   */
+  public boolean isDirectory()
+  {
+    return this.directory;
+  }
+
+  /**
+   * Liefert die Groesse in Bytes.
+   * @return Groesse in Bytes.
+   */
+  public long getLength()
+  {
+    return this.length;
+  }
+
+  /**
+   * Liefert das Datum der letzten Aenderung.
+   * @return UNIX-Timestamp (in Milli-Sekunden!) der letzten Aenderung.
+   */
+  public long getLastModified()
+  {
+    return this.lastModified;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    return (this.directory ? "[DIR] " : "") + this.name + " (" + this.length + " bytes, modified " + this.lastModified + ")";
+  }
+}
@@ -0,0 +1,254 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Liefert den Inhalt einer Datei in Chunks an einen {@link ByteSubscriber}.
+ * Die Daten werden nur gelesen, wenn der Subscriber sie angefordert hat. Ist keine
+ * Anforderung offen, wird das Lesen unterbrochen und der Thread an den Executor
+ * zurueckgegeben. Ein langsamer Empfaenger bremst also die Uebertragung, ohne dass
+ * Daten im Speicher aufgestaut werden oder ein Thread auf ihn warten muss.
+ * Die Puffer werden aus einem {@link BufferPool} bezogen und nach jedem
+ * <code>onNext</code> wiederverwendet.
+ * Hinweis: Waehrend der Uebertragung darf das File-System der Datei nicht
+ * parallel fuer andere Operationen verwendet werden.
+ */
+public class FilePublisher
+{
+  private File file         = null;
+  private Executor executor = null;
+  private BufferPool pool   = null;
+
+  /**
+   * ct.
+   * Verwendet den Default-Pool fuer die Puffer.
+   * @param file die zu lesende Datei.
+   * @param executor der Executor, in dem gelesen und der Subscriber benachrichtigt wird.
+   */
+  public FilePublisher(File file, Executor executor)
+  {
+    this(file,executor,BufferPool.getDefault());
+  }
+
+  /**
+   * ct.
+   * @param file die zu lesende Datei.
+   * @param executor der Executor, in dem gelesen und der Subscriber benachrichtigt wird.
+   * @param pool der Pool, aus dem die Puffer bezogen werden.
+   */
+  public FilePublisher(File file, Executor executor, BufferPool pool)
+  {
+    this.file     = file;
+    this.executor = executor;
+    this.pool     = pool;
+  }
+
+  /**
+   * Startet die Uebertragung der Datei zum Subscriber.
+   * Die Datei wird erst geoeffnet, wenn der Subscriber Daten anfordert.
+   * @param subscriber der Subscriber.
+   */
+  public void subscribe(ByteSubscriber subscriber)
+  {
+    if (subscriber == null)
+      throw new NullPointerException("subscriber cannot be null");
+    subscriber.onSubscribe(new Subscription(subscriber));
+  }
+
+  /**
+   * Implementierung der Subscription.
+   * Die Lese-Schleife laeuft immer nur in einem Thread. Das wird ueber das
+   * Flag "running" sichergestellt.
+   */
+  private class Subscription implements ByteSubscription, Runnable
+  {
+    private ByteSubscriber subscriber   = null;
+    private AtomicLong demand           = new AtomicLong();
+    private AtomicBoolean running       = new AtomicBoolean();
+    private volatile boolean cancelled  = false;
+    private volatile boolean illegal    = false;
+    private boolean finished            = false;
+    private ReadableByteChannel channel = null;
+
+    /**
+     * ct.
+     * @param subscriber
+     */
+    private Subscription(ByteSubscriber subscriber)
+    {
+      this.subscriber = subscriber;
+    }
+
+    /**
+     * @see de.willuhn.io.fs.ByteSubscription#request(long)
+     */
+    public void request(long n)
+    {
+      if (n <= 0)
+      {
+        this.illegal = true;
+      }
+      else
+      {
+        // Bei Ueberlauf auf Long.MAX_VALUE begrenzen
+        for (;;)
+        {
+          long current = this.demand.get();
+          long next = current + n;
+          if (next < 0)
+            next = Long.MAX_VALUE;
+          if (this.demand.compareAndSet(current,next))
+            break;
+        }
+      }
+      schedule();
+    }
+
+    /**
+     * @see de.willuhn.io.fs.ByteSubscription#cancel()
+     */
+    public void cancel()
+    {
+      this.cancelled = true;
+      schedule();
+    }
+
+    /**
+     * Startet die Lese-Schleife, falls sie nicht bereits laeuft.
+     */
+    private void schedule()
+    {
+      if (this.running.compareAndSet(false,true))
+        executor.execute(this);
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run()
+    {
+      do
+      {
+        drain();
+        this.running.set(false);
+      }
+      // Falls zwischenzeitlich neue Daten angefordert wurden, machen wir weiter
+      while (!this.finished && (this.cancelled || this.illegal || this.demand.get() > 0) && this.running.compareAndSet(false,true));
+    }
+
+    /**
+     * Liest so viele Chunks, wie angefordert wurden.
+     */
+    private void drain()
+    {
+      if (this.finished)
+        return;
+
+      if (this.cancelled)
+      {
+        finish();
+        return;
+      }
+
+      if (this.illegal)
+      {
+        finish();
+        this.subscriber.onError(new FSException("number of requested chunks must be greater than 0"));
+        return;
+      }
+
+      try
+      {
+        while (this.demand.get() > 0 && !this.cancelled)
+        {
+          if (this.channel == null)
+            this.channel = Channels.newChannel(file.getInputStream());
+
+          boolean eof = false;
+          ByteBuffer buf = pool.acquire();
+          try
+          {
+            // Puffer komplett fuellen, damit moeglichst grosse Chunks geliefert werden
+            while (buf.hasRemaining())
+            {
+              if (this.channel.read(buf) == -1)
+              {
+                eof = true;
+                break;
+              }
+            }
+            buf.flip();
+            if (buf.hasRemaining())
+            {
+              this.demand.decrementAndGet();
+              this.subscriber.onNext(buf);
+            }
+          }
+          finally
+          {
+            pool.release(buf);
+          }
+
+          if (eof)
+          {
+            finish();
+            this.subscriber.onComplete();
+            return;
+          }
+        }
+      }
+      catch (FSException e)
+      {
+        finish();
+        this.subscriber.onError(e);
+      }
+      catch (Exception e)
+      {
+        finish();
+        this.subscriber.onError(new FSException(e));
+      }
+    }
+
+    /**
+     * Beendet die Uebertragung und schliesst die Datei.
+     */
+    private void finish()
+    {
+      this.finished = true;
+      if (this.channel == null)
+        return;
+
+      try
+      {
+        this.channel.close();
+      }
+      catch (IOException e)
+      {
+        Logger.error("error while closing stream",e);
+      }
+      finally
+      {
+        this.channel = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CountDownLatch;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Subscriber, der die empfangenen Chunks in eine Datei schreibt.
+ * Er fordert immer nur so viele Chunks an, wie er bereits geschrieben hat.
+ * Ein langsames Ziel drosselt damit automatisch den Lieferanten.
+ * Das Ziel sollte nicht ueber die selbe Verbindung wie die Quelle angesprochen
+ * werden, da Lesen und Schreiben parallel stattfinden.
+ */
+public class FileSubscriber implements ByteSubscriber
+{
+  private File file                     = null;
+  private int prefetch                  = 4;
+  private int consumed                  = 0;
+  private long bytes                    = 0L;
+  private ByteSubscription subscription = null;
+  private WritableByteChannel channel   = null;
+  private volatile FSException error    = null;
+  private CountDownLatch done           = new CountDownLatch(1);
+
+  /**
+   * ct.
+   * Fordert jeweils bis zu 4 Chunks im Voraus an.
+   * @param file die Datei, in die geschrieben werden soll.
+   */
+  public FileSubscriber(File file)
+  {
+    this(file,4);
+  }
+
+  /**
+   * ct.
+   * @param file die Datei, in die geschrieben werden soll.
+   * @param prefetch Anzahl der Chunks, die im Voraus angefordert werden.
+   */
+  public FileSubscriber(File file, int prefetch)
+  {
+    this.file     = file;
+    this.prefetch = Math.max(1,prefetch);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.ByteSubscriber#onSubscribe(de.willuhn.io.fs.ByteSubscription)
+   */
+  public void onSubscribe(ByteSubscription subscription)
+  {
+    this.subscription = subscription;
+    try
+    {
+      this.channel = Channels.newChannel(this.file.getOutputStream());
+      this.subscription.request(this.prefetch);
+    }
+    catch (FSException e)
+    {
+      this.subscription.cancel();
+      fail(e);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.ByteSubscriber#onNext(java.nio.ByteBuffer)
+   */
+  public void onNext(ByteBuffer buffer)
+  {
+    if (this.channel == null)
+      return;
+
+    try
+    {
+      while (buffer.hasRemaining())
+        this.bytes += this.channel.write(buffer);
+    }
+    catch (IOException e)
+    {
+      this.subscription.cancel();
+      fail(new FSException(e));
+      return;
+    }
+
+    // Nachschub anfordern, sobald die Haelfte der Vorab-Anforderung verarbeitet ist
+    if (++this.consumed >= Math.max(1,this.prefetch / 2))
+    {
+      this.subscription.request(this.consumed);
+      this.consumed = 0;
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.ByteSubscriber#onError(de.willuhn.io.fs.FSException)
+   */
+  public void onError(FSException e)
+  {
+    fail(e);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.ByteSubscriber#onComplete()
+   */
+  public void onComplete()
+  {
+    try
+    {
+      if (this.channel != null)
+        this.channel.close();
+    }
+    catch (IOException e)
+    {
+      this.error = new FSException(e);
+    }
+    finally
+    {
+      this.channel = null;
+      this.done.countDown();
+    }
+  }
+
+  /**
+   * Wartet, bis die Uebertragung abgeschlossen ist.
+   * @return Anzahl der geschriebenen Bytes.
+   * @throws FSException wenn die Uebertragung fehlschlug oder das Warten unterbrochen wurde.
+   */
+  public long await() throws FSException
+  {
+    try
+    {
+      this.done.await();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new FSException("interrupted while waiting for transfer",e);
+    }
+    if (this.error != null)
+      throw this.error;
+    return this.bytes;
+  }
+
+  /**
+   * Beendet die Uebertragung mit einem Fehler.
+   * @param e der Fehler.
+   */
+  private void fail(FSException e)
+  {
+    if (this.error == null)
+      this.error = e;
+
+    try
+    {
+      if (this.channel != null)
+        this.channel.close();
+    }
+    catch (IOException e2)
+    {
+      Logger.error("error while closing stream",e2);
+    }
+    finally
+    {
+      this.channel = null;
+      this.done.countDown();
+    }
+  }
+}
@@ -64,6 +64,19 @@ public interface FileSystem
    */
   public String[] list(String dir, FilenameFilter filter) throws FSException;
 
+  /**
+   * Liefert die Dateien in diesem Verzeichnis, deren Name auf das Muster passt.
+   * Im Gegensatz zu {@link #list(String, FilenameFilter)} mit einem {@link GlobFilter}
+   * uebergeben die Implementierungen das Muster - soweit vom Protokoll unterstuetzt -
+   * an den Server, so dass nur die passenden Eintraege uebertragen werden.
+   * Das Ergebnis entspricht in jedem Fall exakt dem des {@link GlobFilter}.
+   * @param dir Verzeichnis.
+   * @param pattern das Muster. Zum Beispiel "*.xml".
+   * @return Liste der Dateien.
+   * @throws FSException Wenn das Ermitteln der Dateiliste fehlschlug.
+   */
+  public String[] glob(String dir, String pattern) throws FSException;
+
   /**
    * Liefert eine Liste von Verzeichnissen.
    * @param filter optionaler Filter.
@@ -81,6 +94,18 @@ public interface FileSystem
    */
   public String[] listDirs(String dir, FilenameFilter filter) throws FSException;
 
+  /**
+   * Liefert Dateien und Verzeichnisse in diesem Verzeichnis samt ihrer Meta-Daten.
+   * Im Gegensatz zum Aufruf von {@link File#length()} und {@link File#lastModified()}
+   * fuer jede einzelne Datei werden die Meta-Daten hierbei gemeinsam mit der
+   * Verzeichnisliste in einem Durchgang ermittelt.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @return Liste der Dateien und Verzeichnisse.
+   * @throws FSException Wenn das Ermitteln der Liste fehlschlug.
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException;
+
   /**
    * Schliesst das File-System
    * @throws FSException Wenn das Schliessen des Filesystems fehlschlug.
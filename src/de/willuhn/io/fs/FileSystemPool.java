@@ -0,0 +1,369 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Pool von File-Systemen zu einer URI.
+ * Da die File-System-Implementierungen nicht thread-safe sind (eine FTP- oder
+ * SFTP-Verbindung kann immer nur ein Kommando gleichzeitig ausfuehren), haelt
+ * der Pool mehrere Verbindungen zur selben URI vor und verteilt sie an die
+ * aufrufenden Threads.
+ * Die Anzahl der offenen Verbindungen ist pro Host begrenzt - auch dann, wenn
+ * mehrere Pools auf den selben Host zugreifen. Freie (zurueckgegebene) Verbindungen
+ * zaehlen dabei mit. Ist das Limit erreicht und wird eine neue Verbindung benoetigt,
+ * wird eine freie Verbindung eines anderen Pools zum selben Host geschlossen.
+ * Das Limit kann per System-Property "filesystems.pool.maxperhost" (Default: 4)
+ * oder per {@link FileSystemPool#setMaxConnections(String, int)} festgelegt werden.
+ */
+public class FileSystemPool
+{
+  // Default-Limit fuer die Anzahl der Verbindungen pro Host.
+  private final static int MAX_PER_HOST = Integer.getInteger("filesystems.pool.maxperhost",4);
+
+  // Erkennt Protokoll und Host in URIs, die java.net.URI nicht parsen kann.
+  private final static Pattern PATTERN_HOST = Pattern.compile("^([a-zA-Z][a-zA-Z0-9+.-]*)://([^/?#]*)");
+
+  // Die Limits pro Host.
+  private static Map<String,Integer> limits = new HashMap<String,Integer>();
+
+  // Die Verbindungs-Zaehler pro Host.
+  private static Map<String,Host> hosts = new HashMap<String,Host>();
+
+  private String uri                   = null;
+  private String key                   = null;
+  private Host host                    = null;
+  private LinkedList<FileSystem> idle  = new LinkedList<FileSystem>();
+  private boolean closed               = false;
+
+  /**
+   * ct.
+   * @param uri die URI, zu der die File-Systeme erzeugt werden sollen.
+   * @throws FSException wenn die URI ungueltig ist.
+   */
+  public FileSystemPool(String uri) throws FSException
+  {
+    if (uri == null || uri.length() == 0)
+      throw new FSException("uri cannot be null");
+
+    this.uri  = uri;
+    this.key  = getHostKey(uri);
+    this.host = getHost(this.key);
+    synchronized (this.host)
+    {
+      this.host.pools.add(this);
+    }
+  }
+
+  /**
+   * Legt die maximale Anzahl gleichzeitiger Verbindungen zu einem Host fest.
+   * Muss aufgerufen werden, bevor der erste Pool fuer diesen Host erzeugt wurde.
+   * @param uri URI, aus der Protokoll, Host und Port ermittelt werden.
+   * @param max Anzahl der Verbindungen.
+   * @throws FSException wenn die URI ungueltig ist.
+   */
+  public static synchronized void setMaxConnections(String uri, int max) throws FSException
+  {
+    if (max < 1)
+      throw new FSException("max connections must be at least 1");
+
+    String key = getHostKey(uri);
+    if (hosts.containsKey(key))
+      Logger.warn("pool for host " + key + " already in use, new limit will not be applied");
+    limits.put(key,max);
+  }
+
+  /**
+   * Liefert die maximale Anzahl gleichzeitiger Verbindungen zum Host dieses Pools.
+   * @return Anzahl der Verbindungen.
+   */
+  public int getMaxConnections()
+  {
+    return this.host.limit;
+  }
+
+  /**
+   * Liefert den Schluessel des Hosts im Format "protokoll://host:port".
+   * @return Schluessel des Hosts.
+   */
+  String getHost()
+  {
+    return this.key;
+  }
+
+  /**
+   * Liefert die URI des Pools.
+   * @return die URI.
+   */
+  public String getUri()
+  {
+    return this.uri;
+  }
+
+  /**
+   * Liefert ein File-System aus dem Pool.
+   * Ist keine Verbindung frei, wird eine neue erzeugt - sofern das Limit fuer den
+   * Host noch nicht erreicht ist oder eine freie Verbindung eines anderen Pools
+   * zum selben Host geschlossen werden kann. Andernfalls blockiert die Funktion,
+   * bis eine Verbindung freigegeben wurde.
+   * Das File-System muss anschliessend per {@link FileSystemPool#release(FileSystem)}
+   * zurueckgegeben werden.
+   * @return das File-System.
+   * @throws FSException wenn das File-System nicht erzeugt werden konnte.
+   */
+  public FileSystem acquire() throws FSException
+  {
+    FileSystem victim = null;
+    synchronized (this.host)
+    {
+      try
+      {
+        while (true)
+        {
+          if (this.closed)
+            throw new FSException("pool closed");
+
+          if (this.idle.size() > 0)
+            return this.idle.removeFirst();
+
+          if (this.host.open < this.host.limit)
+          {
+            this.host.open++;
+            break;
+          }
+
+          // Limit erreicht. Wir uebernehmen den Platz einer freien Verbindung
+          // eines anderen Pools zum selben Host.
+          victim = this.host.evict();
+          if (victim != null)
+            break;
+
+          this.host.wait();
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new FSException("interrupted while waiting for connection to " + this.key,e);
+      }
+    }
+
+    if (victim != null)
+    {
+      Logger.debug("closing idle connection to " + this.key + ", connection limit reached");
+      close(victim);
+    }
+
+    try
+    {
+      Logger.debug("open new pooled connection to " + this.key);
+      return FileSystemFactory.createFileSystem(this.uri);
+    }
+    catch (FSException e)
+    {
+      this.host.free();
+      throw e;
+    }
+    catch (Exception e)
+    {
+      this.host.free();
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Gibt das File-System an den Pool zurueck.
+   * @param fs das File-System.
+   */
+  public void release(FileSystem fs)
+  {
+    if (fs == null)
+      return;
+
+    synchronized (this.host)
+    {
+      if (!this.closed)
+      {
+        this.idle.addLast(fs);
+        this.host.notifyAll();
+        return;
+      }
+    }
+
+    // Pool wurde inzwischen geschlossen
+    this.invalidate(fs);
+  }
+
+  /**
+   * Schliesst das File-System und gibt den Platz im Pool frei.
+   * Sollte anstelle von {@link FileSystemPool#release(FileSystem)} aufgerufen werden,
+   * wenn bei der Verwendung des File-Systems ein Fehler auftrat, da die Verbindung
+   * dann moeglicherweise nicht mehr benutzbar ist.
+   * @param fs das File-System.
+   */
+  public void invalidate(FileSystem fs)
+  {
+    if (fs == null)
+      return;
+
+    try
+    {
+      close(fs);
+    }
+    finally
+    {
+      this.host.free();
+    }
+  }
+
+  /**
+   * Schliesst alle freien Verbindungen des Pools.
+   * Noch ausgeliehene Verbindungen werden bei der Rueckgabe geschlossen.
+   */
+  public void close()
+  {
+    LinkedList<FileSystem> list = null;
+    synchronized (this.host)
+    {
+      this.closed = true;
+      list = new LinkedList<FileSystem>(this.idle);
+      this.idle.clear();
+      this.host.pools.remove(this);
+      this.host.notifyAll();
+    }
+
+    for (FileSystem fs:list)
+    {
+      this.invalidate(fs);
+    }
+  }
+
+  /**
+   * Schliesst das File-System und protokolliert Fehler nur.
+   * @param fs das File-System.
+   */
+  private void close(FileSystem fs)
+  {
+    try
+    {
+      fs.close();
+    }
+    catch (Exception e)
+    {
+      Logger.error("error while closing pooled connection to " + this.key,e);
+    }
+  }
+
+  /**
+   * Liefert die Verbindungs-Zaehler fuer den Host.
+   * @param key Schluessel des Hosts.
+   * @return die Zaehler.
+   */
+  private static synchronized Host getHost(String key)
+  {
+    Host h = hosts.get(key);
+    if (h == null)
+    {
+      Integer i = limits.get(key);
+      h = new Host(i != null ? i.intValue() : MAX_PER_HOST);
+      hosts.put(key,h);
+    }
+    return h;
+  }
+
+  /**
+   * Ermittelt aus der URI einen Schluessel der Form "protokoll://host:port".
+   * @param uri die URI.
+   * @return der Schluessel.
+   * @throws FSException wenn die URI ungueltig ist.
+   */
+  private static String getHostKey(String uri) throws FSException
+  {
+    try
+    {
+      URI u = new URI(uri);
+      String scheme = u.getScheme();
+      return (scheme == null ? "file" : scheme.toLowerCase()) + "://" + (u.getHost() == null ? "" : u.getHost().toLowerCase()) + (u.getPort() == -1 ? "" : (":" + u.getPort()));
+    }
+    catch (Exception e)
+    {
+      // URI mit Sonderzeichen (etwa im Passwort). Protokoll und Host selbst
+      // ermitteln, damit fremde Hosts nicht ein gemeinsames Limit teilen.
+      Matcher m = PATTERN_HOST.matcher(uri);
+      if (m.find())
+      {
+        String authority = m.group(2);
+        int at = authority.lastIndexOf('@');
+        if (at != -1)
+          authority = authority.substring(at + 1);
+        return m.group(1).toLowerCase() + "://" + authority.toLowerCase();
+      }
+
+      // Lokale Pfade wie "E:/daten" sind keine gueltigen URIs
+      return "file://";
+    }
+  }
+
+  /**
+   * Zaehlt die offenen Verbindungen zu einem Host ueber alle Pools hinweg.
+   * Alle Zugriffe erfolgen synchronisiert auf der Instanz.
+   */
+  private static class Host
+  {
+    private final int limit;
+    private int open = 0;
+    private List<FileSystemPool> pools = new ArrayList<FileSystemPool>();
+
+    /**
+     * ct.
+     * @param limit maximale Anzahl offener Verbindungen.
+     */
+    private Host(int limit)
+    {
+      this.limit = limit;
+    }
+
+    /**
+     * Entfernt eine freie Verbindung aus einem der Pools des Hosts.
+     * Der Platz der Verbindung wird nicht freigegeben sondern geht an den Aufrufer.
+     * @return die Verbindung, die geschlossen werden muss oder NULL, wenn keine frei ist.
+     */
+    private FileSystem evict()
+    {
+      for (FileSystemPool p:this.pools)
+      {
+        if (p.idle.size() > 0)
+          return p.idle.removeFirst();
+      }
+      return null;
+    }
+
+    /**
+     * Gibt den Platz einer geschlossenen Verbindung frei.
+     */
+    private synchronized void free()
+    {
+      this.open--;
+      this.notifyAll();
+    }
+  }
+}
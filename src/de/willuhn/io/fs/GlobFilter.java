@@ -0,0 +1,277 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Filter fuer Dateinamen mit Platzhaltern.
+ * Unterstuetzt werden:
+ * <ul>
+ *   <li>* - beliebig viele Zeichen</li>
+ *   <li>? - genau ein Zeichen</li>
+ *   <li>[abc], [a-z] - eines der Zeichen, [!abc] - keines der Zeichen</li>
+ *   <li>{csv,txt} - eine der Alternativen</li>
+ * </ul>
+ * Gross- und Kleinschreibung wird unterschieden. Da sich der Filter nur auf den
+ * Dateinamen bezieht, passt "*" nicht auf "/". Klammern ohne Gegenstueck sowie
+ * verschachtelte Alternativen werden als normale Zeichen behandelt.
+ */
+public class GlobFilter implements FilenameFilter
+{
+  private String glob     = null;
+  private Pattern pattern = null;
+
+  /**
+   * ct.
+   * @param glob das Muster. Zum Beispiel "*.csv" oder "report-2021-??.{pdf,txt}".
+   */
+  public GlobFilter(String glob)
+  {
+    if (glob == null)
+      throw new IllegalArgumentException("glob pattern cannot be null");
+
+    this.glob = glob;
+    try
+    {
+      this.pattern = Pattern.compile(toRegex(glob));
+    }
+    catch (PatternSyntaxException e)
+    {
+      throw new IllegalArgumentException("invalid glob pattern: " + glob,e);
+    }
+  }
+
+  /**
+   * Prueft, ob der Text Platzhalter enthaelt.
+   * @param s der Text.
+   * @return true, wenn Platzhalter enthalten sind.
+   */
+  public static boolean isGlob(String s)
+  {
+    if (s == null)
+      return false;
+    for (int i=0;i<s.length();++i)
+    {
+      char c = s.charAt(i);
+      if (c == '*' || c == '?' || c == '[' || c == '{')
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Liefert das Muster.
+   * @return das Muster.
+   */
+  public String getGlob()
+  {
+    return this.glob;
+  }
+
+  /**
+   * Liefert ein vereinfachtes Muster, das nur die Platzhalter "*" und "?" enthaelt.
+   * Es passt auf mindestens alle Namen, auf die dieses Muster passt, und kann
+   * daher an Server uebergeben werden, die nur diese Platzhalter kennen. Das
+   * Ergebnis muss anschliessend per {@link #matches(String)} exakt gefiltert werden.
+   * @return das vereinfachte Muster.
+   */
+  public String getWildcard()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i=0;i<this.glob.length();++i)
+    {
+      char c = this.glob.charAt(i);
+      int end = -1;
+      if (c == '[' && (end = classEnd(this.glob,i)) != -1)
+      {
+        sb.append('?');
+        i = end;
+      }
+      else if (c == '*' || (c == '{' && (end = groupEnd(this.glob,i)) != -1))
+      {
+        if (sb.length() == 0 || sb.charAt(sb.length() - 1) != '*')
+          sb.append('*');
+        if (c == '{')
+          i = end;
+      }
+      else
+      {
+        // Klammern ohne Gegenstueck sind normale Zeichen, koennten vom Server
+        // aber als Platzhalter interpretiert werden
+        sb.append("[]{}".indexOf(c) != -1 ? '?' : c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Liefert den Teil des Musters vor dem ersten Platzhalter.
+   * Alle passenden Namen beginnen mit diesem Text.
+   * @return der Text. Leer, wenn das Muster mit einem Platzhalter beginnt.
+   */
+  public String getPrefix()
+  {
+    for (int i=0;i<this.glob.length();++i)
+    {
+      if ("*?[{".indexOf(this.glob.charAt(i)) != -1)
+        return this.glob.substring(0,i);
+    }
+    return this.glob;
+  }
+
+  /**
+   * Prueft, ob der Name auf das Muster passt.
+   * @param name der Name.
+   * @return true, wenn der Name passt.
+   */
+  public boolean matches(String name)
+  {
+    return name != null && this.pattern.matcher(name).matches();
+  }
+
+  /**
+   * @see java.io.FilenameFilter#accept(java.io.File, java.lang.String)
+   */
+  public boolean accept(java.io.File dir, String name)
+  {
+    return matches(name);
+  }
+
+  /**
+   * Wandelt das Muster in einen regulaeren Ausdruck um.
+   * @param glob das Muster.
+   * @return der regulaere Ausdruck.
+   */
+  private static String toRegex(String glob)
+  {
+    StringBuilder sb = new StringBuilder();
+    boolean group = false;
+    for (int i=0;i<glob.length();++i)
+    {
+      char c = glob.charAt(i);
+      switch (c)
+      {
+        case '*':
+          sb.append("[^/]*");
+          break;
+        case '?':
+          sb.append("[^/]");
+          break;
+        case '[':
+          int end = classEnd(glob,i);
+          if (end == -1)
+          {
+            sb.append("\\[");
+            break;
+          }
+          sb.append(toClass(glob.substring(i + 1,end)));
+          i = end;
+          break;
+        case '{':
+          if (group || groupEnd(glob,i) == -1)
+          {
+            sb.append("\\{");
+            break;
+          }
+          sb.append("(?:");
+          group = true;
+          break;
+        case '}':
+          sb.append(group ? ")" : "\\}");
+          group = false;
+          break;
+        case ',':
+          sb.append(group ? "|" : ",");
+          break;
+        default:
+          if ("\\.^$+()|".indexOf(c) != -1)
+            sb.append('\\');
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Wandelt den Inhalt einer Zeichen-Klasse in einen regulaeren Ausdruck um.
+   * @param chars der Inhalt ohne die eckigen Klammern.
+   * @return der regulaere Ausdruck.
+   */
+  private static String toClass(String chars)
+  {
+    String negate = "";
+    if (chars.startsWith("!"))
+    {
+      negate = "^";
+      chars = chars.substring(1);
+    }
+    return "[" + negate + chars.replace("\\","\\\\").replace("[","\\[").replace("&","\\&") + "]";
+  }
+
+  /**
+   * Liefert das Ende der Zeichen-Klasse, die an der Position beginnt.
+   * @param glob das Muster.
+   * @param start Position der oeffnenden eckigen Klammer.
+   * @return Position der schliessenden Klammer oder -1, wenn es keine gueltige
+   * Zeichen-Klasse ist (z.Bsp. "[" ohne Gegenstueck oder "[z-a]").
+   */
+  private static int classEnd(String glob, int start)
+  {
+    int end = glob.indexOf(']',start + 2);
+    if (end == -1)
+      return -1;
+    try
+    {
+      Pattern.compile(toClass(glob.substring(start + 1,end)));
+      return end;
+    }
+    catch (PatternSyntaxException e)
+    {
+      return -1;
+    }
+  }
+
+  /**
+   * Liefert das Ende der Alternativen, die an der Position beginnen.
+   * Zeichen-Klassen werden dabei uebersprungen.
+   * @param glob das Muster.
+   * @param start Position der oeffnenden geschweiften Klammer.
+   * @return Position der schliessenden Klammer oder -1, wenn es keine gibt.
+   */
+  private static int groupEnd(String glob, int start)
+  {
+    for (int i=start + 1;i<glob.length();++i)
+    {
+      char c = glob.charAt(i);
+      if (c == '}')
+        return i;
+      if (c == '[')
+      {
+        int end = classEnd(glob,i);
+        if (end != -1)
+          i = end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    return this.glob;
+  }
+}
@@ -0,0 +1,131 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-sicheres Histogramm fuer Latenzen.
+ * Die Werte werden in logarithmische Klassen (Zweierpotenzen von Mikrosekunden)
+ * einsortiert. Der Speicherbedarf ist damit unabhaengig von der Anzahl der Werte
+ * konstant, die Perzentile haben eine Genauigkeit von einem Faktor 2.
+ */
+public class Histogram
+{
+  // Klasse i enthaelt Werte von 2^(i-1) bis 2^i Mikrosekunden. 40 Klassen reichen fuer ca. 12 Tage.
+  private final static int BUCKETS = 40;
+
+  private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private AtomicLong count        = new AtomicLong();
+  private AtomicLong sum          = new AtomicLong();
+  private AtomicLong max          = new AtomicLong();
+
+  /**
+   * Erfasst einen Wert.
+   * @param nanos der Wert in Nanosekunden.
+   */
+  public void record(long nanos)
+  {
+    if (nanos < 0)
+      nanos = 0;
+
+    long micros = nanos / 1000L;
+    int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1,64 - Long.numberOfLeadingZeros(micros));
+    this.buckets.incrementAndGet(bucket);
+    this.count.incrementAndGet();
+    this.sum.addAndGet(nanos);
+
+    for (;;)
+    {
+      long current = this.max.get();
+      if (nanos <= current || this.max.compareAndSet(current,nanos))
+        break;
+    }
+  }
+
+  /**
+   * Liefert die Anzahl der erfassten Werte.
+   * @return Anzahl der Werte.
+   */
+  public long getCount()
+  {
+    return this.count.get();
+  }
+
+  /**
+   * Liefert die Summe der erfassten Werte.
+   * @return Summe in Nanosekunden.
+   */
+  public long getSum()
+  {
+    return this.sum.get();
+  }
+
+  /**
+   * Liefert den Durchschnitt der erfassten Werte.
+   * @return Durchschnitt in Nanosekunden.
+   */
+  public long getMean()
+  {
+    long c = this.count.get();
+    return c == 0 ? 0L : this.sum.get() / c;
+  }
+
+  /**
+   * Liefert den groessten erfassten Wert.
+   * @return Maximum in Nanosekunden.
+   */
+  public long getMax()
+  {
+    return this.max.get();
+  }
+
+  /**
+   * Liefert das Perzentil.
+   * Geliefert wird die Obergrenze der Klasse, in die das Perzentil faellt,
+   * hoechstens jedoch das Maximum.
+   * @param p das Perzentil zwischen 0 und 100. Zum Beispiel 50 fuer den Median.
+   * @return das Perzentil in Nanosekunden.
+   */
+  public long getPercentile(double p)
+  {
+    long c = this.count.get();
+    if (c == 0)
+      return 0L;
+
+    long rank = (long) Math.ceil(c * Math.min(100d,Math.max(0d,p)) / 100d);
+    if (rank < 1)
+      rank = 1;
+
+    long seen = 0;
+    for (int i=0;i<BUCKETS;++i)
+    {
+      seen += this.buckets.get(i);
+      if (seen >= rank)
+        return Math.min(this.max.get(),(1L << i) * 1000L);
+    }
+    return this.max.get();
+  }
+
+  /**
+   * Setzt das Histogramm zurueck.
+   */
+  public void reset()
+  {
+    for (int i=0;i<BUCKETS;++i)
+      this.buckets.set(i,0L);
+    this.count.set(0L);
+    this.sum.set(0L);
+    this.max.set(0L);
+  }
+}
@@ -0,0 +1,133 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementierung des File-Interface fuer Dateien im {@link HttpFileSystem}.
+ * Die Dateien koennen nur gelesen werden.
+ */
+public class HttpFile implements File
+{
+  private HttpFileSystem fs = null;
+  private String url        = null;
+
+  /**
+   * ct.
+   * @param fs das File-System.
+   * @param url URL der Datei.
+   */
+  HttpFile(HttpFileSystem fs, String url)
+  {
+    this.fs  = fs;
+    this.url = url;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    return this.fs.stat(this.url).exists;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to delete " + this.url);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    return this.fs.stat(this.url).length;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    return this.fs.stat(this.url).lastModified;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    HttpFileSystem.Stat s = this.fs.stat(this.url);
+    return s.exists ? new FileInfo(this.url.substring(this.url.lastIndexOf('/') + 1),false,s.length,s.lastModified) : null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to write " + this.url);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to write " + this.url);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return this.fs.getInputStream(this.url,0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    return this.fs.getInputStream(this.url,offset);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(String name) throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to rename " + this.url);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to move " + this.url);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    throw new FSException("http filesystem is read-only, unable to copy " + this.url);
+  }
+}
@@ -0,0 +1,697 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Implementierung des FileSystem-Interface fuer den lesenden Zugriff per HTTP(S).
+ * URI-Format: http[s]://[&lt;username&gt;:&lt;password&gt;@]&lt;host&gt;[:&lt;port&gt;]/&lt;verzeichnis&gt;.
+ * Die Verzeichnisse werden aus den vom Server generierten Index-Seiten ermittelt
+ * (z.Bsp. Apache "mod_autoindex" oder nginx "autoindex"). Die Meta-Daten der
+ * Dateien werden per HEAD abgefragt, ab einer bestimmten Position wird per
+ * "Range"-Header gelesen.
+ * Index-Seiten und Meta-Daten werden zwischengespeichert und per ETag bzw.
+ * "If-Modified-Since" beim Server revalidiert, sodass unveraenderte Verzeichnisse
+ * nicht erneut uebertragen werden.
+ * Die Verbindungen werden vom JDK per Keep-Alive wiederverwendet. Die Anzahl
+ * der vorgehaltenen Verbindungen pro Host kann per System-Property
+ * "http.maxConnections" (Default: 5) festgelegt werden, der Timeout in
+ * Millisekunden per "filesystems.http.timeout" (Default: 30000).
+ * Das File-System kann nur gelesen werden.
+ */
+public class HttpFileSystem extends AbstractFileSystem
+{
+  private final static int TIMEOUT = Integer.getInteger("filesystems.http.timeout",30000);
+  private final static int CACHE   = 1024;
+
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  // Links in der Index-Seite
+  private final static Pattern HREF = Pattern.compile("<a\\s[^>]*?href\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))[^>]*>",Pattern.CASE_INSENSITIVE);
+
+  // Datum und exakte Groesse hinter dem Link (nginx-Format)
+  private final static Pattern INFO = Pattern.compile("^\\s*(\\d{2}-[A-Za-z]{3}-\\d{4} \\d{2}:\\d{2})\\s+(\\d+)\\s*$");
+
+  private String base                = null;
+  private String auth                = null;
+  private Map<String,Stat> stats     = new Cache<Stat>(CACHE);
+  private Map<String,Index> dirs     = new Cache<Index>(CACHE / 16);
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    Logger.debug("creating http filesystem for uri: " + uri.getScheme() + "://" + uri.getHost() + uri.getRawPath());
+
+    if (uri.getHost() == null)
+      throw new FSException("no host given in uri");
+
+    String path = uri.getRawPath();
+    if (path == null || path.length() == 0)
+      path = "/";
+    if (!path.endsWith("/"))
+      path += "/";
+
+    this.base = uri.getScheme().toLowerCase() + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : (":" + uri.getPort())) + path;
+
+    String userInfo = uri.getUserInfo();
+    if (userInfo != null && userInfo.length() > 0)
+      this.auth = "Basic " + base64(userInfo.getBytes(UTF8));
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    if (filename == null || filename.length() == 0 || filename.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + filename);
+
+    return new HttpFile(this,getUrl(dir) + encode(filename));
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,true);
+  }
+
+  /**
+   * Enthaelt die Index-Seite keine exakten Groessen, werden die Meta-Daten
+   * der Dateien einzeln per HEAD ermittelt.
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    String url = getUrl(dir);
+    Index index = getIndex(url);
+    if (index == null)
+      return null;
+
+    java.io.File fd = new java.io.File(url);
+    Listing l = index.entries;
+    ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+    for (int i=0;i<l.size();++i)
+    {
+      String name = l.getName(i);
+      if (filter != null && !filter.accept(fd,name))
+        continue;
+
+      if (l.isDirectory(i) || l.getLength(i) >= 0)
+      {
+        list.add(new FileInfo(name,l.isDirectory(i),Math.max(l.getLength(i),0L),l.getLastModified(i)));
+        continue;
+      }
+
+      Stat s = stat(url + encode(name));
+      if (s.exists)
+        list.add(new FileInfo(name,false,s.length,s.lastModified));
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public void close() throws FSException
+  {
+    // Die Verbindungen werden vom JDK verwaltet
+    this.stats.clear();
+    this.dirs.clear();
+  }
+
+  /**
+   * Liefert die Meta-Daten der Datei.
+   * Sind sie bereits bekannt, wird beim Server nur per ETag bzw. Datum
+   * geprueft, ob sie sich geaendert haben.
+   * @param url URL der Datei.
+   * @return die Meta-Daten.
+   * @throws FSException
+   */
+  Stat stat(String url) throws FSException
+  {
+    Stat cached = this.stats.get(url);
+    HttpURLConnection conn = null;
+    try
+    {
+      Roundtrips.count("http","head");
+      conn = open(url,"HEAD");
+      revalidate(conn,cached == null ? null : cached.etag,cached == null ? 0L : cached.lastModified);
+
+      int code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        return cached;
+
+      Stat s = new Stat();
+      if (code == HttpURLConnection.HTTP_OK)
+      {
+        // Per Redirect auf ein Verzeichnis umgeleitet
+        s.exists       = !conn.getURL().getPath().endsWith("/");
+        s.length       = Math.max(conn.getContentLengthLong(),0L);
+        s.lastModified = conn.getLastModified();
+        s.etag         = conn.getHeaderField("ETag");
+      }
+      else if (code != HttpURLConnection.HTTP_NOT_FOUND && code != HttpURLConnection.HTTP_GONE)
+      {
+        throw new FSException("http HEAD " + url + " failed: " + code + " " + conn.getResponseMessage());
+      }
+      this.stats.put(url,s);
+      return s;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      discard(conn);
+    }
+  }
+
+  /**
+   * Liefert einen InputStream auf die Datei.
+   * @param url URL der Datei.
+   * @param offset Position, ab der gelesen werden soll. Wird per "Range"-Header angefordert.
+   * @return der InputStream.
+   * @throws FSException
+   */
+  InputStream getInputStream(String url, long offset) throws FSException
+  {
+    HttpURLConnection conn = null;
+    try
+    {
+      Roundtrips.count("http","get");
+      conn = open(url,"GET");
+      if (offset > 0L)
+        conn.setRequestProperty("Range","bytes=" + offset + "-");
+
+      int code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+        throw new FileNotFoundException("Datei " + url + " wurde nicht gefunden");
+
+      if (code == 416)
+      {
+        // Range nicht erfuellbar, der Offset liegt hinter dem Dateiende
+        discard(conn);
+        return new java.io.ByteArrayInputStream(new byte[0]);
+      }
+
+      if (code == HttpURLConnection.HTTP_PARTIAL)
+      {
+        String range = conn.getHeaderField("Content-Range");
+        if (range == null || !range.startsWith("bytes " + offset + "-"))
+          throw new IOException("unexpected content range for " + url + ": " + range);
+        return conn.getInputStream();
+      }
+
+      if (code != HttpURLConnection.HTTP_OK)
+        throw new IOException("http GET " + url + " failed: " + code + " " + conn.getResponseMessage());
+
+      InputStream is = conn.getInputStream();
+      if (offset > 0L)
+      {
+        // Der Server unterstuetzt keine Range-Requests
+        Logger.debug("server ignored range request for " + url + ", skipping " + offset + " bytes");
+        long n = offset;
+        while (n > 0L)
+        {
+          long skipped = is.skip(n);
+          if (skipped <= 0L)
+          {
+            if (is.read() == -1)
+              break;
+            skipped = 1L;
+          }
+          n -= skipped;
+        }
+      }
+      return is;
+    }
+    catch (IOException e)
+    {
+      discard(conn);
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Liefert die sortierte Liste der Dateien oder Verzeichnisse.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @param dirs true, wenn Verzeichnisse geliefert werden sollen, sonst Dateien.
+   * @return Liste der Namen oder NULL, wenn das Verzeichnis nicht existiert.
+   * @throws FSException
+   */
+  private String[] _list(String dir, FilenameFilter filter, boolean dirs) throws FSException
+  {
+    String url = getUrl(dir);
+    Index index = getIndex(url);
+    if (index == null)
+      return null;
+
+    return index.entries.getNames(dirs,filter,new java.io.File(url));
+  }
+
+  /**
+   * Liefert den Inhalt der Index-Seite des Verzeichnisses.
+   * Ist die Seite bereits bekannt, wird sie per bedingtem GET revalidiert.
+   * @param url URL des Verzeichnisses mit Slash am Ende.
+   * @return der Inhalt oder NULL, wenn das Verzeichnis nicht existiert.
+   * @throws FSException
+   */
+  private Index getIndex(String url) throws FSException
+  {
+    Index cached = this.dirs.get(url);
+    HttpURLConnection conn = null;
+    InputStream is = null;
+    try
+    {
+      Roundtrips.count("http","list");
+      conn = open(url,"GET");
+      revalidate(conn,cached == null ? null : cached.etag,cached == null ? 0L : cached.lastModified);
+
+      int code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+      {
+        Logger.debug("index of " + url + " not modified");
+        return cached;
+      }
+      if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+      {
+        this.dirs.remove(url);
+        return null;
+      }
+      if (code != HttpURLConnection.HTTP_OK)
+        throw new FSException("http GET " + url + " failed: " + code + " " + conn.getResponseMessage());
+
+      is = conn.getInputStream();
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int read;
+      while ((read = is.read(buf)) != -1)
+        bos.write(buf,0,read);
+
+      Index index = new Index();
+      index.etag         = conn.getHeaderField("ETag");
+      index.lastModified = conn.getLastModified();
+      index.entries      = parse(conn.getURL().toString(),new String(bos.toByteArray(),getCharset(conn.getContentType())));
+      this.dirs.put(url,index);
+      return index;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      if (is != null)
+      {
+        try
+        {
+          is.close();
+        }
+        catch (Exception e)
+        {
+          Logger.error("error while closing stream",e);
+        }
+      }
+      else
+      {
+        discard(conn);
+      }
+    }
+  }
+
+  /**
+   * Ermittelt die Eintraege aus der Index-Seite.
+   * Beruecksichtigt werden nur Links auf direkte Kinder des Verzeichnisses.
+   * @param url URL des Verzeichnisses.
+   * @param html die Index-Seite.
+   * @return sortierte Liste der Eintraege.
+   */
+  private static Listing parse(String url, String html)
+  {
+    URI dir = URI.create(url);
+    String path = dir.getRawPath();
+    if (!path.endsWith("/"))
+      path += "/";
+
+    SimpleDateFormat df = new SimpleDateFormat("dd-MMM-yyyy HH:mm",Locale.US);
+    df.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+    Listing entries = new Listing();
+    Set<String> names = new HashSet<String>();
+    Matcher m = HREF.matcher(html);
+    while (m.find())
+    {
+      String href = m.group(1) != null ? m.group(1) : (m.group(2) != null ? m.group(2) : m.group(3));
+      href = href.replace("&amp;","&").trim();
+      if (href.length() == 0 || href.startsWith("?") || href.startsWith("#"))
+        continue;
+
+      String p = null;
+      try
+      {
+        URI u = dir.resolve(href);
+        if (!dir.getScheme().equalsIgnoreCase(u.getScheme()) || !dir.getHost().equalsIgnoreCase(u.getHost()) || dir.getPort() != u.getPort())
+          continue;
+        p = u.getRawPath();
+      }
+      catch (Exception e)
+      {
+        continue;
+      }
+
+      if (p == null || !p.startsWith(path) || p.length() == path.length())
+        continue;
+
+      String name = p.substring(path.length());
+      boolean directory = name.endsWith("/");
+      if (directory)
+        name = name.substring(0,name.length() - 1);
+      if (name.length() == 0 || name.indexOf('/') != -1)
+        continue;
+
+      name = decode(name);
+      if (".".equals(name) || "..".equals(name) || !names.add(name))
+        continue;
+
+      long length       = -1L;
+      long lastModified = 0L;
+
+      // Bei nginx folgen Datum und exakte Groesse als Text hinter dem Link
+      int end = html.indexOf("</a>",m.end());
+      if (!directory && end != -1)
+      {
+        int eol = html.indexOf('\n',end);
+        Matcher info = INFO.matcher(html.substring(end + 4,eol == -1 ? html.length() : eol));
+        if (info.find())
+        {
+          try
+          {
+            lastModified = df.parse(info.group(1)).getTime();
+            length       = Long.parseLong(info.group(2));
+          }
+          catch (Exception ex)
+          {
+            length = -1L;
+          }
+        }
+      }
+      entries.add(name,directory,length,lastModified);
+    }
+    return entries;
+  }
+
+  /**
+   * Oeffnet eine Verbindung zu der URL.
+   * @param url die URL.
+   * @param method die HTTP-Methode.
+   * @return die Verbindung.
+   * @throws IOException
+   */
+  private HttpURLConnection open(String url, String method) throws IOException
+  {
+    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    conn.setRequestMethod(method);
+    conn.setConnectTimeout(TIMEOUT);
+    conn.setReadTimeout(TIMEOUT);
+    conn.setUseCaches(false);
+    conn.setInstanceFollowRedirects(true);
+    if (this.auth != null)
+      conn.setRequestProperty("Authorization",this.auth);
+    return conn;
+  }
+
+  /**
+   * Setzt die Header fuer einen bedingten Request.
+   * @param conn die Verbindung.
+   * @param etag der bekannte ETag oder NULL.
+   * @param lastModified das bekannte Aenderungsdatum oder 0.
+   */
+  private static void revalidate(HttpURLConnection conn, String etag, long lastModified)
+  {
+    if (etag != null)
+      conn.setRequestProperty("If-None-Match",etag);
+    else if (lastModified > 0L)
+      conn.setIfModifiedSince(lastModified);
+  }
+
+  /**
+   * Liest den Rest der Antwort und schliesst den Stream, damit das JDK die
+   * Verbindung wiederverwenden kann.
+   * @param conn die Verbindung.
+   */
+  private static void discard(HttpURLConnection conn)
+  {
+    if (conn == null)
+      return;
+
+    InputStream is = null;
+    try
+    {
+      is = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+      if (is == null)
+        return;
+      byte[] buf = new byte[4096];
+      while (is.read(buf) != -1)
+        ; // Rest verwerfen
+    }
+    catch (Exception e)
+    {
+      // Verbindung ist dann nicht wiederverwendbar
+    }
+    finally
+    {
+      if (is != null)
+      {
+        try
+        {
+          is.close();
+        }
+        catch (Exception e)
+        {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Liefert die URL des Verzeichnisses.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return URL des Verzeichnisses mit Slash am Ende.
+   */
+  private String getUrl(String dir)
+  {
+    dir = clean(dir);
+    if (dir == null || dir.length() == 0)
+      return this.base;
+
+    StringBuilder sb = new StringBuilder(this.base);
+    for (String s:dir.split("/"))
+    {
+      if (s.length() == 0 || ".".equals(s))
+        continue;
+      sb.append(encode(s)).append('/');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Kodiert ein Pfad-Element fuer die Verwendung in der URL.
+   * @param s das Pfad-Element.
+   * @return das kodierte Pfad-Element.
+   */
+  private static String encode(String s)
+  {
+    try
+    {
+      return URLEncoder.encode(s,"UTF-8").replace("+","%20");
+    }
+    catch (Exception e)
+    {
+      return s;
+    }
+  }
+
+  /**
+   * Dekodiert ein Pfad-Element aus der URL.
+   * @param s das kodierte Pfad-Element.
+   * @return das dekodierte Pfad-Element.
+   */
+  private static String decode(String s)
+  {
+    try
+    {
+      return URLDecoder.decode(s.replace("+","%2B"),"UTF-8");
+    }
+    catch (Exception e)
+    {
+      return s;
+    }
+  }
+
+  /**
+   * Ermittelt den Zeichensatz aus dem Content-Type.
+   * @param contentType der Content-Type.
+   * @return der Zeichensatz. Default: UTF-8.
+   */
+  private static Charset getCharset(String contentType)
+  {
+    if (contentType != null)
+    {
+      int i = contentType.toLowerCase().indexOf("charset=");
+      if (i != -1)
+      {
+        try
+        {
+          return Charset.forName(contentType.substring(i + 8).replace("\"","").trim());
+        }
+        catch (Exception e)
+        {
+          Logger.debug("unknown charset in content type " + contentType);
+        }
+      }
+    }
+    return UTF8;
+  }
+
+  /**
+   * Kodiert die Daten im Base64-Format.
+   * @param data die Daten.
+   * @return die kodierten Daten.
+   */
+  private static String base64(byte[] data)
+  {
+    final String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    StringBuilder sb = new StringBuilder();
+    for (int i=0;i<data.length;i+=3)
+    {
+      int b = (data[i] & 0xff) << 16;
+      if (i + 1 < data.length) b |= (data[i + 1] & 0xff) << 8;
+      if (i + 2 < data.length) b |= (data[i + 2] & 0xff);
+      sb.append(chars.charAt((b >> 18) & 0x3f));
+      sb.append(chars.charAt((b >> 12) & 0x3f));
+      sb.append(i + 1 < data.length ? chars.charAt((b >> 6) & 0x3f) : '=');
+      sb.append(i + 2 < data.length ? chars.charAt(b & 0x3f) : '=');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Meta-Daten einer Datei.
+   */
+  static class Stat
+  {
+    boolean exists    = false;
+    long length       = 0L;
+    long lastModified = 0L;
+    String etag       = null;
+  }
+
+  /**
+   * Inhalt einer Index-Seite.
+   */
+  private static class Index
+  {
+    private String etag           = null;
+    private long lastModified     = 0L;
+    private Listing entries       = null;
+  }
+
+  /**
+   * LRU-Cache mit begrenzter Groesse.
+   * @param <T> der Typ der Werte.
+   */
+  private static class Cache<T> extends LinkedHashMap<String,T>
+  {
+    private final static long serialVersionUID = 1L;
+    private int max = 0;
+
+    /**
+     * ct.
+     * @param max maximale Anzahl der Eintraege.
+     */
+    private Cache(int max)
+    {
+      super(16,0.75f,true);
+      this.max = max;
+    }
+
+    /**
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    protected boolean removeEldestEntry(Map.Entry<String,T> eldest)
+    {
+      return size() > this.max;
+    }
+  }
+}
@@ -0,0 +1,439 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Wrapper, der die Operationen einer Datei in den {@link Metrics} erfasst
+ * und an den {@link Tracer} meldet.
+ * Bei den Streams wird das Oeffnen separat als "open" erfasst. Ausserdem
+ * die Zeit vom Oeffnen bis zum Schliessen sowie die Anzahl der uebertragenen Bytes.
+ */
+class InstrumentedFile implements File
+{
+  private InstrumentedFileSystem fs = null;
+  private File file                 = null;
+  private String dir                = null;
+  private String name               = null;
+
+  /**
+   * ct.
+   * @param fs das instrumentierte File-System.
+   * @param file die zu instrumentierende Datei.
+   * @param dir das Verzeichnis der Datei. Kann NULL sein.
+   * @param name der Name der Datei.
+   */
+  InstrumentedFile(InstrumentedFileSystem fs, File file, String dir, String name)
+  {
+    this.fs   = fs;
+    this.file = file;
+    this.dir  = dir;
+    this.name = name;
+  }
+
+  /**
+   * Liefert die instrumentierte Datei.
+   * @return die Datei.
+   */
+  File getDelegate()
+  {
+    return this.file;
+  }
+
+  /**
+   * Liefert die eigentliche Datei hinter einer instrumentierten Datei.
+   * @param f die Datei.
+   * @return die eigentliche Datei bzw. die Datei selbst, wenn sie nicht instrumentiert ist.
+   */
+  static File unwrap(File f)
+  {
+    while (f instanceof InstrumentedFile)
+      f = ((InstrumentedFile) f).getDelegate();
+    return f;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    Probe probe = this.fs.start("stat",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      boolean b = this.file.exists();
+      ok = true;
+      return b;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    Probe probe = this.fs.start("delete",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      this.file.delete();
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    Probe probe = this.fs.start("stat",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      long l = this.file.length();
+      ok = true;
+      return l;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    Probe probe = this.fs.start("stat",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      long l = this.file.lastModified();
+      ok = true;
+      return l;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    Probe probe = this.fs.start("stat",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      FileInfo info = this.file.stat();
+      ok = true;
+      return info;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    return getOutputStream(false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    Probe transfer = this.fs.start("write",this.dir,this.name);
+    Probe probe    = this.fs.start("open",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      OutputStream os = new CountingOutputStream(append ? this.file.getOutputStream(true) : this.file.getOutputStream(),transfer);
+      ok = true;
+      return os;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+      if (!ok)
+        Probe.end(transfer,0L,false);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    Probe transfer = this.fs.start("read",this.dir,this.name);
+    Probe probe    = this.fs.start("open",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      InputStream is = new CountingInputStream(offset > 0L ? this.file.getInputStream(offset) : this.file.getInputStream(),transfer);
+      ok = true;
+      return is;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+      if (!ok)
+        Probe.end(transfer,0L,false);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(String name) throws FSException
+  {
+    Probe probe = this.fs.start("rename",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      this.file.rename(name);
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    Probe probe = this.fs.start("move",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      this.file.move(unwrap(target));
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    Probe probe = this.fs.start("copy",this.dir,this.name);
+    boolean ok = false;
+    try
+    {
+      this.file.copy(unwrap(target));
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * Zaehlt die gelesenen Bytes und erfasst sie beim Schliessen.
+   */
+  private class CountingInputStream extends FilterInputStream
+  {
+    private Probe probe    = null;
+    private long bytes     = 0L;
+    private boolean ok     = true;
+    private boolean closed = false;
+
+    /**
+     * ct.
+     * @param is
+     * @param probe
+     */
+    private CountingInputStream(InputStream is, Probe probe)
+    {
+      super(is);
+      this.probe = probe;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read()
+     */
+    public int read() throws IOException
+    {
+      try
+      {
+        int b = super.read();
+        if (b != -1)
+          this.bytes++;
+        return b;
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      try
+      {
+        int read = super.read(b,off,len);
+        if (read > 0)
+          this.bytes += read;
+        return read;
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+    }
+
+    /**
+     * @see java.io.FilterInputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+      try
+      {
+        super.close();
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+      finally
+      {
+        Probe.end(this.probe,this.bytes,this.ok);
+      }
+    }
+  }
+
+  /**
+   * Zaehlt die geschriebenen Bytes und erfasst sie beim Schliessen.
+   */
+  private class CountingOutputStream extends FilterOutputStream
+  {
+    private Probe probe    = null;
+    private long bytes     = 0L;
+    private boolean ok     = true;
+    private boolean closed = false;
+
+    /**
+     * ct.
+     * @param os
+     * @param probe
+     */
+    private CountingOutputStream(OutputStream os, Probe probe)
+    {
+      super(os);
+      this.probe = probe;
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#write(int)
+     */
+    public void write(int b) throws IOException
+    {
+      try
+      {
+        this.out.write(b);
+        this.bytes++;
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+    }
+
+    /**
+     * FilterOutputStream wuerde hier byteweise schreiben.
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      try
+      {
+        this.out.write(b,off,len);
+        this.bytes += len;
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+      try
+      {
+        super.close();
+      }
+      catch (IOException e)
+      {
+        this.ok = false;
+        throw e;
+      }
+      finally
+      {
+        Probe.end(this.probe,this.bytes,this.ok);
+      }
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.net.URI;
+
+/**
+ * Wrapper, der die Operationen eines File-Systems in den {@link Metrics} erfasst
+ * und an den {@link Tracer} meldet.
+ * Wird von der {@link FileSystemFactory} verwendet, wenn die Metriken oder das Tracing aktiviert sind.
+ */
+class InstrumentedFileSystem implements FileSystem
+{
+  private FileSystem fs  = null;
+  private String backend = null;
+  private String host    = "";
+
+  /**
+   * ct.
+   * @param fs das zu instrumentierende File-System.
+   */
+  InstrumentedFileSystem(FileSystem fs)
+  {
+    this.fs      = fs;
+    this.backend = fs.getClass().getSimpleName();
+  }
+
+  /**
+   * Liefert das instrumentierte File-System.
+   * @return das File-System.
+   */
+  FileSystem getDelegate()
+  {
+    return this.fs;
+  }
+
+  /**
+   * Liefert das eigentliche File-System hinter einem instrumentierten File-System.
+   * @param fs das File-System.
+   * @return das eigentliche File-System bzw. das File-System selbst, wenn es nicht instrumentiert ist.
+   */
+  static FileSystem unwrap(FileSystem fs)
+  {
+    while (fs instanceof InstrumentedFileSystem)
+      fs = ((InstrumentedFileSystem) fs).getDelegate();
+    return fs;
+  }
+
+  /**
+   * Beginnt die Messung einer Operation.
+   * @param operation Name der Operation.
+   * @param dir Verzeichnis. Kann NULL sein.
+   * @param name Name der Datei. Kann NULL sein.
+   * @return die Messung oder NULL.
+   */
+  Probe start(String operation, String dir, String name)
+  {
+    String path = dir;
+    if (name != null)
+      path = (dir == null || dir.length() == 0) ? name : (dir.endsWith("/") ? dir + name : dir + "/" + name);
+    return Probe.start(this.backend,this.host,operation,path);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    this.host = uri.getHost() == null ? "" : uri.getHost();
+    Probe probe = start("connect",uri.getPath(),null);
+    boolean ok = false;
+    try
+    {
+      this.fs.init(uri);
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    Probe probe = start("create",dir,filename);
+    boolean ok = false;
+    try
+    {
+      File f = new InstrumentedFile(this,this.fs.create(dir,filename),dir,filename);
+      ok = true;
+      return f;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(String dir, FilenameFilter filter) throws FSException
+  {
+    Probe probe = start("list",dir,null);
+    boolean ok = false;
+    try
+    {
+      String[] result = this.fs.list(dir,filter);
+      ok = true;
+      return result;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    Probe probe = start("glob",dir,pattern);
+    boolean ok = false;
+    try
+    {
+      String[] result = this.fs.glob(dir,pattern);
+      ok = true;
+      return result;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(String dir, FilenameFilter filter) throws FSException
+  {
+    Probe probe = start("listDirs",dir,null);
+    boolean ok = false;
+    try
+    {
+      String[] result = this.fs.listDirs(dir,filter);
+      ok = true;
+      return result;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    Probe probe = start("listInfo",dir,null);
+    boolean ok = false;
+    try
+    {
+      FileInfo[] result = this.fs.listInfo(dir,filter);
+      ok = true;
+      return result;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public void close() throws FSException
+  {
+    Probe probe = start("close",null,null);
+    boolean ok = false;
+    try
+    {
+      this.fs.close();
+      ok = true;
+    }
+    finally
+    {
+      Probe.end(probe,0L,ok);
+    }
+  }
+}
@@ -0,0 +1,365 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Kompakte, nach Namen sortierte Liste von Dateien und Verzeichnissen.
+ * Fuer grosse Verzeichnisse ist ein Array von {@link FileInfo} samt Strings
+ * sehr speicherintensiv. Hier werden die Namen stattdessen UTF-8-kodiert
+ * hintereinander in einem gemeinsamen Byte-Array abgelegt, Groessen und Daten
+ * in long-Arrays und die Verzeichnis-Markierung in einem BitSet. Je Eintrag
+ * werden damit neben dem Namen nur etwa 20 Bytes benoetigt.
+ * Die Eintraege werden per {@link #add(String, boolean, long, long)} gesammelt
+ * und beim ersten lesenden Zugriff sortiert. Danach ist die Liste unveraenderlich
+ * und kann von mehreren Threads gleichzeitig gelesen werden.
+ * Sortiert wird nach den UTF-8-Bytes der Namen, was der Reihenfolge der
+ * Unicode-Codepoints entspricht.
+ */
+public class Listing
+{
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  private int size          = 0;
+  private byte[] arena      = new byte[1024];
+  private int used          = 0;
+  private int[] offsets     = new int[17];
+  private long[] lengths    = new long[16];
+  private long[] modified   = new long[16];
+  private BitSet dirs       = new BitSet();
+  private volatile boolean sorted = false;
+
+  /**
+   * ct.
+   * Erzeugt eine leere Liste.
+   */
+  public Listing()
+  {
+  }
+
+  /**
+   * ct.
+   * @param infos die Dateien und Verzeichnisse.
+   */
+  public Listing(FileInfo[] infos)
+  {
+    if (infos == null)
+      return;
+    for (FileInfo i:infos)
+      add(i.getName(),i.isDirectory(),i.getLength(),i.getLastModified());
+  }
+
+  /**
+   * Fuegt einen Eintrag hinzu.
+   * @param name der Name ohne Pfad.
+   * @param directory true, wenn es sich um ein Verzeichnis handelt.
+   * @param length Groesse in Bytes.
+   * @param lastModified Datum der letzten Aenderung in Millisekunden.
+   * @return die Liste selbst.
+   * @throws IllegalStateException wenn die Liste bereits gelesen wurde.
+   */
+  public synchronized Listing add(String name, boolean directory, long length, long lastModified)
+  {
+    if (this.sorted)
+      throw new IllegalStateException("listing is read-only once it has been accessed");
+
+    byte[] b = name.getBytes(UTF8);
+    if (this.used + b.length > this.arena.length)
+      this.arena = Arrays.copyOf(this.arena,Math.max(this.arena.length * 2,this.used + b.length));
+    if (this.size == this.lengths.length)
+    {
+      int n = this.size * 2;
+      this.offsets  = Arrays.copyOf(this.offsets,n + 1);
+      this.lengths  = Arrays.copyOf(this.lengths,n);
+      this.modified = Arrays.copyOf(this.modified,n);
+    }
+
+    System.arraycopy(b,0,this.arena,this.used,b.length);
+    this.used += b.length;
+    this.lengths[this.size]  = length;
+    this.modified[this.size] = lastModified;
+    if (directory)
+      this.dirs.set(this.size);
+    this.size++;
+    this.offsets[this.size] = this.used;
+    return this;
+  }
+
+  /**
+   * Liefert die Anzahl der Eintraege.
+   * @return Anzahl der Eintraege.
+   */
+  public int size()
+  {
+    sort();
+    return this.size;
+  }
+
+  /**
+   * Liefert den Namen eines Eintrages.
+   * @param i Position.
+   * @return der Name.
+   */
+  public String getName(int i)
+  {
+    sort();
+    return new String(this.arena,this.offsets[i],this.offsets[i + 1] - this.offsets[i],UTF8);
+  }
+
+  /**
+   * Prueft, ob der Eintrag ein Verzeichnis ist.
+   * @param i Position.
+   * @return true, wenn es ein Verzeichnis ist.
+   */
+  public boolean isDirectory(int i)
+  {
+    sort();
+    return this.dirs.get(i);
+  }
+
+  /**
+   * Liefert die Groesse eines Eintrages.
+   * @param i Position.
+   * @return Groesse in Bytes.
+   */
+  public long getLength(int i)
+  {
+    sort();
+    return this.lengths[i];
+  }
+
+  /**
+   * Liefert das Datum der letzten Aenderung eines Eintrages.
+   * @param i Position.
+   * @return Datum in Millisekunden.
+   */
+  public long getLastModified(int i)
+  {
+    sort();
+    return this.modified[i];
+  }
+
+  /**
+   * Liefert die Meta-Daten eines Eintrages als eigenes Objekt.
+   * @param i Position.
+   * @return die Meta-Daten.
+   */
+  public FileInfo get(int i)
+  {
+    return new FileInfo(getName(i),isDirectory(i),getLength(i),getLastModified(i));
+  }
+
+  /**
+   * Sucht einen Eintrag per binaerer Suche.
+   * @param name der Name.
+   * @return Position des Eintrages oder ein negativer Wert analog zu
+   * {@link Arrays#binarySearch(Object[], Object)}, wenn er nicht existiert.
+   */
+  public int indexOf(String name)
+  {
+    sort();
+    byte[] key = name.getBytes(UTF8);
+    int lo = 0;
+    int hi = this.size - 1;
+    while (lo <= hi)
+    {
+      int mid = (lo + hi) >>> 1;
+      int c = compare(this.arena,this.offsets[mid],this.offsets[mid + 1],key,0,key.length);
+      if (c < 0)
+        lo = mid + 1;
+      else if (c > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -(lo + 1);
+  }
+
+  /**
+   * Prueft, ob ein Eintrag existiert.
+   * @param name der Name.
+   * @return true, wenn er existiert.
+   */
+  public boolean contains(String name)
+  {
+    return indexOf(name) >= 0;
+  }
+
+  /**
+   * Vergleicht die Namen zweier Eintraege, ohne Strings zu erzeugen.
+   * @param i Position in dieser Liste.
+   * @param other die andere Liste.
+   * @param j Position in der anderen Liste.
+   * @return Ergebnis des Vergleichs analog zu {@link Comparable#compareTo(Object)}.
+   */
+  public int compare(int i, Listing other, int j)
+  {
+    sort();
+    other.sort();
+    return compare(this.arena,this.offsets[i],this.offsets[i + 1],other.arena,other.offsets[j],other.offsets[j + 1]);
+  }
+
+  /**
+   * Liefert die Namen der Dateien oder Verzeichnisse.
+   * @param directories true, wenn Verzeichnisse geliefert werden sollen, sonst Dateien.
+   * @param filter optionaler Filter.
+   * @param dir das Verzeichnis, das an den Filter uebergeben wird.
+   * @return die Namen.
+   */
+  public String[] getNames(boolean directories, FilenameFilter filter, java.io.File dir)
+  {
+    sort();
+    List<String> list = new ArrayList<String>();
+    for (int i=0;i<this.size;++i)
+    {
+      if (this.dirs.get(i) != directories)
+        continue;
+      String name = getName(i);
+      if (filter == null || filter.accept(dir,name))
+        list.add(name);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Liefert die Eintraege als Array von Meta-Daten.
+   * @param filter optionaler Filter.
+   * @param dir das Verzeichnis, das an den Filter uebergeben wird.
+   * @return die Meta-Daten.
+   */
+  public FileInfo[] toArray(FilenameFilter filter, java.io.File dir)
+  {
+    sort();
+    List<FileInfo> list = new ArrayList<FileInfo>();
+    for (int i=0;i<this.size;++i)
+    {
+      String name = getName(i);
+      if (filter == null || filter.accept(dir,name))
+        list.add(new FileInfo(name,this.dirs.get(i),this.lengths[i],this.modified[i]));
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * Sortiert die Eintraege beim ersten lesenden Zugriff und gibt ungenutzten Speicher frei.
+   */
+  private void sort()
+  {
+    if (this.sorted)
+      return;
+
+    synchronized (this)
+    {
+      if (this.sorted)
+        return;
+
+      int[] order = new int[this.size];
+      for (int i=0;i<order.length;++i)
+        order[i] = i;
+      mergeSort(order,new int[order.length],0,order.length);
+
+      byte[] a    = new byte[this.used];
+      int[] o     = new int[this.size + 1];
+      long[] l    = new long[this.size];
+      long[] m    = new long[this.size];
+      BitSet d    = new BitSet(this.size);
+      int pos     = 0;
+      for (int i=0;i<this.size;++i)
+      {
+        int k = order[i];
+        int len = this.offsets[k + 1] - this.offsets[k];
+        System.arraycopy(this.arena,this.offsets[k],a,pos,len);
+        pos += len;
+        o[i + 1] = pos;
+        l[i] = this.lengths[k];
+        m[i] = this.modified[k];
+        if (this.dirs.get(k))
+          d.set(i);
+      }
+      this.arena    = a;
+      this.offsets  = o;
+      this.lengths  = l;
+      this.modified = m;
+      this.dirs     = d;
+      this.sorted   = true;
+    }
+  }
+
+  /**
+   * Sortiert die Positionen nach den Namen der Eintraege.
+   * Merge-Sort auf einem int-Array, um bei grossen Listen kein Integer-Objekt je Eintrag zu erzeugen.
+   * @param a die Positionen.
+   * @param tmp Hilfs-Array gleicher Groesse.
+   * @param from erste Position (inklusive).
+   * @param to letzte Position (exklusive).
+   */
+  private void mergeSort(int[] a, int[] tmp, int from, int to)
+  {
+    if (to - from < 2)
+      return;
+    int mid = (from + to) >>> 1;
+    mergeSort(a,tmp,from,mid);
+    mergeSort(a,tmp,mid,to);
+    if (compare(a[mid - 1],a[mid]) <= 0)
+      return;
+
+    System.arraycopy(a,from,tmp,from,to - from);
+    int i = from;
+    int j = mid;
+    for (int k=from;k<to;++k)
+    {
+      if (j >= to || (i < mid && compare(tmp[i],tmp[j]) <= 0))
+        a[k] = tmp[i++];
+      else
+        a[k] = tmp[j++];
+    }
+  }
+
+  /**
+   * Vergleicht die Namen zweier Eintraege vor der Sortierung.
+   * @param i Index des ersten Eintrages.
+   * @param j Index des zweiten Eintrages.
+   * @return Ergebnis des Vergleichs.
+   */
+  private int compare(int i, int j)
+  {
+    return compare(this.arena,this.offsets[i],this.offsets[i + 1],this.arena,this.offsets[j],this.offsets[j + 1]);
+  }
+
+  /**
+   * Vergleicht zwei Byte-Folgen vorzeichenlos.
+   * @param a erste Byte-Folge.
+   * @param aFrom Beginn der ersten Folge.
+   * @param aTo Ende der ersten Folge (exklusive).
+   * @param b zweite Byte-Folge.
+   * @param bFrom Beginn der zweiten Folge.
+   * @param bTo Ende der zweiten Folge (exklusive).
+   * @return Ergebnis des Vergleichs.
+   */
+  private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo)
+  {
+    int n = Math.min(aTo - aFrom,bTo - bFrom);
+    for (int k=0;k<n;++k)
+    {
+      int c = (a[aFrom + k] & 0xff) - (b[bFrom + k] & 0xff);
+      if (c != 0)
+        return c;
+    }
+    return (aTo - aFrom) - (bTo - bFrom);
+  }
+}
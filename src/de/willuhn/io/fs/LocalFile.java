@@ -16,6 +16,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import de.willuhn.logging.Logger;
 
@@ -38,9 +42,11 @@ public class LocalFile implements File
     {
       Logger.debug("checking, if dir " + path + " exists");
       java.io.File dir = new java.io.File(path);
+      Roundtrips.count("file","stat");
       if (!dir.exists())
       {
         Logger.debug("creating dir " + dir.getAbsolutePath());
+        Roundtrips.count("file","mkdir");
         dir.mkdirs();
       }
     }
@@ -52,10 +58,19 @@ public class LocalFile implements File
    * @see de.willuhn.io.fs.File#getOutputStream()
    */
   public OutputStream getOutputStream() throws FSException
+  {
+    return getOutputStream(false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
   {
     try
     {
-      return new FileOutputStream(this.file);
+      Roundtrips.count("file","open");
+      return new FileOutputStream(this.file,append);
     }
     catch (IOException e)
     {
@@ -68,6 +83,7 @@ public class LocalFile implements File
    */
   public boolean exists() throws FSException
   {
+    Roundtrips.count("file","stat");
     return this.file.exists();
   }
 
@@ -75,10 +91,22 @@ public class LocalFile implements File
    * @see de.willuhn.io.fs.File#getInputStream()
    */
   public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
   {
     try
     {
-      return new FileInputStream(this.file);
+      Roundtrips.count("file","open");
+      FileInputStream fis = new FileInputStream(this.file);
+      if (offset > 0L)
+        fis.getChannel().position(offset);
+      return fis;
     }
     catch (IOException e)
     {
@@ -93,6 +121,7 @@ public class LocalFile implements File
   {
     if (!exists())
       return;
+    Roundtrips.count("file","delete");
     this.file.delete();
   }
 
@@ -101,6 +130,7 @@ public class LocalFile implements File
    */
   public long length() throws FSException
   {
+    Roundtrips.count("file","stat");
     return this.file.length();
   }
 
@@ -109,9 +139,31 @@ public class LocalFile implements File
    */
   public long lastModified() throws FSException
   {
+    Roundtrips.count("file","stat");
     return this.file.lastModified();
   }
 
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    try
+    {
+      Roundtrips.count("file","stat");
+      BasicFileAttributes a = Files.readAttributes(this.file.toPath(),BasicFileAttributes.class);
+      return new FileInfo(this.file.getName(),a.isDirectory(),a.size(),a.lastModifiedTime().toMillis());
+    }
+    catch (NoSuchFileException e)
+    {
+      return null;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * @see de.willuhn.io.fs.File#rename(java.lang.String)
    */
@@ -120,7 +172,67 @@ public class LocalFile implements File
     if (name == null || name.length() == 0)
       throw new FSException("no filename given");
     
+    Roundtrips.count("file","rename");
     this.file.renameTo(new java.io.File(this.file.getParent(),name));
   }
 
+  /**
+   * Liegen Quelle und Ziel auf verschiedenen Laufwerken, wird die Datei
+   * kopiert und anschliessend geloescht.
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    java.io.File f = getFile(target);
+    try
+    {
+      Roundtrips.count("file","rename");
+      Files.move(this.file.toPath(),f.toPath(),StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    java.io.File f = getFile(target);
+    try
+    {
+      Roundtrips.count("file","copy");
+      Files.copy(this.file.toPath(),f.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Liefert die lokale Datei der Ziel-Datei und legt ihr Verzeichnis bei Bedarf an.
+   * @param target die Ziel-Datei.
+   * @return die lokale Datei.
+   * @throws FSException wenn es keine lokale Datei ist.
+   */
+  private static java.io.File getFile(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof LocalFile))
+      throw new FSException("target is not a local file");
+
+    java.io.File f = ((LocalFile) t).file;
+    java.io.File dir = f.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists())
+    {
+      Logger.debug("creating dir " + dir.getAbsolutePath());
+      Roundtrips.count("file","mkdir");
+      dir.mkdirs();
+    }
+    return f;
+  }
+
 }
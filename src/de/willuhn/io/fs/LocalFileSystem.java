@@ -12,7 +12,13 @@
 package de.willuhn.io.fs;
 
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 
 import de.willuhn.logging.Logger;
 
@@ -92,6 +98,7 @@ public class LocalFileSystem extends AbstractFileSystem
       public boolean accept(java.io.File dir, String name)
       {
         java.io.File test = new java.io.File(dir,name);
+        Roundtrips.count("file","stat");
         return test.isFile() && (filter == null || filter.accept(dir,name));
       }
     });
@@ -118,11 +125,84 @@ public class LocalFileSystem extends AbstractFileSystem
       public boolean accept(java.io.File dir, String name)
       {
         java.io.File test = new java.io.File(dir,name);
+        Roundtrips.count("file","stat");
         return test.isDirectory() && (filter == null || filter.accept(dir,name));
       }
     });
   }
 
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    Roundtrips.count("file","list");
+    java.io.File[] files = getDir(dir).listFiles(filter);
+    if (files == null)
+      return null;
+
+    ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+    for (int i=0;i<files.length;++i)
+    {
+      java.io.File f = files[i];
+      Roundtrips.count("file","stat");
+      boolean isDir = f.isDirectory();
+      if (!isDir && !f.isFile())
+        continue;
+      list.add(new FileInfo(f.getName(),isDir,isDir ? 0L : f.length(),f.lastModified()));
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * Das Muster wird bereits beim Lesen des Verzeichnisses geprueft, so dass
+   * nur fuer passende Eintraege ermittelt werden muss, ob es Dateien sind.
+   * @see de.willuhn.io.fs.AbstractFileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    final GlobFilter glob = new GlobFilter(pattern);
+    DirectoryStream<Path> ds = null;
+    try
+    {
+      Roundtrips.count("file","list");
+      ds = Files.newDirectoryStream(getDir(dir).toPath(),new DirectoryStream.Filter<Path>()
+      {
+        public boolean accept(Path p)
+        {
+          return glob.matches(p.getFileName().toString());
+        }
+      });
+      ArrayList<String> list = new ArrayList<String>();
+      for (Path p:ds)
+      {
+        Roundtrips.count("file","stat");
+        if (Files.isRegularFile(p))
+          list.add(p.getFileName().toString());
+      }
+      return list.toArray(new String[list.size()]);
+    }
+    catch (NoSuchFileException e)
+    {
+      return null;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      if (ds != null)
+      {
+        try
+        {
+          ds.close();
+        }
+        catch (IOException e) {/*ignore */}
+      }
+    }
+  }
+
   /**
    * Liefert eine Liste von Dateien oder Verzeichnissen.
    * @param dir Pfad.
@@ -132,21 +212,25 @@ public class LocalFileSystem extends AbstractFileSystem
    */
   private String[] _list(String dir, final FilenameFilter filter) throws FSException
   {
-    java.io.File file = null;
-    
+    Roundtrips.count("file","list");
+    return getDir(dir).list(filter);
+  }
+
+  /**
+   * Liefert das Verzeichnis.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return das Verzeichnis.
+   */
+  java.io.File getDir(String dir)
+  {
     if (dir != null && dir.length() > 0)
     {
       dir = clean(dir);
       if (dir.startsWith("/"))           // Slash am Anfang entfernen
         dir = dir.substring(1);
-      file = new java.io.File(this.path,dir);
-    }
-    else
-    {
-      file = new java.io.File(this.path);
+      return new java.io.File(this.path,dir);
     }
-
-    return file.list(filter);
+    return new java.io.File(this.path);
   }
 
 }
@@ -0,0 +1,175 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementierung des File-Interface fuer Dateien im {@link MemFileSystem}.
+ */
+public class MemFile implements File
+{
+  private MemStore store = null;
+  private String dir     = null;
+  private String name    = null;
+
+  /**
+   * ct.
+   * @param store der Speicher.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name Dateiname.
+   */
+  MemFile(MemStore store, String dir, String name)
+  {
+    this.store = store;
+    this.dir   = dir;
+    this.name  = name;
+  }
+
+  /**
+   * Liefert den Knoten der Datei.
+   * @return der Knoten oder NULL, wenn die Datei nicht existiert.
+   */
+  private MemStore.Node getNode()
+  {
+    MemStore.Node node = this.store.get(MemStore.getPath(this.dir,this.name));
+    return node != null && !node.directory ? node : null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    return getNode() != null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    this.store.delete(this.dir,this.name);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    MemStore.Node node = getNode();
+    return node != null ? node.length() : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    MemStore.Node node = getNode();
+    return node != null ? node.lastModified : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    MemStore.Node node = getNode();
+    return node != null ? new FileInfo(this.name,false,node.length(),node.lastModified) : null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    return getOutputStream(false);
+  }
+
+  /**
+   * Beim Anhaengen wird der bisherige Inhalt nicht kopiert, sondern beim
+   * Schliessen des Streams um die neuen Bloecke erweitert.
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    return this.store.getOutputStream(this.store.createFile(this.dir,this.name),append);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    MemStore.Node node = getNode();
+    if (node == null)
+      throw new FSException("file not found: " + MemStore.getPath(this.dir,this.name));
+    return this.store.getInputStream(node,offset);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(String name) throws FSException
+  {
+    if (name == null || name.length() == 0)
+      throw new FSException("no filename given");
+    if (name.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + name);
+
+    this.store.rename(this.dir,this.name,name);
+    this.name = name;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    MemFile t = getTarget(target);
+    this.store.move(this.dir,this.name,t.dir,t.name);
+  }
+
+  /**
+   * Der Inhalt wird nicht dupliziert, sondern von beiden Dateien gemeinsam verwendet.
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    MemFile t = getTarget(target);
+    this.store.copy(this.dir,this.name,t.dir,t.name);
+  }
+
+  /**
+   * Prueft, ob die Ziel-Datei im selben Speicher liegt.
+   * @param target die Ziel-Datei.
+   * @return die Ziel-Datei.
+   * @throws FSException wenn sie in einem anderen Speicher liegt.
+   */
+  private MemFile getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof MemFile) || ((MemFile) t).store != this.store)
+      throw new FSException("target is not in mem store " + this.store.getName());
+    return (MemFile) t;
+  }
+}
@@ -0,0 +1,226 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Implementierung des FileSystem-Interface, welche die Dateien im Arbeitsspeicher haelt.
+ * URI-Format: mem://&lt;speicher&gt;/&lt;verzeichnis&gt;. Alle File-Systeme mit dem
+ * selben Speicher-Namen teilen sich die Dateien - auch ueber mehrere Instanzen
+ * und Threads hinweg. Der Inhalt bleibt bis zum Ende der JVM oder bis zum Aufruf
+ * von {@link MemFileSystem#drop(String)} erhalten.
+ * Per System-Property "filesystems.mem.offheap=true" wird der Inhalt ausserhalb
+ * des Heaps in Direct-Buffern abgelegt. "filesystems.mem.chunksize" legt die maximale
+ * Groesse der Bloecke fest (Default: 64 KB). Beides gilt fuer neu angelegte Speicher.
+ */
+public class MemFileSystem extends AbstractFileSystem
+{
+  private static Map<String,MemStore> stores = new ConcurrentHashMap<String,MemStore>();
+
+  private MemStore store = null;
+  private String path    = null;
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    Logger.debug("creating mem filesystem for uri: " + uri.toString());
+    this.store = getStore(uri.getHost() == null ? "" : uri.getHost());
+    this.path  = normalize(uri.getPath());
+    this.store.mkdirs(this.path);
+  }
+
+  /**
+   * Loescht den Speicher samt aller Dateien.
+   * Bereits erzeugte File-Systeme arbeiten weiterhin auf dem alten Speicher.
+   * @param name Name des Speichers.
+   */
+  public static void drop(String name)
+  {
+    stores.remove(name == null ? "" : name);
+  }
+
+  /**
+   * Liefert den Speicher und legt ihn bei Bedarf an.
+   * @param name Name des Speichers.
+   * @return der Speicher.
+   */
+  private static MemStore getStore(String name)
+  {
+    synchronized (stores)
+    {
+      MemStore s = stores.get(name);
+      if (s == null)
+      {
+        boolean direct = Boolean.getBoolean("filesystems.mem.offheap");
+        int chunkSize  = Integer.getInteger("filesystems.mem.chunksize",64 * 1024);
+        Logger.debug("creating mem store " + name + ", offheap: " + direct + ", chunk size: " + chunkSize);
+        s = new MemStore(name,direct,chunkSize);
+        stores.put(name,s);
+      }
+      return s;
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    if (filename == null || filename.length() == 0 || filename.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + filename);
+
+    String d = getDir(dir);
+    this.store.mkdirs(d);
+    return new MemFile(this.store,d,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,true);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    String d = getDir(dir);
+    MemStore.Node node = this.store.get(d);
+    if (node == null || !node.directory)
+      return null;
+
+    java.io.File fd = new java.io.File(d);
+    ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+    for (Map.Entry<String,MemStore.Node> e:node.children.entrySet())
+    {
+      String name = e.getKey();
+      if (filter != null && !filter.accept(fd,name))
+        continue;
+      MemStore.Node n = e.getValue();
+      list.add(new FileInfo(name,n.directory,n.directory ? 0L : n.length(),n.lastModified));
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public void close() throws FSException
+  {
+    // nicht noetig
+  }
+
+  /**
+   * Liefert die sortierte Liste der Dateien oder Verzeichnisse.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @param dirs true, wenn Verzeichnisse geliefert werden sollen, sonst Dateien.
+   * @return Liste der Namen oder NULL, wenn das Verzeichnis nicht existiert.
+   */
+  private String[] _list(String dir, FilenameFilter filter, boolean dirs)
+  {
+    String d = getDir(dir);
+    MemStore.Node node = this.store.get(d);
+    if (node == null || !node.directory)
+      return null;
+
+    java.io.File fd = new java.io.File(d);
+    ArrayList<String> list = new ArrayList<String>();
+    for (Map.Entry<String,MemStore.Node> e:node.children.entrySet())
+    {
+      String name = e.getKey();
+      if (e.getValue().directory == dirs && (filter == null || filter.accept(fd,name)))
+        list.add(name);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Liefert den absoluten Pfad des Verzeichnisses.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return absoluter Pfad.
+   */
+  private String getDir(String dir)
+  {
+    if (dir == null || dir.length() == 0)
+      return this.path;
+    String d = normalize(dir);
+    if ("/".equals(d))
+      return this.path;
+    return "/".equals(this.path) ? d : this.path + d;
+  }
+
+  /**
+   * Vereinheitlicht den Pfad.
+   * Liefert einen absoluten Pfad ohne doppelte oder abschliessende Slashes.
+   * @param path der Pfad.
+   * @return der vereinheitlichte Pfad.
+   */
+  private String normalize(String path)
+  {
+    path = clean(path);
+    if (path == null || path.length() == 0)
+      return "/";
+    StringBuilder sb = new StringBuilder();
+    for (String s:path.split("/"))
+    {
+      if (s.length() == 0 || ".".equals(s))
+        continue;
+      sb.append('/').append(s);
+    }
+    return sb.length() == 0 ? "/" : sb.toString();
+  }
+}
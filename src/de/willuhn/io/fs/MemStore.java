@@ -0,0 +1,528 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Speicher des {@link MemFileSystem}.
+ * Alle Knoten sind zusaetzlich ueber ihren absoluten Pfad in einer Hash-Map
+ * abgelegt, sodass Existenz, Groesse und Aenderungsdatum ohne Durchlaufen
+ * des Baums ermittelt werden koennen. Die Kinder eines Verzeichnisses liegen
+ * sortiert in einer {@link ConcurrentSkipListMap}.
+ * Lesende Zugriffe erfolgen ohne Sperre. Aenderungen an der Struktur (Anlegen,
+ * Loeschen, Umbenennen) sperren nur das betroffene Verzeichnis.
+ * Der Inhalt einer Datei wird beim Schliessen des OutputStreams als Ganzes
+ * ausgetauscht. Bereits geoeffnete InputStreams lesen bis zum Ende den alten Stand.
+ */
+class MemStore
+{
+  // Groesse des ersten Blocks einer Datei. Die folgenden Bloecke verdoppeln sich bis zur Maximal-Groesse.
+  private final static int FIRST_CHUNK = 1024;
+
+  private String name         = null;
+  private boolean direct      = false;
+  private int chunkSize       = 0;
+  private ConcurrentHashMap<String,Node> nodes = new ConcurrentHashMap<String,Node>();
+
+  /**
+   * ct.
+   * @param name Name des Speichers.
+   * @param direct true, wenn der Inhalt ausserhalb des Heaps in Direct-Buffern abgelegt werden soll.
+   * @param chunkSize maximale Groesse der Bloecke, in denen der Inhalt abgelegt wird.
+   */
+  MemStore(String name, boolean direct, int chunkSize)
+  {
+    this.name      = name;
+    this.direct    = direct;
+    this.chunkSize = Math.max(FIRST_CHUNK,chunkSize);
+    this.nodes.put("/",new Node(true));
+  }
+
+  /**
+   * Liefert den Knoten zum Pfad.
+   * @param path absoluter Pfad.
+   * @return der Knoten oder NULL, wenn er nicht existiert.
+   */
+  Node get(String path)
+  {
+    return this.nodes.get(path);
+  }
+
+  /**
+   * Liefert das Verzeichnis und legt es bei Bedarf samt Eltern-Verzeichnissen an.
+   * @param path absoluter Pfad.
+   * @return das Verzeichnis.
+   * @throws FSException wenn eine Datei gleichen Namens existiert.
+   */
+  Node mkdirs(String path) throws FSException
+  {
+    Node node = this.nodes.get(path);
+    if (node != null)
+    {
+      if (!node.directory)
+        throw new FSException("not a directory: " + path);
+      return node;
+    }
+
+    Node parent = mkdirs(getParent(path));
+    String child = getName(path);
+    synchronized (parent)
+    {
+      node = parent.children.get(child);
+      if (node == null)
+      {
+        node = new Node(true);
+        parent.children.put(child,node);
+        this.nodes.put(path,node);
+      }
+    }
+    if (!node.directory)
+      throw new FSException("not a directory: " + path);
+    return node;
+  }
+
+  /**
+   * Liefert die Datei und legt sie bei Bedarf leer an.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name Dateiname.
+   * @return die Datei.
+   * @throws FSException wenn ein Verzeichnis gleichen Namens existiert.
+   */
+  Node createFile(String dir, String name) throws FSException
+  {
+    Node parent = mkdirs(dir);
+    Node node = null;
+    synchronized (parent)
+    {
+      node = parent.children.get(name);
+      if (node == null)
+      {
+        node = new Node(false);
+        parent.children.put(name,node);
+        this.nodes.put(getPath(dir,name),node);
+      }
+    }
+    if (node.directory)
+      throw new FSException("is a directory: " + getPath(dir,name));
+    return node;
+  }
+
+  /**
+   * Loescht die Datei.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name Dateiname.
+   */
+  void delete(String dir, String name)
+  {
+    Node parent = this.nodes.get(dir);
+    if (parent == null)
+      return;
+
+    synchronized (parent)
+    {
+      Node node = parent.children.get(name);
+      if (node == null || node.directory)
+        return;
+      parent.children.remove(name);
+      this.nodes.remove(getPath(dir,name));
+    }
+  }
+
+  /**
+   * Benennt die Datei innerhalb ihres Verzeichnisses um.
+   * Eine bereits existierende Datei mit dem neuen Namen wird ersetzt.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name bisheriger Dateiname.
+   * @param newName neuer Dateiname.
+   * @throws FSException wenn die Datei nicht existiert oder ein Verzeichnis mit dem neuen Namen existiert.
+   */
+  void rename(String dir, String name, String newName) throws FSException
+  {
+    move(dir,name,dir,newName);
+  }
+
+  /**
+   * Verschiebt die Datei in ein anderes Verzeichnis.
+   * Das Ziel-Verzeichnis wird bei Bedarf angelegt, eine bereits existierende
+   * Datei mit dem neuen Namen wird ersetzt. Sind zwei Verzeichnisse betroffen,
+   * werden sie in der Reihenfolge ihrer Pfade gesperrt.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name bisheriger Dateiname.
+   * @param newDir absoluter Pfad des Ziel-Verzeichnisses.
+   * @param newName neuer Dateiname.
+   * @throws FSException wenn die Datei nicht existiert oder ein Verzeichnis mit dem neuen Namen existiert.
+   */
+  void move(String dir, String name, String newDir, String newName) throws FSException
+  {
+    Node parent = this.nodes.get(dir);
+    Node node = parent != null ? parent.children.get(name) : null;
+    if (node == null || node.directory)
+      throw new FSException("file not found: " + getPath(dir,name));
+
+    Node target = mkdirs(newDir);
+    Object first  = dir.compareTo(newDir) <= 0 ? parent : target;
+    Object second = first == parent ? target : parent;
+    synchronized (first)
+    {
+      synchronized (second)
+      {
+        if (parent.children.get(name) != node)
+          throw new FSException("file not found: " + getPath(dir,name));
+        Node existing = target.children.get(newName);
+        if (existing != null && existing.directory)
+          throw new FSException("is a directory: " + getPath(newDir,newName));
+
+        parent.children.remove(name);
+        target.children.put(newName,node);
+        this.nodes.remove(getPath(dir,name));
+        this.nodes.put(getPath(newDir,newName),node);
+      }
+    }
+  }
+
+  /**
+   * Kopiert die Datei.
+   * Da der Inhalt unveraenderlich ist, wird er nicht dupliziert, sondern von
+   * beiden Dateien gemeinsam verwendet, bis eine davon neu geschrieben wird.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name Dateiname.
+   * @param newDir absoluter Pfad des Ziel-Verzeichnisses.
+   * @param newName Dateiname der Kopie.
+   * @throws FSException wenn die Datei nicht existiert oder ein Verzeichnis mit dem neuen Namen existiert.
+   */
+  void copy(String dir, String name, String newDir, String newName) throws FSException
+  {
+    Node node = this.nodes.get(getPath(dir,name));
+    if (node == null || node.directory)
+      throw new FSException("file not found: " + getPath(dir,name));
+    if (node == this.nodes.get(getPath(newDir,newName)))
+      return;
+
+    Node copy = createFile(newDir,newName);
+    copy.content      = node.content;
+    copy.lastModified = System.currentTimeMillis();
+  }
+
+  /**
+   * Liefert einen OutputStream, dessen Inhalt beim Schliessen in die Datei uebernommen wird.
+   * @param node die Datei.
+   * @param append true, wenn der Inhalt an den beim Schliessen aktuellen Inhalt
+   * angehaengt werden soll.
+   * @return der OutputStream.
+   */
+  OutputStream getOutputStream(Node node, boolean append)
+  {
+    return new NodeOutputStream(node,append);
+  }
+
+  /**
+   * Liefert einen InputStream auf den aktuellen Inhalt der Datei.
+   * @param node die Datei.
+   * @param offset Position, ab der gelesen werden soll.
+   * @return der InputStream.
+   */
+  InputStream getInputStream(Node node, long offset)
+  {
+    return new NodeInputStream(node.content,offset);
+  }
+
+  /**
+   * Liefert den Namen des Speichers.
+   * @return Name des Speichers.
+   */
+  String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Liefert den Pfad des uebergeordneten Verzeichnisses.
+   * @param path absoluter Pfad.
+   * @return Pfad des uebergeordneten Verzeichnisses.
+   */
+  private static String getParent(String path)
+  {
+    int i = path.lastIndexOf('/');
+    return i <= 0 ? "/" : path.substring(0,i);
+  }
+
+  /**
+   * Liefert den Namen ohne Pfad.
+   * @param path absoluter Pfad.
+   * @return der Name.
+   */
+  private static String getName(String path)
+  {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * Liefert den absoluten Pfad der Datei.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @param name Dateiname.
+   * @return absoluter Pfad.
+   */
+  static String getPath(String dir, String name)
+  {
+    return "/".equals(dir) ? "/" + name : dir + "/" + name;
+  }
+
+  /**
+   * Ein Knoten im Speicher.
+   */
+  static class Node
+  {
+    final boolean directory;
+    final ConcurrentSkipListMap<String,Node> children;
+    volatile Content content  = Content.EMPTY;
+    volatile long lastModified = System.currentTimeMillis();
+
+    /**
+     * ct.
+     * @param directory true, wenn es ein Verzeichnis ist.
+     */
+    private Node(boolean directory)
+    {
+      this.directory = directory;
+      this.children  = directory ? new ConcurrentSkipListMap<String,Node>() : null;
+    }
+
+    /**
+     * Liefert die Groesse der Datei.
+     * @return Groesse in Bytes.
+     */
+    long length()
+    {
+      return this.content.length;
+    }
+  }
+
+  /**
+   * Unveraenderlicher Inhalt einer Datei.
+   */
+  static class Content
+  {
+    private final static Content EMPTY = new Content(new ByteBuffer[0],0L);
+
+    private final ByteBuffer[] chunks;
+    private final long length;
+
+    /**
+     * ct.
+     * @param chunks die Bloecke.
+     * @param length Gesamtlaenge.
+     */
+    private Content(ByteBuffer[] chunks, long length)
+    {
+      this.chunks = chunks;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Sammelt die geschriebenen Daten in Bloecken wachsender Groesse.
+   */
+  private class NodeOutputStream extends OutputStream
+  {
+    private Node node               = null;
+    private List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private ByteBuffer current      = null;
+    private long length             = 0L;
+    private boolean append          = false;
+    private boolean closed          = false;
+
+    /**
+     * ct.
+     * @param node die Datei.
+     * @param append true, wenn angehaengt werden soll.
+     */
+    private NodeOutputStream(Node node, boolean append)
+    {
+      this.node   = node;
+      this.append = append;
+    }
+
+    /**
+     * @see java.io.OutputStream#write(int)
+     */
+    public void write(int b) throws IOException
+    {
+      write(new byte[]{(byte) b},0,1);
+    }
+
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      if (this.closed)
+        throw new IOException("stream closed");
+
+      while (len > 0)
+      {
+        if (this.current == null || !this.current.hasRemaining())
+        {
+          int size = this.current == null ? FIRST_CHUNK : Math.min(chunkSize,this.current.capacity() * 2);
+          this.current = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+          this.chunks.add(this.current);
+        }
+        int n = Math.min(len,this.current.remaining());
+        this.current.put(b,off,n);
+        off += n;
+        len -= n;
+        this.length += n;
+      }
+    }
+
+    /**
+     * @see java.io.OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+
+      // Synchronisiert, damit parallel angehaengte Daten nicht verloren gehen
+      synchronized (this.node)
+      {
+        Content old = this.node.content;
+        if (!this.append || old.length == 0L)
+        {
+          this.node.content = new Content(this.chunks.toArray(new ByteBuffer[this.chunks.size()]),this.length);
+        }
+        else
+        {
+          ByteBuffer[] b = new ByteBuffer[old.chunks.length + this.chunks.size()];
+          System.arraycopy(old.chunks,0,b,0,old.chunks.length);
+          for (int i=0;i<this.chunks.size();++i)
+            b[old.chunks.length + i] = this.chunks.get(i);
+
+          // Die Leser erwarten bis auf den letzten nur volle Bloecke. Ein nur
+          // teilweise gefuellter letzter Block wird daher passend kopiert.
+          int last = old.chunks.length - 1;
+          long filled = old.length;
+          for (int i=0;i<last;++i)
+            filled -= old.chunks[i].capacity();
+          if (filled < old.chunks[last].capacity())
+          {
+            ByteBuffer src = old.chunks[last].duplicate();
+            src.clear();
+            src.limit((int) filled);
+            ByteBuffer copy = direct ? ByteBuffer.allocateDirect((int) filled) : ByteBuffer.allocate((int) filled);
+            copy.put(src);
+            b[last] = copy;
+          }
+          this.node.content = new Content(b,old.length + this.length);
+        }
+        this.node.lastModified = System.currentTimeMillis();
+      }
+    }
+  }
+
+  /**
+   * Liest einen Inhalt.
+   */
+  private static class NodeInputStream extends InputStream
+  {
+    private Content content    = null;
+    private int index          = 0;
+    private ByteBuffer current = null;
+    private long remaining     = 0L;
+
+    /**
+     * ct.
+     * @param content der zu lesende Inhalt.
+     * @param offset Position, ab der gelesen werden soll.
+     */
+    private NodeInputStream(Content content, long offset)
+    {
+      this.content   = content;
+      this.remaining = content.length;
+
+      if (offset >= content.length)
+      {
+        this.remaining = 0L;
+        return;
+      }
+
+      // Ganze Bloecke vor dem Offset ueberspringen
+      while (offset > 0L)
+      {
+        ByteBuffer b = content.chunks[this.index++].duplicate();
+        if (offset >= b.capacity())
+        {
+          offset         -= b.capacity();
+          this.remaining -= b.capacity();
+          continue;
+        }
+        b.clear();
+        b.limit((int) Math.min(b.capacity(),this.remaining));
+        b.position((int) offset);
+        this.remaining -= b.limit();
+        this.current = b;
+        offset = 0L;
+      }
+    }
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException
+    {
+      byte[] b = new byte[1];
+      return read(b,0,1) == -1 ? -1 : (b[0] & 0xff);
+    }
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (len == 0)
+        return 0;
+
+      if (this.current == null || !this.current.hasRemaining())
+      {
+        if (this.remaining <= 0 || this.index >= this.content.chunks.length)
+          return -1;
+
+        // Eigene Sicht auf den Block, damit parallele Leser sich nicht stoeren
+        this.current = this.content.chunks[this.index++].duplicate();
+        this.current.clear();
+        this.current.limit((int) Math.min(this.current.capacity(),this.remaining));
+        this.remaining -= this.current.limit();
+      }
+
+      int n = Math.min(len,this.current.remaining());
+      this.current.get(b,off,n);
+      return n;
+    }
+
+    /**
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException
+    {
+      long a = this.remaining + (this.current != null ? this.current.remaining() : 0);
+      return (int) Math.min(Integer.MAX_VALUE,a);
+    }
+  }
+}
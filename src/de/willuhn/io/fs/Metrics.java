@@ -0,0 +1,239 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Erfasst Laufzeit, Anzahl, Fehler und uebertragene Bytes der Operationen
+ * aller File-Systeme - getrennt nach Implementierung, Host und Operation.
+ * Die Erfassung ist per Default deaktiviert und kann per System-Property
+ * "filesystems.metrics=true", per {@link Metrics#setEnabled(boolean)} oder per JMX
+ * aktiviert werden. Nur wenn sie beim Erzeugen eines File-Systems aktiv ist,
+ * wird dieses von der {@link FileSystemFactory} instrumentiert. Andernfalls
+ * entsteht keinerlei zusaetzlicher Aufwand.
+ */
+public class Metrics
+{
+  private static volatile boolean enabled = Boolean.getBoolean("filesystems.metrics");
+
+  private static ConcurrentHashMap<String,OperationStats> stats = new ConcurrentHashMap<String,OperationStats>();
+  private static CopyOnWriteArrayList<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+  static
+  {
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("de.willuhn.io.fs:type=Metrics");
+      if (!server.isRegistered(name))
+        server.registerMBean(new StandardMBean(new MBean(),MetricsMBean.class),name);
+    }
+    catch (Throwable t)
+    {
+      Logger.error("unable to register metrics mbean",t);
+    }
+  }
+
+  /**
+   * Prueft, ob die Metriken erfasst werden.
+   * @return true, wenn die Metriken erfasst werden.
+   */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Aktiviert oder deaktiviert die Erfassung.
+   * Wirkt sich nur auf File-Systeme aus, die danach erzeugt werden.
+   * @param b true, wenn die Metriken erfasst werden sollen.
+   */
+  public static void setEnabled(boolean b)
+  {
+    enabled = b;
+  }
+
+  /**
+   * Fuegt einen Listener hinzu.
+   * @param l der Listener.
+   */
+  public static void addListener(MetricsListener l)
+  {
+    if (l != null)
+      listeners.addIfAbsent(l);
+  }
+
+  /**
+   * Entfernt einen Listener.
+   * @param l der Listener.
+   */
+  public static void removeListener(MetricsListener l)
+  {
+    listeners.remove(l);
+  }
+
+  /**
+   * Erfasst eine abgeschlossene Operation.
+   * @param backend Name der File-System-Implementierung.
+   * @param host der Host.
+   * @param operation Name der Operation.
+   * @param nanos Dauer in Nanosekunden.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param success true, wenn die Operation erfolgreich war.
+   */
+  static void record(String backend, String host, String operation, long nanos, long bytes, boolean success)
+  {
+    if (!enabled)
+      return;
+
+    String key = backend + "|" + host + "|" + operation;
+    OperationStats s = stats.get(key);
+    if (s == null)
+    {
+      OperationStats created = new OperationStats(backend,host,operation);
+      s = stats.putIfAbsent(key,created);
+      if (s == null)
+        s = created;
+    }
+    s.record(nanos,bytes,success);
+
+    for (MetricsListener l:listeners)
+    {
+      try
+      {
+        l.operation(backend,host,operation,nanos,bytes,success);
+      }
+      catch (Exception e)
+      {
+        Logger.error("error in metrics listener " + l,e);
+      }
+    }
+  }
+
+  /**
+   * Liefert die Statistiken sortiert nach Implementierung, Host und Operation.
+   * @return Liste der Statistiken.
+   */
+  public static List<OperationStats> getStatistics()
+  {
+    List<OperationStats> list = new ArrayList<OperationStats>(stats.values());
+    Collections.sort(list,new Comparator<OperationStats>()
+    {
+      public int compare(OperationStats o1, OperationStats o2)
+      {
+        int i = o1.getBackend().compareTo(o2.getBackend());
+        if (i == 0)
+          i = o1.getHost().compareTo(o2.getHost());
+        if (i == 0)
+          i = o1.getOperation().compareTo(o2.getOperation());
+        return i;
+      }
+    });
+    return list;
+  }
+
+  /**
+   * Setzt alle Statistiken zurueck.
+   */
+  public static void reset()
+  {
+    stats.clear();
+  }
+
+  /**
+   * Implementierung der JMX-Schnittstelle.
+   */
+  private static class MBean implements MetricsMBean
+  {
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#isEnabled()
+     */
+    public boolean isEnabled()
+    {
+      return Metrics.isEnabled();
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#setEnabled(boolean)
+     */
+    public void setEnabled(boolean enabled)
+    {
+      Metrics.setEnabled(enabled);
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#getOperationCount()
+     */
+    public long getOperationCount()
+    {
+      long sum = 0L;
+      for (OperationStats s:stats.values())
+        sum += s.getCount();
+      return sum;
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#getErrorCount()
+     */
+    public long getErrorCount()
+    {
+      long sum = 0L;
+      for (OperationStats s:stats.values())
+        sum += s.getErrors();
+      return sum;
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#getBytesTransferred()
+     */
+    public long getBytesTransferred()
+    {
+      long sum = 0L;
+      for (OperationStats s:stats.values())
+        sum += s.getBytes();
+      return sum;
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#getStatistics()
+     */
+    public String[] getStatistics()
+    {
+      List<OperationStats> list = Metrics.getStatistics();
+      String[] result = new String[list.size()];
+      for (int i=0;i<result.length;++i)
+        result[i] = list.get(i).toString();
+      return result;
+    }
+
+    /**
+     * @see de.willuhn.io.fs.MetricsMBean#reset()
+     */
+    public void reset()
+    {
+      Metrics.reset();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Listener, der bei aktivierten {@link Metrics} ueber jede ausgefuehrte Operation informiert wird.
+ * Die Aufrufe erfolgen synchron im Thread der Operation und sollten daher schnell sein.
+ */
+public interface MetricsListener
+{
+  /**
+   * Meldet eine abgeschlossene Operation.
+   * @param backend Name der File-System-Implementierung. Zum Beispiel "FTPFileSystem".
+   * @param host der Host oder ein Leerstring bei lokalen File-Systemen.
+   * @param operation Name der Operation. Zum Beispiel "connect", "list", "stat", "read" oder "write".
+   * @param nanos Dauer in Nanosekunden. Bei "read" und "write" vom Oeffnen bis zum Schliessen des Streams.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param success true, wenn die Operation erfolgreich war.
+   */
+  public void operation(String backend, String host, String operation, long nanos, long bytes, boolean success);
+}
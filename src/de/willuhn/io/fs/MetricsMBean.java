@@ -0,0 +1,61 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * JMX-Schnittstelle der {@link Metrics}.
+ * Registriert unter dem Namen "de.willuhn.io.fs:type=Metrics".
+ */
+public interface MetricsMBean
+{
+  /**
+   * Prueft, ob die Metriken erfasst werden.
+   * @return true, wenn die Metriken erfasst werden.
+   */
+  public boolean isEnabled();
+
+  /**
+   * Aktiviert oder deaktiviert die Erfassung.
+   * Wirkt sich nur auf File-Systeme aus, die danach erzeugt werden.
+   * @param enabled true, wenn die Metriken erfasst werden sollen.
+   */
+  public void setEnabled(boolean enabled);
+
+  /**
+   * Liefert die Gesamtzahl der erfassten Operationen.
+   * @return Anzahl der Operationen.
+   */
+  public long getOperationCount();
+
+  /**
+   * Liefert die Gesamtzahl der fehlgeschlagenen Operationen.
+   * @return Anzahl der Fehler.
+   */
+  public long getErrorCount();
+
+  /**
+   * Liefert die Gesamtzahl der uebertragenen Bytes.
+   * @return Anzahl der Bytes.
+   */
+  public long getBytesTransferred();
+
+  /**
+   * Liefert eine Zeile pro Implementierung, Host und Operation.
+   * @return die Statistiken.
+   */
+  public String[] getStatistics();
+
+  /**
+   * Setzt alle Statistiken zurueck.
+   */
+  public void reset();
+}
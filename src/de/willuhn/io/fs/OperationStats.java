@@ -0,0 +1,152 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistik einer Operation fuer eine File-System-Implementierung und einen Host.
+ */
+public class OperationStats
+{
+  private String backend      = null;
+  private String host         = null;
+  private String operation    = null;
+  private Histogram latency   = new Histogram();
+  private AtomicLong errors   = new AtomicLong();
+  private AtomicLong bytes    = new AtomicLong();
+
+  /**
+   * ct.
+   * @param backend Name der File-System-Implementierung.
+   * @param host der Host.
+   * @param operation Name der Operation.
+   */
+  OperationStats(String backend, String host, String operation)
+  {
+    this.backend   = backend;
+    this.host      = host;
+    this.operation = operation;
+  }
+
+  /**
+   * Erfasst eine Ausfuehrung der Operation.
+   * @param nanos Dauer in Nanosekunden.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param success true, wenn die Operation erfolgreich war.
+   */
+  void record(long nanos, long bytes, boolean success)
+  {
+    this.latency.record(nanos);
+    if (bytes > 0)
+      this.bytes.addAndGet(bytes);
+    if (!success)
+      this.errors.incrementAndGet();
+  }
+
+  /**
+   * Liefert den Namen der File-System-Implementierung.
+   * @return Name der Implementierung.
+   */
+  public String getBackend()
+  {
+    return this.backend;
+  }
+
+  /**
+   * Liefert den Host.
+   * @return der Host oder ein Leerstring bei lokalen File-Systemen.
+   */
+  public String getHost()
+  {
+    return this.host;
+  }
+
+  /**
+   * Liefert den Namen der Operation.
+   * @return Name der Operation.
+   */
+  public String getOperation()
+  {
+    return this.operation;
+  }
+
+  /**
+   * Liefert die Anzahl der Ausfuehrungen.
+   * @return Anzahl der Ausfuehrungen.
+   */
+  public long getCount()
+  {
+    return this.latency.getCount();
+  }
+
+  /**
+   * Liefert die Anzahl der fehlgeschlagenen Ausfuehrungen.
+   * @return Anzahl der Fehler.
+   */
+  public long getErrors()
+  {
+    return this.errors.get();
+  }
+
+  /**
+   * Liefert die Anzahl der uebertragenen Bytes.
+   * @return Anzahl der Bytes.
+   */
+  public long getBytes()
+  {
+    return this.bytes.get();
+  }
+
+  /**
+   * Liefert den Durchsatz bezogen auf die Summe der Ausfuehrungszeiten.
+   * @return Durchsatz in Bytes pro Sekunde.
+   */
+  public long getThroughput()
+  {
+    long nanos = this.latency.getSum();
+    return nanos > 0 ? (long) (this.bytes.get() * 1000000000d / nanos) : 0L;
+  }
+
+  /**
+   * Liefert das Histogramm der Latenzen.
+   * @return das Histogramm.
+   */
+  public Histogram getLatency()
+  {
+    return this.latency;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    StringBuffer sb = new StringBuffer();
+    sb.append(this.backend);
+    if (this.host.length() > 0)
+      sb.append("[" + this.host + "]");
+    sb.append(" " + this.operation);
+    sb.append(": count=" + getCount());
+    sb.append(", errors=" + getErrors());
+    sb.append(", mean=" + (this.latency.getMean() / 1000L) + "us");
+    sb.append(", p50=" + (this.latency.getPercentile(50) / 1000L) + "us");
+    sb.append(", p99=" + (this.latency.getPercentile(99) / 1000L) + "us");
+    sb.append(", max=" + (this.latency.getMax() / 1000L) + "us");
+    if (getBytes() > 0)
+    {
+      sb.append(", bytes=" + getBytes());
+      sb.append(", throughput=" + getThroughput() + " bytes/s");
+    }
+    return sb.toString();
+  }
+}
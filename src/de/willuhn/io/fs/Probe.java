@@ -0,0 +1,94 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Misst eine einzelne Operation und meldet sie an die {@link Metrics} und den {@link Tracer}.
+ */
+class Probe
+{
+  private String backend  = null;
+  private String host     = null;
+  private String operation = null;
+  private Tracer tracer   = null;
+  private Object span     = null;
+  private long start      = 0L;
+
+  /**
+   * ct.
+   * @param backend
+   * @param host
+   * @param operation
+   * @param path
+   */
+  private Probe(String backend, String host, String operation, String path)
+  {
+    this.backend   = backend;
+    this.host      = host;
+    this.operation = operation;
+    this.tracer    = Tracing.getTracer();
+    if (this.tracer != null)
+    {
+      try
+      {
+        this.span = this.tracer.begin(backend,host,operation,path);
+      }
+      catch (Exception e)
+      {
+        Logger.error("error in tracer " + this.tracer,e);
+      }
+    }
+    this.start = System.nanoTime();
+  }
+
+  /**
+   * Beginnt die Messung einer Operation.
+   * @param backend Name der File-System-Implementierung.
+   * @param host der Host.
+   * @param operation Name der Operation.
+   * @param path Pfad der Datei oder des Verzeichnisses. Kann NULL sein.
+   * @return die Messung oder NULL, wenn weder Metriken noch Tracing aktiv sind.
+   */
+  static Probe start(String backend, String host, String operation, String path)
+  {
+    if (!Metrics.isEnabled() && !Tracing.isActive())
+      return null;
+    return new Probe(backend,host,operation,path);
+  }
+
+  /**
+   * Beendet die Messung.
+   * @param p die Messung. Kann NULL sein.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param success true, wenn die Operation erfolgreich war.
+   */
+  static void end(Probe p, long bytes, boolean success)
+  {
+    if (p == null)
+      return;
+
+    Metrics.record(p.backend,p.host,p.operation,System.nanoTime() - p.start,bytes,success);
+    if (p.tracer != null && p.span != null)
+    {
+      try
+      {
+        p.tracer.end(p.span,bytes,success);
+      }
+      catch (Exception e)
+      {
+        Logger.error("error in tracer " + p.tracer,e);
+      }
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zaehlt die Protokoll-Kommandos, die die File-Systeme an den Server senden.
+ * Gezaehlt werden bei FTP die Kommandos (LIST, CWD, RETR, ...), bei SFTP
+ * die Requests (ls, stat, get, put, ...), bei SMB die Abfragen an den Server
+ * und beim lokalen File-System die Zugriffe auf das Betriebssystem.
+ * Die globale Zaehlung kann per System-Property "filesystems.roundtrips=true"
+ * oder {@link Roundtrips#setEnabled(boolean)} aktiviert werden. Fuer Tests kann
+ * ausserdem per {@link Roundtrips#start()} ein {@link Recorder} gestartet werden,
+ * mit dem sich pruefen laesst, wie viele Roundtrips eine Operation kostet:
+ * <pre>
+ *   Roundtrips.Recorder r = Roundtrips.start();
+ *   file.length();
+ *   r.stop();
+ *   r.assertAtMost(1);
+ * </pre>
+ */
+public class Roundtrips
+{
+  private static volatile boolean enabled = Boolean.getBoolean("filesystems.roundtrips");
+  private static volatile boolean active  = enabled;
+
+  private static ConcurrentHashMap<String,AtomicLong> counts = new ConcurrentHashMap<String,AtomicLong>();
+  private static CopyOnWriteArrayList<Recorder> recorders    = new CopyOnWriteArrayList<Recorder>();
+
+  /**
+   * Prueft, ob die globale Zaehlung aktiv ist.
+   * @return true, wenn die globale Zaehlung aktiv ist.
+   */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Aktiviert oder deaktiviert die globale Zaehlung.
+   * @param b true, wenn die Roundtrips global gezaehlt werden sollen.
+   */
+  public static synchronized void setEnabled(boolean b)
+  {
+    enabled = b;
+    active  = enabled || recorders.size() > 0;
+  }
+
+  /**
+   * Liefert die global gezaehlten Roundtrips.
+   * @return Map mit Schluesseln der Form "backend command" und der Anzahl.
+   */
+  public static Map<String,Long> getCounts()
+  {
+    return snapshot(counts);
+  }
+
+  /**
+   * Setzt die globale Zaehlung zurueck.
+   */
+  public static void reset()
+  {
+    counts.clear();
+  }
+
+  /**
+   * Startet einen neuen Recorder.
+   * Er zaehlt alle Roundtrips - unabhaengig vom Thread - bis {@link Recorder#stop()}
+   * aufgerufen wird.
+   * @return der Recorder.
+   */
+  public static synchronized Recorder start()
+  {
+    Recorder r = new Recorder();
+    recorders.add(r);
+    active = true;
+    return r;
+  }
+
+  /**
+   * Zaehlt einen Roundtrip.
+   * @param backend Kurzname des File-Systems. Zum Beispiel "ftp".
+   * @param command das Kommando.
+   */
+  static void count(String backend, String command)
+  {
+    if (!active)
+      return;
+
+    String key = backend + " " + command;
+    if (enabled)
+      increment(counts,key);
+    for (Recorder r:recorders)
+      increment(r.counts,key);
+  }
+
+  /**
+   * Erhoeht den Zaehler.
+   * @param map die Zaehler.
+   * @param key der Schluessel.
+   */
+  private static void increment(ConcurrentHashMap<String,AtomicLong> map, String key)
+  {
+    AtomicLong l = map.get(key);
+    if (l == null)
+    {
+      AtomicLong created = new AtomicLong();
+      l = map.putIfAbsent(key,created);
+      if (l == null)
+        l = created;
+    }
+    l.incrementAndGet();
+  }
+
+  /**
+   * Erzeugt eine sortierte Kopie der Zaehler.
+   * @param map die Zaehler.
+   * @return die Kopie.
+   */
+  private static Map<String,Long> snapshot(ConcurrentHashMap<String,AtomicLong> map)
+  {
+    Map<String,Long> result = new TreeMap<String,Long>();
+    for (Map.Entry<String,AtomicLong> e:map.entrySet())
+      result.put(e.getKey(),e.getValue().get());
+    return result;
+  }
+
+  /**
+   * Zaehlt die Roundtrips zwischen Start und Stop.
+   */
+  public static class Recorder
+  {
+    private ConcurrentHashMap<String,AtomicLong> counts = new ConcurrentHashMap<String,AtomicLong>();
+
+    /**
+     * ct.
+     */
+    private Recorder()
+    {
+    }
+
+    /**
+     * Beendet die Aufzeichnung.
+     * Die bisher gezaehlten Roundtrips bleiben erhalten.
+     */
+    public void stop()
+    {
+      synchronized (Roundtrips.class)
+      {
+        recorders.remove(this);
+        active = enabled || recorders.size() > 0;
+      }
+    }
+
+    /**
+     * Liefert die Gesamtzahl der Roundtrips.
+     * @return Anzahl der Roundtrips.
+     */
+    public long getCount()
+    {
+      return getCount(null,null);
+    }
+
+    /**
+     * Liefert die Anzahl der Roundtrips eines File-Systems.
+     * @param backend Kurzname des File-Systems. Zum Beispiel "ftp". NULL fuer alle.
+     * @return Anzahl der Roundtrips.
+     */
+    public long getCount(String backend)
+    {
+      return getCount(backend,null);
+    }
+
+    /**
+     * Liefert die Anzahl der Roundtrips eines Kommandos.
+     * @param backend Kurzname des File-Systems. Zum Beispiel "ftp". NULL fuer alle.
+     * @param command das Kommando. Zum Beispiel "LIST". NULL fuer alle.
+     * @return Anzahl der Roundtrips.
+     */
+    public long getCount(String backend, String command)
+    {
+      long sum = 0L;
+      for (Map.Entry<String,AtomicLong> e:this.counts.entrySet())
+      {
+        String key = e.getKey();
+        int i = key.indexOf(' ');
+        if (backend != null && !backend.equalsIgnoreCase(key.substring(0,i)))
+          continue;
+        if (command != null && !command.equalsIgnoreCase(key.substring(i+1)))
+          continue;
+        sum += e.getValue().get();
+      }
+      return sum;
+    }
+
+    /**
+     * Liefert die gezaehlten Roundtrips.
+     * @return Map mit Schluesseln der Form "backend command" und der Anzahl.
+     */
+    public Map<String,Long> getCounts()
+    {
+      return snapshot(this.counts);
+    }
+
+    /**
+     * Prueft, dass hoechstens die angegebene Anzahl Roundtrips stattfand.
+     * @param max die maximale Anzahl.
+     * @throws AssertionError wenn es mehr Roundtrips waren.
+     */
+    public void assertAtMost(long max)
+    {
+      assertAtMost(null,null,max);
+    }
+
+    /**
+     * Prueft, dass hoechstens die angegebene Anzahl Roundtrips des Kommandos stattfand.
+     * @param backend Kurzname des File-Systems. Zum Beispiel "ftp". NULL fuer alle.
+     * @param command das Kommando. Zum Beispiel "LIST". NULL fuer alle.
+     * @param max die maximale Anzahl.
+     * @throws AssertionError wenn es mehr Roundtrips waren.
+     */
+    public void assertAtMost(String backend, String command, long max)
+    {
+      long count = getCount(backend,command);
+      if (count > max)
+        throw new AssertionError("expected at most " + max + " roundtrips" +
+                                 (backend != null ? (" of " + backend + (command != null ? (" " + command) : "")) : "") +
+                                 " but were " + count + ": " + getCounts());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+      return getCounts().toString();
+    }
+  }
+}
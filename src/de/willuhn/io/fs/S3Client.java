@@ -0,0 +1,834 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Minimaler Client fuer S3-kompatible Object-Stores.
+ * Die Requests werden per AWS Signature Version 4 signiert und im Path-Style
+ * (&lt;endpoint&gt;/&lt;bucket&gt;/&lt;key&gt;) adressiert. Die Verbindungen werden
+ * vom JDK per Keep-Alive wiederverwendet.
+ * Der Client ist thread-safe.
+ */
+class S3Client
+{
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+  private final static int TIMEOUT  = Integer.getInteger("filesystems.s3.timeout",60000);
+
+  // Maximale Groesse eines per UploadPartCopy kopierten Teils.
+  final static long MAX_COPY_SIZE = 5L * 1024L * 1024L * 1024L;
+
+  // SHA-256 eines leeren Bodys
+  private final static String EMPTY_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+  private String endpoint  = null;
+  private String host      = null;
+  private String bucket    = null;
+  private String region    = null;
+  private String accessKey = null;
+  private String secretKey = null;
+
+  /**
+   * ct.
+   * @param endpoint URL des Servers ohne Pfad, z.Bsp. "https://s3.eu-central-1.amazonaws.com".
+   * @param bucket Name des Buckets.
+   * @param region Region fuer die Signatur.
+   * @param accessKey Access-Key.
+   * @param secretKey Secret-Key.
+   * @throws FSException
+   */
+  S3Client(String endpoint, String bucket, String region, String accessKey, String secretKey) throws FSException
+  {
+    try
+    {
+      URL u = new URL(endpoint);
+      this.host = u.getHost() + (u.getPort() == -1 || u.getPort() == u.getDefaultPort() ? "" : (":" + u.getPort()));
+      this.endpoint = u.getProtocol() + "://" + this.host;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    this.bucket    = bucket;
+    this.region    = region;
+    this.accessKey = accessKey;
+    this.secretKey = secretKey;
+  }
+
+  /**
+   * Liefert die Meta-Daten des Objektes.
+   * @param key Schluessel des Objektes.
+   * @return die Meta-Daten oder NULL, wenn das Objekt nicht existiert.
+   * @throws FSException
+   */
+  Info head(String key) throws FSException
+  {
+    Roundtrips.count("s3","head");
+    HttpURLConnection conn = send("HEAD",key,null,null,null,0);
+    try
+    {
+      int code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_FOUND)
+        return null;
+      check(conn,"HEAD",key);
+      return new Info(key,conn.getContentLengthLong(),conn.getLastModified(),conn.getHeaderField("ETag"));
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      discard(conn);
+    }
+  }
+
+  /**
+   * Liest das Objekt.
+   * @param key Schluessel des Objektes.
+   * @param from Position des ersten Bytes.
+   * @param to Position des letzten Bytes (inklusive) oder -1 fuer das Ende des Objektes.
+   * @param etag optionaler ETag. Hat sich das Objekt inzwischen geaendert, schlaegt der Request fehl.
+   * @return Stream mit dem Inhalt.
+   * @throws FSException
+   */
+  InputStream get(String key, long from, long to, String etag) throws FSException
+  {
+    Map<String,String> headers = new TreeMap<String,String>();
+    if (from > 0L || to >= 0L)
+      headers.put("Range","bytes=" + from + "-" + (to >= 0L ? Long.toString(to) : ""));
+    if (etag != null)
+      headers.put("If-Match",etag);
+
+    Roundtrips.count("s3","get");
+    HttpURLConnection conn = send("GET",key,null,headers,null,0);
+    try
+    {
+      int code = conn.getResponseCode();
+      if (code == 416)
+      {
+        discard(conn);
+        return new java.io.ByteArrayInputStream(new byte[0]);
+      }
+      check(conn,"GET",key);
+      return conn.getInputStream();
+    }
+    catch (IOException e)
+    {
+      discard(conn);
+      throw new FSException(e);
+    }
+    catch (FSException e)
+    {
+      discard(conn);
+      throw e;
+    }
+  }
+
+  /**
+   * Speichert das Objekt in einem Request.
+   * @param key Schluessel des Objektes.
+   * @param data die Daten.
+   * @param len Anzahl der Bytes.
+   * @throws FSException
+   */
+  void put(String key, byte[] data, int len) throws FSException
+  {
+    Roundtrips.count("s3","put");
+    execute("PUT",key,null,null,data,len);
+  }
+
+  /**
+   * Kopiert das Objekt innerhalb des Buckets.
+   * @param from Schluessel des Quell-Objektes.
+   * @param to Schluessel des Ziel-Objektes.
+   * @throws FSException
+   */
+  void copy(String from, String to) throws FSException
+  {
+    Map<String,String> headers = new TreeMap<String,String>();
+    headers.put("x-amz-copy-source","/" + this.bucket + "/" + encode(from,false));
+    Roundtrips.count("s3","copy");
+    execute("PUT",to,null,headers,null,0);
+  }
+
+  /**
+   * Loescht das Objekt.
+   * @param key Schluessel des Objektes.
+   * @throws FSException
+   */
+  void delete(String key) throws FSException
+  {
+    Roundtrips.count("s3","delete");
+    execute("DELETE",key,null,null,null,0);
+  }
+
+  /**
+   * Startet einen Multipart-Upload.
+   * @param key Schluessel des Objektes.
+   * @return die Upload-ID.
+   * @throws FSException
+   */
+  String initUpload(String key) throws FSException
+  {
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("uploads","");
+    Roundtrips.count("s3","initupload");
+    return required(root(execute("POST",key,query,null,null,0),"POST",key),"UploadId","POST",key);
+  }
+
+  /**
+   * Laedt einen Teil eines Multipart-Uploads hoch.
+   * @param key Schluessel des Objektes.
+   * @param uploadId die Upload-ID.
+   * @param part Nummer des Teils, beginnend bei 1.
+   * @param data die Daten.
+   * @param len Anzahl der Bytes.
+   * @return der ETag des Teils.
+   * @throws FSException
+   */
+  String uploadPart(String key, String uploadId, int part, byte[] data, int len) throws FSException
+  {
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("partNumber",Integer.toString(part));
+    query.put("uploadId",uploadId);
+    Roundtrips.count("s3","uploadpart");
+    HttpURLConnection conn = send("PUT",key,query,null,data,len);
+    try
+    {
+      check(conn,"PUT",key);
+      String etag = conn.getHeaderField("ETag");
+      if (etag == null)
+        throw new FSException("s3 PUT " + key + " part " + part + " failed: no ETag in response");
+      return etag;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      discard(conn);
+    }
+  }
+
+  /**
+   * Uebernimmt ein existierendes Objekt oder einen Bereich davon direkt auf dem
+   * Server als Teil eines Multipart-Uploads (UploadPartCopy). Ein Teil darf
+   * hoechstens {@link #MAX_COPY_SIZE} Bytes gross sein.
+   * @param key Schluessel des Objektes.
+   * @param uploadId die Upload-ID.
+   * @param part Nummer des Teils, beginnend bei 1.
+   * @param from Schluessel des Quell-Objektes.
+   * @param etag optionaler ETag der Quelle. Hat sie sich inzwischen geaendert, schlaegt der Request fehl.
+   * @param start Position des ersten Bytes. -1 fuer das ganze Objekt.
+   * @param end Position des letzten Bytes (inklusive).
+   * @return der ETag des Teils.
+   * @throws FSException
+   */
+  String copyPart(String key, String uploadId, int part, String from, String etag, long start, long end) throws FSException
+  {
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("partNumber",Integer.toString(part));
+    query.put("uploadId",uploadId);
+    Map<String,String> headers = new TreeMap<String,String>();
+    headers.put("x-amz-copy-source","/" + this.bucket + "/" + encode(from,false));
+    if (etag != null)
+      headers.put("x-amz-copy-source-if-match",etag);
+    if (start >= 0L)
+      headers.put("x-amz-copy-source-range","bytes=" + start + "-" + end);
+    Roundtrips.count("s3","copypart");
+    return required(root(execute("PUT",key,query,headers,null,0),"PUT",key),"ETag","PUT",key);
+  }
+
+  /**
+   * Schliesst einen Multipart-Upload ab.
+   * @param key Schluessel des Objektes.
+   * @param uploadId die Upload-ID.
+   * @param etags die ETags der Teile in der Reihenfolge der Teile.
+   * @throws FSException
+   */
+  void completeUpload(String key, String uploadId, List<String> etags) throws FSException
+  {
+    StringBuilder sb = new StringBuilder("<CompleteMultipartUpload>");
+    for (int i=0;i<etags.size();++i)
+    {
+      sb.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+        .append(etags.get(i).replace("&","&amp;").replace("\"","&quot;"))
+        .append("</ETag></Part>");
+    }
+    sb.append("</CompleteMultipartUpload>");
+    byte[] body = sb.toString().getBytes(UTF8);
+
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("uploadId",uploadId);
+    Roundtrips.count("s3","completeupload");
+    execute("POST",key,query,null,body,body.length);
+  }
+
+  /**
+   * Bricht einen Multipart-Upload ab.
+   * @param key Schluessel des Objektes.
+   * @param uploadId die Upload-ID.
+   */
+  void abortUpload(String key, String uploadId)
+  {
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("uploadId",uploadId);
+    try
+    {
+      Roundtrips.count("s3","abortupload");
+      execute("DELETE",key,query,null,null,0);
+    }
+    catch (Exception e)
+    {
+      Logger.error("unable to abort multipart upload " + uploadId + " of " + key,e);
+    }
+  }
+
+  /**
+   * Listet die Objekte mit dem Prefix.
+   * Die Liste wird seitenweise abgerufen, bis alle Objekte geliefert wurden.
+   * @param prefix der Prefix.
+   * @param files Liste, in die die Meta-Daten der Objekte eingefuegt werden.
+   * @param dirs Liste, in die die Common-Prefixes eingefuegt werden.
+   * @throws FSException
+   */
+  void list(String prefix, List<Info> files, List<String> dirs) throws FSException
+  {
+    SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss",Locale.US);
+    df.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+    String token = null;
+    do
+    {
+      Map<String,String> query = new TreeMap<String,String>();
+      query.put("list-type","2");
+      query.put("delimiter","/");
+      query.put("prefix",prefix);
+      if (token != null)
+        query.put("continuation-token",token);
+
+      Roundtrips.count("s3","list");
+      Element root = root(execute("GET",null,query,null,null,0),"GET",null);
+
+      for (Element e:children(root,"Contents"))
+      {
+        long time = 0L;
+        try
+        {
+          time = df.parse(text(e,"LastModified")).getTime();
+        }
+        catch (Exception ex)
+        {
+          Logger.debug("unable to parse date " + text(e,"LastModified"));
+        }
+        files.add(new Info(text(e,"Key"),Long.parseLong(text(e,"Size")),time,text(e,"ETag")));
+      }
+      for (Element e:children(root,"CommonPrefixes"))
+      {
+        dirs.add(text(e,"Prefix"));
+      }
+
+      token = "true".equals(text(root,"IsTruncated")) ? text(root,"NextContinuationToken") : null;
+    }
+    while (token != null);
+  }
+
+  /**
+   * Prueft, ob mindestens ein Objekt mit dem Prefix existiert.
+   * @param prefix der Prefix.
+   * @return true, wenn ein Objekt existiert.
+   * @throws FSException
+   */
+  boolean exists(String prefix) throws FSException
+  {
+    Map<String,String> query = new TreeMap<String,String>();
+    query.put("list-type","2");
+    query.put("max-keys","1");
+    query.put("prefix",prefix);
+    Roundtrips.count("s3","list");
+    Element root = root(execute("GET",null,query,null,null,0),"GET",null);
+    return children(root,"Contents").size() > 0;
+  }
+
+  /**
+   * Sendet den Request und prueft den Status.
+   * @param method HTTP-Methode.
+   * @param key Schluessel des Objektes oder NULL fuer den Bucket.
+   * @param query optionale Query-Parameter.
+   * @param headers optionale zusaetzliche Header.
+   * @param body optionaler Body.
+   * @param len Laenge des Bodys.
+   * @return die Antwort als XML-Dokument oder NULL, wenn sie keinen Body hat.
+   * @throws FSException auch dann, wenn S3 trotz Status 200 einen Fehler im Body
+   * liefert. Das ist bei Copy-Requests und beim Abschluss von Multipart-Uploads moeglich.
+   */
+  private Document execute(String method, String key, Map<String,String> query, Map<String,String> headers, byte[] body, int len) throws FSException
+  {
+    HttpURLConnection conn = send(method,key,query,headers,body,len);
+    InputStream is = null;
+    try
+    {
+      check(conn,method,key);
+      is = conn.getInputStream();
+      byte[] data = read(is);
+      if (data.length == 0)
+        return null;
+
+      Document doc = parse(data);
+      Element e = doc.getDocumentElement();
+      if ("Error".equals(e.getNodeName()))
+        throw new FSException("s3 " + method + " " + (key != null ? key : this.bucket) + " failed: " + text(e,"Code") + ": " + text(e,"Message"));
+      return doc;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      close(is);
+      if (is == null)
+        discard(conn);
+    }
+  }
+
+  /**
+   * Liefert das Wurzel-Element der Antwort.
+   * @param doc die Antwort.
+   * @param method HTTP-Methode.
+   * @param key Schluessel des Objektes oder NULL fuer den Bucket.
+   * @return das Wurzel-Element.
+   * @throws FSException wenn die Antwort keinen Body hat.
+   */
+  private Element root(Document doc, String method, String key) throws FSException
+  {
+    if (doc == null)
+      throw new FSException("s3 " + method + " " + (key != null ? key : this.bucket) + " failed: empty response");
+    return doc.getDocumentElement();
+  }
+
+  /**
+   * Liefert den Text des Kind-Elements und wirft eine Exception, wenn es fehlt.
+   * @param parent das Element.
+   * @param name Name des Kind-Elements.
+   * @param method HTTP-Methode.
+   * @param key Schluessel des Objektes.
+   * @return der Text.
+   * @throws FSException wenn das Kind-Element fehlt.
+   */
+  private String required(Element parent, String name, String method, String key) throws FSException
+  {
+    String s = text(parent,name);
+    if (s == null || s.length() == 0)
+      throw new FSException("s3 " + method + " " + (key != null ? key : this.bucket) + " failed: no " + name + " in response");
+    return s;
+  }
+
+  /**
+   * Erzeugt, signiert und sendet den Request.
+   * @param method HTTP-Methode.
+   * @param key Schluessel des Objektes oder NULL fuer den Bucket.
+   * @param query optionale Query-Parameter.
+   * @param headers optionale zusaetzliche Header.
+   * @param body optionaler Body.
+   * @param len Laenge des Bodys.
+   * @return die Verbindung.
+   * @throws FSException
+   */
+  private HttpURLConnection send(String method, String key, Map<String,String> query, Map<String,String> headers, byte[] body, int len) throws FSException
+  {
+    try
+    {
+      String path = "/" + this.bucket + (key != null ? "/" + encode(key,false) : "");
+
+      StringBuilder qs = new StringBuilder();
+      if (query != null)
+      {
+        // Die Parameter muessen fuer die Signatur sortiert sein
+        for (Map.Entry<String,String> e:query.entrySet())
+        {
+          if (qs.length() > 0)
+            qs.append('&');
+          qs.append(encode(e.getKey(),true)).append('=').append(encode(e.getValue(),true));
+        }
+      }
+
+      Date now = new Date();
+      SimpleDateFormat df = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'",Locale.US);
+      df.setTimeZone(TimeZone.getTimeZone("UTC"));
+      String amzDate = df.format(now);
+      String day     = amzDate.substring(0,8);
+      String hash    = body != null ? hex(sha256(body,len)) : EMPTY_HASH;
+
+      TreeMap<String,String> signed = new TreeMap<String,String>();
+      signed.put("host",this.host);
+      signed.put("x-amz-content-sha256",hash);
+      signed.put("x-amz-date",amzDate);
+      if (headers != null)
+      {
+        for (Map.Entry<String,String> e:headers.entrySet())
+        {
+          if (e.getKey().toLowerCase().startsWith("x-amz-"))
+            signed.put(e.getKey().toLowerCase(),e.getValue().trim());
+        }
+      }
+
+      StringBuilder canonical = new StringBuilder();
+      StringBuilder names = new StringBuilder();
+      for (Map.Entry<String,String> e:signed.entrySet())
+      {
+        canonical.append(e.getKey()).append(':').append(e.getValue()).append('\n');
+        if (names.length() > 0)
+          names.append(';');
+        names.append(e.getKey());
+      }
+
+      String request = method + "\n" + path + "\n" + qs + "\n" + canonical + "\n" + names + "\n" + hash;
+      String scope   = day + "/" + this.region + "/s3/aws4_request";
+      String toSign  = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + hex(sha256(request.getBytes(UTF8),-1));
+
+      byte[] k = hmac(("AWS4" + this.secretKey).getBytes(UTF8),day);
+      k = hmac(k,this.region);
+      k = hmac(k,"s3");
+      k = hmac(k,"aws4_request");
+      String signature = hex(hmac(k,toSign));
+
+      HttpURLConnection conn = (HttpURLConnection) new URL(this.endpoint + path + (qs.length() > 0 ? "?" + qs : "")).openConnection();
+      conn.setRequestMethod(method);
+      conn.setConnectTimeout(TIMEOUT);
+      conn.setReadTimeout(TIMEOUT);
+      conn.setUseCaches(false);
+      conn.setInstanceFollowRedirects(false);
+      conn.setRequestProperty("x-amz-date",amzDate);
+      conn.setRequestProperty("x-amz-content-sha256",hash);
+      conn.setRequestProperty("Authorization","AWS4-HMAC-SHA256 Credential=" + this.accessKey + "/" + scope + ", SignedHeaders=" + names + ", Signature=" + signature);
+      if (headers != null)
+      {
+        for (Map.Entry<String,String> e:headers.entrySet())
+          conn.setRequestProperty(e.getKey(),e.getValue());
+      }
+
+      if (body != null || "PUT".equals(method) || "POST".equals(method))
+      {
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(body != null ? len : 0);
+        OutputStream os = conn.getOutputStream();
+        if (body != null)
+          os.write(body,0,len);
+        os.close();
+      }
+      return conn;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Prueft den Status der Antwort und wirft im Fehlerfall eine Exception mit
+   * dem Fehler-Code von S3.
+   * @param conn die Verbindung.
+   * @param method HTTP-Methode.
+   * @param key Schluessel des Objektes.
+   * @throws IOException
+   * @throws FSException
+   */
+  private void check(HttpURLConnection conn, String method, String key) throws IOException, FSException
+  {
+    int code = conn.getResponseCode();
+    if (code >= 200 && code < 300)
+      return;
+
+    String msg = code + " " + conn.getResponseMessage();
+    InputStream is = conn.getErrorStream();
+    if (is != null)
+    {
+      try
+      {
+        byte[] data = read(is);
+        if (data.length > 0)
+        {
+          Element e = parse(data).getDocumentElement();
+          msg = code + " " + text(e,"Code") + ": " + text(e,"Message");
+        }
+      }
+      catch (Exception e)
+      {
+        Logger.debug("unable to parse s3 error response");
+      }
+      finally
+      {
+        close(is);
+      }
+    }
+    throw new FSException("s3 " + method + " " + (key != null ? key : this.bucket) + " failed: " + msg);
+  }
+
+  /**
+   * Liest den Rest der Antwort und schliesst den Stream, damit das JDK die
+   * Verbindung wiederverwenden kann.
+   * @param conn die Verbindung.
+   */
+  private static void discard(HttpURLConnection conn)
+  {
+    if (conn == null)
+      return;
+    InputStream is = null;
+    try
+    {
+      is = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+      if (is != null)
+        read(is);
+    }
+    catch (Exception e)
+    {
+      // Verbindung ist dann nicht wiederverwendbar
+    }
+    finally
+    {
+      close(is);
+    }
+  }
+
+  /**
+   * Liest den Stream vollstaendig.
+   * @param is der Stream.
+   * @return die Daten.
+   * @throws IOException
+   */
+  private static byte[] read(InputStream is) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int read;
+    while ((read = is.read(buf)) != -1)
+      bos.write(buf,0,read);
+    return bos.toByteArray();
+  }
+
+  /**
+   * Schliesst den Stream ohne Fehler zu werfen.
+   * @param is der Stream.
+   */
+  private static void close(InputStream is)
+  {
+    if (is == null)
+      return;
+    try
+    {
+      is.close();
+    }
+    catch (Exception e)
+    {
+      // ignore
+    }
+  }
+
+  /**
+   * Parst die XML-Antwort.
+   * @param data die Antwort.
+   * @return das Dokument.
+   * @throws IOException
+   */
+  private static Document parse(byte[] data) throws IOException
+  {
+    try
+    {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(false);
+      factory.setExpandEntityReferences(false);
+      try
+      {
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl",true);
+      }
+      catch (Exception e)
+      {
+        // Parser unterstuetzt das Feature nicht
+      }
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      return builder.parse(new java.io.ByteArrayInputStream(data));
+    }
+    catch (IOException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      throw new IOException("unable to parse s3 response: " + e.getMessage(),e);
+    }
+  }
+
+  /**
+   * Liefert die direkten Kind-Elemente mit dem Namen.
+   * @param parent das Eltern-Element.
+   * @param name Name der Kind-Elemente.
+   * @return Liste der Kind-Elemente.
+   */
+  private static List<Element> children(Element parent, String name)
+  {
+    List<Element> list = new ArrayList<Element>();
+    NodeList nl = parent.getChildNodes();
+    for (int i=0;i<nl.getLength();++i)
+    {
+      Node n = nl.item(i);
+      if (n.getNodeType() == Node.ELEMENT_NODE && name.equals(n.getNodeName()))
+        list.add((Element) n);
+    }
+    return list;
+  }
+
+  /**
+   * Liefert den Text des ersten direkten Kind-Elementes mit dem Namen.
+   * @param parent das Eltern-Element.
+   * @param name Name des Kind-Elementes.
+   * @return der Text oder NULL, wenn das Element nicht existiert.
+   */
+  private static String text(Element parent, String name)
+  {
+    List<Element> list = children(parent,name);
+    return list.size() == 0 ? null : list.get(0).getTextContent();
+  }
+
+  /**
+   * Kodiert den Text gemaess den Vorgaben der AWS-Signatur.
+   * @param s der Text.
+   * @param slash true, wenn auch Slashes kodiert werden sollen.
+   * @return der kodierte Text.
+   */
+  private static String encode(String s, boolean slash)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (byte b:s.getBytes(UTF8))
+    {
+      char c = (char) (b & 0xff);
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !slash))
+        sb.append(c);
+      else
+        sb.append('%').append(Character.toUpperCase(Character.forDigit((c >> 4) & 0xf,16))).append(Character.toUpperCase(Character.forDigit(c & 0xf,16)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Berechnet den SHA-256-Hash.
+   * @param data die Daten.
+   * @param len Anzahl der Bytes oder -1 fuer alle.
+   * @return der Hash.
+   * @throws IOException
+   */
+  private static byte[] sha256(byte[] data, int len) throws IOException
+  {
+    try
+    {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      md.update(data,0,len < 0 ? data.length : len);
+      return md.digest();
+    }
+    catch (Exception e)
+    {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Berechnet den HMAC-SHA256.
+   * @param key der Schluessel.
+   * @param data die Daten.
+   * @return der HMAC.
+   * @throws IOException
+   */
+  private static byte[] hmac(byte[] key, String data) throws IOException
+  {
+    try
+    {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(key,"HmacSHA256"));
+      return mac.doFinal(data.getBytes(UTF8));
+    }
+    catch (Exception e)
+    {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Wandelt die Bytes in einen Hex-String.
+   * @param data die Bytes.
+   * @return der Hex-String in Kleinbuchstaben.
+   */
+  private static String hex(byte[] data)
+  {
+    StringBuilder sb = new StringBuilder(data.length * 2);
+    for (byte b:data)
+    {
+      sb.append(Character.forDigit((b >> 4) & 0xf,16)).append(Character.forDigit(b & 0xf,16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Meta-Daten eines Objektes.
+   */
+  static class Info
+  {
+    final String key;
+    final long length;
+    final long lastModified;
+    final String etag;
+
+    /**
+     * ct.
+     * @param key Schluessel des Objektes.
+     * @param length Groesse in Bytes.
+     * @param lastModified Datum der letzten Aenderung.
+     * @param etag der ETag.
+     */
+    private Info(String key, long length, long lastModified, String etag)
+    {
+      this.key          = key;
+      this.length       = length;
+      this.lastModified = lastModified;
+      this.etag         = etag;
+    }
+  }
+}
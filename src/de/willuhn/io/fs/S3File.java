@@ -0,0 +1,221 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementierung des File-Interface fuer Objekte im {@link S3FileSystem}.
+ */
+public class S3File implements File
+{
+  private S3FileSystem fs = null;
+  private String key      = null;
+
+  /**
+   * ct.
+   * @param fs das File-System.
+   * @param key Schluessel des Objektes.
+   */
+  S3File(S3FileSystem fs, String key)
+  {
+    this.fs  = fs;
+    this.key = key;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    return this.fs.getClient().head(this.key) != null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    this.fs.getClient().delete(this.key);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    S3Client.Info info = this.fs.getClient().head(this.key);
+    return info != null ? info.length : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    S3Client.Info info = this.fs.getClient().head(this.key);
+    return info != null ? info.lastModified : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    S3Client.Info info = this.fs.getClient().head(this.key);
+    return info != null ? new FileInfo(this.key.substring(this.key.lastIndexOf('/') + 1),false,info.length,info.lastModified) : null;
+  }
+
+  /**
+   * Das Objekt wird erst beim Schliessen des Streams im Bucket sichtbar.
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    return new S3OutputStream(this.fs.getClient(),this.key,this.fs.getExecutor(),this.fs.getPartSize(),this.fs.getThreads(),null);
+  }
+
+  /**
+   * S3 kennt kein Anhaengen. Stattdessen wird beim Schliessen ein neues Objekt
+   * per Multipart-Upload erzeugt, dessen erster Teil das bisherige Objekt ist.
+   * Es wird direkt auf dem Server kopiert, sofern es mindestens 5 MB (die
+   * Mindestgroesse eines Teils) gross ist - Objekte ueber 5 GB in mehreren
+   * Bereichen. Kleinere Objekte werden gelesen und zusammen mit den neuen
+   * Daten erneut hochgeladen.
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    if (!append)
+      return getOutputStream();
+
+    S3Client client = this.fs.getClient();
+    S3Client.Info info = client.head(this.key);
+    if (info == null || info.length == 0L)
+      return getOutputStream();
+
+    if (info.length >= S3FileSystem.MIN_PART_SIZE)
+      return new S3OutputStream(client,this.key,this.fs.getExecutor(),this.fs.getPartSize(),this.fs.getThreads(),info);
+
+    OutputStream os = getOutputStream();
+    InputStream is = client.get(this.key,0L,-1L,info.etag);
+    try
+    {
+      byte[] buf = new byte[8192];
+      int read = 0;
+      while ((read = is.read(buf)) != -1)
+        os.write(buf,0,read);
+      return os;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      try
+      {
+        is.close();
+      }
+      catch (IOException e) {/*ignore */}
+    }
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * Ist der zu lesende Bereich groesser als ein Teil, wird er parallel per
+   * Range-Requests gelesen.
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    S3Client client = this.fs.getClient();
+    S3Client.Info info = client.head(this.key);
+    if (info == null)
+      throw new FSException("file not found: " + this.key);
+
+    if (info.length - offset <= this.fs.getPartSize())
+      return client.get(this.key,offset,-1L,info.etag);
+
+    return new S3InputStream(client,info,offset,this.fs.getExecutor(),this.fs.getPartSize(),this.fs.getThreads());
+  }
+
+  /**
+   * S3 kann Objekte nicht umbenennen. Das Objekt wird daher kopiert und
+   * anschliessend geloescht. Objekte ueber 5 GB werden nicht unterstuetzt.
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(String name) throws FSException
+  {
+    if (name == null || name.length() == 0)
+      throw new FSException("no filename given");
+    if (name.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + name);
+
+    int i = this.key.lastIndexOf('/');
+    String target = (i == -1 ? "" : this.key.substring(0,i + 1)) + name;
+
+    S3Client client = this.fs.getClient();
+    client.copy(this.key,target);
+    client.delete(this.key);
+    this.key = target;
+  }
+
+  /**
+   * Das Objekt wird auf dem Server kopiert und anschliessend geloescht.
+   * Objekte ueber 5 GB werden nicht unterstuetzt.
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    S3File t = getTarget(target);
+    if (t.key.equals(this.key))
+      return;
+    S3Client client = this.fs.getClient();
+    client.copy(this.key,t.key);
+    client.delete(this.key);
+  }
+
+  /**
+   * Das Objekt wird auf dem Server kopiert. Objekte ueber 5 GB werden nicht unterstuetzt.
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    S3File t = getTarget(target);
+    if (!t.key.equals(this.key))
+      this.fs.getClient().copy(this.key,t.key);
+  }
+
+  /**
+   * Prueft, ob die Ziel-Datei im selben Bucket liegt.
+   * @param target die Ziel-Datei.
+   * @return die Ziel-Datei.
+   * @throws FSException wenn sie zu einem anderen File-System gehoert.
+   */
+  private S3File getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof S3File) || ((S3File) t).fs != this.fs)
+      throw new FSException("target is not in the same s3 filesystem");
+    return (S3File) t;
+  }
+}
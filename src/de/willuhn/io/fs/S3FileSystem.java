@@ -0,0 +1,352 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Implementierung des FileSystem-Interface fuer S3-kompatible Object-Stores.
+ * URI-Format: s3://[&lt;access-key&gt;:&lt;secret-key&gt;@]&lt;endpoint&gt;[:&lt;port&gt;]/&lt;bucket&gt;[/&lt;prefix&gt;][?region=&lt;region&gt;&amp;ssl=false].
+ * Der Secret-Key muss URL-kodiert angegeben werden. Fehlen die Zugangsdaten in
+ * der URI, werden sie aus den System-Properties "filesystems.s3.accesskey" und
+ * "filesystems.s3.secretkey" bzw. den Umgebungsvariablen "AWS_ACCESS_KEY_ID" und
+ * "AWS_SECRET_ACCESS_KEY" gelesen. Die Region ist per Default "us-east-1"
+ * bzw. der Wert von "filesystems.s3.region".
+ * Verzeichnisse werden ueber den Delimiter "/" in den Schluesseln abgebildet.
+ * Grosse Dateien werden in Teilen parallel hoch- und heruntergeladen. Die Groesse
+ * der Teile kann per "filesystems.s3.partsize" (Default: 8 MB, Minimum: 5 MB),
+ * die Anzahl der parallelen Requests per "filesystems.s3.threads" (Default: 4)
+ * festgelegt werden. Die Verbindungen werden vom JDK per Keep-Alive wiederverwendet,
+ * "http.maxConnections" sollte daher mindestens der Anzahl der Threads entsprechen.
+ */
+public class S3FileSystem extends AbstractFileSystem
+{
+  // Mindestgroesse aller Teile eines Multipart-Uploads ausser dem letzten.
+  final static int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+  private S3Client client          = null;
+  private String prefix            = null;
+  private int partSize             = 0;
+  private int threads              = 0;
+  private ExecutorService executor = null;
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    Logger.debug("creating s3 filesystem for uri: " + uri.getHost() + uri.getPath());
+
+    if (uri.getHost() == null)
+      throw new FSException("no endpoint given in uri");
+
+    Map<String,String> params = getParams(uri.getRawQuery());
+
+    String path = uri.getPath();
+    path = path == null ? "" : normalize(path);
+    int i = path.indexOf('/');
+    String bucket = i == -1 ? path : path.substring(0,i);
+    this.prefix   = i == -1 ? "" : path.substring(i + 1);
+    if (bucket.length() == 0)
+      throw new FSException("no bucket given in uri");
+
+    String accessKey = System.getProperty("filesystems.s3.accesskey",System.getenv("AWS_ACCESS_KEY_ID"));
+    String secretKey = System.getProperty("filesystems.s3.secretkey",System.getenv("AWS_SECRET_ACCESS_KEY"));
+    String userInfo = uri.getUserInfo();
+    if (userInfo != null && userInfo.indexOf(':') != -1)
+    {
+      int dp = userInfo.indexOf(':');
+      accessKey = userInfo.substring(0,dp);
+      secretKey = userInfo.substring(dp + 1);
+    }
+    if (accessKey == null || secretKey == null)
+      throw new FSException("no s3 credentials given");
+
+    String region = params.get("region");
+    if (region == null)
+      region = System.getProperty("filesystems.s3.region","us-east-1");
+
+    String endpoint = ("false".equalsIgnoreCase(params.get("ssl")) ? "http" : "https") + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : (":" + uri.getPort()));
+
+    this.client   = new S3Client(endpoint,bucket,region,accessKey,secretKey);
+    this.partSize = Math.max(Integer.getInteger("filesystems.s3.partsize",8 * 1024 * 1024),MIN_PART_SIZE);
+    this.threads  = Math.max(Integer.getInteger("filesystems.s3.threads",4),1);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * S3 kennt keine Verzeichnisse, sie muessen daher nicht angelegt werden.
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    if (filename == null || filename.length() == 0 || filename.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + filename);
+
+    return new S3File(this,getPrefix(dir) + filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(String dir, FilenameFilter filter) throws FSException
+  {
+    FileInfo[] infos = listInfo(dir,filter);
+    if (infos == null)
+      return null;
+    List<String> list = new ArrayList<String>();
+    for (FileInfo i:infos)
+    {
+      if (!i.isDirectory())
+        list.add(i.getName());
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Der Text vor dem ersten Platzhalter (siehe {@link GlobFilter#getPrefix()})
+   * wird an den Prefix der Abfrage angehaengt, so dass nur passende Objekte
+   * geliefert werden.
+   * @see de.willuhn.io.fs.AbstractFileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    GlobFilter glob = new GlobFilter(pattern);
+    String p = getPrefix(dir);
+    List<S3Client.Info> files = new ArrayList<S3Client.Info>();
+    List<String> dirs = new ArrayList<String>();
+    this.client.list(p + glob.getPrefix(),files,dirs);
+
+    // Wie bei listInfo: NULL, wenn das Verzeichnis nicht existiert. Mit
+    // Prefix des Musters muss das separat geprueft werden.
+    if (files.size() == 0 && dirs.size() == 0 && isSubdir(dir) && (glob.getPrefix().length() == 0 || !this.client.exists(p)))
+      return null;
+
+    List<String> list = new ArrayList<String>();
+    for (S3Client.Info f:files)
+    {
+      String name = f.key.substring(p.length());
+      if (glob.matches(name))
+        list.add(name);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(String dir, FilenameFilter filter) throws FSException
+  {
+    FileInfo[] infos = listInfo(dir,filter);
+    if (infos == null)
+      return null;
+    List<String> list = new ArrayList<String>();
+    for (FileInfo i:infos)
+    {
+      if (i.isDirectory())
+        list.add(i.getName());
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Die Meta-Daten werden direkt aus ListObjectsV2 uebernommen, es sind
+   * keine zusaetzlichen Requests noetig. Da S3 keine Verzeichnisse kennt, gilt
+   * ein Unterverzeichnis als nicht existent, wenn es keine Objekte enthaelt.
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    String p = getPrefix(dir);
+    List<S3Client.Info> files = new ArrayList<S3Client.Info>();
+    List<String> dirs = new ArrayList<String>();
+    this.client.list(p,files,dirs);
+    if (files.size() == 0 && dirs.size() == 0 && isSubdir(dir))
+      return null;
+
+    java.io.File fd = new java.io.File("/" + p);
+    List<FileInfo> list = new ArrayList<FileInfo>();
+    for (String d:dirs)
+    {
+      String name = d.substring(p.length());
+      if (name.endsWith("/"))
+        name = name.substring(0,name.length() - 1);
+      if (name.length() > 0 && (filter == null || filter.accept(fd,name)))
+        list.add(new FileInfo(name,true,0L,0L));
+    }
+    for (S3Client.Info f:files)
+    {
+      // Der Platzhalter fuer das Verzeichnis selbst
+      String name = f.key.substring(p.length());
+      if (name.length() > 0 && (filter == null || filter.accept(fd,name)))
+        list.add(new FileInfo(name,false,f.length,f.lastModified));
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public synchronized void close() throws FSException
+  {
+    if (this.executor != null)
+    {
+      this.executor.shutdown();
+      this.executor = null;
+    }
+  }
+
+  /**
+   * Liefert den S3-Client.
+   * @return der S3-Client.
+   */
+  S3Client getClient()
+  {
+    return this.client;
+  }
+
+  /**
+   * Liefert die Groesse der Teile fuer parallele Uebertragungen.
+   * @return Groesse in Bytes.
+   */
+  int getPartSize()
+  {
+    return this.partSize;
+  }
+
+  /**
+   * Liefert die Anzahl paralleler Requests.
+   * @return Anzahl der Requests.
+   */
+  int getThreads()
+  {
+    return this.threads;
+  }
+
+  /**
+   * Liefert den Executor fuer parallele Uebertragungen und erzeugt ihn bei Bedarf.
+   * @return der Executor.
+   */
+  synchronized ExecutorService getExecutor()
+  {
+    if (this.executor == null)
+      this.executor = Executors.newFixedThreadPool(this.threads,new DaemonThreadFactory("filesystems-s3"));
+    return this.executor;
+  }
+
+  /**
+   * Prueft, ob es sich um ein Unterverzeichnis des Arbeitsverzeichnisses handelt.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return true, wenn es ein Unterverzeichnis ist.
+   */
+  private boolean isSubdir(String dir)
+  {
+    return normalize(dir).length() > 0;
+  }
+
+  /**
+   * Liefert den Prefix der Schluessel im Verzeichnis.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return der Prefix. Leer oder mit Slash am Ende.
+   */
+  private String getPrefix(String dir)
+  {
+    String d = normalize(dir);
+    String p = this.prefix.length() == 0 ? d : (d.length() == 0 ? this.prefix : this.prefix + "/" + d);
+    return p.length() == 0 ? "" : p + "/";
+  }
+
+  /**
+   * Vereinheitlicht den Pfad.
+   * Liefert einen Pfad ohne Slash am Anfang und Ende und ohne doppelte Slashes.
+   * @param path der Pfad.
+   * @return der vereinheitlichte Pfad.
+   */
+  private String normalize(String path)
+  {
+    path = clean(path);
+    if (path == null || path.length() == 0)
+      return "";
+    StringBuilder sb = new StringBuilder();
+    for (String s:path.split("/"))
+    {
+      if (s.length() == 0 || ".".equals(s))
+        continue;
+      if (sb.length() > 0)
+        sb.append('/');
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Zerlegt den Query-String der URI.
+   * @param query der Query-String.
+   * @return Map mit den Parametern.
+   */
+  private static Map<String,String> getParams(String query)
+  {
+    Map<String,String> params = new HashMap<String,String>();
+    if (query == null || query.length() == 0)
+      return params;
+
+    for (String s:query.split("&"))
+    {
+      int i = s.indexOf('=');
+      try
+      {
+        if (i == -1)
+          params.put(URLDecoder.decode(s,"UTF-8"),"");
+        else
+          params.put(URLDecoder.decode(s.substring(0,i),"UTF-8"),URLDecoder.decode(s.substring(i + 1),"UTF-8"));
+      }
+      catch (Exception e)
+      {
+        Logger.warn("invalid parameter in s3 uri: " + s);
+      }
+    }
+    return params;
+  }
+}
@@ -0,0 +1,189 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * InputStream, der ein S3-Objekt per parallelen Range-Requests liest.
+ * Es werden bis zu der angegebenen Anzahl Bloecke im Voraus angefordert und
+ * in der richtigen Reihenfolge geliefert. Per "If-Match" wird sichergestellt,
+ * dass alle Bloecke aus der selben Version des Objektes stammen.
+ */
+class S3InputStream extends InputStream
+{
+  private S3Client client          = null;
+  private S3Client.Info info       = null;
+  private ExecutorService executor = null;
+  private int chunkSize            = 0;
+  private int window               = 0;
+
+  private long next                = 0L;
+  private LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+  private byte[] current           = null;
+  private int pos                  = 0;
+  private boolean closed           = false;
+
+  /**
+   * ct.
+   * @param client der S3-Client.
+   * @param info Meta-Daten des Objektes.
+   * @param offset Position, ab der gelesen werden soll.
+   * @param executor Executor, in dem die Bloecke gelesen werden.
+   * @param chunkSize Groesse der Bloecke in Bytes.
+   * @param window maximale Anzahl gleichzeitig angeforderter Bloecke.
+   */
+  S3InputStream(S3Client client, S3Client.Info info, long offset, ExecutorService executor, int chunkSize, int window)
+  {
+    this.client    = client;
+    this.info      = info;
+    this.executor  = executor;
+    this.chunkSize = chunkSize;
+    this.window    = window;
+    this.next      = offset;
+
+    while (this.pending.size() < this.window && schedule())
+      ;
+  }
+
+  /**
+   * @see java.io.InputStream#read()
+   */
+  public int read() throws IOException
+  {
+    byte[] b = new byte[1];
+    return read(b,0,1) == -1 ? -1 : (b[0] & 0xff);
+  }
+
+  /**
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (this.closed)
+      throw new IOException("stream closed");
+    if (len == 0)
+      return 0;
+
+    if (this.current == null || this.pos >= this.current.length)
+    {
+      if (this.pending.size() == 0)
+        return -1;
+
+      this.current = get(this.pending.removeFirst());
+      this.pos     = 0;
+      schedule();
+    }
+
+    int n = Math.min(len,this.current.length - this.pos);
+    System.arraycopy(this.current,this.pos,b,off,n);
+    this.pos += n;
+    return n;
+  }
+
+  /**
+   * @see java.io.InputStream#available()
+   */
+  public int available() throws IOException
+  {
+    return this.current == null ? 0 : this.current.length - this.pos;
+  }
+
+  /**
+   * @see java.io.InputStream#close()
+   */
+  public void close() throws IOException
+  {
+    if (this.closed)
+      return;
+    this.closed  = true;
+    this.current = null;
+    for (Future<byte[]> f:this.pending)
+      f.cancel(true);
+    this.pending.clear();
+  }
+
+  /**
+   * Fordert den naechsten Block an.
+   * @return true, wenn ein Block angefordert wurde, false, wenn das Ende des Objektes erreicht ist.
+   */
+  private boolean schedule()
+  {
+    if (this.next >= this.info.length)
+      return false;
+
+    final long from = this.next;
+    final int len   = (int) Math.min(this.chunkSize,this.info.length - from);
+    this.next += len;
+
+    this.pending.addLast(this.executor.submit(new Callable<byte[]>()
+    {
+      public byte[] call() throws Exception
+      {
+        byte[] data = new byte[len];
+        InputStream is = client.get(info.key,from,from + len - 1,info.etag);
+        try
+        {
+          int read = 0;
+          while (read < len)
+          {
+            int n = is.read(data,read,len - read);
+            if (n == -1)
+              throw new EOFException("unexpected end of " + info.key + " at offset " + (from + read));
+            read += n;
+          }
+          return data;
+        }
+        finally
+        {
+          is.close();
+        }
+      }
+    }));
+    return true;
+  }
+
+  /**
+   * Wartet auf den Block.
+   * @param f das Future des Blocks.
+   * @return die Daten des Blocks.
+   * @throws IOException
+   */
+  private byte[] get(Future<byte[]> f) throws IOException
+  {
+    try
+    {
+      return f.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading " + this.info.key);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable t = e.getCause();
+      close();
+      if (t instanceof IOException)
+        throw (IOException) t;
+      throw new IOException("reading " + this.info.key + " failed: " + t.getMessage(),t);
+    }
+  }
+}
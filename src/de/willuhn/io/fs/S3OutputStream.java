@@ -0,0 +1,321 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * OutputStream, der die Daten in Teilen puffert und parallel per
+ * Multipart-Upload zu S3 uebertraegt.
+ * Passen die Daten in einen Teil, werden sie beim Schliessen in einem einzelnen
+ * PUT gesendet. Es werden hoechstens so viele Teile gleichzeitig uebertragen wie
+ * angegeben, der Speicherbedarf ist also auf (Anzahl + 1) * Teilgroesse begrenzt.
+ * Schlaegt die Uebertragung fehl, wird der Multipart-Upload abgebrochen.
+ * Wird an ein existierendes Objekt angehaengt, wird es per UploadPartCopy auf
+ * dem Server als erster Teil uebernommen, so dass nur die neuen Daten
+ * uebertragen werden. Objekte ueber 5 GB werden dabei in mehreren Bereichen
+ * kopiert.
+ */
+class S3OutputStream extends OutputStream
+{
+  private S3Client client          = null;
+  private String key               = null;
+  private ExecutorService executor = null;
+  private Semaphore slots          = null;
+  private int partSize             = 0;
+  private S3Client.Info source     = null;
+
+  private byte[] buf               = null;
+  private int count                = 0;
+  private String uploadId          = null;
+  private List<Future<String>> parts = new ArrayList<Future<String>>();
+  private boolean closed           = false;
+
+  /**
+   * ct.
+   * @param client der S3-Client.
+   * @param key Schluessel des Objektes.
+   * @param executor Executor, in dem die Teile hochgeladen werden.
+   * @param partSize Groesse der Teile in Bytes.
+   * @param threads maximale Anzahl gleichzeitig uebertragener Teile.
+   * @param source optionales existierendes Objekt, an das angehaengt werden soll.
+   * Es muss mindestens 5 MB gross sein.
+   */
+  S3OutputStream(S3Client client, String key, ExecutorService executor, int partSize, int threads, S3Client.Info source)
+  {
+    this.client   = client;
+    this.key      = key;
+    this.executor = executor;
+    this.partSize = partSize;
+    this.source   = source;
+    this.slots    = new Semaphore(threads);
+    this.buf      = new byte[partSize];
+  }
+
+  /**
+   * @see java.io.OutputStream#write(int)
+   */
+  public void write(int b) throws IOException
+  {
+    write(new byte[]{(byte) b},0,1);
+  }
+
+  /**
+   * @see java.io.OutputStream#write(byte[], int, int)
+   */
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    if (this.closed)
+      throw new IOException("stream closed");
+
+    while (len > 0)
+    {
+      int n = Math.min(len,this.partSize - this.count);
+      System.arraycopy(b,off,this.buf,this.count,n);
+      this.count += n;
+      off += n;
+      len -= n;
+
+      if (this.count == this.partSize)
+        upload();
+    }
+  }
+
+  /**
+   * @see java.io.OutputStream#close()
+   */
+  public void close() throws IOException
+  {
+    if (this.closed)
+      return;
+    this.closed = true;
+
+    try
+    {
+      if (this.uploadId == null && this.source == null)
+      {
+        this.client.put(this.key,this.buf,this.count);
+        return;
+      }
+      if (this.uploadId == null && this.count == 0)
+        return; // Es wurde nichts angehaengt
+
+      if (this.count > 0)
+        upload();
+
+      List<String> etags = new ArrayList<String>();
+      for (Future<String> f:this.parts)
+        etags.add(get(f));
+
+      this.client.completeUpload(this.key,this.uploadId,etags);
+      Logger.debug("completed multipart upload of " + this.key + " with " + etags.size() + " parts");
+    }
+    catch (IOException e)
+    {
+      abort();
+      throw e;
+    }
+    catch (Exception e)
+    {
+      abort();
+      throw new IOException(e.getMessage(),e);
+    }
+    finally
+    {
+      this.buf = null;
+    }
+  }
+
+  /**
+   * Uebertraegt den aktuellen Puffer als naechsten Teil im Hintergrund.
+   * Blockiert, solange bereits die maximale Anzahl Teile uebertragen wird.
+   * @throws IOException
+   */
+  private void upload() throws IOException
+  {
+    final byte[] data = this.buf;
+    final int len     = this.count;
+    try
+    {
+      if (this.uploadId == null)
+      {
+        this.uploadId = this.client.initUpload(this.key);
+        if (this.source != null)
+          copy();
+      }
+
+      final int part  = this.parts.size() + 1;
+      final String id = this.uploadId;
+      submit(new Callable<String>()
+      {
+        public String call() throws Exception
+        {
+          return client.uploadPart(key,id,part,data,len);
+        }
+      });
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      abort();
+      throw new InterruptedIOException("interrupted while uploading " + this.key);
+    }
+    catch (IOException e)
+    {
+      abort();
+      throw e;
+    }
+    catch (FSException e)
+    {
+      abort();
+      throw new IOException(e.getMessage(),e);
+    }
+
+    this.buf   = new byte[this.partSize];
+    this.count = 0;
+  }
+
+  /**
+   * Uebernimmt das existierende Objekt als erste Teile des Uploads.
+   * Ein Teil darf per UploadPartCopy hoechstens 5 GB gross sein. Groessere
+   * Objekte werden daher in gleich grosse Bereiche aufgeteilt.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void copy() throws IOException, InterruptedException
+  {
+    final String id = this.uploadId;
+    final S3Client.Info src = this.source;
+    if (src.length <= S3Client.MAX_COPY_SIZE)
+    {
+      submit(new Callable<String>()
+      {
+        public String call() throws Exception
+        {
+          return client.copyPart(key,id,1,src.key,src.etag,-1L,-1L);
+        }
+      });
+      return;
+    }
+
+    long count = (src.length + S3Client.MAX_COPY_SIZE - 1) / S3Client.MAX_COPY_SIZE;
+    long size  = (src.length + count - 1) / count;
+    for (long pos = 0L;pos < src.length;pos += size)
+    {
+      final int part   = this.parts.size() + 1;
+      final long start = pos;
+      final long end   = Math.min(pos + size,src.length) - 1;
+      submit(new Callable<String>()
+      {
+        public String call() throws Exception
+        {
+          return client.copyPart(key,id,part,src.key,src.etag,start,end);
+        }
+      });
+    }
+    Logger.debug("copying " + src.key + " (" + src.length + " bytes) in " + count + " ranges");
+  }
+
+  /**
+   * Startet die Uebertragung des naechsten Teils im Hintergrund.
+   * Blockiert, solange bereits die maximale Anzahl Teile uebertragen wird.
+   * @param task die Uebertragung. Liefert den ETag des Teils.
+   * @throws IOException wenn ein vorheriger Teil fehlschlug.
+   * @throws InterruptedException
+   */
+  private void submit(final Callable<String> task) throws IOException, InterruptedException
+  {
+    // Frueh abbrechen, wenn ein Teil bereits fehlgeschlagen ist
+    for (Future<String> f:this.parts)
+    {
+      if (f.isDone())
+        get(f);
+    }
+
+    this.slots.acquire();
+    try
+    {
+      this.parts.add(this.executor.submit(new Callable<String>()
+      {
+        public String call() throws Exception
+        {
+          try
+          {
+            return task.call();
+          }
+          finally
+          {
+            slots.release();
+          }
+        }
+      }));
+    }
+    catch (RuntimeException e)
+    {
+      this.slots.release();
+      throw new IOException("unable to schedule upload of part " + (this.parts.size() + 1) + " of " + this.key,e);
+    }
+  }
+
+  /**
+   * Liefert das Ergebnis der Uebertragung eines Teils.
+   * @param f das Future.
+   * @return der ETag des Teils.
+   * @throws IOException
+   */
+  private String get(Future<String> f) throws IOException
+  {
+    try
+    {
+      return f.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while uploading " + this.key);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable t = e.getCause();
+      throw new IOException("upload of " + this.key + " failed: " + t.getMessage(),t);
+    }
+  }
+
+  /**
+   * Bricht den Multipart-Upload ab, damit die bereits uebertragenen Teile
+   * nicht dauerhaft im Bucket verbleiben.
+   */
+  private void abort()
+  {
+    this.closed = true;
+    if (this.uploadId == null)
+      return;
+
+    for (Future<String> f:this.parts)
+      f.cancel(false);
+
+    String id = this.uploadId;
+    this.uploadId = null;
+    this.client.abortUpload(this.key,id);
+  }
+}
@@ -64,7 +64,15 @@ public class SFTPFile implements File
    */
   public InputStream getInputStream() throws FSException
   {
-    return this.fs.getInputStream(this);
+    return this.fs.getInputStream(this,0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    return this.fs.getInputStream(this,offset);
   }
 
   /**
@@ -72,7 +80,15 @@ public class SFTPFile implements File
    */
   public OutputStream getOutputStream() throws FSException
   {
-    return this.fs.getOutputStream(this);
+    return this.fs.getOutputStream(this,false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    return this.fs.getOutputStream(this,append);
   }
 
   /**
@@ -91,6 +107,14 @@ public class SFTPFile implements File
     return this.fs.lastModified(this);
   }
 
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    return this.fs.stat(this);
+  }
+
   
   /**
    * @see de.willuhn.io.fs.File#rename(java.lang.String)
@@ -100,6 +124,36 @@ public class SFTPFile implements File
     this.fs.rename(this,name);
   }
 
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    this.fs.move(this,getTarget(target));
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    this.fs.copy(this,getTarget(target));
+  }
+
+  /**
+   * Prueft, ob die Ziel-Datei zum selben File-System gehoert.
+   * @param target die Ziel-Datei.
+   * @return die Ziel-Datei.
+   * @throws FSException wenn sie zu einem anderen File-System gehoert.
+   */
+  private SFTPFile getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof SFTPFile) || ((SFTPFile) t).fs != this.fs)
+      throw new FSException("target is not in the same sftp filesystem");
+    return (SFTPFile) t;
+  }
+
   /**
    * Liefert das Verzeichnis der Datei.
    * @return Verzeichnis.
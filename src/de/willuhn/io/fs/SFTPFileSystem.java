@@ -11,14 +11,18 @@
 
 package de.willuhn.io.fs;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FilenameFilter;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.Random;
 import java.util.Vector;
 
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 import com.jcraft.jsch.JSch;
@@ -42,10 +46,14 @@ import de.willuhn.logging.Logger;
  */
 public class SFTPFileSystem extends AbstractFileSystem
 {
+  // Maximale Wartezeit auf das Pruef-Kommando in Millisekunden.
+  private final static long EXEC_PROBE_TIMEOUT = 5000L;
+
   private URI uri             = null;
   private Session session     = null;
   private ChannelSftp channel = null;
   private String basedir      = null;
+  private Boolean exec        = null;
 
   /**
    * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
@@ -116,7 +124,18 @@ public class SFTPFileSystem extends AbstractFileSystem
       config.put("StrictHostKeyChecking","no"); // siehe http://www.jcraft.com/jsch/README
       session.setConfig(config);
       
-      session.connect();
+      // Verbindungsaufbau inclusive Schluesselaustausch und Authentifizierung
+      Probe probe = Probe.start("SFTPFileSystem",host,"login",null);
+      boolean ok = false;
+      try
+      {
+        session.connect();
+        ok = true;
+      }
+      finally
+      {
+        Probe.end(probe,0L,ok);
+      }
 
       this.channel = (ChannelSftp) session.openChannel("sftp");
       this.channel.connect();
@@ -192,7 +211,7 @@ public class SFTPFileSystem extends AbstractFileSystem
    */
   public String[] list(String dir, final FilenameFilter filter) throws FSException
   {
-    return _list(dir,new Filter()
+    return _list(dir,null,new Filter()
     {
       public boolean accept(java.io.File dir, LsEntry file)
       {
@@ -202,6 +221,30 @@ public class SFTPFileSystem extends AbstractFileSystem
     });
   }
   
+  /**
+   * SFTP selbst kennt keine Filterung auf dem Server. Das vereinfachte Muster
+   * (siehe {@link GlobFilter#getWildcard()}) wird aber an ChannelSftp#ls
+   * uebergeben, welches nicht passende Eintraege bereits beim Lesen des
+   * Verzeichnisses verwirft, ohne Objekte dafuer zu erzeugen. Ein Muster ohne
+   * Platzhalter wird nicht uebergeben, da ls es als Pfad interpretieren wuerde.
+   * @see de.willuhn.io.fs.AbstractFileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    final GlobFilter glob = new GlobFilter(pattern);
+    String wildcard = glob.getWildcard().replace("\\","\\\\"); // JSch verwendet "\" als Escape-Zeichen
+    if (!GlobFilter.isGlob(pattern) || "*".equals(wildcard))
+      wildcard = null;
+    return _list(dir,wildcard,new Filter()
+    {
+      public boolean accept(java.io.File dir, LsEntry file)
+      {
+        SftpATTRS at = file.getAttrs();
+        return !at.isDir() && !at.isLink() && glob.matches(file.getFilename());
+      }
+    });
+  }
+
   /**
    * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
    */
@@ -215,7 +258,7 @@ public class SFTPFileSystem extends AbstractFileSystem
    */
   public String[] listDirs(String dir, final FilenameFilter filter) throws FSException
   {
-    return _list(dir,new Filter()
+    return _list(dir,null,new Filter()
     {
       public boolean accept(java.io.File dir, LsEntry file)
       {
@@ -228,6 +271,45 @@ public class SFTPFileSystem extends AbstractFileSystem
     });
   }
 
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    connect();
+    try
+    {
+      dir = dir == null ? "" : dir;
+      dir = clean(this.basedir + "/" + dir);
+      Roundtrips.count("sftp","ls");
+      Vector v = this.channel.ls(dir);
+      if (v == null || v.size() == 0)
+        return new FileInfo[0];
+
+      ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+      java.io.File fd = new java.io.File(dir);
+      for (int i=0;i<v.size();++i)
+      {
+        Object o = v.get(i);
+        if (o == null || !(o instanceof LsEntry))
+          continue; // interessiert uns nicht
+        LsEntry entry = (LsEntry) o;
+        String name = entry.getFilename();
+        SftpATTRS at = entry.getAttrs();
+        if (at.isLink() || ".".equals(name) || "..".equals(name))
+          continue;
+        if (filter != null && !filter.accept(fd,name))
+          continue;
+        list.add(new FileInfo(name,at.isDir(),at.getSize(),at.getMTime() * 1000L)); // getMTime() liefert Sekunden
+      }
+      return list.toArray(new FileInfo[list.size()]);
+    }
+    catch (SftpException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert die Attribute einer Datei oder null, wenn sie nicht gefunden wurden.
    * @param file die Datei.
@@ -243,6 +325,7 @@ public class SFTPFileSystem extends AbstractFileSystem
     
     try
     {
+      Roundtrips.count("sftp","ls");
       Vector v = this.channel.ls(dir);
       if (v == null || v.size() == 0)
       {
@@ -269,6 +352,30 @@ public class SFTPFileSystem extends AbstractFileSystem
     }
   }
 
+  /**
+   * Liefert die Meta-Daten der Datei per einzelnem STAT statt ueber die
+   * Liste des Verzeichnisses.
+   * @param file die Datei.
+   * @return die Meta-Daten oder NULL, wenn die Datei nicht existiert.
+   * @throws FSException
+   */
+  FileInfo stat(SFTPFile file) throws FSException
+  {
+    connect();
+    try
+    {
+      Roundtrips.count("sftp","stat");
+      SftpATTRS attrs = this.channel.stat(getPath(file));
+      return new FileInfo(file.getName(),attrs.isDir(),attrs.getSize(),attrs.getMTime() * 1000L);
+    }
+    catch (SftpException e)
+    {
+      if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE)
+        return null;
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert die Laenge der Datei in Bytes.
    * @param f Datei.
@@ -297,11 +404,13 @@ public class SFTPFileSystem extends AbstractFileSystem
   /**
    * Liefert einen OutputStream fuer die Datei.
    * @param file die Datei.
+   * @param append true, wenn die Daten an die Datei angehaengt werden sollen.
    * @return der OutputStream.
    * @throws FSException
    */
-  OutputStream getOutputStream(SFTPFile file) throws FSException
+  OutputStream getOutputStream(SFTPFile file, boolean append) throws FSException
   {
+    int mode = append ? ChannelSftp.APPEND : ChannelSftp.OVERWRITE;
     connect();
 
     String dir = file.getDir() == null ? "" : file.getDir();
@@ -309,21 +418,77 @@ public class SFTPFileSystem extends AbstractFileSystem
 
     try
     {
-      return channel.put(dir + "/" + file.getName());
+      Roundtrips.count("sftp","put");
+      return channel.put(dir + "/" + file.getName(),mode);
+    }
+    catch (SftpException e)
+    {
+      if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE)
+        throw new FSException(e);
+    }
+
+    // Verzeichnis existiert offensichtlich noch nicht
+    mkdirs(dir);
+    try
+    {
+      Roundtrips.count("sftp","put");
+      return channel.put(dir + "/" + file.getName(),mode);
     }
     catch (SftpException e)
     {
       throw new FSException(e);
     }
   }
+
+  /**
+   * Legt das Verzeichnis samt aller Eltern-Verzeichnisse an.
+   * @param dir absoluter Pfad des Verzeichnisses.
+   * @throws FSException
+   */
+  private void mkdirs(String dir) throws FSException
+  {
+    String[] parts = dir.split("/");
+    StringBuffer path = new StringBuffer();
+    for (int i=0;i<parts.length;++i)
+    {
+      if (parts[i].length() == 0)
+        continue;
+      path.append("/");
+      path.append(parts[i]);
+
+      String s = path.toString();
+      try
+      {
+        Roundtrips.count("sftp","stat");
+        this.channel.stat(s);
+      }
+      catch (SftpException e)
+      {
+        if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE)
+          throw new FSException(e);
+
+        try
+        {
+          Logger.debug("creating dir " + s);
+          Roundtrips.count("sftp","mkdir");
+          this.channel.mkdir(s);
+        }
+        catch (SftpException e2)
+        {
+          throw new FSException(e2);
+        }
+      }
+    }
+  }
   
   /**
    * Liefert einen InputStream fuer die Datei.
    * @param file die Datei.
+   * @param offset Position, ab der gelesen werden soll.
    * @return der InputStream.
    * @throws FSException
    */
-  InputStream getInputStream(SFTPFile file) throws FSException
+  InputStream getInputStream(SFTPFile file, long offset) throws FSException
   {
     connect();
 
@@ -332,6 +497,9 @@ public class SFTPFileSystem extends AbstractFileSystem
 
     try
     {
+      Roundtrips.count("sftp","get");
+      if (offset > 0L)
+        return channel.get(dir + "/" + file.getName(),null,offset);
       return channel.get(dir + "/" + file.getName());
     }
     catch (SftpException e)
@@ -354,6 +522,7 @@ public class SFTPFileSystem extends AbstractFileSystem
 
     try
     {
+      Roundtrips.count("sftp","rm");
       channel.rm(dir + "/" + file.getName());
     }
     catch (SftpException e)
@@ -383,6 +552,7 @@ public class SFTPFileSystem extends AbstractFileSystem
 
     try
     {
+      Roundtrips.count("sftp","rename");
       channel.rename(dir + "/" + file.getName(),dir + "/" + name);
     }
     catch (SftpException e)
@@ -391,21 +561,269 @@ public class SFTPFileSystem extends AbstractFileSystem
     }
   }
 
+  /**
+   * Verschiebt die Datei.
+   * Schlaegt das Umbenennen fehl, weil das Ziel-Verzeichnis fehlt oder die
+   * Ziel-Datei bereits existiert (SFTP v3 ersetzt keine Dateien), wird das
+   * Verzeichnis angelegt, die Ziel-Datei geloescht und erneut umbenannt.
+   * @param file die zu verschiebende Datei.
+   * @param target die Ziel-Datei.
+   * @throws FSException
+   */
+  void move(SFTPFile file, SFTPFile target) throws FSException
+  {
+    connect();
+
+    String from = getPath(file);
+    String to   = getPath(target);
+    if (from.equals(to))
+      return;
+
+    try
+    {
+      Roundtrips.count("sftp","rename");
+      channel.rename(from,to);
+      return;
+    }
+    catch (SftpException e)
+    {
+      Logger.debug("unable to rename " + from + " to " + to + ": " + e.getMessage() + ", retrying");
+    }
+
+    mkdirs(getDir(target));
+    try
+    {
+      Roundtrips.count("sftp","rename");
+      channel.rename(from,to);
+      return;
+    }
+    catch (SftpException e)
+    {
+      Logger.debug("unable to rename " + from + " to " + to + ": " + e.getMessage() + ", moving existing target aside");
+    }
+
+    // SFTP ersetzt existierende Dateien nicht. Die Ziel-Datei wird daher erst
+    // geloescht, wenn das Umbenennen geklappt hat.
+    String tmp = tempName(to);
+    try
+    {
+      Roundtrips.count("sftp","rename");
+      channel.rename(to,tmp);
+    }
+    catch (SftpException e)
+    {
+      throw new FSException("unable to move " + from + " to " + to,e);
+    }
+
+    try
+    {
+      Roundtrips.count("sftp","rename");
+      channel.rename(from,to);
+    }
+    catch (SftpException e)
+    {
+      try
+      {
+        Roundtrips.count("sftp","rename");
+        channel.rename(tmp,to);
+      }
+      catch (SftpException e2)
+      {
+        Logger.error("unable to restore " + to + " from " + tmp,e2);
+      }
+      throw new FSException("unable to move " + from + " to " + to,e);
+    }
+
+    try
+    {
+      Roundtrips.count("sftp","rm");
+      channel.rm(tmp);
+    }
+    catch (SftpException e)
+    {
+      Logger.warn("unable to delete " + tmp + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Kopiert die Datei.
+   * SFTP selbst kennt kein Kopieren und JSch unterstuetzt die Erweiterung
+   * "copy-data" nicht. Die Datei wird daher per "cp" auf dem Server kopiert.
+   * Ob der Server Kommandos erlaubt, wird einmalig per "echo" mit einem
+   * zufaelligen Text geprueft. Der Exit-Code allein genuegt nicht, da Server
+   * mit erzwungenem "internal-sftp" (reine SFTP-Accounts) das Kommando
+   * ignorieren und trotzdem 0 liefern. Aus dem selben Grund wird nach "cp"
+   * die Groesse der Ziel-Datei mit der Quelle verglichen. Erlaubt der Server
+   * keine Kommandos oder schlaegt "cp" fehl, wird die Datei ueber einen
+   * zweiten SFTP-Kanal der selben Verbindung gelesen und geschrieben.
+   * @param file die zu kopierende Datei.
+   * @param target die Ziel-Datei.
+   * @throws FSException
+   */
+  void copy(SFTPFile file, SFTPFile target) throws FSException
+  {
+    connect();
+
+    String from = getPath(file);
+    String to   = getPath(target);
+    if (from.equals(to))
+      return;
+
+    if (this.exec == null)
+    {
+      String nonce = Long.toHexString(new Random().nextLong());
+      this.exec = nonce.equals(exec("echo " + nonce,EXEC_PROBE_TIMEOUT));
+      if (!this.exec)
+        Logger.info("server does not allow commands, falling back to streamed copy");
+    }
+
+    mkdirs(getDir(target));
+    if (this.exec && exec("cp -p -- " + quote(from) + " " + quote(to),0L) != null)
+    {
+      try
+      {
+        Roundtrips.count("sftp","stat");
+        long expected = channel.stat(from).getSize();
+        Roundtrips.count("sftp","stat");
+        if (channel.stat(to).getSize() == expected)
+          return;
+        Logger.warn("copy of " + from + " to " + to + " per cp incomplete, falling back to streamed copy");
+      }
+      catch (SftpException e)
+      {
+        Logger.warn("unable to verify copy of " + from + " to " + to + " per cp, falling back to streamed copy: " + e.getMessage());
+      }
+    }
+
+    ChannelSftp reader = null;
+    try
+    {
+      reader = (ChannelSftp) session.openChannel("sftp");
+      reader.connect();
+      Roundtrips.count("sftp","get");
+      InputStream is = reader.get(from);
+      try
+      {
+        Roundtrips.count("sftp","put");
+        channel.put(is,to);
+      }
+      finally
+      {
+        is.close();
+      }
+    }
+    catch (Exception e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      if (reader != null)
+        reader.disconnect();
+    }
+  }
+
+  /**
+   * Fuehrt das Kommando auf dem Server aus.
+   * Die Standard-Eingabe wird sofort geschlossen, damit Kommandos wie ein
+   * erzwungenes "internal-sftp" nicht auf Eingaben warten.
+   * @param command das Kommando.
+   * @param timeout maximale Wartezeit in Millisekunden. 0 fuer unbegrenzt.
+   * @return die Ausgabe des Kommandos ohne Leerzeichen am Ende oder NULL,
+   * wenn es nicht erfolgreich ausgefuehrt wurde.
+   */
+  private String exec(String command, long timeout)
+  {
+    ChannelExec c = null;
+    try
+    {
+      Roundtrips.count("sftp","exec");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      c = (ChannelExec) session.openChannel("exec");
+      c.setCommand(command);
+      c.setInputStream(new ByteArrayInputStream(new byte[0]));
+      c.setOutputStream(out);
+      c.connect();
+
+      long end = System.currentTimeMillis() + timeout;
+      while (!c.isClosed())
+      {
+        if (timeout > 0L && System.currentTimeMillis() > end)
+        {
+          Logger.debug("command " + command + " timed out");
+          return null;
+        }
+        Thread.sleep(10L);
+      }
+      int status = c.getExitStatus();
+      if (status != 0)
+        Logger.debug("command " + command + " failed with exit code " + status);
+      return status == 0 ? out.toString("UTF-8").trim() : null;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (Exception e)
+    {
+      Logger.debug("unable to execute command " + command + ": " + e.getMessage());
+      return null;
+    }
+    finally
+    {
+      if (c != null)
+        c.disconnect();
+    }
+  }
+
+  /**
+   * Setzt den Pfad fuer die Shell in Hochkommas.
+   * @param s der Pfad.
+   * @return der Pfad in Hochkommas.
+   */
+  private static String quote(String s)
+  {
+    return "'" + s.replace("'","'\\''") + "'";
+  }
+
+  /**
+   * Liefert den absoluten Pfad des Verzeichnisses der Datei.
+   * @param file die Datei.
+   * @return absoluter Pfad.
+   */
+  private String getDir(SFTPFile file)
+  {
+    return clean(this.basedir + "/" + (file.getDir() == null ? "" : file.getDir()));
+  }
+
+  /**
+   * Liefert den absoluten Pfad der Datei.
+   * @param file die Datei.
+   * @return absoluter Pfad.
+   */
+  private String getPath(SFTPFile file)
+  {
+    return getDir(file) + "/" + file.getName();
+  }
+
   /**
    * Liefert eine Liste von Dateien oder Verzeichnissen.
    * @param dir Pfad.
+   * @param pattern optionales Muster, das an ls uebergeben wird.
    * @param filter Filter.
    * @return Liste von Dateien oder Verzeichnissen.
    * @throws FSException
    */
-  private String[] _list(String dir, Filter filter) throws FSException
+  private String[] _list(String dir, String pattern, Filter filter) throws FSException
   {
     connect();
     try
     {
       dir = dir == null ? "" : dir;
       dir = clean(this.basedir + "/" + dir);
-      Vector v = this.channel.ls(dir);
+      Roundtrips.count("sftp","ls");
+      Vector v = this.channel.ls(pattern == null ? dir : dir + "/" + pattern);
       if (v == null || v.size() == 0)
         return new String[0];
       
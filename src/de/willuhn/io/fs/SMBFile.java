@@ -46,9 +46,11 @@ public class SMBFile implements File
     
     SmbFile parent = new SmbFile(this.dir);
     Logger.debug("checking, if dir " + this.dir + " exists");
+    Roundtrips.count("smb","exists");
     if (!parent.exists())
     {
       Logger.debug("creating dir " + this.dir);
+      Roundtrips.count("smb","mkdir");
       parent.mkdirs();
     }
     this.file = new SmbFile(this.dir,name);
@@ -61,6 +63,7 @@ public class SMBFile implements File
   {
     try
     {
+      Roundtrips.count("smb","exists");
       return file.exists();
     }
     catch (IOException e)
@@ -73,10 +76,19 @@ public class SMBFile implements File
    * @see de.willuhn.io.fs.File#getOutputStream()
    */
   public OutputStream getOutputStream() throws FSException
+  {
+    return getOutputStream(false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
   {
     try
     {
-      OutputStream os = new SmbFileOutputStream(this.file);
+      Roundtrips.count("smb","open");
+      OutputStream os = new SmbFileOutputStream(this.file,append);
       return new BufferedOutputStream(os);
     }
     catch (IOException e)
@@ -89,10 +101,23 @@ public class SMBFile implements File
    * @see de.willuhn.io.fs.File#getInputStream()
    */
   public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
   {
     try
     {
-      InputStream is = new SmbFileInputStream(this.file);
+      Roundtrips.count("smb","open");
+      SmbFileInputStream is = new SmbFileInputStream(this.file);
+
+      // Setzt bei jcifs nur den Datei-Zeiger, es werden keine Daten gelesen
+      if (offset > 0L)
+        is.skip(offset);
       return new BufferedInputStream(is);
     }
     catch (IOException e)
@@ -111,6 +136,7 @@ public class SMBFile implements File
 
     try
     {
+      Roundtrips.count("smb","delete");
       this.file.delete();
     }
     catch (IOException e)
@@ -126,6 +152,7 @@ public class SMBFile implements File
   {
     try
     {
+      Roundtrips.count("smb","stat");
       return this.file.length();
     }
     catch (IOException e)
@@ -141,6 +168,7 @@ public class SMBFile implements File
   {
     try
     {
+      Roundtrips.count("smb","stat");
       return this.file.lastModified();
     }
     catch (IOException e)
@@ -149,6 +177,26 @@ public class SMBFile implements File
     }
   }
 
+  /**
+   * jCIFS fragt die Attribute mit einer Anfrage ab und haelt sie fuer
+   * "jcifs.smb.client.attrExpirationPeriod" Millisekunden (Default: 5 Sekunden) vor.
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    try
+    {
+      Roundtrips.count("smb","stat");
+      if (!this.file.exists())
+        return null;
+      return new FileInfo(this.file.getName(),this.file.isDirectory(),this.file.length(),this.file.lastModified());
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * @see de.willuhn.io.fs.File#rename(java.lang.String)
    */
@@ -159,6 +207,7 @@ public class SMBFile implements File
 
     try
     {
+      Roundtrips.count("smb","rename");
       this.file.renameTo(new SmbFile(this.dir,name));
     }
     catch (IOException e)
@@ -167,4 +216,111 @@ public class SMBFile implements File
     }
   }
 
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    SmbFile f = getTarget(target);
+    if (f.getCanonicalPath().equals(this.file.getCanonicalPath()))
+      return;
+    try
+    {
+      // renameTo ersetzt keine existierenden Dateien. Die Ziel-Datei wird daher
+      // erst geloescht, wenn das Umbenennen geklappt hat.
+      Roundtrips.count("smb","exists");
+      if (!f.exists())
+      {
+        Roundtrips.count("smb","rename");
+        this.file.renameTo(f);
+        return;
+      }
+
+      SmbFile tmp = new SmbFile(f.getParent(),AbstractFileSystem.tempName(f.getName()));
+      Roundtrips.count("smb","rename");
+      f.renameTo(tmp);
+      try
+      {
+        Roundtrips.count("smb","rename");
+        this.file.renameTo(f);
+      }
+      catch (IOException e)
+      {
+        try
+        {
+          Roundtrips.count("smb","rename");
+          tmp.renameTo(f);
+        }
+        catch (IOException e2)
+        {
+          Logger.error("unable to restore " + f.getPath() + " from " + tmp.getPath(),e2);
+        }
+        throw e;
+      }
+
+      try
+      {
+        Roundtrips.count("smb","delete");
+        tmp.delete();
+      }
+      catch (IOException e)
+      {
+        Logger.warn("unable to delete " + tmp.getPath() + ": " + e.getMessage());
+      }
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Die Daten werden von jCIFS in zwei parallelen Threads gelesen und
+   * geschrieben, da SMB1 kein Kopieren auf dem Server kennt.
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    SmbFile f = getTarget(target);
+    try
+    {
+      Roundtrips.count("smb","copy");
+      this.file.copyTo(f);
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Liefert die SMB-Datei der Ziel-Datei und legt fehlende Verzeichnisse an.
+   * @param target die Ziel-Datei.
+   * @return die SMB-Datei.
+   * @throws FSException wenn es keine SMB-Datei ist.
+   */
+  private static SmbFile getTarget(File target) throws FSException
+  {
+    File t = InstrumentedFile.unwrap(target);
+    if (!(t instanceof SMBFile))
+      throw new FSException("target is not a smb file");
+
+    SmbFile f = ((SMBFile) t).file;
+    try
+    {
+      SmbFile dir = new SmbFile(f.getParent());
+      Roundtrips.count("smb","exists");
+      if (!dir.exists())
+      {
+        Logger.debug("creating dir " + dir.getPath());
+        Roundtrips.count("smb","mkdir");
+        dir.mkdirs();
+      }
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    return f;
+  }
 }
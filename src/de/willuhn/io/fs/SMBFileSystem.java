@@ -15,6 +15,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 
 import de.willuhn.logging.Logger;
 import jcifs.smb.SmbException;
@@ -148,6 +149,35 @@ public class SMBFileSystem extends AbstractFileSystem
     });
   }
   
+  /**
+   * Das vereinfachte Muster (siehe {@link GlobFilter#getWildcard()}) wird mit
+   * der Verzeichnis-Abfrage an den Server gesendet. Die gelieferten Eintraege
+   * enthalten bereits ihre Attribute, es sind keine weiteren Requests noetig.
+   * @see de.willuhn.io.fs.AbstractFileSystem#glob(java.lang.String, java.lang.String)
+   */
+  public String[] glob(String dir, String pattern) throws FSException
+  {
+    try
+    {
+      GlobFilter glob = new GlobFilter(pattern);
+      SmbFile file = getDir(dir);
+      Roundtrips.count("smb","list");
+      SmbFile[] files = file.listFiles(glob.getWildcard());
+      ArrayList<String> list = new ArrayList<String>();
+      for (int i=0;i<files.length;++i)
+      {
+        SmbFile f = files[i];
+        if (f.isFile() && glob.matches(f.getName()))
+          list.add(f.getName());
+      }
+      return list.toArray(new String[list.size()]);
+    }
+    catch (Exception e)
+    {
+      throw new FSException(e);
+    }
+  }
+
   /**
    * Liefert eine Liste von Dateien oder Verzeichnissen.
    * @param dir Pfad.
@@ -159,25 +189,16 @@ public class SMBFileSystem extends AbstractFileSystem
   {
     try
     {
-      SmbFile file = null;
-      if (dir != null && dir.length() > 0)
-      {
-        dir = clean(dir);
-        if (dir.startsWith("/"))
-          dir = dir.substring(1);
-        if (!dir.endsWith("/"))
-          dir = dir + "/"; // muss bei jcifs mit einem Slash enden
-        file = new SmbFile(uri.toString(),dir);
-      }
-      else
-        file = new SmbFile(uri.toString());
-      
+      SmbFile file = getDir(dir);
+      Roundtrips.count("smb","list");
       return file.list(new SmbFilenameFilter()
       {
         public boolean accept(SmbFile dir, String name) throws SmbException
         {
           try
           {
+            // Hier wird fuer jeden Eintrag ein eigener Request gesendet
+            Roundtrips.count("smb","stat");
             return filter.accept(new java.io.File(dir.getPath()),new SmbFile(dir,name));
           }
           catch (SmbException e)
@@ -197,6 +218,60 @@ public class SMBFileSystem extends AbstractFileSystem
     }
   }
   
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    try
+    {
+      SmbFile file = getDir(dir);
+      java.io.File fd = new java.io.File(file.getPath());
+
+      // Die von listFiles() gelieferten Objekte enthalten bereits die Attribute
+      // aus der Verzeichnisliste. Die folgenden Abfragen loesen also keine
+      // weiteren Requests aus.
+      Roundtrips.count("smb","list");
+      SmbFile[] files = file.listFiles();
+      ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+      for (int i=0;i<files.length;++i)
+      {
+        SmbFile f = files[i];
+        String name = f.getName();
+        if (name.endsWith("/"))
+          name = name.substring(0,name.length()-1); // Verzeichnisse enden bei jcifs mit einem Slash
+        if (filter != null && !filter.accept(fd,name))
+          continue;
+        boolean isDir = f.isDirectory();
+        list.add(new FileInfo(name,isDir,isDir ? 0L : f.length(),f.lastModified()));
+      }
+      return list.toArray(new FileInfo[list.size()]);
+    }
+    catch (Exception e)
+    {
+      throw new FSException(e);
+    }
+  }
+
+  /**
+   * Liefert das SmbFile-Objekt fuer das Verzeichnis.
+   * @param dir Pfad relativ zur URI des File-Systems.
+   * @return das Verzeichnis.
+   * @throws IOException
+   */
+  private SmbFile getDir(String dir) throws IOException
+  {
+    if (dir == null || dir.length() == 0)
+      return new SmbFile(uri.toString());
+
+    dir = clean(dir);
+    if (dir.startsWith("/"))
+      dir = dir.substring(1);
+    if (!dir.endsWith("/"))
+      dir = dir + "/"; // muss bei jcifs mit einem Slash enden
+    return new SmbFile(uri.toString(),dir);
+  }
+
   /**
    * Hilfsklasse zum Trennen von Verzeichnissen und Dateien.
    */
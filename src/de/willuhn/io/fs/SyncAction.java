@@ -0,0 +1,104 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Eine einzelne Aktion, die der {@link Synchronizer} ermittelt hat.
+ */
+public class SyncAction
+{
+  /**
+   * Die Arten von Aktionen.
+   */
+  public static enum Type
+  {
+    /**
+     * Die Datei existiert im Ziel noch nicht und wird kopiert.
+     */
+    CREATE,
+
+    /**
+     * Die Datei existiert im Ziel, wurde aber in der Quelle geaendert und wird kopiert.
+     */
+    UPDATE,
+
+    /**
+     * Die Datei existiert nur im Ziel und wird dort geloescht.
+     */
+    DELETE
+  }
+
+  private Type type   = null;
+  private String dir  = null;
+  private String name = null;
+  private long length = 0L;
+
+  /**
+   * ct.
+   * @param type Art der Aktion.
+   * @param dir Verzeichnis relativ zum Start-Verzeichnis. NULL fuer das Start-Verzeichnis selbst.
+   * @param name Dateiname.
+   * @param length Groesse der Datei in Bytes.
+   */
+  SyncAction(Type type, String dir, String name, long length)
+  {
+    this.type   = type;
+    this.dir    = dir;
+    this.name   = name;
+    this.length = length;
+  }
+
+  /**
+   * Liefert die Art der Aktion.
+   * @return Art der Aktion.
+   */
+  public Type getType()
+  {
+    return this.type;
+  }
+
+  /**
+   * Liefert das Verzeichnis relativ zum Start-Verzeichnis.
+   * @return Verzeichnis oder NULL fuer das Start-Verzeichnis selbst.
+   */
+  public String getDir()
+  {
+    return this.dir;
+  }
+
+  /**
+   * Liefert den Dateinamen.
+   * @return Dateiname.
+   */
+  public String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Liefert die Groesse der Datei.
+   * Bei CREATE und UPDATE die Groesse der Quell-Datei, bei DELETE die Groesse der Ziel-Datei.
+   * @return Groesse in Bytes.
+   */
+  public long getLength()
+  {
+    return this.length;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString()
+  {
+    return this.type + " " + (this.dir == null ? "" : (this.dir + "/")) + this.name + " (" + this.length + " bytes)";
+  }
+}
@@ -0,0 +1,487 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Synchronisiert einen Verzeichnisbaum von einem File-System in ein anderes.
+ * Beide Baeume werden per {@link FileSystem#listInfo(String, java.io.FilenameFilter)}
+ * eingelesen und anhand von Name, Groesse und Aenderungsdatum verglichen. Es werden
+ * nur neue und geaenderte Dateien kopiert - und zwar parallel ueber mehrere
+ * Verbindungen aus den beiden Pools.
+ * Da das Aenderungsdatum im Ziel beim Kopieren nicht uebernommen werden kann, gilt
+ * eine Datei als geaendert, wenn sich die Groesse unterscheidet oder die Quell-Datei
+ * neuer als die Ziel-Datei ist.
+ */
+public class Synchronizer
+{
+  private FileSystemPool source     = null;
+  private FileSystemPool target     = null;
+  private boolean dryRun            = false;
+  private boolean delete            = false;
+  private boolean checksum          = false;
+  private long tolerance            = 0L;
+  private int threads               = 0;
+  private TransferListener listener = null;
+
+  /**
+   * ct.
+   * @param source Pool mit den Verbindungen zur Quelle.
+   * @param target Pool mit den Verbindungen zum Ziel.
+   */
+  public Synchronizer(FileSystemPool source, FileSystemPool target)
+  {
+    this.source = source;
+    this.target = target;
+  }
+
+  /**
+   * Legt fest, ob die Aktionen nur ermittelt und protokolliert, aber nicht ausgefuehrt werden sollen.
+   * @param dryRun true, wenn nichts geaendert werden soll.
+   */
+  public void setDryRun(boolean dryRun)
+  {
+    this.dryRun = dryRun;
+  }
+
+  /**
+   * Legt fest, ob Dateien, die nur im Ziel existieren, geloescht werden sollen.
+   * Verzeichnisse bleiben dabei erhalten.
+   * @param delete true, wenn ueberzaehlige Dateien geloescht werden sollen.
+   */
+  public void setDelete(boolean delete)
+  {
+    this.delete = delete;
+  }
+
+  /**
+   * Legt fest, ob Dateien gleicher Groesse anhand einer Pruefsumme statt
+   * anhand des Aenderungsdatums verglichen werden sollen.
+   * Hierfuer muessen beide Dateien komplett gelesen werden.
+   * @param checksum true, wenn Pruefsummen verglichen werden sollen.
+   */
+  public void setChecksum(boolean checksum)
+  {
+    this.checksum = checksum;
+  }
+
+  /**
+   * Legt die Toleranz beim Vergleich der Aenderungsdaten fest.
+   * Sinnvoll bei Servern, die das Datum nur minutengenau liefern (z.Bsp. FTP).
+   * @param millis Toleranz in Millisekunden.
+   */
+  public void setTolerance(long millis)
+  {
+    this.tolerance = Math.max(0L,millis);
+  }
+
+  /**
+   * Legt die Anzahl der parallelen Uebertragungen fest.
+   * Die Anzahl wird auf das Verbindungs-Limit der Pools begrenzt.
+   * @param threads Anzahl der parallelen Uebertragungen. 0 fuer automatisch.
+   */
+  public void setThreads(int threads)
+  {
+    this.threads = Math.max(0,threads);
+  }
+
+  /**
+   * Legt einen Listener fest, der ueber den Fortschritt der Uebertragungen informiert wird.
+   * Er wird aus mehreren Threads parallel aufgerufen.
+   * @param listener der Listener.
+   */
+  public void setListener(TransferListener listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * Synchronisiert das Quell-Verzeichnis in das Ziel-Verzeichnis.
+   * @param sourceDir das Quell-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param targetDir das Ziel-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @return Liste der ausgefuehrten Aktionen - bzw. im Dry-Run der Aktionen, die
+   * ausgefuehrt worden waeren.
+   * @throws FSException wenn die Synchronisierung fehlschlug.
+   */
+  public List<SyncAction> sync(String sourceDir, String targetDir) throws FSException
+  {
+    List<SyncAction> actions = diff(sourceDir,targetDir);
+    Logger.info("sync " + sourceDir + " -> " + targetDir + ": " + actions.size() + " actions");
+
+    if (this.dryRun)
+    {
+      for (SyncAction a:actions)
+        Logger.info("dry run: " + a);
+      return actions;
+    }
+
+    execute(actions,sourceDir,targetDir);
+    return actions;
+  }
+
+  /**
+   * Ermittelt die Unterschiede zwischen Quell- und Ziel-Verzeichnis, ohne etwas zu aendern.
+   * @param sourceDir das Quell-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param targetDir das Ziel-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @return Liste der noetigen Aktionen.
+   * @throws FSException wenn die Verzeichnisse nicht gelesen werden konnten.
+   */
+  public List<SyncAction> diff(String sourceDir, String targetDir) throws FSException
+  {
+    checkLimits();
+
+    List<SyncAction> actions = new ArrayList<SyncAction>();
+    FileSystem s = null;
+    FileSystem t = null;
+    boolean ok = false;
+    try
+    {
+      // Immer erst die Quelle, dann das Ziel. Siehe execute(SyncAction,...)
+      s = this.source.acquire();
+      t = this.target.acquire();
+
+      FileInfo[] targetRoot = null;
+      try
+      {
+        targetRoot = t.listInfo(targetDir,null);
+      }
+      catch (FSException e)
+      {
+        Logger.warn("target dir " + targetDir + " not readable, assuming it does not exist yet: " + e.getMessage());
+      }
+      diff(s,t,sourceDir,targetDir,null,targetRoot,actions);
+      ok = true;
+      return actions;
+    }
+    finally
+    {
+      done(this.source,s,ok);
+      done(this.target,t,ok);
+    }
+  }
+
+  /**
+   * Vergleicht ein Verzeichnis rekursiv.
+   * @param s Quell-File-System.
+   * @param t Ziel-File-System.
+   * @param sourceDir Quell-Verzeichnis.
+   * @param targetDir Ziel-Verzeichnis.
+   * @param rel das aktuelle Verzeichnis relativ zum Start-Verzeichnis.
+   * @param targetList Inhalt des Ziel-Verzeichnisses oder NULL, wenn es nicht existiert.
+   * @param actions Liste, in der die Aktionen gesammelt werden.
+   * @throws FSException
+   */
+  private void diff(FileSystem s, FileSystem t, String sourceDir, String targetDir, String rel, FileInfo[] targetList, List<SyncAction> actions) throws FSException
+  {
+    FileInfo[] sourceList = s.listInfo(path(sourceDir,rel),null);
+    if (sourceList == null)
+      sourceList = new FileInfo[0];
+
+    // Bei grossen Verzeichnissen kompakter als eine Map mit einem FileInfo je Datei
+    Listing targets = new Listing(targetList);
+    BitSet found = new BitSet(targets.size());
+
+    for (FileInfo si:sourceList)
+    {
+      String name = si.getName();
+      int i = targets.indexOf(name);
+      FileInfo ti = null;
+      if (i >= 0)
+      {
+        found.set(i);
+        ti = targets.get(i);
+      }
+      if (si.isDirectory())
+      {
+        FileInfo[] sub = null;
+        if (ti != null && ti.isDirectory())
+          sub = t.listInfo(path(targetDir,path(rel,name)),null);
+        diff(s,t,sourceDir,targetDir,path(rel,name),sub,actions);
+        continue;
+      }
+
+      if (ti == null || ti.isDirectory())
+        actions.add(new SyncAction(SyncAction.Type.CREATE,rel,name,si.getLength()));
+      else if (changed(s,t,path(sourceDir,rel),path(targetDir,rel),si,ti))
+        actions.add(new SyncAction(SyncAction.Type.UPDATE,rel,name,si.getLength()));
+    }
+
+    if (!this.delete)
+      return;
+
+    // Was jetzt noch uebrig ist, existiert nur im Ziel
+    for (int i=found.nextClearBit(0);i<targets.size();i=found.nextClearBit(i + 1))
+    {
+      if (targets.isDirectory(i))
+        deleteTree(t,targetDir,path(rel,targets.getName(i)),actions);
+      else
+        actions.add(new SyncAction(SyncAction.Type.DELETE,rel,targets.getName(i),targets.getLength(i)));
+    }
+  }
+
+  /**
+   * Sammelt die Dateien eines Ziel-Verzeichnisses, das in der Quelle nicht existiert.
+   * @param t Ziel-File-System.
+   * @param targetDir Ziel-Verzeichnis.
+   * @param rel Verzeichnis relativ zum Start-Verzeichnis.
+   * @param actions Liste, in der die Aktionen gesammelt werden.
+   * @throws FSException
+   */
+  private void deleteTree(FileSystem t, String targetDir, String rel, List<SyncAction> actions) throws FSException
+  {
+    FileInfo[] list = t.listInfo(path(targetDir,rel),null);
+    if (list == null)
+      return;
+    for (FileInfo ti:list)
+    {
+      if (ti.isDirectory())
+        deleteTree(t,targetDir,path(rel,ti.getName()),actions);
+      else
+        actions.add(new SyncAction(SyncAction.Type.DELETE,rel,ti.getName(),ti.getLength()));
+    }
+  }
+
+  /**
+   * Prueft, ob die Quell-Datei geaendert wurde.
+   * @param s Quell-File-System.
+   * @param t Ziel-File-System.
+   * @param sourceDir Verzeichnis der Quell-Datei.
+   * @param targetDir Verzeichnis der Ziel-Datei.
+   * @param si Meta-Daten der Quell-Datei.
+   * @param ti Meta-Daten der Ziel-Datei.
+   * @return true, wenn die Datei kopiert werden muss.
+   * @throws FSException
+   */
+  private boolean changed(FileSystem s, FileSystem t, String sourceDir, String targetDir, FileInfo si, FileInfo ti) throws FSException
+  {
+    if (si.getLength() != ti.getLength())
+      return true;
+
+    if (this.checksum)
+      return !Arrays.equals(digest(s.create(sourceDir,si.getName())),digest(t.create(targetDir,ti.getName())));
+
+    return si.getLastModified() > ti.getLastModified() + this.tolerance;
+  }
+
+  /**
+   * Berechnet die Pruefsumme der Datei.
+   * @param f die Datei.
+   * @return die Pruefsumme.
+   * @throws FSException
+   */
+  private byte[] digest(File f) throws FSException
+  {
+    InputStream is = null;
+    try
+    {
+      MessageDigest md = MessageDigest.getInstance("MD5");
+      is = f.getInputStream();
+      byte[] buf = new byte[64 * 1024];
+      int read;
+      while ((read = is.read(buf)) != -1)
+        md.update(buf,0,read);
+      return md.digest();
+    }
+    catch (FSException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      if (is != null)
+      {
+        try
+        {
+          is.close();
+        }
+        catch (IOException e)
+        {
+          Logger.error("error while closing stream",e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fuehrt die Aktionen parallel aus.
+   * @param actions die Aktionen.
+   * @param sourceDir das Quell-Verzeichnis.
+   * @param targetDir das Ziel-Verzeichnis.
+   * @throws FSException wenn mindestens eine Aktion fehlschlug.
+   */
+  private void execute(List<SyncAction> actions, final String sourceDir, final String targetDir) throws FSException
+  {
+    if (actions.size() == 0)
+      return;
+
+    int max = Math.min(this.source.getMaxConnections(),this.target.getMaxConnections());
+
+    // Wenn Quelle und Ziel auf dem selben Host liegen, teilen sie sich das Limit.
+    // Jeder Thread braucht dann zwei Verbindungen von diesem Host.
+    if (this.source.getHost().equals(this.target.getHost()))
+      max = max / 2;
+
+    int count = Math.max(1,this.threads > 0 ? Math.min(this.threads,max) : max);
+    Logger.info("executing " + actions.size() + " sync actions in " + count + " threads");
+
+    final BufferPool buffers = new BufferPool(Transfer.DEFAULT_BUFFER_SIZE,count * (Transfer.DEFAULT_RING_SIZE + 2),false);
+    ExecutorService executor = Executors.newFixedThreadPool(count,new DaemonThreadFactory("filesystems-sync"));
+    try
+    {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (final SyncAction a:actions)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          public Void call() throws Exception
+          {
+            execute(a,sourceDir,targetDir,buffers);
+            return null;
+          }
+        }));
+      }
+
+      int failed = 0;
+      Throwable cause = null;
+      for (int i=0;i<futures.size();++i)
+      {
+        try
+        {
+          futures.get(i).get();
+        }
+        catch (ExecutionException e)
+        {
+          failed++;
+          Logger.error("sync action failed: " + actions.get(i),e.getCause());
+          if (cause == null)
+            cause = e.getCause();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new FSException("interrupted while synchronizing",e);
+        }
+      }
+
+      if (failed > 0)
+        throw new FSException(failed + " of " + actions.size() + " sync actions failed",cause);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Fuehrt eine einzelne Aktion aus.
+   * @param a die Aktion.
+   * @param sourceDir das Quell-Verzeichnis.
+   * @param targetDir das Ziel-Verzeichnis.
+   * @param buffers der Puffer-Pool fuer die Uebertragung.
+   * @throws FSException
+   */
+  private void execute(SyncAction a, String sourceDir, String targetDir, BufferPool buffers) throws FSException
+  {
+    FileSystem s = null;
+    FileSystem t = null;
+    boolean ok = false;
+    try
+    {
+      // Die Verbindungen muessen in der selben Reihenfolge wie in diff() geholt
+      // werden. Sonst blockieren sich die Threads gegenseitig, wenn Quelle und
+      // Ziel sich das Limit eines Hosts teilen.
+      if (a.getType() != SyncAction.Type.DELETE)
+        s = this.source.acquire();
+      t = this.target.acquire();
+      File tf = t.create(path(targetDir,a.getDir()),a.getName());
+      if (a.getType() == SyncAction.Type.DELETE)
+      {
+        Logger.debug("deleting " + a);
+        tf.delete();
+      }
+      else
+      {
+        Logger.debug("copying " + a);
+        Transfer transfer = new Transfer(buffers,Transfer.DEFAULT_RING_SIZE);
+        transfer.setListener(this.listener);
+        transfer.copy(s.create(path(sourceDir,a.getDir()),a.getName()),tf);
+      }
+      ok = true;
+    }
+    finally
+    {
+      done(this.source,s,ok);
+      done(this.target,t,ok);
+    }
+  }
+
+  /**
+   * Prueft, ob die Verbindungs-Limits fuer die Synchronisierung ausreichen.
+   * Liegen Quelle und Ziel auf dem selben Host, braucht jeder Thread zwei
+   * Verbindungen von diesem Host.
+   * @throws FSException wenn das Limit des Hosts dafuer zu klein ist.
+   */
+  private void checkLimits() throws FSException
+  {
+    if (this.source.getHost().equals(this.target.getHost()) && this.source.getMaxConnections() < 2)
+      throw new FSException("source and target share host " + this.source.getHost() + ", at least 2 connections needed but limit is " + this.source.getMaxConnections());
+  }
+
+  /**
+   * Gibt die Verbindung an den Pool zurueck.
+   * @param pool der Pool.
+   * @param fs die Verbindung. Kann NULL sein.
+   * @param ok true, wenn die Verbindung fehlerfrei verwendet wurde.
+   */
+  private static void done(FileSystemPool pool, FileSystem fs, boolean ok)
+  {
+    if (fs == null)
+      return;
+    if (ok)
+      pool.release(fs);
+    else
+      pool.invalidate(fs);
+  }
+
+  /**
+   * Haengt den Namen an das Verzeichnis an.
+   * @param dir das Verzeichnis. Kann NULL sein.
+   * @param name der Name. Kann NULL sein.
+   * @return der Pfad.
+   */
+  private static String path(String dir, String name)
+  {
+    if (name == null || name.length() == 0)
+      return dir;
+    if (dir == null || dir.length() == 0)
+      return name;
+    return dir + "/" + name;
+  }
+}
@@ -0,0 +1,34 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Listener, der von einem {@link Tailer} ueber neue Daten informiert wird.
+ */
+public interface TailListener
+{
+  /**
+   * Wird fuer jeden gelesenen Block angehaengter Daten aufgerufen.
+   * @param file die Datei.
+   * @param data die Daten. Der Puffer wird nach dem Aufruf wiederverwendet.
+   * @param len Anzahl der gueltigen Bytes im Puffer.
+   */
+  public void data(File file, byte[] data, int len);
+
+  /**
+   * Wird aufgerufen, wenn die Datei gekuerzt oder durch eine neue ersetzt
+   * wurde. Anschliessend wird ab dem Anfang der Datei gelesen.
+   * @param file die Datei.
+   * @param offset die Position, bis zu der die alte Datei gelesen wurde.
+   */
+  public void reset(File file, long offset);
+}
@@ -0,0 +1,207 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Verfolgt eine wachsende Datei (z.Bsp. ein Log) und liefert nur die jeweils
+ * angehaengten Daten.
+ * Bei jedem Aufruf von {@link #poll()} werden per {@link File#stat()} Groesse
+ * und Datum geprueft. Nur wenn sich eines davon geaendert hat, wird ab der
+ * zuletzt gelesenen Position weitergelesen.
+ * Dabei werden die letzten 16 bereits gelesenen Bytes erneut gelesen und
+ * verglichen. Weichen sie ab oder ist die Datei kleiner geworden, wurde sie
+ * gekuerzt oder rotiert und wird von vorn gelesen.
+ * Da die Klasse Runnable implementiert, kann sie direkt per
+ * {@link java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay(Runnable, long, long, java.util.concurrent.TimeUnit)}
+ * regelmaessig ausgefuehrt werden.
+ */
+public class Tailer implements Runnable
+{
+  private final static int OVERLAP = 16;
+
+  private File file             = null;
+  private TailListener listener = null;
+  private byte[] buf            = new byte[64 * 1024];
+
+  private long offset           = -1L;
+  private long lastModified     = -1L;
+  private byte[] tail           = null;
+
+  /**
+   * ct.
+   * Beginnt am aktuellen Ende der Datei.
+   * @param file die Datei.
+   * @param listener der Listener.
+   */
+  public Tailer(File file, TailListener listener)
+  {
+    this(file,-1L,listener);
+  }
+
+  /**
+   * ct.
+   * @param file die Datei.
+   * @param offset die Position, ab der gelesen werden soll.
+   * -1, wenn erst ab dem aktuellen Ende der Datei gelesen werden soll.
+   * @param listener der Listener.
+   */
+  public Tailer(File file, long offset, TailListener listener)
+  {
+    this.file     = file;
+    this.offset   = offset;
+    this.listener = listener;
+  }
+
+  /**
+   * Liefert die Position, bis zu der die Datei gelesen wurde.
+   * @return die Position oder -1, wenn noch nicht gepollt wurde.
+   */
+  public synchronized long getOffset()
+  {
+    return this.offset;
+  }
+
+  /**
+   * Prueft die Datei und liefert die seit dem letzten Aufruf angehaengten Daten an den Listener.
+   * Existiert die Datei (z.Bsp. waehrend einer Rotation) nicht, passiert nichts.
+   * @return Anzahl der gelesenen Bytes.
+   * @throws FSException
+   */
+  public synchronized long poll() throws FSException
+  {
+    FileInfo info = this.file.stat();
+    if (info == null)
+      return 0L;
+
+    if (this.offset < 0L)
+    {
+      this.offset = info.getLength();
+      this.lastModified = info.getLastModified();
+    }
+
+    if (info.getLength() == this.offset && info.getLastModified() == this.lastModified && this.tail != null)
+      return 0L;
+
+    if (info.getLength() < this.offset)
+      reset();
+
+    long read = read();
+    if (read == -1L)
+    {
+      reset();
+      read = read();
+      if (read == -1L)
+        throw new FSException("unable to read " + this.file + " from start");
+    }
+    this.lastModified = info.getLastModified();
+    return read;
+  }
+
+  /**
+   * @see java.lang.Runnable#run()
+   */
+  public void run()
+  {
+    try
+    {
+      poll();
+    }
+    catch (Exception e)
+    {
+      Logger.error("unable to poll " + this.file,e);
+    }
+  }
+
+  /**
+   * Liest ab der aktuellen Position bis zum Ende der Datei.
+   * @return Anzahl der gelesenen Bytes oder -1, wenn die bereits gelesenen
+   * Bytes vor der Position nicht mehr uebereinstimmen.
+   * @throws FSException
+   */
+  private long read() throws FSException
+  {
+    int overlap = (int) Math.min(this.offset,OVERLAP);
+    InputStream is = this.file.getInputStream(this.offset - overlap);
+    try
+    {
+      int n = 0;
+      while (n < overlap)
+      {
+        int r = is.read(this.buf,n,overlap - n);
+        if (r == -1)
+          return -1L;
+        n += r;
+      }
+
+      if (this.tail == null)
+        this.tail = Arrays.copyOf(this.buf,overlap);
+      else if (!Arrays.equals(this.tail,Arrays.copyOf(this.buf,overlap)))
+        return -1L;
+
+      long count = 0L;
+      while ((n = is.read(this.buf)) != -1)
+      {
+        if (n == 0)
+          continue;
+        remember(n);
+        this.offset += n;
+        count += n;
+        this.listener.data(this.file,this.buf,n);
+      }
+      return count;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      try
+      {
+        is.close();
+      }
+      catch (IOException e) {/*ignore */}
+    }
+  }
+
+  /**
+   * Merkt sich die letzten Bytes vor der neuen Position.
+   * @param len Anzahl der neu gelesenen Bytes im Puffer.
+   */
+  private void remember(int len)
+  {
+    int keep = (int) Math.min(OVERLAP,this.tail.length + (long) len);
+    int fromBuf = Math.min(len,keep);
+    int fromTail = keep - fromBuf;
+    byte[] t = new byte[keep];
+    System.arraycopy(this.tail,this.tail.length - fromTail,t,0,fromTail);
+    System.arraycopy(this.buf,len - fromBuf,t,fromTail,fromBuf);
+    this.tail = t;
+  }
+
+  /**
+   * Beginnt wieder am Anfang der Datei.
+   */
+  private void reset()
+  {
+    Logger.info(this.file + " was truncated or rotated at offset " + this.offset + ", reading from start");
+    this.listener.reset(this.file,this.offset);
+    this.offset = 0L;
+    this.tail   = new byte[0];
+  }
+}
@@ -0,0 +1,42 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Schnittstelle fuer das Tracing der File-System-Operationen.
+ * Im Gegensatz zum {@link MetricsListener}, der erst nach Abschluss einer Operation
+ * informiert wird, wird der Tracer zu Beginn und am Ende aufgerufen. Damit koennen
+ * die Operationen zeitlich korrekt in Profiler-Aufzeichnungen (z.Bsp. Java Flight Recorder)
+ * eingeordnet werden.
+ * @see Tracing#setTracer(Tracer)
+ */
+public interface Tracer
+{
+  /**
+   * Wird zu Beginn einer Operation aufgerufen.
+   * @param backend Name der File-System-Implementierung. Zum Beispiel "FTPFileSystem".
+   * @param host der Host oder ein Leerstring bei lokalen File-Systemen.
+   * @param operation Name der Operation. Zum Beispiel "connect", "login", "list", "stat", "open" oder "transfer".
+   * @param path Pfad der Datei oder des Verzeichnisses. Kann NULL sein.
+   * @return ein beliebiges Objekt, das beim Ende der Operation wieder uebergeben wird.
+   * NULL, wenn die Operation nicht weiter verfolgt werden soll.
+   */
+  public Object begin(String backend, String host, String operation, String path);
+
+  /**
+   * Wird am Ende einer Operation aufgerufen.
+   * @param span das von {@link Tracer#begin(String, String, String, String)} gelieferte Objekt.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param success true, wenn die Operation erfolgreich war.
+   */
+  public void end(Object span, long bytes, boolean success);
+}
@@ -0,0 +1,73 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Verwaltet den {@link Tracer}.
+ * Per System-Property "filesystems.jfr=true" wird ein Tracer installiert, der die
+ * Operationen als Java-Flight-Recorder-Events "de.willuhn.io.fs.Operation" meldet.
+ * Das erfordert Java 11 und ein JAR mit der JFR-Unterstuetzung. Ist kein Tracer
+ * installiert (Default) und sind auch die Metriken deaktiviert, werden die
+ * File-Systeme nicht instrumentiert und es entstehen keine Kosten.
+ */
+public class Tracing
+{
+  private static volatile Tracer tracer = null;
+
+  static
+  {
+    if ("true".equalsIgnoreCase(System.getProperty("filesystems.jfr")))
+    {
+      try
+      {
+        // Per Reflection, da die Klasse erst ab Java 11 kompiliert werden kann
+        Class<?> c = Class.forName("de.willuhn.io.fs.jfr.JfrTracer");
+        tracer = (Tracer) c.getDeclaredConstructor().newInstance();
+        Logger.debug("jfr events enabled");
+      }
+      catch (Throwable t)
+      {
+        Logger.warn("jfr events not available: " + t);
+      }
+    }
+  }
+
+  /**
+   * Legt den Tracer fest.
+   * Wirkt sich nur auf File-Systeme aus, die danach erzeugt werden.
+   * @param t der Tracer. NULL, um das Tracing zu deaktivieren.
+   */
+  public static void setTracer(Tracer t)
+  {
+    tracer = t;
+  }
+
+  /**
+   * Liefert den aktuellen Tracer.
+   * @return der Tracer oder NULL.
+   */
+  public static Tracer getTracer()
+  {
+    return tracer;
+  }
+
+  /**
+   * Prueft, ob ein Tracer installiert ist.
+   * @return true, wenn ein Tracer installiert ist.
+   */
+  static boolean isActive()
+  {
+    return tracer != null;
+  }
+}
@@ -0,0 +1,514 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Kopiert Dateien und Verzeichnisse zwischen zwei File-Systemen.
+ * Lesen und Schreiben finden parallel statt: Ein Hintergrund-Thread liest die
+ * Quelle in grosse Puffer und legt sie in einem Ring mit begrenzter Groesse ab,
+ * waehrend der aufrufende Thread die Puffer in das Ziel schreibt. Ist der Ring
+ * voll, wartet der Leser, bis das Ziel wieder Puffer freigegeben hat.
+ * Quelle und Ziel duerfen nicht ueber die selbe Verbindung angesprochen werden,
+ * da beide Streams gleichzeitig offen sind. Eine Instanz kann nacheinander
+ * (nicht parallel) fuer beliebig viele Dateien verwendet werden und summiert
+ * dabei die uebertragenen Bytes.
+ * Liegen Quelle und Ziel auf zwei verschiedenen FTP-Servern, wird zuerst
+ * versucht, die Datei per FXP direkt zwischen den Servern zu kopieren.
+ */
+public class Transfer
+{
+  /**
+   * Default-Groesse der Puffer in Bytes.
+   */
+  public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * Default-Anzahl der Puffer im Ring.
+   */
+  public final static int DEFAULT_RING_SIZE = 4;
+
+  // Markiert das Ende der Datei im Ring.
+  private final static ByteBuffer EOF = ByteBuffer.allocate(0);
+
+  // Gemeinsamer Thread-Pool fuer die Leser.
+  private final static Executor READERS = Executors.newCachedThreadPool(new DaemonThreadFactory("filesystems-transfer"));
+
+  private BufferPool pool             = null;
+  private int ringSize                = DEFAULT_RING_SIZE;
+  private Executor executor           = READERS;
+  private TransferListener listener   = null;
+
+  private AtomicLong totalBytes       = new AtomicLong();
+  private AtomicLong totalFiles       = new AtomicLong();
+  private AtomicLong totalMillis      = new AtomicLong();
+
+  /**
+   * ct.
+   * Verwendet einen Ring aus 4 Puffern zu je 1 MB.
+   */
+  public Transfer()
+  {
+    this(new BufferPool(DEFAULT_BUFFER_SIZE,DEFAULT_RING_SIZE + 2,false),DEFAULT_RING_SIZE);
+  }
+
+  /**
+   * ct.
+   * @param pool der Pool, aus dem die Puffer bezogen werden.
+   * @param ringSize Anzahl der Puffer, die der Leser dem Schreiber voraus sein darf.
+   */
+  public Transfer(BufferPool pool, int ringSize)
+  {
+    this.pool     = pool;
+    this.ringSize = Math.max(1,ringSize);
+  }
+
+  /**
+   * Legt den Executor fest, in dem die Quell-Dateien gelesen werden.
+   * @param executor der Executor.
+   */
+  public void setExecutor(Executor executor)
+  {
+    this.executor = executor != null ? executor : READERS;
+  }
+
+  /**
+   * Legt einen Listener fest, der ueber den Fortschritt informiert wird.
+   * @param listener der Listener.
+   */
+  public void setListener(TransferListener listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * Kopiert die Datei.
+   * Existiert die Ziel-Datei bereits, wird sie ueberschrieben. Das Ziel wird
+   * erst geoeffnet, wenn die Quelle gelesen werden kann. Schlaegt das Kopieren
+   * danach fehl, wird die unvollstaendige Ziel-Datei geloescht.
+   * @param source die Quell-Datei.
+   * @param target die Ziel-Datei.
+   * @return Anzahl der kopierten Bytes.
+   * @throws FSException wenn das Kopieren fehlschlug.
+   */
+  public long copy(File source, File target) throws FSException
+  {
+    long fxp = fxp(source,target);
+    if (fxp >= 0)
+      return fxp;
+
+    long total = this.listener != null ? source.length() : -1L;
+    long start = System.currentTimeMillis();
+    long bytes = 0L;
+
+    BlockingQueue<ByteBuffer> ring = new ArrayBlockingQueue<ByteBuffer>(this.ringSize + 1);
+    Reader reader = new Reader(source,ring);
+    this.executor.execute(reader);
+
+    WritableByteChannel out = null;
+    ByteBuffer b = null;
+    boolean opened = false;
+    boolean ok = false;
+    try
+    {
+      // Auf die ersten Daten warten. Kann die Quelle nicht gelesen werden,
+      // bleibt das Ziel unangetastet.
+      b = next(ring,reader);
+      if (reader.error != null)
+        throw reader.error;
+
+      out = Channels.newChannel(target.getOutputStream());
+      opened = true;
+      while (b != EOF)
+      {
+        try
+        {
+          while (b.hasRemaining())
+            bytes += out.write(b);
+        }
+        finally
+        {
+          this.pool.release(b);
+          b = null;
+        }
+        if (this.listener != null)
+          this.listener.progress(source,bytes,total);
+        b = next(ring,reader);
+      }
+
+      if (reader.error != null)
+        throw reader.error;
+
+      out.close();
+      out = null;
+      ok = true;
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new FSException("interrupted while copying",e);
+    }
+    finally
+    {
+      // Der Leser darf die Quell-Verbindung nicht mehr benutzen, wenn wir
+      // zurueckkehren. Daher abbrechen und warten, bis er beendet ist.
+      reader.abort();
+      close(out);
+      reader.await();
+
+      // Nicht mehr geschriebene Puffer an den Pool zurueckgeben
+      if (b != null && b != EOF)
+        this.pool.release(b);
+      while ((b = ring.poll()) != null)
+      {
+        if (b != EOF)
+          this.pool.release(b);
+      }
+
+      if (opened && !ok)
+        discard(target);
+    }
+
+    long millis = System.currentTimeMillis() - start;
+    this.totalBytes.addAndGet(bytes);
+    this.totalFiles.incrementAndGet();
+    this.totalMillis.addAndGet(millis);
+
+    if (this.listener != null)
+      this.listener.finished(source,bytes,millis);
+
+    return bytes;
+  }
+
+  /**
+   * Liefert den naechsten Puffer aus dem Ring.
+   * @param ring der Ring.
+   * @param reader der Leser.
+   * @return der Puffer oder {@link #EOF}, wenn der Leser beendet ist.
+   * @throws InterruptedException
+   */
+  private static ByteBuffer next(BlockingQueue<ByteBuffer> ring, Reader reader) throws InterruptedException
+  {
+    for (;;)
+    {
+      ByteBuffer b = ring.poll(100,TimeUnit.MILLISECONDS);
+      if (b != null)
+        return b;
+
+      // Leser wurde beendet, ohne das Dateiende zu melden
+      if (reader.finished && ring.isEmpty())
+        return EOF;
+    }
+  }
+
+  /**
+   * Loescht eine unvollstaendig geschriebene Ziel-Datei und protokolliert Fehler nur.
+   * @param f die Datei.
+   */
+  private static void discard(File f)
+  {
+    try
+    {
+      Logger.info("deleting incomplete file " + f);
+      f.delete();
+    }
+    catch (Exception e)
+    {
+      Logger.error("unable to delete incomplete file " + f,e);
+    }
+  }
+
+  /**
+   * Kopiert die Datei per FXP direkt zwischen zwei FTP-Servern.
+   * @param source die Quell-Datei.
+   * @param target die Ziel-Datei.
+   * @return Anzahl der kopierten Bytes oder -1, wenn die Datei auf
+   * diesem Weg nicht kopiert werden konnte.
+   * @throws FSException
+   */
+  private long fxp(File source, File target) throws FSException
+  {
+    File s = InstrumentedFile.unwrap(source);
+    File t = InstrumentedFile.unwrap(target);
+    if (!(s instanceof FTPFile) || !(t instanceof FTPFile))
+      return -1L;
+
+    long start = System.currentTimeMillis();
+    long bytes = ((FTPFile) s).fxp((FTPFile) t);
+    if (bytes < 0)
+    {
+      Logger.debug("fxp not possible, falling back to streamed copy");
+      return -1L;
+    }
+
+    long millis = System.currentTimeMillis() - start;
+    this.totalBytes.addAndGet(bytes);
+    this.totalFiles.incrementAndGet();
+    this.totalMillis.addAndGet(millis);
+
+    if (this.listener != null)
+    {
+      this.listener.progress(source,bytes,bytes);
+      this.listener.finished(source,bytes,millis);
+    }
+    return bytes;
+  }
+
+  /**
+   * Kopiert das Verzeichnis samt aller Unterverzeichnisse.
+   * Bereits existierende Dateien im Ziel werden ueberschrieben.
+   * @param sourceFs das Quell-File-System.
+   * @param sourceDir das Quell-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param targetFs das Ziel-File-System.
+   * @param targetDir das Ziel-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @return Anzahl der kopierten Bytes.
+   * @throws FSException wenn das Kopieren fehlschlug.
+   */
+  public long copy(FileSystem sourceFs, String sourceDir, FileSystem targetFs, String targetDir) throws FSException
+  {
+    long bytes = 0L;
+
+    String[] files = sourceFs.list(sourceDir,null);
+    if (files != null)
+    {
+      for (String name:files)
+      {
+        Logger.debug("copying " + path(sourceDir,name) + " to " + path(targetDir,name));
+        bytes += copy(sourceFs.create(sourceDir,name),targetFs.create(targetDir,name));
+      }
+    }
+
+    String[] dirs = sourceFs.listDirs(sourceDir,null);
+    if (dirs != null)
+    {
+      for (String name:dirs)
+      {
+        bytes += copy(sourceFs,path(sourceDir,name),targetFs,path(targetDir,name));
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Liefert die Gesamtzahl der bisher kopierten Bytes.
+   * @return Anzahl der Bytes.
+   */
+  public long getTotalBytes()
+  {
+    return this.totalBytes.get();
+  }
+
+  /**
+   * Liefert die Gesamtzahl der bisher kopierten Dateien.
+   * @return Anzahl der Dateien.
+   */
+  public long getTotalFiles()
+  {
+    return this.totalFiles.get();
+  }
+
+  /**
+   * Liefert den durchschnittlichen Durchsatz aller bisherigen Kopier-Vorgaenge.
+   * @return Durchsatz in Bytes pro Sekunde.
+   */
+  public long getThroughput()
+  {
+    long millis = this.totalMillis.get();
+    return millis > 0 ? (this.totalBytes.get() * 1000L / millis) : 0L;
+  }
+
+  /**
+   * Haengt den Namen an das Verzeichnis an.
+   * @param dir das Verzeichnis. Kann NULL sein.
+   * @param name der Name.
+   * @return der Pfad.
+   */
+  private static String path(String dir, String name)
+  {
+    return (dir == null || dir.length() == 0) ? name : (dir + "/" + name);
+  }
+
+  /**
+   * Schliesst den Channel ohne Fehler zu werfen.
+   * @param c der Channel.
+   */
+  private static void close(Channel c)
+  {
+    if (c == null)
+      return;
+    try
+    {
+      c.close();
+    }
+    catch (Exception e)
+    {
+      Logger.error("error while closing stream",e);
+    }
+  }
+
+  /**
+   * Liest die Quell-Datei im Hintergrund in den Ring.
+   */
+  private class Reader implements Runnable
+  {
+    private File source                    = null;
+    private BlockingQueue<ByteBuffer> ring = null;
+    private volatile boolean cancelled     = false;
+    private volatile boolean finished      = false;
+    private volatile FSException error     = null;
+    private volatile ReadableByteChannel in = null;
+    private CountDownLatch done            = new CountDownLatch(1);
+
+    /**
+     * ct.
+     * @param source
+     * @param ring
+     */
+    private Reader(File source, BlockingQueue<ByteBuffer> ring)
+    {
+      this.source = source;
+      this.ring   = ring;
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run()
+    {
+      ReadableByteChannel in = null;
+      try
+      {
+        if (this.cancelled)
+          return;
+
+        in = Channels.newChannel(this.source.getInputStream());
+        this.in = in;
+        boolean eof = false;
+        while (!eof && !this.cancelled)
+        {
+          ByteBuffer b = pool.acquire();
+          while (b.hasRemaining())
+          {
+            if (in.read(b) == -1)
+            {
+              eof = true;
+              break;
+            }
+          }
+          b.flip();
+          if (b.hasRemaining())
+            put(b);
+          else
+            pool.release(b);
+        }
+      }
+      catch (FSException e)
+      {
+        this.error = e;
+      }
+      catch (Exception e)
+      {
+        this.error = new FSException(e);
+      }
+      finally
+      {
+        close(in);
+        put(EOF);
+        this.finished = true;
+        this.done.countDown();
+      }
+    }
+
+    /**
+     * Bricht das Lesen ab.
+     * Haengt der Leser noch in einem blockierenden read(), wird dieses durch
+     * Schliessen der Quelle beendet.
+     */
+    private void abort()
+    {
+      this.cancelled = true;
+      if (!this.finished)
+        close(this.in);
+    }
+
+    /**
+     * Wartet, bis der Leser beendet ist.
+     */
+    private void await()
+    {
+      boolean interrupted = false;
+      try
+      {
+        for (;;)
+        {
+          try
+          {
+            this.done.await();
+            return;
+          }
+          catch (InterruptedException e)
+          {
+            interrupted = true;
+          }
+        }
+      }
+      finally
+      {
+        if (interrupted)
+          Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Legt den Puffer in den Ring und wartet ggf., bis dort Platz ist.
+     * @param b der Puffer.
+     */
+    private void put(ByteBuffer b)
+    {
+      try
+      {
+        while (!this.cancelled)
+        {
+          if (this.ring.offer(b,100,TimeUnit.MILLISECONDS))
+            return;
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        this.cancelled = true;
+        if (this.error == null)
+          this.error = new FSException("interrupted while reading",e);
+      }
+      pool.release(b);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+/**
+ * Listener, der ueber den Fortschritt eines {@link Transfer} informiert wird.
+ */
+public interface TransferListener
+{
+  /**
+   * Wird nach jedem geschriebenen Chunk aufgerufen.
+   * @param source die Quell-Datei.
+   * @param bytes Anzahl der bisher uebertragenen Bytes.
+   * @param total Groesse der Quell-Datei oder -1, wenn sie nicht bekannt ist.
+   */
+  public void progress(File source, long bytes, long total);
+
+  /**
+   * Wird aufgerufen, nachdem die Datei vollstaendig uebertragen wurde.
+   * @param source die Quell-Datei.
+   * @param bytes Anzahl der uebertragenen Bytes.
+   * @param millis Dauer der Uebertragung in Millisekunden.
+   */
+  public void finished(File source, long bytes, long millis);
+}
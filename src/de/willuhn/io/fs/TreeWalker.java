@@ -0,0 +1,227 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Durchlaeuft einen Verzeichnisbaum rekursiv.
+ * Die Unterverzeichnisse werden parallel in einem {@link ForkJoinPool} gelesen,
+ * wobei jede Verzeichnisliste ueber eine eigene Verbindung aus dem
+ * {@link FileSystemPool} geholt wird. Die Laufzeit haengt damit nicht mehr
+ * von der Summe der Latenzen aller Verzeichnisse ab.
+ * Jeder gefundene Eintrag wird sofort an den {@link Visitor} gemeldet.
+ */
+public class TreeWalker
+{
+  private FileSystemPool pool = null;
+  private int maxDepth        = 0;
+  private int parallelism     = 0;
+  private Filter filter       = null;
+
+  /**
+   * ct.
+   * @param pool Pool mit den Verbindungen.
+   */
+  public TreeWalker(FileSystemPool pool)
+  {
+    this.pool = pool;
+  }
+
+  /**
+   * Legt die maximale Tiefe fest.
+   * Die Eintraege im Start-Verzeichnis haben die Tiefe 1.
+   * @param maxDepth maximale Tiefe. 0 fuer unbegrenzt.
+   */
+  public void setMaxDepth(int maxDepth)
+  {
+    this.maxDepth = Math.max(0,maxDepth);
+  }
+
+  /**
+   * Legt die Anzahl der parallel gelesenen Verzeichnisse fest.
+   * Sie wird auf das Verbindungs-Limit des Pools begrenzt.
+   * @param parallelism Anzahl. 0 fuer das Verbindungs-Limit des Pools.
+   */
+  public void setParallelism(int parallelism)
+  {
+    this.parallelism = Math.max(0,parallelism);
+  }
+
+  /**
+   * Legt einen Filter fest.
+   * @param filter der Filter.
+   */
+  public void setFilter(Filter filter)
+  {
+    this.filter = filter;
+  }
+
+  /**
+   * Durchlaeuft das Verzeichnis rekursiv.
+   * Die Funktion kehrt erst zurueck, wenn alle Verzeichnisse gelesen wurden.
+   * @param dir das Start-Verzeichnis. NULL fuer das Basis-Verzeichnis.
+   * @param visitor der Visitor, an den die Eintraege gemeldet werden.
+   * @throws FSException wenn ein Verzeichnis nicht gelesen werden konnte.
+   */
+  public void walk(String dir, Visitor visitor) throws FSException
+  {
+    int max = this.pool.getMaxConnections();
+    int count = this.parallelism > 0 ? Math.min(this.parallelism,max) : max;
+
+    ForkJoinPool executor = new ForkJoinPool(Math.max(1,count));
+    try
+    {
+      executor.invoke(new Task(dir,1,visitor));
+    }
+    catch (WalkException e)
+    {
+      throw e.cause;
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Liest ein einzelnes Verzeichnis und startet die Tasks fuer die Unterverzeichnisse.
+   */
+  private class Task extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private String dir      = null;
+    private int depth       = 0;
+    private Visitor visitor = null;
+
+    /**
+     * ct.
+     * @param dir
+     * @param depth
+     * @param visitor
+     */
+    private Task(String dir, int depth, Visitor visitor)
+    {
+      this.dir     = dir;
+      this.depth   = depth;
+      this.visitor = visitor;
+    }
+
+    /**
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    protected void compute()
+    {
+      FileInfo[] list = null;
+      FileSystem fs = null;
+      try
+      {
+        fs = pool.acquire();
+        list = fs.listInfo(this.dir,null);
+        pool.release(fs);
+      }
+      catch (FSException e)
+      {
+        if (fs != null)
+          pool.invalidate(fs);
+        throw new WalkException(e);
+      }
+      catch (RuntimeException e)
+      {
+        if (fs != null)
+          pool.invalidate(fs);
+        throw e;
+      }
+
+      if (list == null)
+      {
+        Logger.warn("dir " + this.dir + " not found");
+        return;
+      }
+
+      List<Task> tasks = new ArrayList<Task>();
+      for (FileInfo info:list)
+      {
+        if (filter != null && !filter.accept(this.dir,info,this.depth))
+          continue;
+
+        this.visitor.visit(this.dir,info);
+
+        if (info.isDirectory() && (maxDepth == 0 || this.depth < maxDepth))
+        {
+          String sub = (this.dir == null || this.dir.length() == 0) ? info.getName() : (this.dir + "/" + info.getName());
+          tasks.add(new Task(sub,this.depth + 1,this.visitor));
+        }
+      }
+
+      if (tasks.size() > 0)
+        invokeAll(tasks);
+    }
+  }
+
+  /**
+   * Transportiert die FSException durch den ForkJoinPool.
+   */
+  private static class WalkException extends RuntimeException
+  {
+    private static final long serialVersionUID = 1L;
+    private FSException cause = null;
+
+    /**
+     * ct.
+     * @param cause
+     */
+    private WalkException(FSException cause)
+    {
+      super(cause);
+      this.cause = cause;
+    }
+  }
+
+  /**
+   * Wird fuer jeden gefundenen Eintrag aufgerufen.
+   * Die Aufrufe erfolgen parallel aus mehreren Threads, die Implementierung
+   * muss daher thread-safe sein.
+   */
+  public interface Visitor
+  {
+    /**
+     * Meldet einen gefundenen Eintrag.
+     * @param dir das Verzeichnis, in dem sich der Eintrag befindet.
+     * @param info die Meta-Daten des Eintrages.
+     */
+    public void visit(String dir, FileInfo info);
+  }
+
+  /**
+   * Filter, der beim Lesen jeder Verzeichnisebene angewendet wird.
+   * Abgelehnte Verzeichnisse werden auch nicht durchlaufen.
+   * Die Aufrufe erfolgen parallel aus mehreren Threads.
+   */
+  public interface Filter
+  {
+    /**
+     * Prueft, ob der Eintrag uebernommen werden soll.
+     * @param dir das Verzeichnis, in dem sich der Eintrag befindet.
+     * @param info die Meta-Daten des Eintrages.
+     * @param depth Tiefe des Eintrages. Die Eintraege im Start-Verzeichnis haben die Tiefe 1.
+     * @return true, wenn der Eintrag gemeldet (und bei Verzeichnissen durchlaufen) werden soll.
+     */
+    public boolean accept(String dir, FileInfo info, int depth);
+  }
+}
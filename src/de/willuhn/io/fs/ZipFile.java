@@ -0,0 +1,168 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementierung des File-Interface fuer Dateien im {@link ZipFileSystem}.
+ * Die Dateien koennen nur gelesen werden.
+ */
+public class ZipFile implements File
+{
+  private ZipIndex index = null;
+  private File archive   = null;
+  private String dir     = null;
+  private String name    = null;
+
+  /**
+   * ct.
+   * @param index der Index des Archivs.
+   * @param archive das Archiv.
+   * @param dir Pfad des Verzeichnisses im Archiv ohne Slash am Anfang und Ende.
+   * @param name Dateiname.
+   */
+  ZipFile(ZipIndex index, File archive, String dir, String name)
+  {
+    this.index   = index;
+    this.archive = archive;
+    this.dir     = dir;
+    this.name    = name;
+  }
+
+  /**
+   * Liefert die Nummer des Eintrages im Archiv.
+   * @return Nummer des Eintrages oder -1, wenn die Datei nicht existiert.
+   */
+  private int getEntry()
+  {
+    ZipIndex.Dir d = this.index.getDir(this.dir);
+    if (d == null)
+      return -1;
+    int i = d.indexOf(this.name);
+    return i < 0 ? -1 : d.getEntry(i);
+  }
+
+  /**
+   * Liefert den Pfad der Datei im Archiv.
+   * @return Pfad der Datei.
+   */
+  private String getPath()
+  {
+    return this.dir.length() == 0 ? this.name : this.dir + "/" + this.name;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#exists()
+   */
+  public boolean exists() throws FSException
+  {
+    return getEntry() != -1;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#delete()
+   */
+  public void delete() throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to delete " + getPath());
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#length()
+   */
+  public long length() throws FSException
+  {
+    int e = getEntry();
+    return e != -1 ? this.index.getSize(e) : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#lastModified()
+   */
+  public long lastModified() throws FSException
+  {
+    int e = getEntry();
+    return e != -1 ? this.index.getLastModified(e) : 0L;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#stat()
+   */
+  public FileInfo stat() throws FSException
+  {
+    int e = getEntry();
+    return e != -1 ? new FileInfo(this.name,false,this.index.getSize(e),this.index.getLastModified(e)) : null;
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream()
+   */
+  public OutputStream getOutputStream() throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to write " + getPath());
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getOutputStream(boolean)
+   */
+  public OutputStream getOutputStream(boolean append) throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to write " + getPath());
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#getInputStream()
+   */
+  public InputStream getInputStream() throws FSException
+  {
+    return getInputStream(0L);
+  }
+
+  /**
+   * Bei komprimierten Dateien werden die Daten vor der Position entpackt und
+   * verworfen, da Deflate keinen wahlfreien Zugriff erlaubt.
+   * @see de.willuhn.io.fs.File#getInputStream(long)
+   */
+  public InputStream getInputStream(long offset) throws FSException
+  {
+    int e = getEntry();
+    if (e == -1)
+      throw new FSException("file not found: " + getPath());
+    return this.index.open(this.archive,e,offset);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#rename(java.lang.String)
+   */
+  public void rename(String name) throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to rename " + getPath());
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#move(de.willuhn.io.fs.File)
+   */
+  public void move(File target) throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to move " + getPath());
+  }
+
+  /**
+   * @see de.willuhn.io.fs.File#copy(de.willuhn.io.fs.File)
+   */
+  public void copy(File target) throws FSException
+  {
+    throw new FSException("zip filesystem is read-only, unable to copy " + getPath());
+  }
+}
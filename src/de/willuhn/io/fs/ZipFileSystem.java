@@ -0,0 +1,244 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.FilenameFilter;
+import java.net.URI;
+import java.util.ArrayList;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Implementierung des FileSystem-Interface fuer den lesenden Zugriff auf ZIP-Archive.
+ * URI-Format: zip:&lt;uri-des-archivs&gt;[!/&lt;verzeichnis&gt;]. Das Archiv kann auf
+ * einem beliebigen anderen File-System liegen, z.Bsp. "zip:sftp://user@host/daten.zip!/2021".
+ * "zip:///pfad/daten.zip" ist die Kurzform fuer ein lokales Archiv.
+ * Das zentrale Verzeichnis des Archivs wird beim Initialisieren einmalig gelesen.
+ * Fuer das Lesen einer Datei wird direkt an deren Position im Archiv gesprungen -
+ * das darunterliegende File-System muss hierzu {@link File#getInputStream(long)}
+ * effizient unterstuetzen.
+ * Das File-System kann nur gelesen werden.
+ */
+public class ZipFileSystem extends AbstractFileSystem
+{
+  private FileSystem fs  = null;
+  private File archive   = null;
+  private ZipIndex index = null;
+  private String path    = null;
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#init(java.net.URI)
+   */
+  public void init(URI uri) throws FSException
+  {
+    Logger.debug("creating zip filesystem for uri: " + uri.toString());
+
+    String s = uri.toString().substring(4); // "zip:" abschneiden
+    if (s.startsWith("//"))
+      s = "file:" + s;
+
+    String location = s;
+    this.path = "";
+    int i = s.indexOf("!/");
+    if (i != -1)
+    {
+      location  = s.substring(0,i);
+      this.path = normalize(s.substring(i + 2));
+    }
+    else if (s.endsWith("!"))
+    {
+      location = s.substring(0,s.length() - 1);
+    }
+
+    int slash = location.lastIndexOf('/');
+    if (slash == -1 || slash == location.length() - 1)
+      throw new FSException("invalid zip archive location: " + location);
+
+    try
+    {
+      this.fs      = FileSystemFactory.createFileSystem(location.substring(0,slash));
+      this.archive = this.fs.create(location.substring(slash + 1));
+      if (!this.archive.exists())
+        throw new FSException("zip archive not found: " + location);
+      this.index = ZipIndex.get(this.archive,location);
+    }
+    catch (Exception e)
+    {
+      close();
+      if (e instanceof FSException)
+        throw (FSException) e;
+      throw new FSException(e);
+    }
+
+    if (this.index.getDir(this.path) == null)
+      Logger.warn("directory " + this.path + " not found in zip archive " + location);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String)
+   */
+  public File create(String filename) throws FSException
+  {
+    return create(null,filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#create(java.lang.String, java.lang.String)
+   */
+  public File create(String dir, String filename) throws FSException
+  {
+    if (filename == null || filename.length() == 0 || filename.indexOf('/') != -1)
+      throw new FSException("invalid filename: " + filename);
+
+    return new ZipFile(this.index,this.archive,getDir(dir),filename);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.io.FilenameFilter)
+   */
+  public String[] list(FilenameFilter filter) throws FSException
+  {
+    return list(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#list(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] list(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,false);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.io.FilenameFilter)
+   */
+  public String[] listDirs(FilenameFilter filter) throws FSException
+  {
+    return listDirs(null,filter);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listDirs(java.lang.String, java.io.FilenameFilter)
+   */
+  public String[] listDirs(String dir, FilenameFilter filter) throws FSException
+  {
+    return _list(dir,filter,true);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#listInfo(java.lang.String, java.io.FilenameFilter)
+   */
+  public FileInfo[] listInfo(String dir, FilenameFilter filter) throws FSException
+  {
+    String d = getDir(dir);
+    ZipIndex.Dir node = this.index.getDir(d);
+    if (node == null)
+      return null;
+
+    java.io.File fd = new java.io.File("/" + d);
+    ArrayList<FileInfo> list = new ArrayList<FileInfo>();
+    for (int i=0;i<node.size();++i)
+    {
+      String name = node.getName(i);
+      if (filter != null && !filter.accept(fd,name))
+        continue;
+      if (node.isDirectory(i))
+      {
+        list.add(new FileInfo(name,true,0L,0L));
+      }
+      else
+      {
+        int e = node.getEntry(i);
+        list.add(new FileInfo(name,false,this.index.getSize(e),this.index.getLastModified(e)));
+      }
+    }
+    return list.toArray(new FileInfo[list.size()]);
+  }
+
+  /**
+   * @see de.willuhn.io.fs.FileSystem#close()
+   */
+  public void close() throws FSException
+  {
+    if (this.fs == null)
+      return;
+    try
+    {
+      this.fs.close();
+    }
+    finally
+    {
+      this.fs = null;
+    }
+  }
+
+  /**
+   * Liefert die sortierte Liste der Dateien oder Verzeichnisse.
+   * @param dir Verzeichnis.
+   * @param filter optionaler Filter.
+   * @param dirs true, wenn Verzeichnisse geliefert werden sollen, sonst Dateien.
+   * @return Liste der Namen oder NULL, wenn das Verzeichnis nicht existiert.
+   */
+  private String[] _list(String dir, FilenameFilter filter, boolean dirs)
+  {
+    String d = getDir(dir);
+    ZipIndex.Dir node = this.index.getDir(d);
+    if (node == null)
+      return null;
+
+    java.io.File fd = new java.io.File("/" + d);
+    ArrayList<String> list = new ArrayList<String>();
+    for (int i=0;i<node.size();++i)
+    {
+      String name = node.getName(i);
+      if (node.isDirectory(i) == dirs && (filter == null || filter.accept(fd,name)))
+        list.add(name);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Liefert den Pfad des Verzeichnisses im Archiv.
+   * @param dir Pfad relativ zum Arbeitsverzeichnis.
+   * @return Pfad im Archiv ohne Slash am Anfang und Ende.
+   */
+  private String getDir(String dir)
+  {
+    String d = normalize(dir);
+    if (d.length() == 0)
+      return this.path;
+    return this.path.length() == 0 ? d : this.path + "/" + d;
+  }
+
+  /**
+   * Vereinheitlicht den Pfad.
+   * Liefert einen Pfad ohne Slash am Anfang und Ende und ohne doppelte Slashes.
+   * @param path der Pfad.
+   * @return der vereinheitlichte Pfad.
+   */
+  private String normalize(String path)
+  {
+    path = clean(path);
+    if (path == null || path.length() == 0)
+      return "";
+    StringBuilder sb = new StringBuilder();
+    for (String s:path.split("/"))
+    {
+      if (s.length() == 0 || ".".equals(s))
+        continue;
+      if (sb.length() > 0)
+        sb.append('/');
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+}
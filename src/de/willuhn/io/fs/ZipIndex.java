@@ -0,0 +1,757 @@
+/**********************************************************************
+ *
+ * Copyright (c) 2021 Olaf Willuhn
+ * All rights reserved.
+ * 
+ * This software is copyrighted work licensed under the terms of the
+ * GNU LESSER GENERAL PUBLIC LICENSE 2.1.
+ * Please consult the file "LICENSE" for details. 
+ *
+ **********************************************************************/
+
+package de.willuhn.io.fs;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import de.willuhn.logging.Logger;
+
+/**
+ * Index ueber das zentrale Verzeichnis eines ZIP-Archivs.
+ * Das zentrale Verzeichnis wird einmalig gelesen und in kompakten Arrays
+ * abgelegt. Die Eintraege koennen anschliessend ohne erneuten Zugriff auf das
+ * Archiv aufgelistet werden. Beim Lesen eines Eintrages wird direkt an dessen
+ * Position im Archiv gesprungen.
+ * Die Indizes werden in einem LRU-Cache vorgehalten, dessen Groesse per
+ * System-Property "filesystems.zip.cache" (Default: 16) festgelegt werden kann.
+ */
+class ZipIndex
+{
+  private final static int SIG_LOCAL     = 0x04034b50;
+  private final static int SIG_CENTRAL   = 0x02014b50;
+  private final static int SIG_END       = 0x06054b50;
+  private final static int SIG_END64     = 0x06064b50;
+  private final static int SIG_LOCATOR64 = 0x07064b50;
+
+  // Groesse des End-Records ohne Kommentar
+  private final static int END_SIZE = 22;
+
+  // Maximale Groesse des Bereiches am Ende des Archivs, in dem der End-Record
+  // liegen kann: End-Record, Kommentar (max. 64 KB) und ZIP64-Locator
+  private final static int END_SEARCH = END_SIZE + 0xffff + 20;
+
+  private final static int METHOD_STORED   = 0;
+  private final static int METHOD_DEFLATED = 8;
+
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+  private final static Charset CP437;
+
+  static
+  {
+    Charset cs = null;
+    try
+    {
+      cs = Charset.forName("IBM437");
+    }
+    catch (Exception e)
+    {
+      Logger.warn("charset IBM437 not supported, using ISO-8859-1 for zip entry names");
+      cs = Charset.forName("ISO-8859-1");
+    }
+    CP437 = cs;
+  }
+
+  private final static Map<String,ZipIndex> cache = new LinkedHashMap<String,ZipIndex>(16,0.75f,true)
+  {
+    private final static long serialVersionUID = 1L;
+    private final int max = Integer.getInteger("filesystems.zip.cache",16);
+
+    /**
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    protected boolean removeEldestEntry(Map.Entry<String,ZipIndex> eldest)
+    {
+      return size() > max;
+    }
+  };
+
+  // Die Eintraege des Archivs
+  private int count            = 0;
+  private long[] offsets       = null;
+  private long[] sizes         = null;
+  private long[] csizes        = null;
+  private long[] times         = null;
+  private short[] methods      = null;
+  private short[] flags        = null;
+
+  // Die Verzeichnisse. Schluessel ist der Pfad ohne Slash am Anfang und Ende
+  private Map<String,Dir> dirs = new HashMap<String,Dir>();
+
+  /**
+   * Liefert den Index fuer das Archiv.
+   * Ist er noch nicht im Cache oder hat sich das Archiv geaendert, wird er neu gelesen.
+   * @param archive das Archiv.
+   * @param uri URI des Archivs. Dient als Schluessel fuer den Cache.
+   * @return der Index.
+   * @throws FSException
+   */
+  static ZipIndex get(File archive, String uri) throws FSException
+  {
+    long length = archive.length();
+    String key  = uri + "|" + length + "|" + archive.lastModified();
+
+    synchronized (cache)
+    {
+      ZipIndex index = cache.get(key);
+      if (index != null)
+        return index;
+    }
+
+    long started = System.currentTimeMillis();
+    ZipIndex index = new ZipIndex();
+    index.read(archive,length);
+    Logger.debug("read zip index of " + uri + ": " + index.count + " entries, " + index.dirs.size() + " dirs, took " + (System.currentTimeMillis() - started) + " ms");
+
+    synchronized (cache)
+    {
+      cache.put(key,index);
+    }
+    return index;
+  }
+
+  /**
+   * Liefert das Verzeichnis.
+   * @param path Pfad ohne Slash am Anfang und Ende. Leer fuer das Stammverzeichnis.
+   * @return das Verzeichnis oder NULL, wenn es nicht existiert.
+   */
+  Dir getDir(String path)
+  {
+    return this.dirs.get(path);
+  }
+
+  /**
+   * Liefert die unkomprimierte Groesse des Eintrages.
+   * @param entry Nummer des Eintrages.
+   * @return Groesse in Bytes.
+   */
+  long getSize(int entry)
+  {
+    return this.sizes[entry];
+  }
+
+  /**
+   * Liefert das Aenderungsdatum des Eintrages.
+   * @param entry Nummer des Eintrages.
+   * @return Datum in Millisekunden seit 1.1.1970.
+   */
+  long getLastModified(int entry)
+  {
+    return this.times[entry];
+  }
+
+  /**
+   * Oeffnet einen Stream auf den entpackten Inhalt des Eintrages.
+   * @param archive das Archiv.
+   * @param entry Nummer des Eintrages.
+   * @param offset Position im entpackten Inhalt, ab der gelesen werden soll.
+   * @return der Stream.
+   * @throws FSException
+   */
+  InputStream open(File archive, int entry, long offset) throws FSException
+  {
+    if ((this.flags[entry] & 0x01) != 0)
+      throw new FSException("encrypted zip entries not supported");
+
+    int method = this.methods[entry];
+    if (method != METHOD_STORED && method != METHOD_DEFLATED)
+      throw new FSException("unsupported zip compression method: " + method);
+
+    if (offset >= this.sizes[entry])
+      return new EntryInputStream(null,0L);
+
+    InputStream is = null;
+    try
+    {
+      // Der Local-Header hat eine variable Laenge, daher muessen wir ihn lesen,
+      // um den Beginn der Daten zu ermitteln.
+      is = archive.getInputStream(this.offsets[entry]);
+      byte[] header = new byte[30];
+      readFully(is,header,0,header.length);
+      if (getInt(header,0) != SIG_LOCAL)
+        throw new FSException("invalid zip local header at offset " + this.offsets[entry]);
+
+      long skip = getShort(header,26) + getShort(header,28);
+      long data = this.offsets[entry] + header.length + skip;
+
+      if (method == METHOD_STORED)
+      {
+        if (offset > 0L)
+        {
+          // Direkt an die Position springen, statt die Daten davor zu lesen
+          is.close();
+          is = null;
+          is = archive.getInputStream(data + offset);
+        }
+        else
+        {
+          skipFully(is,skip);
+        }
+        return new EntryInputStream(is,this.sizes[entry] - offset);
+      }
+
+      skipFully(is,skip);
+      is = new DeflatedInputStream(new EntryInputStream(is,this.csizes[entry]));
+      if (offset > 0L)
+        skipFully(is,offset);
+      return is;
+    }
+    catch (IOException e)
+    {
+      close(is);
+      throw new FSException(e);
+    }
+    catch (FSException e)
+    {
+      close(is);
+      throw e;
+    }
+  }
+
+  /**
+   * Liest das zentrale Verzeichnis des Archivs.
+   * @param archive das Archiv.
+   * @param length Groesse des Archivs.
+   * @throws FSException
+   */
+  private void read(File archive, long length) throws FSException
+  {
+    if (length < END_SIZE)
+      throw new FSException("not a zip archive, file too small");
+
+    InputStream is = null;
+    try
+    {
+      // 1. End-Record am Ende des Archivs suchen
+      int tail = (int) Math.min(length,END_SEARCH);
+      byte[] buf = new byte[tail];
+      is = archive.getInputStream(length - tail);
+      readFully(is,buf,0,tail);
+      is.close();
+      is = null;
+
+      int end = -1;
+      for (int i=tail - END_SIZE;i>=0;--i)
+      {
+        if (getInt(buf,i) == SIG_END)
+        {
+          end = i;
+          break;
+        }
+      }
+      if (end == -1)
+        throw new FSException("not a zip archive, end of central directory not found");
+
+      long entries = getShort(buf,end + 10);
+      long size    = getInt(buf,end + 12) & 0xffffffffL;
+      long start   = getInt(buf,end + 16) & 0xffffffffL;
+
+      // 2. Bei ZIP64-Archiven stehen die Werte im ZIP64-End-Record
+      if (end >= 20 && getInt(buf,end - 20) == SIG_LOCATOR64)
+      {
+        long pos = getLong(buf,end - 20 + 8);
+        byte[] rec = new byte[56];
+        is = archive.getInputStream(pos);
+        readFully(is,rec,0,rec.length);
+        is.close();
+        is = null;
+        if (getInt(rec,0) != SIG_END64)
+          throw new FSException("invalid zip64 end of central directory at offset " + pos);
+        entries = getLong(rec,32);
+        size    = getLong(rec,40);
+        start   = getLong(rec,48);
+      }
+
+      // Jeder Eintrag im zentralen Verzeichnis belegt mindestens 46 Bytes
+      if (start + size > length || entries > size / 46)
+        throw new FSException("invalid zip central directory: " + entries + " entries, " + size + " bytes at offset " + start);
+
+      // 3. Zentrales Verzeichnis am Stueck lesen
+      int n = (int) entries;
+      this.offsets = new long[n];
+      this.sizes   = new long[n];
+      this.csizes  = new long[n];
+      this.times   = new long[n];
+      this.methods = new short[n];
+      this.flags   = new short[n];
+
+      Map<String,TreeMap<String,Integer>> tree = new HashMap<String,TreeMap<String,Integer>>();
+      tree.put("",new TreeMap<String,Integer>());
+
+      is = new BufferedInputStream(new EntryInputStream(archive.getInputStream(start),size),64 * 1024);
+      Calendar cal = new GregorianCalendar();
+      byte[] header = new byte[46];
+      byte[] name   = new byte[256];
+      for (int i=0;i<n;++i)
+      {
+        readFully(is,header,0,header.length);
+        if (getInt(header,0) != SIG_CENTRAL)
+          throw new FSException("invalid zip central directory header at entry " + i);
+
+        int flag     = getShort(header,8);
+        int nameLen  = getShort(header,28);
+        int extraLen = getShort(header,30);
+        int comment  = getShort(header,32);
+
+        this.flags[i]   = (short) flag;
+        this.methods[i] = (short) getShort(header,10);
+        this.times[i]   = getTime(cal,getInt(header,12));
+        this.csizes[i]  = getInt(header,20) & 0xffffffffL;
+        this.sizes[i]   = getInt(header,24) & 0xffffffffL;
+        this.offsets[i] = getInt(header,42) & 0xffffffffL;
+
+        if (name.length < Math.max(nameLen,extraLen))
+          name = new byte[Math.max(nameLen,extraLen)];
+
+        readFully(is,name,0,nameLen);
+        String s = new String(name,0,nameLen,(flag & 0x800) != 0 ? UTF8 : CP437);
+
+        readFully(is,name,0,extraLen);
+        readZip64(name,extraLen,i);
+
+        skipFully(is,comment);
+        add(tree,s,i);
+      }
+      this.count = n;
+
+      // 4. Verzeichnisse in sortierte Arrays ueberfuehren
+      for (Map.Entry<String,TreeMap<String,Integer>> e:tree.entrySet())
+      {
+        this.dirs.put(e.getKey(),new Dir(e.getValue()));
+      }
+    }
+    catch (IOException e)
+    {
+      throw new FSException(e);
+    }
+    finally
+    {
+      close(is);
+    }
+  }
+
+  /**
+   * Uebernimmt die Werte aus dem ZIP64-Extra-Feld, falls vorhanden.
+   * Das Feld enthaelt nur die Werte, die im Header mit 0xffffffff markiert sind.
+   * @param extra das Extra-Feld.
+   * @param len Laenge des Extra-Feldes.
+   * @param i Nummer des Eintrages.
+   */
+  private void readZip64(byte[] extra, int len, int i)
+  {
+    int pos = 0;
+    while (pos + 4 <= len)
+    {
+      int id   = getShort(extra,pos);
+      int size = getShort(extra,pos + 2);
+      pos += 4;
+      if (id == 0x0001)
+      {
+        int p = pos;
+        int e = Math.min(pos + size,len);
+        if (this.sizes[i] == 0xffffffffL && p + 8 <= e)
+        {
+          this.sizes[i] = getLong(extra,p);
+          p += 8;
+        }
+        if (this.csizes[i] == 0xffffffffL && p + 8 <= e)
+        {
+          this.csizes[i] = getLong(extra,p);
+          p += 8;
+        }
+        if (this.offsets[i] == 0xffffffffL && p + 8 <= e)
+          this.offsets[i] = getLong(extra,p);
+        return;
+      }
+      pos += size;
+    }
+  }
+
+  /**
+   * Traegt den Eintrag samt der implizit enthaltenen Verzeichnisse in den Baum ein.
+   * @param tree Baum mit den Verzeichnissen. Wert ist die Nummer des Eintrages oder -1 fuer Verzeichnisse.
+   * @param path Pfad des Eintrages.
+   * @param i Nummer des Eintrages.
+   */
+  private static void add(Map<String,TreeMap<String,Integer>> tree, String path, int i)
+  {
+    path = path.replace('\\','/');
+    boolean dir = path.endsWith("/");
+
+    String parent = "";
+    String[] parts = path.split("/");
+    int last = parts.length - 1;
+    while (last >= 0 && parts[last].length() == 0)
+      last--;
+
+    for (int k=0;k<=last;++k)
+    {
+      String s = parts[k];
+      if (s.length() == 0 || ".".equals(s) || "..".equals(s))
+        continue;
+
+      String child = parent.length() == 0 ? s : parent + "/" + s;
+      if (k < last || dir)
+      {
+        if (!tree.containsKey(child))
+        {
+          tree.get(parent).put(s,-1);
+          tree.put(child,new TreeMap<String,Integer>());
+        }
+      }
+      else
+      {
+        // Datei. Existiert bereits ein Verzeichnis gleichen Namens, wird die Datei ignoriert
+        if (!tree.containsKey(child))
+          tree.get(parent).put(s,i);
+      }
+      parent = child;
+    }
+  }
+
+  /**
+   * Wandelt Datum und Uhrzeit im DOS-Format in Millisekunden um.
+   * @param cal Kalender, der hierfuer verwendet werden soll.
+   * @param dos Datum (High-Word) und Uhrzeit (Low-Word) im DOS-Format.
+   * @return Millisekunden seit 1.1.1970.
+   */
+  private static long getTime(Calendar cal, int dos)
+  {
+    cal.clear();
+    cal.set(((dos >> 25) & 0x7f) + 1980,((dos >> 21) & 0x0f) - 1,(dos >> 16) & 0x1f,(dos >> 11) & 0x1f,(dos >> 5) & 0x3f,(dos << 1) & 0x3e);
+    return cal.getTimeInMillis();
+  }
+
+  /**
+   * Liest eine 2-Byte-Zahl im Little-Endian-Format.
+   * @param b Puffer.
+   * @param off Position.
+   * @return die Zahl.
+   */
+  private static int getShort(byte[] b, int off)
+  {
+    return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+  }
+
+  /**
+   * Liest eine 4-Byte-Zahl im Little-Endian-Format.
+   * @param b Puffer.
+   * @param off Position.
+   * @return die Zahl.
+   */
+  private static int getInt(byte[] b, int off)
+  {
+    return getShort(b,off) | (getShort(b,off + 2) << 16);
+  }
+
+  /**
+   * Liest eine 8-Byte-Zahl im Little-Endian-Format.
+   * @param b Puffer.
+   * @param off Position.
+   * @return die Zahl.
+   */
+  private static long getLong(byte[] b, int off)
+  {
+    return (getInt(b,off) & 0xffffffffL) | ((long) getInt(b,off + 4) << 32);
+  }
+
+  /**
+   * Liest die angegebene Anzahl Bytes aus dem Stream.
+   * @param is der Stream.
+   * @param b Puffer.
+   * @param off Position im Puffer.
+   * @param len Anzahl der Bytes.
+   * @throws IOException
+   */
+  private static void readFully(InputStream is, byte[] b, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      int read = is.read(b,off,len);
+      if (read == -1)
+        throw new EOFException("unexpected end of zip archive");
+      off += read;
+      len -= read;
+    }
+  }
+
+  /**
+   * Ueberspringt die angegebene Anzahl Bytes im Stream.
+   * @param is der Stream.
+   * @param n Anzahl der Bytes.
+   * @throws IOException
+   */
+  private static void skipFully(InputStream is, long n) throws IOException
+  {
+    while (n > 0)
+    {
+      long skipped = is.skip(n);
+      if (skipped <= 0)
+      {
+        // skip() darf 0 liefern, ohne dass das Ende erreicht ist
+        if (is.read() == -1)
+          throw new EOFException("unexpected end of zip archive");
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  /**
+   * Schliesst den Stream ohne Fehler zu werfen.
+   * @param is der Stream.
+   */
+  private static void close(InputStream is)
+  {
+    if (is == null)
+      return;
+    try
+    {
+      is.close();
+    }
+    catch (Exception e)
+    {
+      Logger.error("error while closing stream",e);
+    }
+  }
+
+  /**
+   * Ein Verzeichnis im Archiv.
+   * Die Namen sind sortiert, sodass per binaerer Suche gesucht werden kann.
+   */
+  static class Dir
+  {
+    private final String[] names;
+    private final int[] entries;
+    private final BitSet dirs;
+
+    /**
+     * ct.
+     * @param children die Kinder. Wert ist die Nummer des Eintrages oder -1 fuer Verzeichnisse.
+     */
+    private Dir(TreeMap<String,Integer> children)
+    {
+      this.names   = children.keySet().toArray(new String[children.size()]);
+      this.entries = new int[this.names.length];
+      this.dirs    = new BitSet(this.names.length);
+
+      int i = 0;
+      for (Integer e:children.values())
+      {
+        this.entries[i] = e.intValue();
+        if (e.intValue() == -1)
+          this.dirs.set(i);
+        i++;
+      }
+    }
+
+    /**
+     * Liefert die Anzahl der Kinder.
+     * @return Anzahl der Kinder.
+     */
+    int size()
+    {
+      return this.names.length;
+    }
+
+    /**
+     * Liefert den Namen des Kindes.
+     * @param i Position.
+     * @return Name.
+     */
+    String getName(int i)
+    {
+      return this.names[i];
+    }
+
+    /**
+     * Prueft, ob das Kind ein Verzeichnis ist.
+     * @param i Position.
+     * @return true, wenn es ein Verzeichnis ist.
+     */
+    boolean isDirectory(int i)
+    {
+      return this.dirs.get(i);
+    }
+
+    /**
+     * Liefert die Nummer des Eintrages im Archiv.
+     * @param i Position.
+     * @return Nummer des Eintrages oder -1 bei Verzeichnissen.
+     */
+    int getEntry(int i)
+    {
+      return this.entries[i];
+    }
+
+    /**
+     * Sucht nach dem Kind.
+     * @param name Name des Kindes.
+     * @return Position oder ein negativer Wert, wenn es nicht existiert.
+     */
+    int indexOf(String name)
+    {
+      return Arrays.binarySearch(this.names,name);
+    }
+  }
+
+  /**
+   * Liest hoechstens die angegebene Anzahl Bytes aus dem Stream.
+   */
+  private static class EntryInputStream extends FilterInputStream
+  {
+    private long remaining = 0L;
+
+    /**
+     * ct.
+     * @param is der Stream. Darf NULL sein, wenn 0 Bytes gelesen werden sollen.
+     * @param length Anzahl der Bytes.
+     */
+    private EntryInputStream(InputStream is, long length)
+    {
+      super(is);
+      this.remaining = length;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read()
+     */
+    public int read() throws IOException
+    {
+      byte[] b = new byte[1];
+      return read(b,0,1) == -1 ? -1 : (b[0] & 0xff);
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (len == 0)
+        return 0;
+      if (this.remaining <= 0)
+        return -1;
+      int read = super.read(b,off,(int) Math.min(len,this.remaining));
+      if (read == -1)
+        throw new EOFException("unexpected end of zip entry");
+      this.remaining -= read;
+      return read;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#skip(long)
+     */
+    public long skip(long n) throws IOException
+    {
+      long skipped = super.skip(Math.min(n,this.remaining));
+      this.remaining -= skipped;
+      return skipped;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#available()
+     */
+    public int available() throws IOException
+    {
+      if (this.remaining <= 0)
+        return 0;
+      return (int) Math.min(super.available(),this.remaining);
+    }
+
+    /**
+     * @see java.io.FilterInputStream#markSupported()
+     */
+    public boolean markSupported()
+    {
+      return false;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.in != null)
+        super.close();
+    }
+  }
+
+  /**
+   * Entpackt die Daten eines mit Deflate komprimierten Eintrages.
+   */
+  private static class DeflatedInputStream extends InflaterInputStream
+  {
+    private boolean eof    = false;
+    private boolean closed = false;
+
+    /**
+     * ct.
+     * @param is Stream mit den komprimierten Daten.
+     */
+    private DeflatedInputStream(InputStream is)
+    {
+      super(is,new Inflater(true),8192);
+    }
+
+    /**
+     * Bei Deflate ohne ZLIB-Header erwartet der Inflater ein zusaetzliches
+     * Dummy-Byte am Ende der Daten.
+     * @see java.util.zip.InflaterInputStream#fill()
+     */
+    protected void fill() throws IOException
+    {
+      if (this.eof)
+        throw new EOFException("unexpected end of zip entry");
+      this.len = this.in.read(this.buf,0,this.buf.length);
+      if (this.len == -1)
+      {
+        this.buf[0] = 0;
+        this.len    = 1;
+        this.eof    = true;
+      }
+      this.inf.setInput(this.buf,0,this.len);
+    }
+
+    /**
+     * @see java.util.zip.InflaterInputStream#close()
+     */
+    public void close() throws IOException
+    {
+      if (this.closed)
+        return;
+      this.closed = true;
+      try
+      {
+        super.close();
+      }
+      finally
+      {
+        // Der Inflater wurde nicht von InflaterInputStream erzeugt und wird daher nicht automatisch freigegeben
+        this.inf.end();
+      }
+    }
+  }
+}